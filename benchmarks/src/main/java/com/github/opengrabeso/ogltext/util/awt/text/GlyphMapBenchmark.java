@@ -0,0 +1,69 @@
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Measures looking up the glyphs of a frame of text in a {@link GlyphMap} holding all of them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GlyphMapBenchmark {
+
+    @Param({"ascii-hud", "mixed-script", "log-scroller", "churny-labels"})
+    public String workload;
+
+    private GlyphMap map;
+
+    private char[] text;
+
+    @Setup
+    public void setUp() {
+        final Font font = new Font("SansSerif", Font.PLAIN, 18);
+        final FontRenderContext frc = new FontRenderContext(null, true, false);
+        final StringBuilder sb = new StringBuilder();
+        for (final String line : TextWorkload.named(workload).getLines(0)) {
+            sb.append(line);
+        }
+        text = sb.toString().toCharArray();
+        map = new GlyphMap();
+        for (final char c : text) {
+            map.put(c, new Glyph(c, font.createGlyphVector(frc, new char[] { c })));
+        }
+    }
+
+    @Benchmark
+    public void lookup(final Blackhole bh) {
+        for (final char c : text) {
+            bh.consume(map.get(c));
+        }
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(GlyphMapBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,109 @@
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import com.github.opengrabeso.jaagl.GL2;
+import com.github.opengrabeso.jaagl.GL2GL3;
+import com.github.opengrabeso.jaagl.GL3;
+import com.jogamp.opengl.GLException;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * OpenGL implementation that does no work at all, so benchmarks measure only the CPU side.
+ *
+ * <p>
+ * Constants are taken from JOGL, names are handed out in sequence, shaders always compile and
+ * programs always link.  Everything else does nothing and returns zero, false or null.
+ */
+final class NullGL implements InvocationHandler {
+
+    // Value of GL_MAX_TEXTURE_SIZE
+    private static final int MAX_TEXTURE_SIZE = 4096;
+
+    // Results of functions that always return the same thing, e.g. constants
+    private final Map<Method, Object> constants = new HashMap<Method, Object>();
+
+    private final boolean gl3;
+
+    private final Object proxy;
+
+    private int lastName;
+
+    private NullGL(final boolean gl3) {
+        this.gl3 = gl3;
+        this.proxy = Proxy.newProxyInstance(
+                NullGL.class.getClassLoader(), new Class<?>[] { GL2.class, GL3.class }, this);
+    }
+
+    /**
+     * Creates an OpenGL context doing nothing.
+     *
+     * @param gl3 True to pretend to be an OpenGL 3 context
+     * @return Context implementing both {@link GL2} and {@link GL3}
+     */
+    static GL2GL3 create(final boolean gl3) {
+        return (GL2GL3) new NullGL(gl3).proxy;
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args) throws Exception {
+
+        final Object constant = constants.get(method);
+        if (constant != null) {
+            return constant;
+        }
+
+        final String name = method.getName();
+        final Class<?> type = method.getReturnType();
+        if (method.getDeclaringClass() == Object.class) {
+            return method.invoke(this, args);
+        } else if (name.startsWith("GL_")) {
+            final Number value = (Number) com.jogamp.opengl.GL4bc.class.getField(name).get(null);
+            constants.put(method, (type == long.class) ? (Object) value.longValue() : value.intValue());
+        } else if (args == null && type.isInstance(proxy)) {
+            constants.put(method, proxy);
+        } else if (name.startsWith("isGL")) {
+            constants.put(method, name.equals("isGL3") ? gl3 : !name.equals("isGL2") || !gl3);
+        } else if (name.equals("newGLException")) {
+            return new GLException((String) args[0]);
+        } else if (name.startsWith("glGen")) {
+            final int[] names = (int[]) args[args.length == 3 ? 1 : 0];
+            for (int i = 0; i < names.length; ++i) {
+                names[i] = ++lastName;
+            }
+            return null;
+        } else if (name.startsWith("glCreate")) {
+            return ++lastName;
+        } else if (name.equals("glGetShaderiv") || name.equals("glGetProgramiv")) {
+            ((int[]) args[2])[(Integer) args[3]] = 1;
+            return null;
+        } else if (name.equals("glGetInteger")) {
+            return ((Integer) args[0] == com.jogamp.opengl.GL.GL_MAX_TEXTURE_SIZE) ? MAX_TEXTURE_SIZE : 0;
+        } else {
+            return defaultValue(type);
+        }
+        return constants.get(method);
+    }
+
+    private static Object defaultValue(final Class<?> type) {
+        if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == float.class) {
+            return 0f;
+        } else if (type == double.class) {
+            return 0d;
+        } else if (type == boolean.class) {
+            return false;
+        } else if (type == String.class) {
+            return "";
+        } else {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import com.github.opengrabeso.jaagl.GL2GL3;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Measures emitting quads into a {@link QuadPipeline}, including the flushes it does when full.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuadPipelineBenchmark {
+
+    private static final int QUADS = 1000;
+
+    @Param({"GL15", "GL30"})
+    public String pipeline;
+
+    private GL2GL3 gl;
+
+    private QuadPipeline quads;
+
+    private final Quad quad = new Quad();
+
+    @Setup
+    public void setUp() {
+        if ("GL15".equals(pipeline)) {
+            gl = NullGL.create(false);
+            quads = new QuadPipelineGL15(gl.getGL2());
+        } else {
+            gl = NullGL.create(true);
+            quads = new QuadPipelineGL30(gl, 1);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUADS)
+    public QuadPipeline addQuads() {
+        quads.beginRendering(gl);
+        for (int i = 0; i < QUADS; ++i) {
+            quad.xl = i;
+            quad.xr = i + 10;
+            quad.yb = 0;
+            quad.yt = 20;
+            quad.sl = 0.1f;
+            quad.sr = 0.2f;
+            quad.tb = 0.3f;
+            quad.tt = 0.4f;
+            quads.addQuad(gl, quad);
+        }
+        quads.endRendering(gl);
+        return quads;
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(QuadPipelineBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import com.github.opengrabeso.jaagl.GL2GL3;
+import com.github.opengrabeso.ogltext.util.awt.TextRenderer;
+
+import java.awt.Font;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Measures whole frames of text drawn with {@link TextRenderer}, from glyph lookup to quad
+ * emission, on an OpenGL context doing nothing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextRendererBenchmark {
+
+    @Param({"ascii-hud", "mixed-script", "log-scroller", "churny-labels"})
+    public String workload;
+
+    @Param({"false", "true"})
+    public boolean gl3;
+
+    private TextWorkload text;
+
+    private TextRenderer renderer;
+
+    private int frame;
+
+    @Setup
+    public void setUp() {
+        final GL2GL3 gl = NullGL.create(gl3);
+        text = TextWorkload.named(workload);
+        renderer = new TextRenderer(new Font("SansSerif", Font.PLAIN, 18), true, false,
+                null, false, null, gl, gl3);
+        frame = 0;
+    }
+
+    @TearDown
+    public void tearDown() {
+        renderer.dispose();
+    }
+
+    @Benchmark
+    public TextRenderer draw() {
+        final String[] lines = text.getLines(frame++);
+        renderer.beginRendering(1280, 720);
+        for (int i = 0; i < lines.length; ++i) {
+            renderer.draw(lines[i], 10, 700 - i * 20);
+        }
+        renderer.endRendering();
+        return renderer;
+    }
+
+    @Benchmark
+    public TextRenderer draw3D() {
+        final String[] lines = text.getLines(frame++);
+        renderer.begin3DRendering();
+        for (int i = 0; i < lines.length; ++i) {
+            renderer.draw3D(lines[i], 0, -i * 0.2f, -5, 0.01f, false);
+        }
+        renderer.end3DRendering();
+        return renderer;
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TextRendererBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
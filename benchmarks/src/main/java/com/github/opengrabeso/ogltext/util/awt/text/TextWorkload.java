@@ -0,0 +1,132 @@
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import java.util.Random;
+
+
+/**
+ * Lines of text drawn each frame by a typical application.
+ *
+ * <p>
+ * Frames are generated up front from a fixed seed, so every run draws exactly the same text.
+ */
+final class TextWorkload {
+
+    /**
+     * Names of all workloads.
+     */
+    static final String[] NAMES = {"ascii-hud", "mixed-script", "log-scroller", "churny-labels"};
+
+    /**
+     * Number of distinct frames before the workload repeats.
+     */
+    private static final int FRAMES = 256;
+
+    private static final String[] WORDS = {
+        "alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel", "india",
+        "juliet", "kilo", "lima", "mike", "november", "oscar", "papa", "quebec", "romeo"
+    };
+
+    private static final String[] UI = {
+        "File", "Edit", "View", "Help", "Datei", "Bearbeiten", "Ansicht", "Fichier", "Édition",
+        "Affichage", "Файл", "Правка", "Вид", "Справка", "Αρχείο", "Επεξεργασία", "Προβολή",
+        "ファイル", "編集", "表示", "ヘルプ", "文件", "编辑", "视图", "파일", "편집", "보기"
+    };
+
+    /**
+     * Lines of each frame.
+     */
+    private final String[][] frames;
+
+    private TextWorkload(final String[][] frames) {
+        this.frames = frames;
+    }
+
+    /**
+     * Returns the lines of a frame.
+     *
+     * @param frame Index of frame, wrapping around
+     * @return Lines to draw, not null
+     */
+    String[] getLines(final int frame) {
+        return frames[frame % frames.length];
+    }
+
+    /**
+     * Generates one of the named workloads.
+     *
+     * <ul>
+     *   <li>{@code ascii-hud}: a dozen fixed labels with changing numbers;
+     *   <li>{@code mixed-script}: menu and dialog text in Latin, Cyrillic, Greek and CJK scripts;
+     *   <li>{@code log-scroller}: forty lines of log scrolling up by one line each frame;
+     *   <li>{@code churny-labels}: map labels made of ever new characters, filling the cache.
+     * </ul>
+     *
+     * @param name Name of workload, one of {@link #NAMES}
+     * @return Generated workload, not null
+     */
+    static TextWorkload named(final String name) {
+
+        final Random random = new Random(42);
+        final String[][] frames = new String[FRAMES][];
+        if ("ascii-hud".equals(name)) {
+            for (int f = 0; f < FRAMES; ++f) {
+                frames[f] = new String[] {
+                    String.format("FPS: %.1f", 55 + random.nextFloat() * 10),
+                    String.format("Position: %.2f, %.2f, %.2f",
+                            random.nextFloat() * 1000, random.nextFloat() * 1000, random.nextFloat() * 100),
+                    String.format("Speed: %d km/h", random.nextInt(300)),
+                    String.format("Altitude: %d m", random.nextInt(10000)),
+                    String.format("Heading: %03d", random.nextInt(360)),
+                    String.format("Fuel: %d%%", random.nextInt(101)),
+                    String.format("Ammo: %d / 120", random.nextInt(121)),
+                    String.format("Health: %d", random.nextInt(101)),
+                    String.format("Score: %08d", random.nextInt(100000000)),
+                    String.format("Time: %02d:%02d", random.nextInt(60), random.nextInt(60)),
+                    "Objective: " + WORDS[random.nextInt(WORDS.length)],
+                    "Target: " + WORDS[random.nextInt(WORDS.length)]
+                };
+            }
+        } else if ("mixed-script".equals(name)) {
+            for (int f = 0; f < FRAMES; ++f) {
+                final String[] lines = new String[16];
+                for (int i = 0; i < lines.length; ++i) {
+                    lines[i] = UI[(f + i * 3) % UI.length] + " " + UI[(f * 7 + i) % UI.length];
+                }
+                frames[f] = lines;
+            }
+        } else if ("log-scroller".equals(name)) {
+            final String[] log = new String[FRAMES + 40];
+            for (int i = 0; i < log.length; ++i) {
+                log[i] = String.format("2024-05-%02d %02d:%02d:%02d.%03d [%s] %s: %s %s #%d",
+                        1 + random.nextInt(28), random.nextInt(24), random.nextInt(60),
+                        random.nextInt(60), random.nextInt(1000),
+                        random.nextBoolean() ? "INFO " : "DEBUG",
+                        WORDS[random.nextInt(WORDS.length)],
+                        WORDS[random.nextInt(WORDS.length)],
+                        WORDS[random.nextInt(WORDS.length)],
+                        random.nextInt(100000));
+            }
+            for (int f = 0; f < FRAMES; ++f) {
+                final String[] lines = new String[40];
+                System.arraycopy(log, f, lines, 0, lines.length);
+                frames[f] = lines;
+            }
+        } else if ("churny-labels".equals(name)) {
+            for (int f = 0; f < FRAMES; ++f) {
+                final String[] lines = new String[30];
+                for (int i = 0; i < lines.length; ++i) {
+                    final StringBuilder sb = new StringBuilder();
+                    final int length = 4 + random.nextInt(8);
+                    for (int j = 0; j < length; ++j) {
+                        sb.append((char) (0x4E00 + random.nextInt(3000)));
+                    }
+                    lines[i] = sb.toString();
+                }
+                frames[f] = lines;
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown workload " + name);
+        }
+        return new TextWorkload(frames);
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import com.github.opengrabeso.jaagl.GL2GL3;
+
+import java.awt.Rectangle;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Measures preparing pixels for upload to a texture, for a single glyph and for the whole texture.
+ * The "table" variant applies gamma on the CPU like the OpenGL 2 path does, "shader" uploads the raw
+ * coverage like the OpenGL 3 path does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Texture2DBenchmark {
+
+    @Param({"256", "1024"})
+    public int size;
+
+    @Param({"glyph", "full"})
+    public String area;
+
+    @Param({"table", "shader"})
+    public String gamma;
+
+    private GL2GL3 gl;
+
+    private Texture2D texture;
+
+    private ByteBuffer pixels;
+
+    private Rectangle region;
+
+    @Setup
+    public void setUp() {
+        gl = NullGL.create(false);
+        texture = new GrayTexture2D(gl, size, size, true, false);
+        if ("table".equals(gamma)) {
+            texture.setLookupTable(Texture2D.createGammaTable(Texture2D.DEFAULT_GAMMA));
+        }
+        final byte[] data = new byte[size * size];
+        new Random(42).nextBytes(data);
+        pixels = ByteBuffer.allocateDirect(data.length);
+        pixels.put(data).flip();
+        region = "full".equals(area) ? new Rectangle(0, 0, size, size) : new Rectangle(32, 32, 20, 24);
+    }
+
+    @Benchmark
+    public Texture2D update() {
+        texture.update(gl, pixels, region);
+        return texture;
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(Texture2DBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,187 @@
+package com.github.opengrabeso.ogltext.util.packrect;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+
+/**
+ * Sequence of glyph additions and evictions as seen by the rectangle packer of a glyph cache.
+ *
+ * <p>
+ * Streams are recorded by simulating a glyph cache on top of real Java2D glyph bounds: each frame
+ * draws a few words from a character set, every missing glyph is added, and every hundred frames
+ * glyphs not used since the last sweep are evicted, which is what {@code GlyphCache} does.  Sizes
+ * include the same padding and margin the cache uses.
+ */
+final class GlyphStream {
+
+    /**
+     * Render cycles between sweeps of unused glyphs, as in {@code GlyphCache}.
+     */
+    private static final int CYCLES_PER_FLUSH = 100;
+
+    /**
+     * Width of each distinct glyph, including padding and margin.
+     */
+    final int[] widths;
+
+    /**
+     * Height of each distinct glyph, including padding and margin.
+     */
+    final int[] heights;
+
+    /**
+     * Operations, either the index of a glyph to add or the complement of a glyph to remove.
+     */
+    final int[] ops;
+
+    /**
+     * Number of additions in the stream.
+     */
+    final int additions;
+
+    private GlyphStream(final int[] widths, final int[] heights, final int[] ops) {
+        this.widths = widths;
+        this.heights = heights;
+        this.ops = ops;
+        int n = 0;
+        for (final int op : ops) {
+            if (op >= 0) {
+                ++n;
+            }
+        }
+        this.additions = n;
+    }
+
+    /**
+     * Records one of the named workloads.
+     *
+     * @param name One of {@code ascii-24}, {@code latin1-cyrillic-48} or {@code mixed-heights}
+     * @return Recorded stream, not null
+     */
+    static GlyphStream named(final String name) {
+        if ("ascii-24".equals(name)) {
+            return record(new Font("SansSerif", Font.PLAIN, 24), range(0x20, 0x7E), 0, 2000);
+        } else if ("latin1-cyrillic-48".equals(name)) {
+            return record(new Font("SansSerif", Font.PLAIN, 48),
+                    range(0x20, 0x7E) + range(0xA1, 0xFF) + range(0x410, 0x44F), 0, 2000);
+        } else if ("mixed-heights".equals(name)) {
+            return record(new Font("Serif", Font.PLAIN, 32),
+                    range(0x20, 0x7E) + range(0xC0, 0xDD) + "ÅǺƔ∑∫〈", 60, 2000);
+        }
+        throw new IllegalArgumentException("Unknown workload " + name);
+    }
+
+    /**
+     * Records a stream.
+     *
+     * @param font Font glyphs are measured with
+     * @param charset Characters drawn
+     * @param words Number of distinct whole-word glyphs mixed in, like complex text produces
+     * @param frames Number of frames to simulate
+     * @return Recorded stream, not null
+     */
+    private static GlyphStream record(final Font font,
+                                      final String charset,
+                                      final int words,
+                                      final int frames) {
+
+        final FontRenderContext frc = new FontRenderContext(null, true, true);
+        final Random random = new Random(1234);
+
+        // Measure every distinct glyph once
+        final List<String> glyphs = new ArrayList<String>();
+        for (int i = 0; i < charset.length(); ++i) {
+            glyphs.add(charset.substring(i, i + 1));
+        }
+        for (int i = 0; i < words; ++i) {
+            final StringBuilder sb = new StringBuilder();
+            final int len = 3 + random.nextInt(10);
+            for (int j = 0; j < len; ++j) {
+                sb.append(charset.charAt(random.nextInt(charset.length())));
+            }
+            glyphs.add(sb.toString());
+        }
+        final int[] widths = new int[glyphs.size()];
+        final int[] heights = new int[glyphs.size()];
+        final int margin = (int) Math.max(1, 0.015 * font.getSize());
+        for (int i = 0; i < glyphs.size(); ++i) {
+            final Rectangle2D r = font.createGlyphVector(frc, glyphs.get(i)).getVisualBounds();
+            final int w = (int) (Math.ceil(r.getMaxX()) - Math.floor(r.getMinX())) + 2;
+            final int h = (int) (Math.ceil(r.getMaxY()) - Math.floor(r.getMinY())) + 2;
+            widths[i] = w + 2 * margin;
+            heights[i] = h + 2 * margin;
+        }
+
+        // Simulate the cache; each frame favours a slowly drifting subset of the glyphs
+        final Map<Integer, Boolean> resident = new LinkedHashMap<Integer, Boolean>();
+        final List<Integer> ops = new ArrayList<Integer>();
+        for (int frame = 0; frame < frames; ++frame) {
+            final int window = Math.max(1, glyphs.size() / 3);
+            final int offset = (frame / 50) * 7;
+            for (int k = 0; k < 40; ++k) {
+                final int g = (random.nextInt(4) == 0)
+                        ? random.nextInt(glyphs.size())
+                        : (offset + random.nextInt(window)) % glyphs.size();
+                if (resident.put(g, Boolean.TRUE) == null) {
+                    ops.add(g);
+                }
+            }
+            if ((frame + 1) % CYCLES_PER_FLUSH == 0) {
+                final List<Integer> dead = new ArrayList<Integer>();
+                for (final Map.Entry<Integer, Boolean> e : resident.entrySet()) {
+                    if (e.getValue()) {
+                        e.setValue(Boolean.FALSE);
+                    } else {
+                        dead.add(e.getKey());
+                    }
+                }
+                for (final Integer g : dead) {
+                    resident.remove(g);
+                    ops.add(~g);
+                }
+            }
+        }
+
+        final int[] result = new int[ops.size()];
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = ops.get(i);
+        }
+        return new GlyphStream(widths, heights, result);
+    }
+
+    private static String range(final int first, final int last) {
+        final StringBuilder sb = new StringBuilder();
+        for (int c = first; c <= last; ++c) {
+            sb.append((char) c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Replays this stream into a packer.
+     *
+     * @param packer Packer to add and remove rectangles with
+     * @return Rectangles still resident at the end, indexed by glyph
+     */
+    Rect[] replay(final RectanglePacker packer) {
+        final Rect[] rects = new Rect[widths.length];
+        for (final int op : ops) {
+            if (op >= 0) {
+                final Rect rect = new Rect(0, 0, widths[op], heights[op], null);
+                packer.add(rect);
+                rects[op] = rect;
+            } else {
+                packer.remove(rects[~op]);
+                rects[~op] = null;
+            }
+        }
+        return rects;
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.opengrabeso.ogltext.util.packrect;
+
+
+/**
+ * Backing store manager that only remembers the size of each backing store.
+ *
+ * <p>
+ * Behaves like {@code TextureBackingStoreManager} as far as the packer can tell, but nothing is
+ * drawn or copied, so benchmarks measure only the packing itself.
+ */
+final class NullBackingStoreManager implements BackingStoreManager {
+
+    /**
+     * Number of backing stores allocated so far.
+     */
+    int allocations;
+
+    @Override
+    public Object allocateBackingStore(final int w, final int h) {
+        ++allocations;
+        return new int[] { w, h };
+    }
+
+    @Override
+    public void deleteBackingStore(final Object backingStore) {
+        // empty
+    }
+
+    @Override
+    public boolean canCompact() {
+        return true;
+    }
+
+    @Override
+    public boolean preExpand(final Rect cause, final int attemptNumber) {
+        return false;
+    }
+
+    @Override
+    public boolean additionFailed(final Rect cause, final int attemptNumber) {
+        return false;
+    }
+
+    @Override
+    public void beginMovement(final Object oldBackingStore, final Object newBackingStore) {
+        // empty
+    }
+
+    @Override
+    public void move(final Object oldBackingStore,
+                     final Rect oldLocation,
+                     final Object newBackingStore,
+                     final Rect newLocation) {
+        // empty
+    }
+
+    @Override
+    public void endMovement(final Object oldBackingStore, final Object newBackingStore) {
+        // empty
+    }
+}
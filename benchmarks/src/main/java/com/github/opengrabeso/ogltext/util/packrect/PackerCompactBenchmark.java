@@ -0,0 +1,67 @@
+package com.github.opengrabeso.ogltext.util.packrect;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Measures compacting an atlas after half of its glyphs were evicted.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PackerCompactBenchmark {
+
+    @Param({"LevelSet", "SkylineSet", "MaxRectsSet"})
+    public String strategy;
+
+    @Param({"1000", "10000"})
+    public int glyphs;
+
+    private RectanglePacker packer;
+
+    @Setup
+    public void setUp() {
+        packer = new RectanglePacker(new NullBackingStoreManager(), 256, 256,
+                PackingStrategyBenchmark.factory(strategy));
+        final Random random = new Random(42);
+        final Rect[] rects = new Rect[glyphs];
+        for (int i = 0; i < glyphs; ++i) {
+            rects[i] = new Rect(0, 0, 6 + random.nextInt(14), 16 + random.nextInt(9), null);
+            packer.add(rects[i]);
+        }
+        for (int i = 0; i < glyphs; i += 2) {
+            packer.remove(rects[i]);
+        }
+    }
+
+    @Benchmark
+    public RectanglePacker compact() {
+        packer.compact();
+        return packer;
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PackerCompactBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.opengrabeso.ogltext.util.packrect;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Compares the {@link PackingStrategy} implementations on recorded glyph streams.
+ *
+ * <p>
+ * The JMH benchmark measures add/remove throughput, including any compactions and expansions the
+ * stream provokes.  Running the class directly first prints the packing density reached by each
+ * strategy, i.e. the area of the resident glyphs divided by the width times the used height of the
+ * atlas at the end of the stream, then runs the benchmark.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PackingStrategyBenchmark {
+
+    @Param({"LevelSet", "SkylineSet", "MaxRectsSet"})
+    public String strategy;
+
+    @Param({"ascii-24", "latin1-cyrillic-48", "mixed-heights"})
+    public String workload;
+
+    private GlyphStream stream;
+
+    private PackingStrategy.Factory factory;
+
+    @Setup
+    public void setUp() {
+        stream = GlyphStream.named(workload);
+        factory = factory(strategy);
+    }
+
+    @Benchmark
+    public Object replay() {
+        final RectanglePacker packer = new RectanglePacker(new NullBackingStoreManager(), 256, 256, factory);
+        stream.replay(packer);
+        return packer;
+    }
+
+    static PackingStrategy.Factory factory(final String name) {
+        if ("LevelSet".equals(name)) {
+            return LevelSet.FACTORY;
+        } else if ("SkylineSet".equals(name)) {
+            return SkylineSet.FACTORY;
+        } else if ("MaxRectsSet".equals(name)) {
+            return MaxRectsSet.FACTORY;
+        }
+        throw new IllegalArgumentException("Unknown strategy " + name);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+
+        final String[] strategies = {"LevelSet", "SkylineSet", "MaxRectsSet"};
+        final String[] workloads = {"ascii-24", "latin1-cyrillic-48", "mixed-heights"};
+
+        System.out.printf("%-20s %-12s %10s %10s %8s %12s%n",
+                "workload", "strategy", "occupied", "used", "density", "reallocs");
+        for (final String w : workloads) {
+            final GlyphStream stream = GlyphStream.named(w);
+            for (final String s : strategies) {
+                final NullBackingStoreManager manager = new NullBackingStoreManager();
+                final RectanglePacker packer = new RectanglePacker(manager, 256, 256, factory(s));
+                final Rect[] rects = stream.replay(packer);
+                long used = 0;
+                for (final Rect r : rects) {
+                    if (r != null) {
+                        used += (long) r.w() * r.h();
+                    }
+                }
+                final int[] size = (int[]) packer.getBackingStore();
+                final long atlas = (long) size[0] * packer.getUsedHeight();
+                System.out.printf("%-20s %-12s %10d %10d %8.3f %12d%n",
+                        w, s, atlas, used, (double) used / atlas, manager.allocations - 1);
+            }
+        }
+
+        new Runner(new OptionsBuilder()
+                .include(PackingStrategyBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,80 @@
+package com.github.opengrabeso.ogltext.util.packrect;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Measures evicting one glyph and adding another in an atlas that already holds many glyphs.
+ *
+ * <p>
+ * This is what a glyph cache does on every miss once it is warm, so the cost should not grow with
+ * the number of resident glyphs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResidentChurnBenchmark {
+
+    @Param({"LevelSet", "SkylineSet", "MaxRectsSet"})
+    public String strategy;
+
+    @Param({"1000", "10000"})
+    public int glyphs;
+
+    private RectanglePacker packer;
+
+    private Rect[] resident;
+
+    private Random random;
+
+    @Setup
+    public void setUp() {
+        packer = new RectanglePacker(new NullBackingStoreManager(), 256, 256,
+                PackingStrategyBenchmark.factory(strategy));
+        resident = new Rect[glyphs];
+        random = new Random(42);
+        for (int i = 0; i < glyphs; ++i) {
+            resident[i] = newGlyph();
+            packer.add(resident[i]);
+        }
+    }
+
+    @Benchmark
+    public Rect evictAndAdd() {
+        final int i = random.nextInt(resident.length);
+        packer.remove(resident[i]);
+        resident[i] = newGlyph();
+        packer.add(resident[i]);
+        return resident[i];
+    }
+
+    // Glyph of a 16 to 24 pixel font
+    private Rect newGlyph() {
+        return new Rect(0, 0, 6 + random.nextInt(14), 16 + random.nextInt(9), null);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ResidentChurnBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,476 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt;
+
+import com.github.opengrabeso.jaagl.GL2GL3;
+import com.github.opengrabeso.ogltext.util.awt.text.CellGrid;
+import com.github.opengrabeso.ogltext.util.awt.text.Check;
+import com.github.opengrabeso.ogltext.util.awt.text.Glyph;
+import com.github.opengrabeso.ogltext.util.awt.text.GlyphCache;
+import com.github.opengrabeso.ogltext.util.awt.text.GlyphMeasurements;
+import com.github.opengrabeso.ogltext.util.awt.text.GlyphMetricBuffer;
+import com.github.opengrabeso.ogltext.util.awt.text.GlyphProducer;
+import com.github.opengrabeso.ogltext.util.awt.text.GlyphProducers;
+import com.github.opengrabeso.ogltext.util.awt.text.GridRendererGL3;
+import com.github.opengrabeso.ogltext.util.awt.text.ProgramCache;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.font.LineMetrics;
+import java.util.Arrays;
+
+
+/**
+ * Utility for rendering a fixed grid of characters, such as a terminal or log console.
+ *
+ * <p>
+ * Every character sits in a cell of the same size, with its own foreground and background color.
+ * Cells are kept on the GPU and only the ones changed since the last frame are uploaded, so
+ * drawing a grid that did not change costs one draw call and no uploads.  Scrolling moves the row
+ * shown at the top rather than the cells, so only the rows coming into view are cleared.
+ *
+ * <pre>
+ * console = new GridTextRenderer(new Font("Monospaced", Font.PLAIN, 14), 200, 60, gl);
+ * console.write(0, 0, "$ make", Color.WHITE, Color.BLACK);
+ * ...
+ * console.beginRendering(drawable.getWidth(), drawable.getHeight());
+ * console.draw(0, drawable.getHeight());
+ * console.endRendering();
+ * </pre>
+ *
+ * <p>
+ * The cell size comes from the advance of {@code M} and the line height of the font, so a
+ * monospaced font fills the cells evenly.  Characters are drawn one glyph each, without kerning or
+ * complex layout.  Needs OpenGL 3.
+ */
+/*@NotThreadSafe*/
+public final class GridTextRenderer {
+
+    /**
+     * Number of characters whose slots are looked up without the glyph producer.
+     */
+    private static final int FAST_SLOTS = 128;
+
+    /**
+     * Slot of a fast character not looked up yet.
+     */
+    private static final int UNKNOWN = -2;
+
+    /**
+     * OpenGL context to render with.
+     */
+    /*@Nonnull*/
+    private final GL2GL3 gl;
+
+    /**
+     * Delegate to store glyphs.
+     */
+    /*@Nonnull*/
+    private final GlyphCache glyphCache;
+
+    /**
+     * Delegate to create glyphs.
+     */
+    /*@Nonnull*/
+    private final GlyphProducer glyphProducer;
+
+    /**
+     * Measurements and texture coordinates of the glyphs in the grid, kept on the GPU.
+     */
+    /*@Nonnull*/
+    private final GlyphMetricBuffer glyphMetrics = new GlyphMetricBuffer();
+
+    /**
+     * Cells of the grid.
+     */
+    /*@Nonnull*/
+    private final CellGrid cells;
+
+    /**
+     * Slots of the first characters, or {@link #UNKNOWN}.
+     */
+    /*@Nonnull*/
+    private final int[] fastSlots = new int[FAST_SLOTS];
+
+    /**
+     * Width of each cell.
+     */
+    /*@Nonnegative*/
+    private final float cellWidth;
+
+    /**
+     * Height of each cell.
+     */
+    /*@Nonnegative*/
+    private final float cellHeight;
+
+    /**
+     * Height of the baseline above the bottom of each cell.
+     */
+    /*@Nonnegative*/
+    private final float baseline;
+
+    /**
+     * Delegate to draw the grid, made on the first render cycle.
+     */
+    /*@CheckForNull*/
+    private GridRendererGL3 gridRenderer = null;
+
+    /**
+     * Key of the OpenGL context in the {@link ProgramCache}, or null to use the OpenGL object.
+     */
+    /*@CheckForNull*/
+    private Object contextKey = null;
+
+    /**
+     * Gamma to correct glyph coverage with.
+     */
+    private float gamma;
+
+    /**
+     * True if between begin and end calls.
+     */
+    private boolean inRenderCycle = false;
+
+    /**
+     * Constructs a {@link GridTextRenderer} with empty cells.
+     *
+     * @param font Font to render text with, preferably monospaced
+     * @param columns Number of columns
+     * @param rows Number of rows
+     * @param gl OpenGL 3 context to render with
+     * @throws NullPointerException if font or context is null
+     * @throws IllegalArgumentException if columns or rows is not positive
+     */
+    public GridTextRenderer(/*@Nonnull*/ final Font font,
+                            /*@Nonnegative*/ final int columns,
+                            /*@Nonnegative*/ final int rows,
+                            /*@Nonnull*/ final GL2GL3 gl) {
+
+        Check.notNull(font, "Font cannot be null");
+        Check.notNull(gl, "GL cannot be null");
+
+        final TextRenderer.RenderDelegate rd = new TextRenderer.DefaultRenderDelegate();
+        this.gl = gl;
+        this.cells = new CellGrid(columns, rows);
+        this.glyphCache = GlyphCache.newInstance(font, rd, true, false, false, true);
+        final GlyphMeasurements measurements =
+                new GlyphMeasurements(font, rd, glyphCache.getFontRenderContext());
+        this.glyphProducer = GlyphProducers.get(measurements, null);
+        this.gamma = glyphCache.getGamma();
+
+        // Size the cells
+        final LineMetrics lm = font.getLineMetrics("M", glyphCache.getFontRenderContext());
+        this.cellWidth = (float) Math.ceil(measurements.getAdvance('M'));
+        this.cellHeight = (float) Math.ceil(measurements.getLineHeight());
+        this.baseline = (float) Math.ceil(lm.getDescent());
+        Arrays.fill(fastSlots, UNKNOWN);
+    }
+
+    /**
+     * Starts an orthographic render cycle.
+     *
+     * <p>
+     * Sets up a two-dimensional orthographic projection with (0,0) as the lower-left coordinate
+     * and (width, height) as the upper-right coordinate, and disables the depth test.
+     *
+     * @param width Width of the current on-screen OpenGL drawable
+     * @param height Height of the current on-screen OpenGL drawable
+     * @throws IllegalArgumentException if width or height is negative
+     * @throws IllegalStateException if already in a render cycle
+     */
+    public void beginRendering(/*@Nonnegative*/ final int width,
+                               /*@Nonnegative*/ final int height) {
+
+        Check.argument(width >= 0, "Width cannot be negative");
+        Check.argument(height >= 0, "Height cannot be negative");
+        Check.state(!inRenderCycle, "Already in render cycle");
+
+        if (gridRenderer == null) {
+            gridRenderer = new GridRendererGL3(gl, getContextKey());
+        }
+        gridRenderer.setGamma(gamma);
+        glyphCache.beginRendering(gl);
+        gridRenderer.beginRendering(gl, width, height);
+        inRenderCycle = true;
+    }
+
+    /**
+     * Empties every cell.
+     */
+    public void clear() {
+        cells.clear();
+    }
+
+    /**
+     * Recovers from the OpenGL context being destroyed and recreated.
+     *
+     * <p>
+     * The cells and glyphs are kept; the OpenGL objects are made again on the next render cycle.
+     */
+    public void contextRecreated() {
+        ProgramCache.contextRecreated(getContextKey());
+        glyphCache.contextRecreated();
+        glyphMetrics.contextRecreated();
+        cells.contextRecreated();
+        gridRenderer = null;
+    }
+
+    /**
+     * Destroys resources used by the renderer.
+     */
+    public void dispose() {
+        glyphCache.dispose(gl);
+        glyphMetrics.dispose(gl);
+        cells.dispose(gl);
+        if (gridRenderer != null) {
+            gridRenderer.dispose(gl);
+            gridRenderer = null;
+        }
+    }
+
+    /**
+     * Draws the grid with its top left corner at a location.
+     *
+     * <p>
+     * Glyphs new to the grid are added to the texture, and only the changed cells are uploaded.
+     *
+     * @param x Position of the left edge of the grid
+     * @param y Position of the top edge of the grid, in OpenGL coordinates
+     * @throws IllegalStateException if not in a render cycle
+     */
+    public void draw(/*@CheckForSigned*/ final int x, /*@CheckForSigned*/ final int y) {
+
+        Check.state(inRenderCycle, "Must be in render cycle");
+
+        glyphMetrics.update(gl, glyphCache);
+        glyphCache.update(gl);
+        gridRenderer.draw(gl, glyphMetrics, cells, x, y, cellWidth, cellHeight, baseline);
+    }
+
+    /**
+     * Finishes a render cycle.
+     *
+     * @throws IllegalStateException if not in a render cycle
+     */
+    public void endRendering() {
+
+        Check.state(inRenderCycle, "Must be in render cycle");
+
+        gridRenderer.endRendering(gl);
+        glyphCache.endRendering(gl);
+        inRenderCycle = false;
+    }
+
+    /**
+     * Finds the slot of a character's glyph, adding the glyph to the table if needed.
+     *
+     * @param c Character to find
+     * @return Slot of the glyph, or -1 if the character leaves no mark
+     */
+    /*@CheckForSigned*/
+    private int findSlot(final char c) {
+        if (c < FAST_SLOTS && fastSlots[c] != UNKNOWN) {
+            return fastSlots[c];
+        }
+        int slot = -1;
+        if (!Character.isWhitespace(c) && !Character.isISOControl(c)) {
+            final Glyph glyph = glyphProducer.createGlyph(c);
+            if (glyph.width > 0 && glyph.height > 0) {
+                slot = glyphMetrics.add(glyph);
+            }
+        }
+        if (c < FAST_SLOTS) {
+            fastSlots[c] = slot;
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the key of the OpenGL context in the {@link ProgramCache}.
+     *
+     * @return Key set by {@link #setContextKey}, or the OpenGL object if none was set
+     */
+    /*@Nonnull*/
+    private Object getContextKey() {
+        return (contextKey != null) ? contextKey : gl;
+    }
+
+    /**
+     * Returns the height of each cell.
+     *
+     * @return Height of each cell in pixels
+     */
+    /*@Nonnegative*/
+    public float getCellHeight() {
+        return cellHeight;
+    }
+
+    /**
+     * Returns the width of each cell.
+     *
+     * @return Width of each cell in pixels
+     */
+    /*@Nonnegative*/
+    public float getCellWidth() {
+        return cellWidth;
+    }
+
+    /**
+     * Returns the number of columns.
+     *
+     * @return Number of columns
+     */
+    /*@Nonnegative*/
+    public int getColumns() {
+        return cells.getColumns();
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return Number of rows
+     */
+    /*@Nonnegative*/
+    public int getRows() {
+        return cells.getRows();
+    }
+
+    /**
+     * Packs a color into an int as {@code 0xRRGGBBAA}.
+     *
+     * @param color Color to pack, assumed not null
+     * @return Packed color
+     */
+    private static int pack(/*@Nonnull*/ final Color color) {
+        return (color.getRed() << 24)
+                | (color.getGreen() << 16)
+                | (color.getBlue() << 8)
+                | color.getAlpha();
+    }
+
+    /**
+     * Moves the rows up, clearing the rows that come into view at the bottom.
+     *
+     * @param lines Number of rows to move up, or down if negative
+     */
+    public void scroll(final int lines) {
+        cells.scroll(lines);
+    }
+
+    /**
+     * Changes one cell.
+     *
+     * @param column Index of the column, from the left
+     * @param row Index of the row, from the top
+     * @param c Character to show in the cell
+     * @param foreground Color of the character
+     * @param background Color behind the character, transparent to leave it out
+     * @throws NullPointerException if either color is null
+     * @throws IndexOutOfBoundsException if column or row is out of range
+     */
+    public void set(/*@Nonnegative*/ final int column,
+                    /*@Nonnegative*/ final int row,
+                    final char c,
+                    /*@Nonnull*/ final Color foreground,
+                    /*@Nonnull*/ final Color background) {
+
+        Check.notNull(foreground, "Foreground cannot be null");
+        Check.notNull(background, "Background cannot be null");
+
+        cells.set(column, row, findSlot(c), pack(foreground), pack(background));
+    }
+
+    /**
+     * Changes the key the grid's shader program is shared under, like
+     * {@link TextRenderer#setContextKey}.
+     *
+     * <p>
+     * Affects the program made on the next render cycle.
+     *
+     * @param key Key of the context or its share group, or null to use the OpenGL object
+     */
+    public void setContextKey(/*@CheckForNull*/ final Object key) {
+        this.contextKey = key;
+    }
+
+    /**
+     * Changes the gamma glyph coverage is corrected with, from the next render cycle.
+     *
+     * @param gamma Gamma to correct coverage with, where one means no correction
+     * @throws IllegalArgumentException if gamma is not positive
+     */
+    public void setGamma(final float gamma) {
+
+        Check.argument(gamma > 0, "Gamma must be positive");
+
+        glyphCache.setGamma(gamma);
+        this.gamma = gamma;
+    }
+
+    /**
+     * Changes the distance in pixels the grid is moved up, for scrolling smoothly between rows.
+     *
+     * @param offset Scroll offset in pixels, which may be negative
+     */
+    public void setScrollOffset(final float offset) {
+        cells.setScrollOffset(offset);
+    }
+
+    /**
+     * Writes text into a row of cells, one character per cell, cutting it off at the last column.
+     *
+     * @param column Index of the first column, from the left
+     * @param row Index of the row, from the top
+     * @param text Text to write
+     * @param foreground Color of the characters
+     * @param background Color behind the characters, transparent to leave it out
+     * @return Index of the column after the last one written
+     * @throws NullPointerException if text or either color is null
+     * @throws IndexOutOfBoundsException if column or row is out of range
+     */
+    /*@Nonnegative*/
+    public int write(/*@Nonnegative*/ final int column,
+                     /*@Nonnegative*/ final int row,
+                     /*@Nonnull*/ final CharSequence text,
+                     /*@Nonnull*/ final Color foreground,
+                     /*@Nonnull*/ final Color background) {
+
+        Check.notNull(text, "Text cannot be null");
+        Check.notNull(foreground, "Foreground cannot be null");
+        Check.notNull(background, "Background cannot be null");
+
+        final int fg = pack(foreground);
+        final int bg = pack(background);
+        final int end = Math.min(column + text.length(), cells.getColumns());
+        for (int i = column; i < end; ++i) {
+            cells.set(i, row, findSlot(text.charAt(i - column)), fg, bg);
+        }
+        return Math.max(end, column);
+    }
+}
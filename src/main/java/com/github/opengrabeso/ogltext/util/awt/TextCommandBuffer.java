@@ -0,0 +1,516 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt;
+
+import com.github.opengrabeso.ogltext.util.awt.text.Check;
+import com.github.opengrabeso.ogltext.util.awt.text.Glyph;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+
+/**
+ * Draw commands recorded for a {@link TextRenderer} to carry out later.
+ *
+ * <p>
+ * Text can only be drawn on the thread owning the OpenGL context, between {@link
+ * TextRenderer#beginRendering beginRendering} and {@link TextRenderer#endRendering endRendering}.
+ * {@code TextCommandBuffer} lets other threads prepare text in the meantime.  Recording only
+ * stores the commands, without touching OpenGL or anything shared with the renderer, so each
+ * thread can fill its own buffer.  The OpenGL thread then draws them all at once with {@link
+ * TextRenderer#draw(TextCommandBuffer...)}:
+ *
+ * <pre>
+ * // On a worker thread
+ * buffer.clear();
+ * buffer.setColor(Color.YELLOW);
+ * buffer.draw("Label", x, y);
+ * queue.add(buffer);
+ *
+ * // On the OpenGL thread
+ * renderer.beginRendering(width, height);
+ * renderer.draw(queue.toArray(new TextCommandBuffer[0]));
+ * renderer.endRendering();
+ * </pre>
+ *
+ * <p>
+ * A buffer must be handed over to the OpenGL thread safely, for example through a concurrent
+ * queue, and must not be changed while it is drawn.  It can be drawn any number of times.
+ */
+/*@NotThreadSafe*/
+public final class TextCommandBuffer {
+
+    /**
+     * Command drawing text at a location.
+     */
+    static final byte DRAW = 1;
+
+    /**
+     * Command drawing text in 3D.
+     */
+    static final byte DRAW_3D = 2;
+
+    /**
+     * Command changing the color.
+     */
+    static final byte COLOR = 3;
+
+    /**
+     * Command changing the 3D transform.
+     */
+    static final byte TRANSFORM = 4;
+
+    /**
+     * Command changing the clip rectangle, or clearing it if the width is negative.
+     */
+    static final byte CLIP = 5;
+
+    /**
+     * Command drawing a label that may be left out if it overlaps a more important one.
+     */
+    static final byte LABEL = 6;
+
+    /**
+     * Number of floats in a transform.
+     */
+    private static final int TRANSFORM_SIZE = 16;
+
+    /**
+     * Number of commands a buffer starts with room for.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Kind of each command.
+     */
+    /*@Nonnull*/
+    private byte[] commands = new byte[INITIAL_CAPACITY];
+
+    /**
+     * Text of each draw command, null for other commands.
+     */
+    /*@Nonnull*/
+    private String[] texts = new String[INITIAL_CAPACITY];
+
+    /**
+     * Numeric arguments of all commands, in order.
+     */
+    /*@Nonnull*/
+    private float[] args = new float[INITIAL_CAPACITY * 4];
+
+    /**
+     * Number of commands recorded.
+     */
+    /*@Nonnegative*/
+    private int size = 0;
+
+    /**
+     * Number of arguments recorded.
+     */
+    /*@Nonnegative*/
+    private int argCount = 0;
+
+    /**
+     * Index of the command of each label.
+     */
+    /*@Nonnull*/
+    private int[] labelCommands = new int[INITIAL_CAPACITY];
+
+    /**
+     * Index of the first argument of each label.
+     */
+    /*@Nonnull*/
+    private int[] labelArgs = new int[INITIAL_CAPACITY];
+
+    /**
+     * Number of labels recorded.
+     */
+    /*@Nonnegative*/
+    private int labelCount = 0;
+
+    /**
+     * Creates an empty {@link TextCommandBuffer}.
+     */
+    public TextCommandBuffer() {
+        // empty
+    }
+
+    /**
+     * Adds a command, making room for its arguments.
+     *
+     * @param command Kind of command
+     * @param text Text of command, or null
+     * @param n Number of arguments that will follow
+     */
+    private void add(final byte command, /*@CheckForNull*/ final String text, final int n) {
+        if (size == commands.length) {
+            commands = Arrays.copyOf(commands, size * 2);
+            texts = Arrays.copyOf(texts, size * 2);
+        }
+        if (argCount + n > args.length) {
+            args = Arrays.copyOf(args, Math.max(args.length * 2, argCount + n));
+        }
+        commands[size] = command;
+        texts[size] = text;
+        ++size;
+    }
+
+    /**
+     * Records no longer clipping text drawn afterwards.
+     *
+     * @see TextRenderer#clearClip
+     */
+    public void clearClip() {
+        add(CLIP, null, 4);
+        args[argCount++] = 0;
+        args[argCount++] = 0;
+        args[argCount++] = -1;
+        args[argCount++] = -1;
+    }
+
+    /**
+     * Removes all commands, keeping the memory for reuse.
+     */
+    public void clear() {
+        Arrays.fill(texts, 0, size, null);
+        size = 0;
+        argCount = 0;
+        labelCount = 0;
+    }
+
+    /**
+     * Records drawing text at a location.
+     *
+     * @param text Text to draw, copied
+     * @param x Position to draw on X axis
+     * @param y Position to draw on Y axis
+     * @throws NullPointerException if text is null
+     * @see TextRenderer#draw(CharSequence, int, int)
+     */
+    public void draw(/*@Nonnull*/ final CharSequence text,
+                     /*@CheckForSigned*/ final int x,
+                     /*@CheckForSigned*/ final int y) {
+
+        Check.notNull(text, "Text cannot be null");
+
+        add(DRAW, text.toString(), 2);
+        args[argCount++] = x;
+        args[argCount++] = y;
+    }
+
+    /**
+     * Records drawing text at a location in 3D space.
+     *
+     * @param text Text to draw, copied
+     * @param x Position to draw on X axis
+     * @param y Position to draw on Y axis
+     * @param z Position to draw on Z axis
+     * @param scale Uniform scale applied to width and height of text
+     * @param verticalFlip True to flip the text vertically
+     * @throws NullPointerException if text is null
+     * @see TextRenderer#draw3D(CharSequence, float, float, float, float, boolean)
+     */
+    public void draw3D(/*@Nonnull*/ final CharSequence text,
+                       /*@CheckForSigned*/ final float x,
+                       /*@CheckForSigned*/ final float y,
+                       /*@CheckForSigned*/ final float z,
+                       /*@CheckForSigned*/ final float scale,
+                       final boolean verticalFlip) {
+
+        Check.notNull(text, "Text cannot be null");
+
+        add(DRAW_3D, text.toString(), 5);
+        args[argCount++] = x;
+        args[argCount++] = y;
+        args[argCount++] = z;
+        args[argCount++] = scale;
+        args[argCount++] = verticalFlip ? 1 : 0;
+    }
+
+    /**
+     * Records drawing a label at a location.
+     *
+     * <p>
+     * Draws like {@link #draw(CharSequence, int, int)}, unless the renderer {@link
+     * TextRenderer#setDeclutter declutters} labels.  Then the label is left out if its bounds
+     * overlap a label with a higher priority, or with the same priority recorded before it.
+     *
+     * @param text Text to draw, copied
+     * @param x Position to draw on X axis
+     * @param y Position to draw on Y axis
+     * @param priority Importance of the label, higher is placed first
+     * @throws NullPointerException if text is null
+     */
+    public void drawLabel(/*@Nonnull*/ final CharSequence text,
+                          /*@CheckForSigned*/ final int x,
+                          /*@CheckForSigned*/ final int y,
+                          final float priority) {
+
+        Check.notNull(text, "Text cannot be null");
+
+        if (labelCount == labelCommands.length) {
+            labelCommands = Arrays.copyOf(labelCommands, labelCount * 2);
+            labelArgs = Arrays.copyOf(labelArgs, labelCount * 2);
+        }
+        add(LABEL, text.toString(), 3);
+        labelCommands[labelCount] = size - 1;
+        labelArgs[labelCount] = argCount;
+        ++labelCount;
+        args[argCount++] = x;
+        args[argCount++] = y;
+        args[argCount++] = priority;
+    }
+
+    /**
+     * Carries out the commands on a renderer in the order they were recorded.
+     *
+     * <p>
+     * The glyphs of the text commands were looked up by the renderer beforehand, so text is
+     * queued without being laid out again.  The glyphs of command {@code i} are the ones from the
+     * end of the previous command up to {@code ends[first + i]}.
+     *
+     * @param renderer Renderer in a render cycle, assumed not null
+     * @param dropped Commands of labels to leave out, or null to draw all of them
+     * @param glyphs Glyphs of the text commands of all buffers being drawn, assumed not null
+     * @param ends End of the glyphs of each command in the list, assumed not null
+     * @param first Index of the first command of this buffer in the ends
+     */
+    void execute(/*@Nonnull*/ final TextRenderer renderer,
+                 /*@CheckForNull*/ final BitSet dropped,
+                 /*@Nonnull*/ final List<Glyph> glyphs,
+                 /*@Nonnull*/ final int[] ends,
+                 /*@Nonnegative*/ final int first) {
+        int arg = 0;
+        int start = (first == 0) ? 0 : ends[first - 1];
+        for (int i = 0; i < size; ++i) {
+            final int end = ends[first + i];
+            switch (commands[i]) {
+            case DRAW:
+                renderer.draw3D(texts[i], glyphs.subList(start, end),
+                                args[arg], args[arg + 1], 0, 1, false);
+                arg += 2;
+                break;
+            case LABEL:
+                if (dropped == null || !dropped.get(i)) {
+                    renderer.draw3D(texts[i], glyphs.subList(start, end),
+                                    args[arg], args[arg + 1], 0, 1, false);
+                }
+                arg += 3;
+                break;
+            case DRAW_3D:
+                renderer.draw3D(texts[i], glyphs.subList(start, end),
+                                args[arg], args[arg + 1], args[arg + 2], args[arg + 3],
+                                args[arg + 4] != 0);
+                arg += 5;
+                break;
+            case COLOR:
+                renderer.setColor(args[arg], args[arg + 1], args[arg + 2], args[arg + 3]);
+                arg += 4;
+                break;
+            case TRANSFORM:
+                renderer.setTransform(Arrays.copyOfRange(args, arg, arg + TRANSFORM_SIZE));
+                arg += TRANSFORM_SIZE;
+                break;
+            case CLIP:
+                if (args[arg + 2] < 0) {
+                    renderer.clearClip();
+                } else {
+                    renderer.setClip(args[arg], args[arg + 1], args[arg + 2], args[arg + 3]);
+                }
+                arg += 4;
+                break;
+            default:
+                throw new AssertionError("Unexpected command " + commands[i]);
+            }
+            start = end;
+        }
+    }
+
+    /**
+     * Returns the index of the command of a label.
+     *
+     * @param k Index of label
+     * @return Index of the command drawing it
+     */
+    /*@Nonnegative*/
+    int getLabelCommand(/*@Nonnegative*/ final int k) {
+        return labelCommands[k];
+    }
+
+    /**
+     * Returns the number of labels recorded.
+     *
+     * @return Number of labels
+     */
+    /*@Nonnegative*/
+    int getLabelCount() {
+        return labelCount;
+    }
+
+    /**
+     * Returns the priority of a label.
+     *
+     * @param k Index of label
+     * @return Importance of the label, higher is placed first
+     */
+    float getLabelPriority(/*@Nonnegative*/ final int k) {
+        return args[labelArgs[k] + 2];
+    }
+
+    /**
+     * Returns the position of a label on the X axis.
+     *
+     * @param k Index of label
+     * @return Position on X axis
+     */
+    float getLabelX(/*@Nonnegative*/ final int k) {
+        return args[labelArgs[k]];
+    }
+
+    /**
+     * Returns the position of a label on the Y axis.
+     *
+     * @param k Index of label
+     * @return Position on Y axis
+     */
+    float getLabelY(/*@Nonnegative*/ final int k) {
+        return args[labelArgs[k] + 1];
+    }
+
+    /**
+     * Returns the text of a command.
+     *
+     * @param i Index of command
+     * @return Text of command, or null if it does not draw
+     */
+    /*@CheckForNull*/
+    String getText(/*@Nonnegative*/ final int i) {
+        return texts[i];
+    }
+
+    /**
+     * Checks if no commands were recorded.
+     *
+     * @return True if there are no commands
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Records clipping text drawn afterwards to a rectangle.
+     *
+     * @param x Position of the left edge
+     * @param y Position of the bottom edge
+     * @param width Width of the rectangle
+     * @param height Height of the rectangle
+     * @throws IllegalArgumentException if width or height is negative
+     * @see TextRenderer#setClip
+     */
+    public void setClip(/*@CheckForSigned*/ final float x,
+                        /*@CheckForSigned*/ final float y,
+                        /*@Nonnegative*/ final float width,
+                        /*@Nonnegative*/ final float height) {
+
+        Check.argument(width >= 0, "Width cannot be negative");
+        Check.argument(height >= 0, "Height cannot be negative");
+
+        add(CLIP, null, 4);
+        args[argCount++] = x;
+        args[argCount++] = y;
+        args[argCount++] = width;
+        args[argCount++] = height;
+    }
+
+    /**
+     * Records changing the color of text drawn afterwards.
+     *
+     * @param color Color to use for rendering text
+     * @throws NullPointerException if color is null
+     * @see TextRenderer#setColor(Color)
+     */
+    public void setColor(/*@Nonnull*/ final Color color) {
+
+        Check.notNull(color, "Color cannot be null");
+
+        setColor(color.getRed() / 255f,
+                 color.getGreen() / 255f,
+                 color.getBlue() / 255f,
+                 color.getAlpha() / 255f);
+    }
+
+    /**
+     * Records changing the color of text drawn afterwards.
+     *
+     * @param r Red component of the new color
+     * @param g Green component of the new color
+     * @param b Blue component of the new color
+     * @param a Alpha component of the new color
+     * @see TextRenderer#setColor(float, float, float, float)
+     */
+    public void setColor(/*@CheckForSigned*/ final float r,
+                         /*@CheckForSigned*/ final float g,
+                         /*@CheckForSigned*/ final float b,
+                         /*@CheckForSigned*/ final float a) {
+        add(COLOR, null, 4);
+        args[argCount++] = r;
+        args[argCount++] = g;
+        args[argCount++] = b;
+        args[argCount++] = a;
+    }
+
+    /**
+     * Records changing the transformation matrix used for drawing text in 3D afterwards.
+     *
+     * @param matrix Transformation matrix in column-major order, copied
+     * @throws NullPointerException if matrix is null
+     * @throws IllegalArgumentException if matrix does not have sixteen values
+     * @see TextRenderer#setTransform(float[])
+     */
+    public void setTransform(/*@Nonnull*/ final float[] matrix) {
+
+        Check.notNull(matrix, "Matrix cannot be null");
+        Check.argument(matrix.length == TRANSFORM_SIZE, "Matrix must have sixteen values");
+
+        add(TRANSFORM, null, TRANSFORM_SIZE);
+        System.arraycopy(matrix, 0, args, argCount, TRANSFORM_SIZE);
+        argCount += TRANSFORM_SIZE;
+    }
+
+    /**
+     * Returns the number of commands recorded.
+     *
+     * @return Number of commands
+     */
+    /*@Nonnegative*/
+    public int size() {
+        return size;
+    }
+}
@@ -38,18 +38,34 @@ import java.awt.Graphics2D;
 import java.awt.font.FontRenderContext;
 import java.awt.font.GlyphVector;
 import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.Character.UnicodeBlock;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+import com.github.opengrabeso.ogltext.util.awt.text.AtlasReport;
 import com.github.opengrabeso.ogltext.util.awt.text.Check;
 import com.github.opengrabeso.ogltext.util.awt.text.Glyph;
 import com.github.opengrabeso.ogltext.util.awt.text.GlyphCache;
+import com.github.opengrabeso.ogltext.util.awt.text.GlyphMeasurements;
+import com.github.opengrabeso.ogltext.util.awt.text.GlyphMetricBuffer;
 import com.github.opengrabeso.ogltext.util.awt.text.GlyphProducer;
 import com.github.opengrabeso.ogltext.util.awt.text.GlyphProducers;
 import com.github.opengrabeso.ogltext.util.awt.text.GlyphRenderer;
 import com.github.opengrabeso.ogltext.util.awt.text.GlyphRenderers;
+import com.github.opengrabeso.ogltext.util.awt.text.GlyphTextureArray;
+import com.github.opengrabeso.ogltext.util.awt.text.LabelPlacer;
+import com.github.opengrabeso.ogltext.util.awt.text.ParagraphLayout;
+import com.github.opengrabeso.ogltext.util.awt.text.ProgramCache;
+import com.github.opengrabeso.ogltext.util.awt.text.StaticText;
+import com.github.opengrabeso.ogltext.util.awt.text.TextRendererMetrics;
+import com.github.opengrabeso.ogltext.util.awt.text.TextRendererMetrics.Counter;
+import com.github.opengrabeso.ogltext.util.packrect.PackingStrategy;
 
 
 /**
@@ -111,6 +127,23 @@ public final class TextRenderer {
     /*@Nonnull*/
     private static final RenderDelegate DEFAULT_RENDER_DELEGATE = new DefaultRenderDelegate();
 
+    /**
+     * Single character marking truncated text, if the font has it.
+     */
+    private static final char ELLIPSIS = '\u2026';
+
+    /**
+     * Marks truncated text in fonts without an ellipsis character.
+     */
+    /*@Nonnull*/
+    private static final String DOTS = "...";
+
+    /**
+     * Number of paragraph layouts kept.
+     */
+    /*@Nonnegative*/
+    private static final int PARAGRAPH_CACHE_SIZE = 64;
+
     /**
      * Face, style, and size of text to render with.
      */
@@ -123,6 +156,12 @@ public final class TextRenderer {
     /*@Nonnull*/
     private final GlyphCache glyphCache;
 
+    /**
+     * Measurements of characters, shared with the glyph producer.
+     */
+    /*@Nonnull*/
+    private final GlyphMeasurements glyphMeasurements;
+
     /**
      * Delegate to create glyphs.
      */
@@ -133,7 +172,7 @@ public final class TextRenderer {
      * Delegate to draw glyphs.
      */
     /*@Nonnull*/
-    private final GlyphRenderer glyphRenderer = new GlyphRendererProxy();
+    private final GlyphRendererProxy glyphRenderer = new GlyphRendererProxy();
 
     /**
      * Mediator coordinating components.
@@ -141,6 +180,43 @@ public final class TextRenderer {
     /*@Nonnull*/
     private final Mediator mediator = new Mediator();
 
+    /**
+     * Counters of what the components spend their time on.
+     */
+    /*@Nonnull*/
+    private final TextRendererMetrics metrics = new TextRendererMetrics();
+
+    /**
+     * Measurements and texture coordinates of glyphs used by static text, kept on the GPU.
+     */
+    /*@Nonnull*/
+    private final GlyphMetricBuffer glyphMetrics = new GlyphMetricBuffer();
+
+    /**
+     * Layouts of paragraphs by identity of their text, least recently used first.
+     */
+    /*@Nonnull*/
+    private final Map<TextKey, ParagraphLayout> paragraphs =
+            new ParagraphCache(PARAGRAPH_CACHE_SIZE);
+
+    /**
+     * Key reused to look up paragraphs without allocating.
+     */
+    /*@Nonnull*/
+    private final TextKey paragraphKey = new TextKey();
+
+    /**
+     * Text marking where text was truncated.
+     */
+    /*@Nonnull*/
+    private final String ellipsis;
+
+    /**
+     * Width of the text marking where text was truncated.
+     */
+    /*@Nonnegative*/
+    private final float ellipsisWidth;
+
     /**
      * GL interface
      * */
@@ -153,6 +229,57 @@ public final class TextRenderer {
      */
     private boolean ready = false;
 
+    /**
+     * True if text outside the view is left out.
+     */
+    private boolean culling = false;
+
+    /**
+     * True if overlapping labels are left out.
+     */
+    private boolean declutter = false;
+
+    /**
+     * Bounds of the labels placed in this render cycle, or null before decluttering first.
+     */
+    /*@CheckForNull*/
+    private LabelPlacer labelPlacer = null;
+
+    /**
+     * Order labels are placed in, reused to avoid allocating.
+     */
+    /*@Nonnull*/
+    private long[] labelOrder = new long[64];
+
+    /**
+     * Buffer of each label being placed, reused to avoid allocating.
+     */
+    /*@Nonnull*/
+    private int[] labelBuffers = new int[64];
+
+    /**
+     * Glyphs of the text commands being drawn from command buffers, reused to avoid allocating.
+     */
+    /*@Nonnull*/
+    private final List<Glyph> bufferGlyphs = new ArrayList<Glyph>();
+
+    /**
+     * End of the glyphs of each command being drawn from command buffers in {@link #bufferGlyphs}.
+     */
+    /*@Nonnull*/
+    private int[] bufferGlyphEnds = new int[64];
+
+    /**
+     * Group of renderers sharing one texture and one batch, or null if rendering alone.
+     */
+    /*@CheckForNull*/
+    private TextRendererGroup group = null;
+
+    /**
+     * Key of the OpenGL context in the {@link ProgramCache}, or null to use the OpenGL object.
+     */
+    /*@CheckForNull*/
+    private Object contextKey = null;
 
     /**
      * Constructs a {@link TextRenderer}.
@@ -206,6 +333,34 @@ public final class TextRenderer {
                         final boolean mipmap,
                         /*@CheckForNull*/ final UnicodeBlock ub,
                         final GL2GL3 gl, boolean gl3) {
+        this(font, antialias, subpixel, rd, mipmap, ub, null, gl, gl3);
+    }
+
+    /**
+     * Constructs a {@link TextRenderer} sized for the characters it is expected to render.
+     *
+     * <p>
+     * Works like {@link #TextRenderer(Font, boolean, boolean, RenderDelegate, boolean,
+     * UnicodeBlock, GL2GL3, boolean)}, but the backing texture is made big enough for all of the
+     * expected characters up front, so it doesn't have to be reallocated several times while they
+     * are first drawn.  Other characters can still be rendered.
+     *
+     * @param font Font to render text with
+     * @param antialias True to smooth edges of text
+     * @param subpixel True to use subpixel accuracy
+     * @param rd Controller of rendering details, or null to use the default
+     * @param mipmap Whether to generate mipmaps to make the text scale better
+     * @param ub Range of unicode characters, or null to use the default
+     * @param expectedChars Characters expected to be rendered, or null if unknown
+     */
+    public TextRenderer(/*@Nonnull*/ final Font font,
+                        final boolean antialias,
+                        final boolean subpixel,
+                        /*@CheckForNull*/ RenderDelegate rd,
+                        final boolean mipmap,
+                        /*@CheckForNull*/ final UnicodeBlock ub,
+                        /*@CheckForNull*/ final CharSequence expectedChars,
+                        final GL2GL3 gl, boolean gl3) {
 
         Check.notNull(font, "Font cannot be null");
         if (rd == null) {
@@ -215,8 +370,18 @@ public final class TextRenderer {
         this.gl = gl;
         this.gl3 = gl3;
         this.font = font;
-        this.glyphCache = GlyphCache.newInstance(font, rd, antialias, subpixel, mipmap, gl3);
-        this.glyphProducer = GlyphProducers.get(font, rd, glyphCache.getFontRenderContext(), ub);
+        if (expectedChars == null) {
+            this.glyphCache = GlyphCache.newInstance(font, rd, antialias, subpixel, mipmap, gl3);
+        } else {
+            this.glyphCache = GlyphCache.newInstance(
+                    font, rd, antialias, subpixel, mipmap, gl3, expectedChars);
+        }
+        this.glyphMeasurements = new GlyphMeasurements(font, rd, glyphCache.getFontRenderContext());
+        this.glyphProducer = GlyphProducers.get(glyphMeasurements, ub);
+        this.ellipsis = font.canDisplay(ELLIPSIS) ? String.valueOf(ELLIPSIS) : DOTS;
+        this.ellipsisWidth = measure(ellipsis);
+        glyphCache.setMetrics(metrics);
+        glyphRenderer.setMetrics(metrics);
     }
 
     /**
@@ -288,6 +453,20 @@ public final class TextRenderer {
 
         Check.argument(width >= 0, "Width cannot be negative");
         Check.argument(height >= 0, "Height cannot be negative");
+        Check.state(group == null, "Must render through the group");
+
+        // Delegate to components
+        beginGroupRendering();
+        glyphRenderer.setContext(getContextKey());
+        glyphRenderer.beginRendering(gl, ortho, width, height, disableDepthTest, gl3);
+    }
+
+    /**
+     * Starts a render cycle of the glyph cache only, leaving the glyph renderer to the group.
+     */
+    void beginGroupRendering() {
+
+        metrics.beginFrame();
 
         // Make sure components are set up properly
         if (!ready) {
@@ -296,9 +475,79 @@ public final class TextRenderer {
             ready = true;
         }
 
-        // Delegate to components
         glyphCache.beginRendering(gl);
-        glyphRenderer.beginRendering(gl, ortho, width, height, disableDepthTest, gl3);
+        if (labelPlacer != null) {
+            labelPlacer.clear();
+        }
+    }
+
+    /**
+     * Stops clipping text drawn afterwards.
+     *
+     * @see #setClip
+     */
+    public void clearClip() {
+        glyphRenderer.clearClip();
+    }
+
+    /**
+     * Recovers from the OpenGL context being destroyed and recreated.
+     *
+     * <p>
+     * Call this instead of making a new text renderer when a drawable is re-realized, e.g. after
+     * its canvas was moved to a different parent.  The glyphs already rasterized, their layout in
+     * the backing texture and their metrics are kept.  Only the OpenGL objects (the texture, the
+     * shader program and the vertex buffers) are made again on the next render cycle, with a
+     * single upload of the whole texture.  The old objects are not deleted, since they went away
+     * with the old context.
+     *
+     * <p>
+     * Must not be called during a render cycle.
+     *
+     * @param gl New OpenGL context to render with
+     * @throws NullPointerException if context is null
+     */
+    public void contextRecreated(/*@Nonnull*/ final GL2GL3 gl) {
+
+        Check.notNull(gl, "GL cannot be null");
+
+        ProgramCache.contextRecreated(getContextKey());
+        this.gl = gl;
+        contextRecreated();
+    }
+
+    /**
+     * Recovers from the OpenGL context being destroyed and recreated, keeping the same OpenGL
+     * object to render with.
+     *
+     * @see #contextRecreated(GL2GL3)
+     */
+    public void contextRecreated() {
+        ProgramCache.contextRecreated(getContextKey());
+        glyphCache.contextRecreated();
+        glyphRenderer.contextRecreated();
+        glyphMetrics.contextRecreated();
+    }
+
+    /**
+     * Lays out text to be kept on the GPU and drawn with {@link #draw(StaticText, int, int)}.
+     *
+     * <p>
+     * Meant for large texts that rarely change, such as logs or source code.  Each character
+     * takes four bytes, uploaded on the first draw only.  The text must be drawn by this renderer,
+     * and its OpenGL objects freed with {@link StaticText#dispose} when no longer needed.
+     *
+     * @param text Text to lay out, line feeds start new lines
+     * @return Laid out text, not null
+     * @throws NullPointerException if text is null
+     * @throws IllegalArgumentException if the text has too many characters
+     */
+    /*@Nonnull*/
+    public StaticText createStaticText(/*@Nonnull*/ final String text) {
+
+        Check.notNull(text, "Text cannot be null");
+
+        return new StaticText(glyphProducer, glyphMeasurements, glyphMetrics, text);
     }
 
     /**
@@ -311,6 +560,7 @@ public final class TextRenderer {
 
         // Destroy the glyph renderer
         glyphRenderer.dispose(gl);
+        glyphMetrics.dispose(gl);
     }
 
     /**
@@ -349,6 +599,99 @@ public final class TextRenderer {
         draw3D(text, x, y, 0, 1, false);
     }
 
+    /**
+     * Draws a static text at a location.
+     *
+     * <p>
+     * The baseline of the first line starts at position (x, y) in OpenGL coordinates, and
+     * following lines go down.  The whole text is one draw call.  Text queued before is drawn
+     * first; clipping and culling are not applied.
+     *
+     * @param text Text made by {@link #createStaticText} of this renderer
+     * @param x Position to draw on X axis
+     * @param y Position to draw on Y axis
+     * @throws NullPointerException if text is null
+     * @throws IllegalArgumentException if the text was made by another renderer
+     * @throws IllegalStateException if not using OpenGL 3, or rendering in a group
+     */
+    public void draw(/*@Nonnull*/ final StaticText text,
+                     /*@CheckForSigned*/ final int x,
+                     /*@CheckForSigned*/ final int y) {
+        draw3D(text, x, y, 0);
+    }
+
+    /**
+     * Draws text recorded in command buffers.
+     *
+     * <p>
+     * Buffers are drawn in the order given, and the commands of each in the order they were
+     * recorded, as if they were called on this renderer directly.  The glyphs of all text are
+     * looked up first, adding the ones missing from the texture, so growing the texture does not
+     * break up the batches.  The quads are then queued in one pass over the commands, without
+     * laying out the text again.  The color and transform are left as the last commands set them.
+     *
+     * <p>
+     * If {@link #setDeclutter decluttering}, the labels of all buffers are placed first, in order
+     * of priority, and labels overlapping ones placed before them are left out.
+     *
+     * @param buffers Command buffers to draw, not modified
+     * @throws NullPointerException if any buffer is null
+     * @throws IllegalStateException if a buffer changes the transform in orthographic mode
+     */
+    public void draw(/*@Nonnull*/ final TextCommandBuffer... buffers) {
+
+        Check.notNull(buffers, "Buffers cannot be null");
+        for (final TextCommandBuffer buffer : buffers) {
+            Check.notNull(buffer, "Buffer cannot be null");
+        }
+
+        // Leave out overlapping labels
+        final BitSet[] dropped = declutter ? placeLabels(buffers) : null;
+
+        // Look up the glyphs of all text, adding missing ones up front
+        int commands = 0;
+        for (final TextCommandBuffer buffer : buffers) {
+            commands += buffer.size();
+        }
+        if (bufferGlyphEnds.length < commands) {
+            bufferGlyphEnds = new int[Math.max(commands, 2 * bufferGlyphEnds.length)];
+        }
+        bufferGlyphs.clear();
+        long uploads = 0;
+        for (int b = 0, c = 0; b < buffers.length; ++b) {
+            final TextCommandBuffer buffer = buffers[b];
+            final int size = buffer.size();
+            for (int i = 0; i < size; ++i, ++c) {
+                final String text = buffer.getText(i);
+                if (text != null && (dropped == null || !dropped[b].get(i))) {
+                    for (final Glyph glyph : glyphProducer.createGlyphs(text)) {
+                        if (glyph.location == null) {
+                            glyphCache.upload(glyph);
+                            ++uploads;
+                        } else {
+                            // Mark it used, so making room for others does not evict it
+                            glyphCache.find(glyph);
+                        }
+                        bufferGlyphs.add(glyph);
+                    }
+                }
+                bufferGlyphEnds[c] = bufferGlyphs.size();
+            }
+        }
+
+        // Queue the quads
+        for (int b = 0, c = 0; b < buffers.length; ++b) {
+            buffers[b].execute(this, (dropped != null) ? dropped[b] : null,
+                               bufferGlyphs, bufferGlyphEnds, c);
+            c += buffers[b].size();
+        }
+        bufferGlyphs.clear();
+
+        // Glyphs added up front were drawn as hits
+        metrics.add(Counter.GLYPH_MISSES, uploads);
+        metrics.add(Counter.GLYPH_HITS, -uploads);
+    }
+
     /**
      * Draws a character sequence at a location in 3D space.
      *
@@ -394,20 +737,300 @@ public final class TextRenderer {
 
         Check.notNull(text, "Text cannot be null");
 
-        // Get all the glyphs for the string
-        final List<Glyph> glyphs = glyphProducer.createGlyphs(text);
+        // Leave out the whole string if its bounds cannot be seen
+        if (culling && !isVisible(text, x, y, z, scale, verticalFlip)) {
+            metrics.increment(Counter.STRINGS_CULLED);
+            return;
+        }
+
+        // Get all the glyphs for the string and render them
+        drawGlyphs(glyphProducer.createGlyphs(text), x, y, z, scale, verticalFlip);
+    }
+
+    /**
+     * Draws text already broken into glyphs at a location in 3D space.
+     *
+     * <p>
+     * Used to replay command buffers, whose glyphs were looked up before.
+     *
+     * @param text Text the glyphs were made from, assumed not null
+     * @param glyphs Glyphs of the text, assumed not null
+     * @param x Position to draw on X axis
+     * @param y Position to draw on Y axis
+     * @param z Position to draw on Z axis
+     * @param scale Uniform scale applied to width and height of text
+     * @param verticalFlip True to flip the text vertically
+     */
+    void draw3D(/*@Nonnull*/ final String text,
+                /*@Nonnull*/ final List<Glyph> glyphs,
+                /*@CheckForSigned*/ final float x,
+                /*@CheckForSigned*/ final float y,
+                /*@CheckForSigned*/ final float z,
+                /*@CheckForSigned*/ final float scale,
+                final boolean verticalFlip) {
+
+        // Leave out the whole string if its bounds cannot be seen
+        if (culling && !isVisible(text, x, y, z, scale, verticalFlip)) {
+            metrics.increment(Counter.STRINGS_CULLED);
+            return;
+        }
+
+        drawGlyphs(glyphs, x, y, z, scale, verticalFlip);
+    }
+
+    /**
+     * Draws glyphs one after the other, applying kerning between them.
+     *
+     * @param glyphs Glyphs to draw, assumed not null
+     * @param x Position of the first glyph on X axis
+     * @param y Position to draw on Y axis
+     * @param z Position to draw on Z axis
+     * @param scale Uniform scale applied to width and height of glyphs
+     * @param verticalFlip True to flip the glyphs vertically
+     */
+    private void drawGlyphs(/*@Nonnull*/ final List<Glyph> glyphs,
+                            /*@CheckForSigned*/ float x,
+                            /*@CheckForSigned*/ final float y,
+                            /*@CheckForSigned*/ final float z,
+                            /*@CheckForSigned*/ final float scale,
+                            final boolean verticalFlip) {
 
         // Render each glyph
+        metrics.add(Counter.GLYPH_LOOKUPS, glyphs.size());
+        final boolean kerning = glyphMeasurements.hasKerning();
+        Glyph previous = null;
         for (final Glyph glyph : glyphs) {
-            if (glyph.location == null) {
-                glyphCache.upload(glyph);
+            if (kerning && previous != null) {
+                x += glyphMeasurements.getKerning(previous, glyph) * scale;
+            }
+            previous = glyph;
+            x += drawGlyph(glyph, x, y, z, scale, verticalFlip);
+        }
+    }
+
+    /**
+     * Draws a static text at a location in 3D space, at its natural size.
+     *
+     * @param text Text made by {@link #createStaticText} of this renderer
+     * @param x Position of the first baseline on X axis
+     * @param y Position of the first baseline on Y axis
+     * @param z Position on Z axis
+     * @throws NullPointerException if text is null
+     * @throws IllegalArgumentException if the text was made by another renderer
+     * @throws IllegalStateException if not using OpenGL 3, or rendering in a group
+     * @see #draw(StaticText, int, int)
+     */
+    public void draw3D(/*@Nonnull*/ final StaticText text,
+                       /*@CheckForSigned*/ final float x,
+                       /*@CheckForSigned*/ final float y,
+                       /*@CheckForSigned*/ final float z) {
+
+        Check.notNull(text, "Text cannot be null");
+        Check.state(gl3, "Static text needs OpenGL 3");
+        Check.state(group == null, "Static text cannot be drawn in a group");
+
+        // Make sure every glyph is in the texture and its coordinates are current
+        glyphMetrics.update(gl, glyphCache);
+        glyphCache.update(gl);
+        glyphRenderer.drawBuffer(gl, glyphMetrics, text, x, y, z);
+    }
+
+    /**
+     * Places the labels of command buffers in order of priority, finding the ones to leave out.
+     *
+     * @param buffers Command buffers to place labels of, assumed not null
+     * @return Commands of labels to leave out for each buffer, not null
+     */
+    /*@Nonnull*/
+    private BitSet[] placeLabels(/*@Nonnull*/ final TextCommandBuffer[] buffers) {
+
+        if (labelPlacer == null) {
+            labelPlacer = new LabelPlacer(4 * glyphMeasurements.getLineHeight());
+        }
+
+        // Sort by priority, highest first, then by order of recording
+        int n = 0;
+        for (final TextCommandBuffer buffer : buffers) {
+            n += buffer.getLabelCount();
+        }
+        if (labelOrder.length < n) {
+            labelOrder = new long[Math.max(n, 2 * labelOrder.length)];
+            labelBuffers = new int[labelOrder.length];
+        }
+        int index = 0;
+        for (int b = 0; b < buffers.length; ++b) {
+            for (int k = 0; k < buffers[b].getLabelCount(); ++k) {
+                int bits = Float.floatToIntBits(buffers[b].getLabelPriority(k));
+                bits ^= (bits >> 31) & Integer.MAX_VALUE;
+                labelOrder[index] = ((long) ~bits << 32) | index;
+                labelBuffers[index] = b;
+                ++index;
+            }
+        }
+        Arrays.sort(labelOrder, 0, n);
+
+        // Place them, finding the label of each index from the first one of its buffer
+        final BitSet[] dropped = new BitSet[buffers.length];
+        final int[] first = new int[buffers.length];
+        for (int b = 0, i = 0; b < buffers.length; ++b) {
+            dropped[b] = new BitSet();
+            first[b] = i;
+            i += buffers[b].getLabelCount();
+        }
+        long count = 0;
+        for (int j = 0; j < n; ++j) {
+            final int i = (int) labelOrder[j];
+            final int b = labelBuffers[i];
+            final int k = i - first[b];
+            final TextCommandBuffer buffer = buffers[b];
+            final int command = buffer.getLabelCommand(k);
+            final Rectangle2D bounds = glyphMeasurements.getBounds(buffer.getText(command));
+            final float x = buffer.getLabelX(k);
+            final float y = buffer.getLabelY(k);
+            if (!labelPlacer.place(x + (float) bounds.getMinX(),
+                                   y - (float) bounds.getMaxY(),
+                                   x + (float) bounds.getMaxX(),
+                                   y - (float) bounds.getMinY())) {
+                dropped[b].set(command);
+                ++count;
+            }
+        }
+        metrics.add(Counter.LABELS_DROPPED, count);
+        return dropped;
+    }
+
+    /**
+     * Draws a glyph, adding it to the texture if needed.
+     *
+     * @param glyph Glyph to draw, assumed not null
+     * @param x Position to draw on X axis
+     * @param y Position to draw on Y axis
+     * @param z Position to draw on Z axis
+     * @param scale Uniform scale applied to width and height of text
+     * @param verticalFlip True to flip the glyph vertically
+     * @return Distance to move the pen to the next glyph
+     */
+    private float drawGlyph(/*@Nonnull*/ final Glyph glyph,
+                            /*@CheckForSigned*/ final float x,
+                            /*@CheckForSigned*/ final float y,
+                            /*@CheckForSigned*/ final float z,
+                            /*@CheckForSigned*/ final float scale,
+                            final boolean verticalFlip) {
+        if (glyph.location == null) {
+            metrics.increment(Counter.GLYPH_MISSES);
+            glyphCache.upload(glyph);
+        } else {
+            metrics.increment(Counter.GLYPH_HITS);
+        }
+        final TextureCoords coords = glyphCache.find(glyph);
+        final float advance = glyphRenderer.drawGlyph(gl, glyph, x, y, z, scale, verticalFlip, coords);
+        return advance * scale;
+    }
+
+    /**
+     * Draws a paragraph broken into lines to fit a width.
+     *
+     * <p>
+     * The baseline of the first line is at position (x, y) in OpenGL coordinates, and following
+     * lines go down.  The layout is kept for the same text object, so drawing it again only
+     * breaks the lines again if the width changed.  All lines are queued in one pass.
+     *
+     * @param text Text to draw, line feeds start new lines
+     * @param x Position of the left edge of the paragraph
+     * @param y Position of the baseline of the first line
+     * @param width Width of the paragraph, positive
+     * @param alignment Where to place lines narrower than the width
+     * @param lineSpacing Distance between baselines as a multiple of the font's line height
+     * @throws NullPointerException if text or alignment is null
+     * @throws IllegalArgumentException if width is not positive
+     */
+    public void drawParagraph(/*@Nonnull*/ final String text,
+                              /*@CheckForSigned*/ final int x,
+                              /*@CheckForSigned*/ final int y,
+                              /*@Nonnegative*/ final float width,
+                              /*@Nonnull*/ final ParagraphLayout.Alignment alignment,
+                              final float lineSpacing) {
+
+        Check.notNull(alignment, "Alignment cannot be null");
+
+        final ParagraphLayout layout = getParagraphLayout(text, width);
+        final float advance = layout.getLineHeight() * lineSpacing;
+        final int count = layout.getLineCount();
+        for (int i = 0; i < count; ++i) {
+            final float lineX = x + layout.getLineOffset(i, alignment);
+            draw3D(layout.getLine(i), lineX, y - i * advance, 0, 1, false);
+        }
+    }
+
+    /**
+     * Draws as much of a character sequence as fits in a width, marking where it was cut off.
+     *
+     * <p>
+     * Works like {@link #draw(CharSequence, int, int)} if the text fits.  Otherwise the longest
+     * prefix that fits together with an ellipsis is drawn, without trailing whitespace, followed by
+     * the ellipsis.  Text with a simple layout is drawn a character at a time without allocating.
+     *
+     * @param text Text to draw
+     * @param x Position to draw on X axis
+     * @param y Position to draw on Y axis
+     * @param width Largest width to draw in
+     * @throws NullPointerException if text is null
+     */
+    public void drawTruncated(/*@Nonnull*/ final CharSequence text,
+                              /*@CheckForSigned*/ final int x,
+                              /*@CheckForSigned*/ final int y,
+                              final float width) {
+
+        final int len = getTruncatedLength(text, width);
+        if (len == text.length()) {
+            if (text instanceof String) {
+                draw3D((String) text, x, y, 0, 1, false);
+            } else {
+                drawSimple(text, len, x, y);
             }
-            final TextureCoords coords = glyphCache.find(glyph);
-            final float advance = glyphRenderer.drawGlyph(gl, glyph, x, y, z, scale, verticalFlip, coords);
-            x += advance * scale;
+        } else {
+            final float end = drawSimple(text, len, x, y);
+            drawSimple(ellipsis, ellipsis.length(), end, y);
         }
     }
 
+    /**
+     * Draws the start of a character sequence a character at a time.
+     *
+     * <p>
+     * Falls back to drawing a copy of the characters if any of them need a complex layout.
+     *
+     * @param text Text to draw, assumed not null
+     * @param len Number of characters to draw
+     * @param x Position to draw on X axis
+     * @param y Position to draw on Y axis
+     * @return Position on X axis after the last character
+     */
+    private float drawSimple(/*@Nonnull*/ final CharSequence text,
+                             /*@Nonnegative*/ final int len,
+                             /*@CheckForSigned*/ float x,
+                             /*@CheckForSigned*/ final float y) {
+
+        for (int i = 0; i < len; ++i) {
+            if (!GlyphMeasurements.isSimple(text.charAt(i))) {
+                final String str = text.subSequence(0, len).toString();
+                draw3D(str, x, y, 0, 1, false);
+                return x + measure(str);
+            }
+        }
+
+        metrics.add(Counter.GLYPH_LOOKUPS, len);
+        final boolean kerning = glyphMeasurements.hasKerning();
+        for (int i = 0; i < len; ++i) {
+            final char c = text.charAt(i);
+            if (kerning && i > 0) {
+                x += glyphMeasurements.getKerning(text.charAt(i - 1), c);
+            }
+            x += drawGlyph(glyphProducer.createGlyph(c), x, y, 0, 1, false);
+        }
+        return x;
+    }
+
     /**
      * Finishes a 3D render cycle.
      */
@@ -420,9 +1043,20 @@ public final class TextRenderer {
      */
     public void endRendering() {
 
-        // Tear down components
-        glyphCache.endRendering(gl);
+        Check.state(group == null, "Must render through the group");
+
+        // Tear down components, letting the cache do housekeeping only once the text was drawn
+        glyphCache.update(gl);
         glyphRenderer.endRendering(gl);
+        endGroupRendering();
+    }
+
+    /**
+     * Finishes a render cycle of the glyph cache only, after the group drew the text.
+     */
+    void endGroupRendering() {
+        glyphCache.endRendering(gl);
+        metrics.endFrame();
     }
 
     /**
@@ -433,12 +1067,43 @@ public final class TextRenderer {
      * as the modelview matrix between calls to {@code draw}.
      */
     public void flush() {
+        flush(Counter.FLUSHES_EXPLICIT);
+    }
 
-        // Make sure glyph cache is up to date
-        glyphCache.update(gl);
+    /**
+     * Forces all stored text to be rendered, counting why if anything was.
+     *
+     * @param reason Counter of the reason for flushing, assumed not null
+     */
+    private void flush(/*@Nonnull*/ final Counter reason) {
+
+        // Make sure glyph cache is up to date, and those of other fonts in the same batch
+        if (group == null) {
+            glyphCache.update(gl);
+        } else {
+            group.update();
+        }
 
         // Render outstanding glyphs
+        final long drawCalls = metrics.get(Counter.DRAW_CALLS);
         glyphRenderer.flush(gl);
+        if (metrics.get(Counter.DRAW_CALLS) > drawCalls) {
+            metrics.increment(reason);
+        }
+    }
+
+    /**
+     * Describes how well the glyph texture is used.
+     *
+     * <p>
+     * Useful to diagnose an atlas that keeps growing or compacting.  Needs no OpenGL context.
+     *
+     * @return Report of the glyph texture, not null
+     * @see #writeAtlasImage(OutputStream)
+     */
+    /*@Nonnull*/
+    public AtlasReport getAtlasReport() {
+        return glyphCache.getAtlasReport();
     }
 
     /**
@@ -455,71 +1120,389 @@ public final class TextRenderer {
      * getVisualBounds}.
      *
      * <p>
-     * Most applications will use only the width and height of the returned Rectangle for the
-     * purposes of centering or justifying the String.  It is not specified which Java 2D bounds
-     * ({@link GlyphVector#getVisualBounds getVisualBounds}, {@link GlyphVector#getPixelBounds
-     * getPixelBounds}, etc.) the returned bounds correspond to, although every effort is made to
-     * ensure an accurate bound.
+     * Most applications will use only the width and height of the returned Rectangle for the
+     * purposes of centering or justifying the String.  It is not specified which Java 2D bounds
+     * ({@link GlyphVector#getVisualBounds getVisualBounds}, {@link GlyphVector#getPixelBounds
+     * getPixelBounds}, etc.) the returned bounds correspond to, although every effort is made to
+     * ensure an accurate bound.
+     *
+     * @param text Text to get bounding box for
+     * @return Rectangle surrounding the given text, not null
+     */
+    /*@Nonnull*/
+    public Rectangle2D getBounds(/*@Nonnull*/ final CharSequence text) {
+        Check.notNull(text, "Text cannot be null");
+        return getBounds(text.toString());
+    }
+
+    /**
+     * Determines the bounding box of a string.
+     *
+     * <p>
+     * May be called from any thread.
+     *
+     * @param text Text to get bounding box for
+     * @return Rectangle surrounding the given text, not null
+     */
+    /*@Nonnull*/
+    public Rectangle2D getBounds(/*@Nonnull*/ final String text) {
+        Check.notNull(text, "Text cannot be null");
+        return glyphMeasurements.getBounds(text);
+    }
+
+    /**
+     * Determines the pixel width of a character.
+     *
+     * <p>
+     * May be called from any thread.
+     *
+     * @param c Character to get pixel width of
+     * @return Number of pixels required to advance past the character
+     */
+    public float getCharWidth(final char c) {
+        return glyphMeasurements.getAdvance(c);
+    }
+
+    /**
+     * Returns the key of the OpenGL context in the {@link ProgramCache}.
+     *
+     * @return Key set by {@link #setContextKey}, or the OpenGL object if none was set
+     */
+    /*@Nonnull*/
+    private Object getContextKey() {
+        return (contextKey != null) ? contextKey : gl;
+    }
+
+    /**
+     * Checks if overlapping labels are left out instead of being drawn.
+     *
+     * @return True if decluttering labels, false by default
+     */
+    public boolean getDeclutter() {
+        return declutter;
+    }
+
+    /**
+     * Checks if text outside the view is left out instead of being drawn.
+     *
+     * @return True if culling text, false by default
+     */
+    public boolean getCulling() {
+        return culling;
+    }
+
+    /**
+     * Determines the font this {@link TextRenderer} is using.
+     *
+     * @return Font used by this text renderer, not null
+     */
+    /*@Nonnull*/
+    public Font getFont() {
+        return font;
+    }
+
+    /**
+     * Returns a paragraph broken into lines to fit a width.
+     *
+     * <p>
+     * Layouts of recently used paragraphs are kept by identity of their text, so pass the same
+     * string object each time.  Changing the width breaks the kept layout again without measuring
+     * the text again.
+     *
+     * @param text Text to lay out, line feeds start new lines
+     * @param width Width of the paragraph, positive
+     * @return Layout of the paragraph, valid until the next call, not null
+     * @throws NullPointerException if text is null
+     * @throws IllegalArgumentException if width is not positive
+     */
+    /*@Nonnull*/
+    public ParagraphLayout getParagraphLayout(/*@Nonnull*/ final String text,
+                                              /*@Nonnegative*/ final float width) {
+
+        Check.notNull(text, "Text cannot be null");
+        Check.argument(width > 0, "Width must be positive");
+
+        paragraphKey.text = text;
+        ParagraphLayout layout = paragraphs.get(paragraphKey);
+        paragraphKey.text = null;
+        if (layout == null) {
+            layout = new ParagraphLayout(glyphMeasurements, text);
+            paragraphs.put(new TextKey(text), layout);
+        }
+        layout.setWidth(width);
+        return layout;
+    }
+
+    /**
+     * Returns as much of a character sequence as fits in a width, marking where it was cut off.
+     *
+     * @param text Text to truncate
+     * @param width Largest width the result may take up
+     * @return Text unchanged if it fits, or its longest prefix that fits with an ellipsis added
+     * @throws NullPointerException if text is null
+     * @see #getTruncatedLength
+     */
+    /*@Nonnull*/
+    public String getTruncated(/*@Nonnull*/ final CharSequence text, final float width) {
+        final int len = getTruncatedLength(text, width);
+        if (len == text.length()) {
+            return text.toString();
+        }
+        return text.subSequence(0, len) + ellipsis;
+    }
+
+    /**
+     * Determines how much of a character sequence fits in a width with an ellipsis after it.
+     *
+     * <p>
+     * Advances are added up a character at a time until the text no longer fits, remembering the
+     * longest prefix that still leaves room for the ellipsis.  The cut is never made between the
+     * two halves of a surrogate pair, and whitespace before the ellipsis is left out.  Nothing is
+     * allocated.
+     *
+     * @param text Text to truncate
+     * @param width Largest width the text may take up
+     * @return Length of text if it fits, otherwise number of characters to keep before an ellipsis,
+     *         which is zero if only the ellipsis fits, or not even that
+     * @throws NullPointerException if text is null
+     */
+    /*@Nonnegative*/
+    public int getTruncatedLength(/*@Nonnull*/ final CharSequence text, final float width) {
+
+        Check.notNull(text, "Text cannot be null");
+
+        // Add up advances until the text is too wide
+        final int len = text.length();
+        final float available = width - ellipsisWidth;
+        final boolean kerning = glyphMeasurements.hasKerning();
+        int count = 0;
+        int fit = 0;
+        float x = 0;
+        while (count < len) {
+            final char c = text.charAt(count);
+            if (kerning && count > 0) {
+                x += glyphMeasurements.getKerning(text.charAt(count - 1), c);
+            }
+            x += glyphMeasurements.getAdvance(c);
+            ++count;
+            if (x > width) {
+                break;
+            }
+
+            // Remember the longest prefix leaving room for the ellipsis
+            if (fit == count - 1 && x <= available) {
+                fit = count;
+            }
+        }
+        if (x <= width) {
+            return len;
+        }
+
+        // Keep surrogate pairs together
+        int low = fit;
+        if (low > 0 && Character.isLowSurrogate(text.charAt(low))
+                && Character.isHighSurrogate(text.charAt(low - 1))) {
+            --low;
+        }
+
+        // Leave out trailing whitespace
+        while (low > 0 && Character.isWhitespace(text.charAt(low - 1))) {
+            --low;
+        }
+        return low;
+    }
+
+    /**
+     * Checks if the bounds of a string drawn at a location may be visible.
+     *
+     * @param text Text to check, assumed not null
+     * @param x Position to draw on X axis
+     * @param y Position to draw on Y axis
+     * @param z Position to draw on Z axis
+     * @param scale Uniform scale applied to width and height of text
+     * @param verticalFlip True if the text is flipped vertically
+     * @return False if the string is certainly outside the view
+     */
+    private boolean isVisible(/*@Nonnull*/ final String text,
+                              /*@CheckForSigned*/ final float x,
+                              /*@CheckForSigned*/ final float y,
+                              /*@CheckForSigned*/ final float z,
+                              /*@CheckForSigned*/ final float scale,
+                              final boolean verticalFlip) {
+        final Rectangle2D bounds = glyphMeasurements.getBounds(text);
+        final float yScale = verticalFlip ? -scale : scale;
+        return glyphRenderer.isVisible(
+                x + (float) (scale * bounds.getMinX()),
+                y - (float) (yScale * bounds.getMaxY()),
+                x + (float) (scale * bounds.getMaxX()),
+                y - (float) (yScale * bounds.getMinY()),
+                z);
+    }
+
+    /**
+     * Returns the measurements of characters this {@link TextRenderer} uses.
+     *
+     * <p>
+     * The measurements are thread-safe, so layout code on other threads can measure text without
+     * going through the render thread, and shares what it measures with this renderer.
+     *
+     * @return Measurements of characters in the font, not null
+     */
+    /*@Nonnull*/
+    public GlyphMeasurements getGlyphMeasurements() {
+        return glyphMeasurements;
+    }
+
+    /**
+     * Returns the gamma glyph coverage is corrected with.
+     *
+     * @return Gamma of this text renderer, positive
+     * @see #setGamma(float)
+     */
+    public float getGamma() {
+        return glyphCache.getGamma();
+    }
+
+    /**
+     * Checks if the backing texture is using linear interpolation.
+     *
+     * @return True if the backing texture is using linear interpolation.
+     */
+    public boolean getSmoothing() {
+        return glyphCache.getUseSmoothing();
+    }
+
+    /**
+     * Returns the counters of what this text renderer spends its time on.
+     *
+     * <p>
+     * Counts are kept for every render cycle and in total.  They can also be watched remotely by
+     * registering them as a JMX MBean with {@link TextRendererMetrics#register}.
+     *
+     * @return Metrics of this text renderer, not null
+     */
+    /*@Nonnull*/
+    public TextRendererMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Checks if vertex arrays are in-use.
+     *
+     * <p>
+     * Indicates whether vertex arrays are being used internally for rendering, or whether text is
+     * rendered using the OpenGL immediate mode commands.  Defaults to true.
+     */
+    public boolean getUseVertexArrays() {
+        return glyphRenderer.getUseVertexArrays();
+    }
+
+    /**
+     * Changes what tells the OpenGL context of this renderer apart in the {@link ProgramCache}.
+     *
+     * <p>
+     * Renderers with the same key share their shader programs.  By default the key is the OpenGL
+     * object the renderer draws with, so an application giving renderers different OpenGL objects
+     * for one context, or for contexts of one share group, should give them a common key, such as
+     * the native context.  Affects the glyph renderer made on the next render cycle.
      *
-     * @param text Text to get bounding box for
-     * @return Rectangle surrounding the given text, not null
+     * @param key Key of the context or its share group, or null to use the OpenGL object
      */
-    /*@Nonnull*/
-    public Rectangle2D getBounds(/*@Nonnull*/ final CharSequence text) {
-        Check.notNull(text, "Text cannot be null");
-        return getBounds(text.toString());
+    public void setContextKey(/*@CheckForNull*/ final Object key) {
+        this.contextKey = key;
     }
 
     /**
-     * Determines the bounding box of a string.
+     * Changes whether text outside the view is left out instead of being drawn.
      *
-     * @param text Text to get bounding box for
-     * @return Rectangle surrounding the given text, not null
+     * <p>
+     * Each string drawn with {@link #draw3D(String, float, float, float, float, boolean)} or the
+     * methods using it is left out whole if its bounds are outside the view, and the glyphs of
+     * other strings are left out one at a time.  In orthographic mode the view is the size given
+     * to {@link #beginRendering(int, int)}.  In 3D mode it is the frustum of the matrix given to
+     * {@link #setTransform}, and nothing is left out before one is given.  Culled strings and
+     * glyphs are counted in the {@link #getMetrics metrics}.
+     *
+     * @param culling True to leave out text outside the view
      */
-    /*@Nonnull*/
-    public Rectangle2D getBounds(/*@Nonnull*/ final String text) {
-        Check.notNull(text, "Text cannot be null");
-        return glyphProducer.findBounds(text);
+    public void setCulling(final boolean culling) {
+        this.culling = culling;
+        glyphRenderer.setCulling(culling);
     }
 
     /**
-     * Determines the pixel width of a character.
+     * Changes whether overlapping labels are left out instead of being drawn.
      *
-     * @param c Character to get pixel width of
-     * @return Number of pixels required to advance past the character
+     * <p>
+     * Applies to labels recorded with {@link TextCommandBuffer#drawLabel} and drawn with {@link
+     * #draw(TextCommandBuffer...)}.  Labels are placed from the highest priority down, and in the
+     * order they were recorded for equal priorities, so the same labels always win.  A label is
+     * left out if its bounds overlap a label placed before it in the same render cycle.  Placing
+     * uses the cached bounds of the text and a uniform grid of placed labels, so it takes time
+     * linear in the number of labels, apart from sorting them.  Left out labels are counted in
+     * the {@link #getMetrics metrics}.
+     *
+     * @param declutter True to leave out overlapping labels
      */
-    public float getCharWidth(final char c) {
-        return glyphProducer.findAdvance(c);
+    public void setDeclutter(final boolean declutter) {
+        this.declutter = declutter;
     }
 
     /**
-     * Determines the font this {@link TextRenderer} is using.
+     * Makes this renderer part of a group, drawing from a layer of its texture.
      *
-     * @return Font used by this text renderer, not null
+     * @param group Group the renderer joins, assumed not null
+     * @param layer Layer of the group's texture holding this renderer's glyphs
+     * @throws IllegalArgumentException if already in a group, or not using OpenGL 3
      */
-    /*@Nonnull*/
-    public Font getFont() {
-        return font;
+    void join(/*@Nonnull*/ final TextRendererGroup group, /*@Nonnegative*/ final int layer) {
+
+        Check.argument(this.group == null, "Renderer is already in a group");
+        Check.argument(gl3, "Renderer must use OpenGL 3");
+
+        this.group = group;
+        glyphRenderer.setLayer(layer);
     }
 
     /**
-     * Checks if the backing texture is using linear interpolation.
+     * Adds up the advances of the characters in a string, ignoring kerning.
      *
-     * @return True if the backing texture is using linear interpolation.
+     * @param str Text to measure, assumed not null
+     * @return Width of the string
      */
-    public boolean getSmoothing() {
-        return glyphCache.getUseSmoothing();
+    private float measure(/*@Nonnull*/ final String str) {
+        float width = 0;
+        for (int i = 0; i < str.length(); ++i) {
+            width += glyphMeasurements.getAdvance(str.charAt(i));
+        }
+        return width;
     }
 
     /**
-     * Checks if vertex arrays are in-use.
+     * Clips text drawn afterwards to a rectangle.
      *
      * <p>
-     * Indicates whether vertex arrays are being used internally for rendering, or whether text is
-     * rendered using the OpenGL immediate mode commands.  Defaults to true.
+     * Works like a scissor box, but glyphs are cut to the rectangle with their texture
+     * coordinates adjusted before they are queued, so text in differently clipped areas still
+     * shares batches, and the scissor test can stay disabled.  In orthographic mode the
+     * rectangle is in OpenGL window coordinates, and in 3D mode in the coordinates text is drawn
+     * in, before the transform.  When culling, strings outside the rectangle are left out whole.
+     *
+     * @param x Position of the left edge
+     * @param y Position of the bottom edge
+     * @param width Width of the rectangle
+     * @param height Height of the rectangle
+     * @throws IllegalArgumentException if width or height is negative
      */
-    public boolean getUseVertexArrays() {
-        return glyphRenderer.getUseVertexArrays();
+    public void setClip(/*@CheckForSigned*/ final float x,
+                        /*@CheckForSigned*/ final float y,
+                        /*@Nonnegative*/ final float width,
+                        /*@Nonnegative*/ final float height) {
+
+        Check.argument(width >= 0, "Width cannot be negative");
+        Check.argument(height >= 0, "Height cannot be negative");
+
+        glyphRenderer.setClip(x, y, x + width, y + height);
     }
 
     /**
@@ -559,6 +1542,54 @@ public final class TextRenderer {
         glyphRenderer.setColor(gl, r, g, b, a);
     }
 
+    /**
+     * Changes how much time compacting the backing texture may take per render cycle.
+     * <p>
+     * Defaults to zero, which compacts a fragmented texture all at once.  A positive budget spreads
+     * the work over as many calls to {@link #endRendering} as needed, avoiding frame hitches when
+     * many glyphs are cached.
+     * @param nanos Time in nanoseconds, or zero to compact at once
+     * @throws IllegalArgumentException if time is negative
+     */
+    public void setCompactionBudget(/*@Nonnegative*/ final long nanos) {
+        glyphCache.setCompactionBudget(nanos);
+    }
+
+    /**
+     * Changes the gamma glyph coverage is corrected with.
+     *
+     * <p>
+     * Java 2D rasterizes glyphs with linear coverage, which looks thin and faint once blended, so
+     * coverage is raised to the power of the inverse of the gamma.  Defaults to 2.2; one turns
+     * the correction off.  With OpenGL 3 the fragment shader applies it, so changing it is cheap.
+     * Otherwise it is applied with a lookup table while uploading, and the whole texture is
+     * uploaded again.  Takes effect from the next render cycle.
+     *
+     * @param gamma Gamma to correct coverage with
+     * @throws IllegalArgumentException if gamma is not positive
+     */
+    public void setGamma(final float gamma) {
+
+        Check.argument(gamma > 0, "Gamma must be positive");
+
+        glyphCache.setGamma(gamma);
+        glyphRenderer.setGamma(gamma);
+    }
+
+    /**
+     * Changes the algorithm used to pack glyphs into the backing texture.
+     * <p>
+     * Defaults to {@link com.github.opengrabeso.ogltext.util.packrect.LevelSet#FACTORY LevelSet},
+     * which is fast but wastes space when glyph heights vary a lot.  {@link
+     * com.github.opengrabeso.ogltext.util.packrect.SkylineSet#FACTORY SkylineSet} and {@link
+     * com.github.opengrabeso.ogltext.util.packrect.MaxRectsSet#FACTORY MaxRectsSet} pack denser.
+     * @param strategy Creator of the packing strategy to use
+     * @throws NullPointerException if strategy is null
+     */
+    public void setPackingStrategy(/*@Nonnull*/ final PackingStrategy.Factory strategy) {
+        glyphCache.setPackingStrategy(strategy);
+    }
+
     /**
      * Specifies whether the backing texture will use linear interpolation.
      *
@@ -576,6 +1607,20 @@ public final class TextRenderer {
         glyphCache.setUseSmoothing(smoothing);
     }
 
+    /**
+     * Starts uploading to a layer of a group's texture and drawing with the group's renderer.
+     *
+     * @param array Texture shared by the group, assumed not null
+     * @param renderer Renderer shared by the group, assumed not null
+     * @param layer Layer of the texture holding this renderer's glyphs
+     */
+    void share(/*@Nonnull*/ final GlyphTextureArray array,
+               /*@Nonnull*/ final GlyphRenderer renderer,
+               /*@Nonnegative*/ final int layer) {
+        glyphCache.setTextureArray(array, layer);
+        glyphRenderer.share(renderer);
+    }
+
     /**
      * Changes the transformation matrix used for drawing text in 3D.
      *
@@ -586,6 +1631,16 @@ public final class TextRenderer {
         glyphRenderer.setTransform(gl, matrix, false);
     }
 
+    /**
+     * Changes the transformation matrix used for drawing text in 3D, with the current OpenGL
+     * context.
+     *
+     * @param matrix Transformation matrix in column-major order
+     */
+    public void setTransform(/*@Nonnull*/ final float matrix[]) {
+        setTransform(gl, matrix);
+    }
+
     /**
      * Changes whether vertex arrays are in use.
      *
@@ -601,6 +1656,35 @@ public final class TextRenderer {
         glyphRenderer.setUseVertexArrays(useVertexArrays);
     }
 
+    /**
+     * Makes the texture of the group big enough for this renderer's glyphs, without uploading.
+     */
+    void requireTexture() {
+        glyphCache.requireLayer();
+    }
+
+    /**
+     * Uploads glyphs added since the last upload to the texture.
+     */
+    void updateTexture() {
+        glyphCache.update(gl);
+    }
+
+    /**
+     * Writes the glyph texture as a PNG image, with the glyphs outlined by level and age.
+     *
+     * <p>
+     * Needs no OpenGL context.  The stream is not closed.
+     *
+     * @param out Stream to write the image to
+     * @throws NullPointerException if stream is null
+     * @throws IOException if the image could not be written
+     * @see GlyphCache#createAtlasImage()
+     */
+    public void writeAtlasImage(/*@Nonnull*/ final OutputStream out) throws IOException {
+        glyphCache.writeAtlasImage(out);
+    }
+
     /**
      * Utility supporting more full control over rendering the bitmapped text.
      *
@@ -787,19 +1871,19 @@ public final class TextRenderer {
 
         @Override
         public void onGlyphCacheEvent(/*@Nonnull*/ final GlyphCache.EventType type,
-                                      /*@Nonnull*/ final Object data) {
+                                      /*@CheckForNull*/ final Object data) {
 
             Check.notNull(type, "Event type cannot be null");
-            Check.notNull(data, "Data cannot be null");
 
             switch (type) {
             case REALLOCATE:
-                flush();
+                flush(Counter.FLUSHES_REALLOCATION);
                 break;
             case CLEAR:
                 glyphProducer.clearGlyphs();
                 break;
             case CLEAN:
+                Check.notNull(data, "Data cannot be null");
                 glyphProducer.removeGlyph((Glyph) data);
                 break;
             }
@@ -812,12 +1896,85 @@ public final class TextRenderer {
 
             switch (type) {
             case AUTOMATIC_FLUSH:
-                glyphCache.update(gl);
+                // A group updates the layers of all its renderers at once
+                if (group == null) {
+                    glyphCache.update(gl);
+                }
                 break;
             }
         }
     }
 
+    /**
+     * Map dropping the least recently used paragraph when it grows too big.
+     */
+    private static final class ParagraphCache extends LinkedHashMap<TextKey, ParagraphLayout> {
+
+        /**
+         * Version of serialized form.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Largest number of entries kept.
+         */
+        /*@Nonnegative*/
+        private final int capacity;
+
+        /**
+         * Constructs a {@link ParagraphCache}.
+         *
+         * @param capacity Largest number of entries kept
+         */
+        ParagraphCache(/*@Nonnegative*/ final int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<TextKey, ParagraphLayout> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    /**
+     * Key comparing text by identity.
+     */
+    private static final class TextKey {
+
+        /**
+         * Text identified, null only while unused.
+         */
+        /*@CheckForNull*/
+        String text;
+
+        /**
+         * Constructs an unused {@link TextKey}.
+         */
+        TextKey() {
+            // empty
+        }
+
+        /**
+         * Constructs a {@link TextKey}.
+         *
+         * @param text Text identified
+         */
+        TextKey(/*@Nonnull*/ final String text) {
+            this.text = text;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return (obj instanceof TextKey) && (((TextKey) obj).text == text);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(text);
+        }
+    }
+
     /**
      * <em>Proxy</em> for a {@link GlyphRenderer}.
      */
@@ -831,7 +1988,7 @@ public final class TextRenderer {
         private GlyphRenderer delegate;
 
         /**
-         * Listeners added before a delegate is chosen.
+         * Listeners to add to each delegate.
          */
         /*@Nonnull*/
         private final List<EventListener> listeners = new ArrayList<EventListener>();
@@ -877,6 +2034,46 @@ public final class TextRenderer {
          */
         private boolean useVertexArrays = true;
 
+        /**
+         * Gamma to correct coverage with, or null if never changed.
+         */
+        /*@CheckForNull*/
+        private Float gamma;
+
+        /**
+         * Metrics to update.
+         */
+        /*@CheckForNull*/
+        private TextRendererMetrics metrics;
+
+        /**
+         * Whether glyphs outside the view are left out.
+         */
+        private boolean culling = false;
+
+        /**
+         * Clip rectangle as left, bottom, right and top, or null if not clipping.
+         */
+        /*@CheckForNull*/
+        private float[] clip;
+
+        /**
+         * Layer of the array texture glyphs are read from.
+         */
+        /*@Nonnegative*/
+        private int layer = 0;
+
+        /**
+         * True if the delegate belongs to a group and draws for other renderers too.
+         */
+        private boolean shared = false;
+
+        /**
+         * Key of the OpenGL context to make the delegate with, or null to use the OpenGL object.
+         */
+        /*@CheckForNull*/
+        private Object context;
+
         GlyphRendererProxy() {
             // empty
         }
@@ -886,9 +2083,8 @@ public final class TextRenderer {
 
             Check.notNull(listener, "Listener cannot be null");
 
-            if (delegate == null) {
-                listeners.add(listener);
-            } else {
+            listeners.add(listener);
+            if (delegate != null) {
                 delegate.addListener(listener);
             }
         }
@@ -907,7 +2103,7 @@ public final class TextRenderer {
             if (delegate == null) {
 
                 // Create the glyph renderer
-                delegate = GlyphRenderers.get(gl, gl3);
+                delegate = GlyphRenderers.get(gl, gl3, (context != null) ? context : gl);
 
                 // Add the event listeners
                 for (EventListener listener : listeners) {
@@ -926,20 +2122,73 @@ public final class TextRenderer {
 
                 // Specify whether to use vertex arrays or not
                 delegate.setUseVertexArrays(useVertexArrays);
+
+                // Specify the gamma
+                if (gamma != null) {
+                    delegate.setGamma(gamma);
+                }
+
+                // Specify where to count
+                delegate.setMetrics(metrics);
+
+                // Specify whether to cull
+                delegate.setCulling(culling);
+
+                // Specify the clip rectangle
+                if (clip != null) {
+                    delegate.setClip(clip[0], clip[1], clip[2], clip[3]);
+                }
             }
             delegate.beginRendering(gl, ortho, width, height, disableDepthTest, gl3);
         }
 
+        @Override
+        public void clearClip() {
+            clip = null;
+            if (delegate != null) {
+                delegate.clearClip();
+            }
+        }
+
+        /**
+         * Forgets the delegate after the OpenGL context was recreated, without deleting its
+         * objects.  A new one is made on the next call to {@link #beginRendering}, with the same
+         * listeners, color, transform, gamma and vertex array setting.
+         */
+        void contextRecreated() {
+            if (!shared) {
+                delegate = null;
+            }
+        }
+
         @Override
         public void dispose(/*@Nonnull*/ final GL2GL3 gl) {
 
             Check.notNull(gl, "GL cannot be null");
 
-            if (delegate != null) {
+            if (delegate != null && !shared) {
                 delegate.dispose(gl);
             }
         }
 
+        @Override
+        public void drawBuffer(/*@Nonnull*/ final GL2GL3 gl,
+                               /*@Nonnull*/ final GlyphMetricBuffer glyphs,
+                               /*@Nonnull*/ final StaticText text,
+                               /*@CheckForSigned*/ final float x,
+                               /*@CheckForSigned*/ final float y,
+                               /*@CheckForSigned*/ final float z) {
+
+            Check.notNull(gl, "GL cannot be null");
+            Check.notNull(glyphs, "Glyph metric buffer cannot be null");
+            Check.notNull(text, "Text cannot be null");
+
+            if (delegate == null) {
+                throw new IllegalStateException("Must be in render cycle!");
+            }
+            delegate.drawBuffer(gl, glyphs, text, x, y, z);
+        }
+
         @Override
         public float drawGlyph(/*@Nonnull*/ final GL2GL3 gl,
                                /*@Nonnull*/ final Glyph glyph,
@@ -956,9 +2205,10 @@ public final class TextRenderer {
 
             if (delegate == null) {
                 throw new IllegalStateException("Must be in render cycle!");
-            } else {
-                return delegate.drawGlyph(gl, glyph, x, y, z, scale, verticalFlip, coords);
+            } else if (shared) {
+                delegate.setLayer(layer);
             }
+            return delegate.drawGlyph(gl, glyph, x, y, z, scale, verticalFlip, coords);
         }
 
         @Override
@@ -994,42 +2244,123 @@ public final class TextRenderer {
             }
         }
 
+        @Override
+        public boolean isVisible(/*@CheckForSigned*/ final float xl,
+                                 /*@CheckForSigned*/ final float yb,
+                                 /*@CheckForSigned*/ final float xr,
+                                 /*@CheckForSigned*/ final float yt,
+                                 /*@CheckForSigned*/ final float z) {
+            if (delegate == null) {
+                return true;
+            } else {
+                return delegate.isVisible(xl, yb, xr, yt, z);
+            }
+        }
+
+        @Override
+        public void setClip(/*@CheckForSigned*/ final float xl,
+                            /*@CheckForSigned*/ final float yb,
+                            /*@CheckForSigned*/ final float xr,
+                            /*@CheckForSigned*/ final float yt) {
+            clip = new float[] { xl, yb, xr, yt };
+            if (delegate != null) {
+                delegate.setClip(xl, yb, xr, yt);
+            }
+        }
+
         @Override
         public void setColor(final GL2GL3 gl,
                              /*@CheckForSigned*/ final float r,
                              /*@CheckForSigned*/ final float g,
                              /*@CheckForSigned*/ final float b,
                              /*@CheckForSigned*/ final float a) {
-            if (delegate == null) {
-                this.r = r;
-                this.g = g;
-                this.b = b;
-                this.a = a;
-            } else {
+            this.r = r;
+            this.g = g;
+            this.b = b;
+            this.a = a;
+            if (delegate != null) {
                 delegate.setColor(gl, r, g, b, a);
             }
         }
 
+        /**
+         * Changes the key of the OpenGL context the delegate is made with, if not made yet.
+         *
+         * @param context Key of the context in the {@link ProgramCache}, or null for the OpenGL
+         *        object
+         */
+        void setContext(/*@CheckForNull*/ final Object context) {
+            this.context = context;
+        }
+
+        @Override
+        public void setCulling(final boolean culling) {
+            this.culling = culling;
+            if (delegate != null) {
+                delegate.setCulling(culling);
+            }
+        }
+
+        @Override
+        public void setGamma(final float gamma) {
+            this.gamma = gamma;
+            if (delegate != null) {
+                delegate.setGamma(gamma);
+            }
+        }
+
+        @Override
+        public void setLayer(/*@Nonnegative*/ final int layer) {
+            this.layer = layer;
+            if (delegate != null) {
+                delegate.setLayer(layer);
+            }
+        }
+
+        @Override
+        public void setMetrics(/*@CheckForNull*/ final TextRendererMetrics metrics) {
+            this.metrics = metrics;
+            if (delegate != null && !shared) {
+                delegate.setMetrics(metrics);
+            }
+        }
+
         @Override
         public void setTransform(final GL2GL3 gl, /*@Nonnull*/ final float[] value, final boolean transpose) {
 
             Check.notNull(value, "Value cannot be null");
 
-            if (delegate == null) {
-                this.transform = Arrays.copyOf(value, value.length);
-                this.transposed = transpose;
-            } else {
+            this.transform = Arrays.copyOf(value, value.length);
+            this.transposed = transpose;
+            if (delegate != null) {
                 delegate.setTransform(gl, value, transpose);
             }
         }
 
         @Override
         public void setUseVertexArrays(final boolean useVertexArrays) {
-            if (delegate == null) {
-                this.useVertexArrays = useVertexArrays;
-            } else {
+            this.useVertexArrays = useVertexArrays;
+            if (delegate != null) {
                 delegate.setUseVertexArrays(useVertexArrays);
             }
         }
+
+        /**
+         * Draws with a renderer shared by a group instead of making one.
+         *
+         * <p>
+         * The listeners are added to the shared renderer, but the color, transform and other
+         * settings are not passed on, since they belong to the whole group from now on.  The
+         * shared renderer is not disposed of with this one.
+         *
+         * @param renderer Renderer of the group, assumed not null
+         */
+        void share(/*@Nonnull*/ final GlyphRenderer renderer) {
+            delegate = renderer;
+            shared = true;
+            for (EventListener listener : listeners) {
+                delegate.addListener(listener);
+            }
+        }
     }
 }
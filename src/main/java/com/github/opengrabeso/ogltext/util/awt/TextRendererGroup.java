@@ -0,0 +1,345 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt;
+
+import com.github.opengrabeso.jaagl.GL2GL3;
+import com.github.opengrabeso.ogltext.util.awt.text.Check;
+import com.github.opengrabeso.ogltext.util.awt.text.GlyphRenderer;
+import com.github.opengrabeso.ogltext.util.awt.text.GlyphRendererGL3;
+import com.github.opengrabeso.ogltext.util.awt.text.GlyphTextureArray;
+import com.github.opengrabeso.ogltext.util.awt.text.TextRendererMetrics;
+import com.github.opengrabeso.ogltext.util.awt.text.TextRendererMetrics.Counter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Text renderers of several fonts drawing in the same batches.
+ *
+ * <p>
+ * Each {@link TextRenderer} normally binds its own texture, so a screen mixing regular, bold and
+ * monospaced text needs a render cycle, and at least one draw call, per font.  Renderers added
+ * to a group instead upload their glyphs to their own layer of one array texture, and queue them
+ * with one glyph renderer that reads the layer of each glyph from its vertices.  Text of all the
+ * fonts can then be drawn in any order between one pair of {@link #beginRendering
+ * beginRendering} and {@link #endRendering endRendering} calls, and ends up in one draw call as
+ * long as it fits in the buffer.
+ *
+ * <pre>
+ * group = new TextRendererGroup(gl);
+ * group.add(regular);
+ * group.add(bold);
+ * ...
+ * group.beginRendering(drawable.getWidth(), drawable.getHeight());
+ * regular.draw("Name:", x, y);
+ * bold.draw(name, x + 60, y);
+ * group.endRendering();
+ * </pre>
+ *
+ * <p>
+ * Each renderer keeps its own glyph producer, metrics and texture layout, so measuring text,
+ * kerning and paragraph layout work as before.  The color, transform, clip rectangle and culling
+ * belong to the whole group though, whichever renderer they are changed through.  Renderers of a
+ * group must use OpenGL 3 and may not start render cycles of their own.  A group holds at most
+ * {@link GlyphTextureArray#MAX_LAYERS} renderers.
+ */
+/*@NotThreadSafe*/
+public final class TextRendererGroup {
+
+    /**
+     * OpenGL context shared by all renderers.
+     */
+    /*@Nonnull*/
+    private final GL2GL3 gl;
+
+    /**
+     * Renderers of the group, in the order of their layers.
+     */
+    /*@Nonnull*/
+    private final List<TextRenderer> renderers = new ArrayList<TextRenderer>();
+
+    /**
+     * Counters of what the shared glyph renderer draws.
+     */
+    /*@Nonnull*/
+    private final TextRendererMetrics metrics = new TextRendererMetrics();
+
+    /**
+     * Texture with a layer for each renderer, made on the first render cycle.
+     */
+    /*@CheckForNull*/
+    private GlyphTextureArray texture = null;
+
+    /**
+     * Glyph renderer drawing for all renderers, made on the first render cycle.
+     */
+    /*@CheckForNull*/
+    private GlyphRendererGL3 glyphRenderer = null;
+
+    /**
+     * Key of the OpenGL context in the program cache, or null to use the OpenGL object.
+     */
+    /*@CheckForNull*/
+    private Object contextKey = null;
+
+    /**
+     * Constructs an empty {@link TextRendererGroup}.
+     *
+     * @param gl OpenGL 3 context the renderers draw with
+     * @throws NullPointerException if context is null
+     * @throws IllegalArgumentException if context is not OpenGL 3
+     */
+    public TextRendererGroup(/*@Nonnull*/ final GL2GL3 gl) {
+
+        Check.notNull(gl, "GL cannot be null");
+        Check.argument(gl.isGL3(), "Context must be OpenGL 3");
+
+        this.gl = gl;
+    }
+
+    /**
+     * Adds a renderer to the group, giving it the next layer of the texture.
+     *
+     * <p>
+     * Its glyphs are uploaded to the layer again from the start of the next render cycle.
+     *
+     * @param renderer Renderer using the same OpenGL 3 context as the group
+     * @throws NullPointerException if renderer is null
+     * @throws IllegalArgumentException if renderer is already in a group or not using OpenGL 3
+     * @throws IllegalStateException if the group is full
+     */
+    public void add(/*@Nonnull*/ final TextRenderer renderer) {
+
+        Check.notNull(renderer, "Renderer cannot be null");
+        Check.state(renderers.size() < GlyphTextureArray.MAX_LAYERS, "Group is full");
+
+        final int layer = renderers.size();
+        renderer.join(this, layer);
+        renderers.add(renderer);
+        if (glyphRenderer != null) {
+            renderer.share(texture, glyphRenderer, layer);
+        }
+    }
+
+    /**
+     * Starts a 3D render cycle for all renderers.
+     *
+     * <p>
+     * Assumes the end user is responsible for setting up the modelview and projection matrices,
+     * and will render text using the {@code draw3D} methods.
+     */
+    public void begin3DRendering() {
+        beginRendering(false, 0, 0, false);
+    }
+
+    /**
+     * Starts an orthographic render cycle for all renderers, disabling the depth test.
+     *
+     * @param width Width of the current on-screen OpenGL drawable
+     * @param height Height of the current on-screen OpenGL drawable
+     * @throws IllegalArgumentException if width or height is negative
+     * @see TextRenderer#beginRendering(int, int)
+     */
+    public void beginRendering(/*@Nonnegative*/ final int width,
+                               /*@Nonnegative*/ final int height) {
+        beginRendering(true, width, height, true);
+    }
+
+    /**
+     * Starts an orthographic render cycle for all renderers.
+     *
+     * @param width Width of the current on-screen OpenGL drawable
+     * @param height Height of the current on-screen OpenGL drawable
+     * @param disableDepthTest True to disable the depth test
+     * @throws IllegalArgumentException if width or height is negative
+     * @see TextRenderer#beginRendering(int, int, boolean)
+     */
+    public void beginRendering(/*@Nonnegative*/ final int width,
+                               /*@Nonnegative*/ final int height,
+                               final boolean disableDepthTest) {
+        beginRendering(true, width, height, disableDepthTest);
+    }
+
+    /**
+     * Starts a render cycle for all renderers.
+     *
+     * @param ortho True to use orthographic projection
+     * @param width Width of the current OpenGL viewport
+     * @param height Height of the current OpenGL viewport
+     * @param disableDepthTest True to ignore depth values
+     */
+    private void beginRendering(final boolean ortho,
+                                /*@Nonnegative*/ final int width,
+                                /*@Nonnegative*/ final int height,
+                                final boolean disableDepthTest) {
+
+        Check.argument(width >= 0, "Width cannot be negative");
+        Check.argument(height >= 0, "Height cannot be negative");
+
+        metrics.beginFrame();
+
+        // Make the shared texture and renderer the first time
+        if (glyphRenderer == null) {
+            texture = new GlyphTextureArray(gl, true);
+            glyphRenderer = new GlyphRendererGL3(
+                    gl, true, (contextKey != null) ? contextKey : gl);
+            glyphRenderer.setMetrics(metrics);
+            glyphRenderer.addListener(new GlyphRenderer.EventListener() {
+                @Override
+                public void onGlyphRendererEvent(final GlyphRenderer.EventType type) {
+                    if (type == GlyphRenderer.EventType.AUTOMATIC_FLUSH) {
+                        update();
+                    }
+                }
+            });
+            for (int i = 0; i < renderers.size(); ++i) {
+                renderers.get(i).share(texture, glyphRenderer, i);
+            }
+        }
+
+        // Delegate to components
+        if (!renderers.isEmpty()) {
+            texture.reserve(renderers.size());
+        }
+        for (final TextRenderer renderer : renderers) {
+            renderer.beginGroupRendering();
+        }
+        glyphRenderer.beginRendering(gl, ortho, width, height, disableDepthTest, true);
+    }
+
+    /**
+     * Destroys the shared texture and glyph renderer.
+     *
+     * <p>
+     * The renderers of the group should be disposed of as well.
+     */
+    public void dispose() {
+        if (glyphRenderer != null) {
+            glyphRenderer.dispose(gl);
+            texture.dispose(gl);
+            glyphRenderer = null;
+            texture = null;
+        }
+    }
+
+    /**
+     * Finishes a 3D render cycle for all renderers.
+     */
+    public void end3DRendering() {
+        endRendering();
+    }
+
+    /**
+     * Finishes a render cycle for all renderers, drawing the text still queued.
+     *
+     * @throws IllegalStateException if not in a render cycle
+     */
+    public void endRendering() {
+
+        Check.state(glyphRenderer != null, "Must be in render cycle");
+
+        // Tear down components, letting the caches do housekeeping only once the text was drawn
+        update();
+        glyphRenderer.endRendering(gl);
+        for (final TextRenderer renderer : renderers) {
+            renderer.endGroupRendering();
+        }
+
+        metrics.endFrame();
+    }
+
+    /**
+     * Forces all text queued by any renderer of the group to be drawn.
+     *
+     * @throws IllegalStateException if not in a render cycle
+     */
+    public void flush() {
+
+        Check.state(glyphRenderer != null, "Must be in render cycle");
+
+        update();
+        final long drawCalls = metrics.get(Counter.DRAW_CALLS);
+        glyphRenderer.flush(gl);
+        if (metrics.get(Counter.DRAW_CALLS) > drawCalls) {
+            metrics.increment(Counter.FLUSHES_EXPLICIT);
+        }
+    }
+
+    /**
+     * Returns the counters of draw calls, quads and flushes of the whole group.
+     *
+     * <p>
+     * Glyph cache counters, such as hits, misses and uploads, are kept by each renderer.
+     *
+     * @return Metrics of the shared glyph renderer, not null
+     */
+    /*@Nonnull*/
+    public TextRendererMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the texture holding the glyphs of all renderers.
+     *
+     * @return Shared texture, or null before the first render cycle
+     */
+    /*@CheckForNull*/
+    public GlyphTextureArray getTexture() {
+        return texture;
+    }
+
+    /**
+     * Changes the key the shared glyph renderer links its program under, like
+     * {@link TextRenderer#setContextKey}.
+     *
+     * <p>
+     * Only affects the glyph renderer made on the first render cycle.
+     *
+     * @param key Key of the context or its share group, or null to use the OpenGL object
+     */
+    public void setContextKey(/*@CheckForNull*/ final Object key) {
+        this.contextKey = key;
+    }
+
+    /**
+     * Uploads glyphs added to any renderer since the last upload to the texture.
+     *
+     * <p>
+     * The texture is sized for the backing stores of all renderers first, so it grows at most
+     * once, before any layer is uploaded.
+     */
+    void update() {
+        for (final TextRenderer renderer : renderers) {
+            renderer.requireTexture();
+        }
+        for (final TextRenderer renderer : renderers) {
+            renderer.updateTexture();
+        }
+    }
+}
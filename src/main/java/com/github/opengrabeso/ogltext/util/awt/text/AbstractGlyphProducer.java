@@ -52,6 +52,12 @@ abstract class AbstractGlyphProducer implements GlyphProducer {
     /*@Nonnull*/
     private final char[] characters = new char[1];
 
+    /**
+     * Shared measurements of characters.
+     */
+    /*@Nonnull*/
+    private final GlyphMeasurements measurements;
+
     /**
      * Font glyphs made from.
      */
@@ -91,22 +97,17 @@ abstract class AbstractGlyphProducer implements GlyphProducer {
     /**
      * Constructs an abstract glyph producer.
      *
-     * @param font Font glyphs will be made from
-     * @param rd Object for controlling rendering
-     * @param frc Details on how to render fonts
-     * @throws NullPointerException if font, render delegate, or font render context is null
+     * @param measurements Shared measurements of the font glyphs will be made from
+     * @throws NullPointerException if measurements is null
      */
-    AbstractGlyphProducer(/*@Nonnull*/ final Font font,
-                          /*@Nonnull*/ final RenderDelegate rd,
-                          /*@Nonnull*/ final FontRenderContext frc) {
+    AbstractGlyphProducer(/*@Nonnull*/ final GlyphMeasurements measurements) {
 
-        Check.notNull(font, "Font cannot be null");
-        Check.notNull(rd, "Render delegate cannot be null");
-        Check.notNull(frc, "Font render context cannot be null");
+        Check.notNull(measurements, "Measurements cannot be null");
 
-        this.font = font;
-        this.renderDelegate = rd;
-        this.fontRenderContext = frc;
+        this.measurements = measurements;
+        this.font = measurements.getFont();
+        this.renderDelegate = measurements.getRenderDelegate();
+        this.fontRenderContext = measurements.getFontRenderContext();
     }
 
     /**
@@ -132,7 +133,7 @@ abstract class AbstractGlyphProducer implements GlyphProducer {
     private static Rectangle2D addMarginTo(/*@Nonnull*/ final Rectangle2D src,
                                            /*@Nonnull*/ final Font font) {
 
-        final int boundary = (int) Math.max(1, 0.015 * font.getSize());
+        final int boundary = getBoundary(font);
         final int x = (int) Math.floor(src.getMinX() - boundary);
         final int y = (int) Math.floor(src.getMinY() - boundary);
         final int w = (int) Math.ceil(src.getWidth() + 2 * boundary);
@@ -142,31 +143,15 @@ abstract class AbstractGlyphProducer implements GlyphProducer {
     }
 
     /**
-     * Adds inner space to a rectangle.
-     *
-     * <p>
-     * This method was formally called "preNormalize."
-     *
-     * <p>
-     * Need to round to integer coordinates.
-     *
-     * <p>
-     * Also give ourselves a little slop around the reported bounds of glyphs because it looks like
-     * neither the visual nor the pixel bounds works perfectly well.
+     * Returns the boundary kept around each glyph on the backing store, heuristically 1.5% of the
+     * font's height but at least one pixel.
      *
-     * @param src Original rectangle
-     * @return Rectangle with padding added, not null
-     * @throws NullPointerException if rectangle is null
+     * @param font Font being used to create glyphs, assumed not null
+     * @return Width of the boundary on each side in pixels
      */
-    /*@Nonnull*/
-    private static Rectangle2D addPaddingTo(/*@Nonnull*/ final Rectangle2D src) {
-
-        final int minX = (int) Math.floor(src.getMinX()) - 1;
-        final int minY = (int) Math.floor(src.getMinY()) - 1;
-        final int maxX = (int) Math.ceil(src.getMaxX()) + 1;
-        final int maxY = (int) Math.ceil(src.getMaxY()) + 1;
-
-        return new Rectangle2D.Float(minX, minY, maxX - minX, maxY - minY);
+    /*@Nonnegative*/
+    static int getBoundary(/*@Nonnull*/ final Font font) {
+        return (int) Math.max(1, 0.015 * font.getSize());
     }
 
     /**
@@ -258,8 +243,8 @@ abstract class AbstractGlyphProducer implements GlyphProducer {
             return glyph.bounds;
         }
 
-        // Otherwise just recompute it
-        return addPaddingTo(renderDelegate.getBounds(str, font, fontRenderContext));
+        // Otherwise combine or look up the characters
+        return measurements.getBounds(str);
     }
 
     /**
@@ -368,16 +353,16 @@ abstract class AbstractGlyphProducer implements GlyphProducer {
 
         Check.notNull(glyph, "Glyph cannot be null");
 
-        // Compute visual boundary
+        // Compute visual boundary, shared with other users of the measurements
         final Rectangle2D visualBox;
         if (glyph.str != null) {
             visualBox = renderDelegate.getBounds(glyph.str, font, fontRenderContext);
         } else {
-            visualBox = renderDelegate.getBounds(glyph.glyphVector, fontRenderContext);
+            visualBox = measurements.get(glyph.character).visualBounds;
         }
 
         // Compute rectangles
-        final Rectangle2D paddingBox = addPaddingTo(visualBox);
+        final Rectangle2D paddingBox = GlyphMeasurements.addPaddingTo(visualBox);
         final Rectangle2D marginBox = addMarginTo(paddingBox, font);
 
         // Set fields
@@ -78,6 +78,46 @@ abstract class AbstractGlyphRenderer implements GlyphRenderer, QuadPipeline.Even
      */
     private boolean orthoMode = false;
 
+    /**
+     * Width of the viewport in orthographic mode.
+     */
+    /*@Nonnegative*/
+    private int viewportWidth = 0;
+
+    /**
+     * Height of the viewport in orthographic mode.
+     */
+    /*@Nonnegative*/
+    private int viewportHeight = 0;
+
+    /**
+     * True if glyphs outside the view are left out.
+     */
+    private boolean culling = false;
+
+    /**
+     * True if glyphs are cut to the clip rectangle.
+     */
+    private boolean clipping = false;
+
+    // Clip rectangle
+    private float clipLeft;
+    private float clipBottom;
+    private float clipRight;
+    private float clipTop;
+
+    /**
+     * Layer of the array texture glyphs are read from.
+     */
+    /*@Nonnegative*/
+    private int layer = 0;
+
+    /**
+     * Positions and texture coordinates of one axis of a quad being clipped.
+     */
+    /*@Nonnull*/
+    private final float[] clipped = new float[4];
+
     /**
      * Red component of color.
      */
@@ -120,6 +160,17 @@ abstract class AbstractGlyphRenderer implements GlyphRenderer, QuadPipeline.Even
      */
     private boolean transformDirty = false;
 
+    /**
+     * True if a transformation matrix for 3D mode was set.
+     */
+    private boolean transformSet = false;
+
+    /**
+     * Metrics to update, or null to not count anything.
+     */
+    /*@CheckForNull*/
+    private TextRendererMetrics metrics = null;
+
     /**
      * Constructs an {@link AbstractGlyphRenderer}.
      */
@@ -152,6 +203,8 @@ abstract class AbstractGlyphRenderer implements GlyphRenderer, QuadPipeline.Even
         // Store text renderer state
         inRenderCycle = true;
         orthoMode = ortho;
+        viewportWidth = width;
+        viewportHeight = height;
 
         // Make sure the pipeline is made
         if (pipelineDirty) {
@@ -174,6 +227,76 @@ abstract class AbstractGlyphRenderer implements GlyphRenderer, QuadPipeline.Even
         }
     }
 
+    @Override
+    public final void clearClip() {
+        clipping = false;
+    }
+
+    /**
+     * Cuts one axis of a quad to a range.
+     *
+     * @param p0 Position of one edge
+     * @param p1 Position of the other edge
+     * @param t0 Texture coordinate at the first edge
+     * @param t1 Texture coordinate at the other edge
+     * @param min Lowest position kept
+     * @param max Highest position kept
+     * @param out Array to store cut positions and texture coordinates in, in the same order
+     * @return False if nothing is left
+     */
+    static boolean clip(final float p0,
+                        final float p1,
+                        final float t0,
+                        final float t1,
+                        final float min,
+                        final float max,
+                        /*@Nonnull*/ final float[] out) {
+
+        final float lo = Math.min(p0, p1);
+        final float hi = Math.max(p0, p1);
+        if (hi <= min || lo >= max) {
+            return false;
+        }
+
+        out[0] = p0;
+        out[1] = p1;
+        out[2] = t0;
+        out[3] = t1;
+        if (lo < min || hi > max) {
+            final float ratio = (t1 - t0) / (p1 - p0);
+            out[0] = Math.min(Math.max(p0, min), max);
+            out[1] = Math.min(Math.max(p1, min), max);
+            out[2] = t0 + (out[0] - p0) * ratio;
+            out[3] = t0 + (out[1] - p0) * ratio;
+        }
+        return true;
+    }
+
+    /**
+     * Cuts the quad to the clip rectangle.
+     *
+     * @return False if nothing is left of the quad
+     */
+    private boolean clipQuad() {
+
+        if (!clip(quad.xl, quad.xr, quad.sl, quad.sr, clipLeft, clipRight, clipped)) {
+            return false;
+        }
+        quad.xl = clipped[0];
+        quad.xr = clipped[1];
+        quad.sl = clipped[2];
+        quad.sr = clipped[3];
+
+        if (!clip(quad.yb, quad.yt, quad.tb, quad.tt, clipBottom, clipTop, clipped)) {
+            return false;
+        }
+        quad.yb = clipped[0];
+        quad.yt = clipped[1];
+        quad.tb = clipped[2];
+        quad.tt = clipped[3];
+        return true;
+    }
+
     /**
      * Requests that the pipeline be replaced on the next call to {@link #beginRendering}.
      */
@@ -221,6 +344,23 @@ abstract class AbstractGlyphRenderer implements GlyphRenderer, QuadPipeline.Even
      */
     protected abstract void doDispose(/*@Nonnull*/ final GL2GL3 gl);
 
+    /**
+     * Actually draws a {@link StaticText} after queued quads were drawn.
+     *
+     * @param gl Current OpenGL context
+     * @param glyphs Table of glyphs the text refers to
+     * @param text Text to draw, not empty
+     * @param x Position of the first baseline on X axis
+     * @param y Position of the first baseline on Y axis
+     * @param z Position on Z axis
+     */
+    protected abstract void doDrawBuffer(/*@Nonnull*/ GL2GL3 gl,
+                                         /*@Nonnull*/ GlyphMetricBuffer glyphs,
+                                         /*@Nonnull*/ StaticText text,
+                                         /*@CheckForSigned*/ float x,
+                                         /*@CheckForSigned*/ float y,
+                                         /*@CheckForSigned*/ float z);
+
     /**
      * Actually finishes a render cycle.
      *
@@ -265,6 +405,40 @@ abstract class AbstractGlyphRenderer implements GlyphRenderer, QuadPipeline.Even
                                                 /*@Nonnegative*/ int width,
                                                 /*@Nonnegative*/ int height);
 
+    @Override
+    public final void drawBuffer(/*@Nonnull*/ final GL2GL3 gl,
+                                 /*@Nonnull*/ final GlyphMetricBuffer glyphs,
+                                 /*@Nonnull*/ final StaticText text,
+                                 /*@CheckForSigned*/ final float x,
+                                 /*@CheckForSigned*/ final float y,
+                                 /*@CheckForSigned*/ final float z) {
+
+        Check.notNull(gl, "GL cannot be null");
+        Check.notNull(glyphs, "Glyph metric buffer cannot be null");
+        Check.notNull(text, "Text cannot be null");
+        Check.argument(text.glyphs == glyphs, "Text refers to another glyph metric buffer");
+        Check.state(inRenderCycle, "Must be in render cycle");
+
+        if (text.size() == 0) {
+            return;
+        }
+
+        // Render any outstanding quads first
+        if (!pipeline.isEmpty()) {
+            if (metrics != null) {
+                metrics.increment(TextRendererMetrics.Counter.FLUSHES_STATE);
+            }
+            fireEvent(EventType.AUTOMATIC_FLUSH);
+            flush(gl);
+        }
+
+        if (metrics != null) {
+            metrics.add(TextRendererMetrics.Counter.QUADS, text.size());
+            metrics.increment(TextRendererMetrics.Counter.DRAW_CALLS);
+        }
+        doDrawBuffer(gl, glyphs, text, x, y, z);
+    }
+
     @Override
     public final float drawGlyph(/*@Nonnull*/ final GL2GL3 gl,
                                  /*@Nonnull*/ final Glyph glyph,
@@ -290,8 +464,25 @@ abstract class AbstractGlyphRenderer implements GlyphRenderer, QuadPipeline.Even
         quad.sr = coords.right();
         quad.tb = coords.bottom();
         quad.tt = coords.top();
+        quad.layer = layer;
+
+        // Leave out quads that cannot be seen
+        if (culling && !isVisible(quad.xl, quad.yb, quad.xr, quad.yt, quad.z)) {
+            if (metrics != null) {
+                metrics.increment(TextRendererMetrics.Counter.GLYPHS_CULLED);
+            }
+            return glyph.advance;
+        }
+
+        // Cut to the clip rectangle
+        if (clipping && !clipQuad()) {
+            return glyph.advance;
+        }
 
         // Draw quad
+        if (metrics != null) {
+            metrics.increment(TextRendererMetrics.Counter.QUADS);
+        }
         pipeline.addQuad(gl, quad);
 
         // Return distance to next character
@@ -307,12 +498,25 @@ abstract class AbstractGlyphRenderer implements GlyphRenderer, QuadPipeline.Even
         inRenderCycle = false;
 
         // Pass to quad renderer
+        countFlush(TextRendererMetrics.Counter.FLUSHES_END);
         pipeline.endRendering(gl);
 
         // Perform hook
         doEndRendering(gl);
     }
 
+    /**
+     * Counts a batch of quads the pipeline is about to draw by itself, if there are any.
+     *
+     * @param reason Why the quads are drawn, assumed not null
+     */
+    private void countFlush(/*@Nonnull*/ final TextRendererMetrics.Counter reason) {
+        if ((metrics != null) && (pipeline != null) && !pipeline.isEmpty()) {
+            metrics.increment(reason);
+            metrics.increment(TextRendererMetrics.Counter.DRAW_CALLS);
+        }
+    }
+
     /**
      * Fires an event to all observers.
      *
@@ -335,6 +539,9 @@ abstract class AbstractGlyphRenderer implements GlyphRenderer, QuadPipeline.Even
         Check.notNull(gl, "GL cannot be null");
         Check.state(inRenderCycle, "Must be in render cycle");
 
+        if (metrics != null && !pipeline.isEmpty()) {
+            metrics.increment(TextRendererMetrics.Counter.DRAW_CALLS);
+        }
         pipeline.flush(gl);
         gl.glFlush();
     }
@@ -362,16 +569,56 @@ abstract class AbstractGlyphRenderer implements GlyphRenderer, QuadPipeline.Even
         return orthoMode;
     }
 
+    @Override
+    public final boolean isVisible(/*@CheckForSigned*/ final float xl,
+                                   /*@CheckForSigned*/ final float yb,
+                                   /*@CheckForSigned*/ final float xr,
+                                   /*@CheckForSigned*/ final float yt,
+                                   /*@CheckForSigned*/ final float z) {
+
+        if (clipping && ((Math.max(xl, xr) <= clipLeft) || (Math.min(xl, xr) >= clipRight)
+                || (Math.max(yb, yt) <= clipBottom) || (Math.min(yb, yt) >= clipTop))) {
+            return false;
+        }
+
+        if (orthoMode) {
+            return (Math.max(xl, xr) >= 0) && (Math.min(xl, xr) <= viewportWidth)
+                    && (Math.max(yb, yt) >= 0) && (Math.min(yb, yt) <= viewportHeight);
+        } else if (!transformSet) {
+            return true;
+        }
+
+        // Outside if all corners are outside the same plane
+        final int outside = outcode(xl, yb, z)
+                & outcode(xr, yb, z)
+                & outcode(xr, yt, z)
+                & outcode(xl, yt, z);
+        return outside == 0;
+    }
+
     @Override
     public final void onQuadPipelineEvent(/*@Nonnull*/ final QuadPipeline.EventType type) {
 
         Check.notNull(type, "Event type cannot be null");
 
         if (type == QuadPipeline.EventType.AUTOMATIC_FLUSH) {
+            countFlush(TextRendererMetrics.Counter.FLUSHES_FULL);
             fireEvent(EventType.AUTOMATIC_FLUSH);
         }
     }
 
+    @Override
+    public final void setClip(/*@CheckForSigned*/ final float xl,
+                              /*@CheckForSigned*/ final float yb,
+                              /*@CheckForSigned*/ final float xr,
+                              /*@CheckForSigned*/ final float yt) {
+        clipping = true;
+        clipLeft = xl;
+        clipBottom = yb;
+        clipRight = xr;
+        clipTop = yt;
+    }
+
     @Override
     public final void setColor(final GL2GL3 gl, final float r, final float g, final float b, final float a) {
 
@@ -382,6 +629,9 @@ abstract class AbstractGlyphRenderer implements GlyphRenderer, QuadPipeline.Even
 
         // Render any outstanding quads first
         if (pipeline != null && !pipeline.isEmpty()) {
+            if (metrics != null) {
+                metrics.increment(TextRendererMetrics.Counter.FLUSHES_STATE);
+            }
             fireEvent(EventType.AUTOMATIC_FLUSH);
             flush(gl);
         }
@@ -400,6 +650,72 @@ abstract class AbstractGlyphRenderer implements GlyphRenderer, QuadPipeline.Even
         }
     }
 
+    /**
+     * Determines which planes of the view frustum a point is outside of.
+     *
+     * @param x Position on X axis
+     * @param y Position on Y axis
+     * @param z Position on Z axis
+     * @return Bit set of the left, right, bottom, top, near and far planes the point is outside of
+     */
+    private int outcode(final float x, final float y, final float z) {
+
+        // Transform to clip coordinates
+        final float[] m = transform;
+        final float cx;
+        final float cy;
+        final float cz;
+        final float cw;
+        if (transposed) {
+            cx = m[0] * x + m[1] * y + m[2] * z + m[3];
+            cy = m[4] * x + m[5] * y + m[6] * z + m[7];
+            cz = m[8] * x + m[9] * y + m[10] * z + m[11];
+            cw = m[12] * x + m[13] * y + m[14] * z + m[15];
+        } else {
+            cx = m[0] * x + m[4] * y + m[8] * z + m[12];
+            cy = m[1] * x + m[5] * y + m[9] * z + m[13];
+            cz = m[2] * x + m[6] * y + m[10] * z + m[14];
+            cw = m[3] * x + m[7] * y + m[11] * z + m[15];
+        }
+
+        // Compare to the planes
+        int code = 0;
+        if (cx < -cw) {
+            code |= 1;
+        }
+        if (cx > cw) {
+            code |= 2;
+        }
+        if (cy < -cw) {
+            code |= 4;
+        }
+        if (cy > cw) {
+            code |= 8;
+        }
+        if (cz < -cw) {
+            code |= 16;
+        }
+        if (cz > cw) {
+            code |= 32;
+        }
+        return code;
+    }
+
+    @Override
+    public final void setCulling(final boolean culling) {
+        this.culling = culling;
+    }
+
+    @Override
+    public final void setLayer(/*@Nonnegative*/ final int layer) {
+        this.layer = layer;
+    }
+
+    @Override
+    public final void setMetrics(/*@CheckForNull*/ final TextRendererMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     /**
      * Changes the quad pipeline.
      *
@@ -436,6 +752,9 @@ abstract class AbstractGlyphRenderer implements GlyphRenderer, QuadPipeline.Even
 
         // Render any outstanding quads first
         if (pipeline != null && !pipeline.isEmpty()) {
+            if (metrics != null) {
+                metrics.increment(TextRendererMetrics.Counter.FLUSHES_STATE);
+            }
             fireEvent(EventType.AUTOMATIC_FLUSH);
             flush(gl);
         }
@@ -443,6 +762,7 @@ abstract class AbstractGlyphRenderer implements GlyphRenderer, QuadPipeline.Even
         // Store the transform
         System.arraycopy(value, 0, this.transform, 0, value.length);
         this.transposed = transpose;
+        this.transformSet = true;
 
         // Change the transform
         if (inRenderCycle) {
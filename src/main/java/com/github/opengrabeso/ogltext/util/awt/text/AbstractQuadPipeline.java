@@ -70,6 +70,12 @@ abstract class AbstractQuadPipeline implements QuadPipeline {
     /*@Nonnegative*/
     static final int FLOATS_PER_COORD = 2;
 
+    /**
+     * Number of components in a texture coordinate attribute with a layer.
+     */
+    /*@Nonnegative*/
+    static final int FLOATS_PER_LAYERED_COORD = 3;
+
     /**
      * Total components in vertex.
      */
@@ -112,6 +118,18 @@ abstract class AbstractQuadPipeline implements QuadPipeline {
     /*@Nonnegative*/
     static final int STRIDE = BYTES_PER_POINT + BYTES_PER_COORD;
 
+    /**
+     * Number of components in each texture coordinate of this pipeline.
+     */
+    /*@Nonnegative*/
+    final int COORD_SIZE;
+
+    /**
+     * Size of a vertex of this pipeline in bytes.
+     */
+    /*@Nonnegative*/
+    final int VERT_SIZE;
+
     /**
      * Maximum buffer size in floats.
      */
@@ -187,18 +205,37 @@ abstract class AbstractQuadPipeline implements QuadPipeline {
      */
     AbstractQuadPipeline(/*@Nonnegative*/ final int vertsPerPrim,
                          /*@Nonnegative*/ final int primsPerQuad) {
+        this(vertsPerPrim, primsPerQuad, FLOATS_PER_COORD);
+    }
+
+    /**
+     * Constructs an abstract quad pipeline with a size of texture coordinates.
+     *
+     * @param vertsPerPrim Number of vertices per primitive
+     * @param primsPerQuad Number of primitives per quad
+     * @param coordSize Number of components in each texture coordinate, two or three
+     * @throws IllegalArgumentException if vertices or primitives is less than one, or if the
+     * size of texture coordinates is not two or three
+     */
+    AbstractQuadPipeline(/*@Nonnegative*/ final int vertsPerPrim,
+                         /*@Nonnegative*/ final int primsPerQuad,
+                         /*@Nonnegative*/ final int coordSize) {
 
         Check.argument(vertsPerPrim > 0, "Number of vertices is less than one");
         Check.argument(primsPerQuad > 0, "Number of primitives is less than one");
+        Check.argument(coordSize == FLOATS_PER_COORD || coordSize == FLOATS_PER_LAYERED_COORD,
+                       "Texture coordinates must have two or three components");
 
+        COORD_SIZE = coordSize;
+        VERT_SIZE = BYTES_PER_POINT + coordSize * SIZEOF_FLOAT;
         VERTS_PER_PRIM = vertsPerPrim;
         PRIMS_PER_QUAD = primsPerQuad;
         PRIMS_PER_BUFFER = primsPerQuad * QUADS_PER_BUFFER;
         VERTS_PER_QUAD = vertsPerPrim * primsPerQuad;
         VERTS_PER_BUFFER = PRIMS_PER_BUFFER * VERTS_PER_PRIM;
-        FLOATS_PER_BUFFER = FLOATS_PER_VERT * VERTS_PER_BUFFER;
-        BYTES_PER_BUFFER = BYTES_PER_VERT * VERTS_PER_BUFFER;
-        BYTES_PER_QUAD = BYTES_PER_VERT * VERTS_PER_QUAD;
+        FLOATS_PER_BUFFER = (FLOATS_PER_POINT + coordSize) * VERTS_PER_BUFFER;
+        BYTES_PER_BUFFER = VERT_SIZE * VERTS_PER_BUFFER;
+        BYTES_PER_QUAD = VERT_SIZE * VERTS_PER_QUAD;
 
         this.data = Buffers.newDirectFloatBuffer(FLOATS_PER_BUFFER);
     }
@@ -213,6 +250,17 @@ abstract class AbstractQuadPipeline implements QuadPipeline {
         data.put(s).put(t);
     }
 
+    /**
+     * Adds a texture coordinate with a layer to the pipeline.
+     *
+     * @param s Texture coordinate for X axis
+     * @param t Texture coordinate for Y axis
+     * @param layer Layer of the array texture
+     */
+    protected final void addCoord(final float s, final float t, final float layer) {
+        data.put(s).put(t).put(layer);
+    }
+
     /**
      * Adds a point to the pipeline.
      *
@@ -58,7 +58,17 @@ final class AsciiGlyphProducer extends AbstractGlyphProducer {
     AsciiGlyphProducer(/*@Nonnull*/ final Font font,
                        /*@Nonnull*/ final RenderDelegate rd,
                        /*@Nonnull*/ final FontRenderContext frc) {
-        super(font, rd, frc);
+        this(new GlyphMeasurements(font, rd, frc));
+    }
+
+    /**
+     * Constructs an {@link AsciiGlyphProducer} sharing measurements.
+     *
+     * @param measurements Shared measurements of the font glyphs will be made from
+     * @throws NullPointerException if measurements is null
+     */
+    AsciiGlyphProducer(/*@Nonnull*/ final GlyphMeasurements measurements) {
+        super(measurements);
     }
 
     @Override
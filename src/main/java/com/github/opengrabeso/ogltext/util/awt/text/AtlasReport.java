@@ -0,0 +1,406 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Snapshot of how well a {@link GlyphCache} uses its backing store.
+ *
+ * <p>
+ * An {@code AtlasReport} is made by {@link GlyphCache#getAtlasReport}.  All areas are in pixels.
+ * The <i>used</i> area is the sum of the areas of the glyph rectangles, margins included, and the
+ * <i>wasted</i> area is whatever else the packer has claimed, i.e. everything above the used
+ * height of the backing store not covered by a glyph.  Level statistics are only available when
+ * the cache packs its glyphs with the default {@link
+ * com.github.opengrabeso.ogltext.util.packrect.LevelSet LevelSet}; for other strategies the list
+ * of levels is empty, which {@link #toString} points out along with the name of the strategy.
+ *
+ * @see GlyphCache#writeAtlasImage
+ */
+/*@Immutable*/
+public final class AtlasReport {
+
+    /**
+     * Width of the backing store.
+     */
+    /*@Nonnegative*/
+    private final int width;
+
+    /**
+     * Height of the backing store.
+     */
+    /*@Nonnegative*/
+    private final int height;
+
+    /**
+     * Height of the backing store claimed by the packer.
+     */
+    /*@Nonnegative*/
+    private final int usedHeight;
+
+    /**
+     * Name of the packing strategy positioning the glyphs.
+     */
+    /*@Nonnull*/
+    private final String strategy;
+
+    /**
+     * Number of glyphs stored.
+     */
+    /*@Nonnegative*/
+    private final int glyphCount;
+
+    /**
+     * Sum of the areas of the glyph rectangles.
+     */
+    /*@Nonnegative*/
+    private final long usedArea;
+
+    /**
+     * Vertical fragmentation ratio reported by the packer.
+     */
+    private final float verticalFragmentationRatio;
+
+    /**
+     * Largest empty rectangle a glyph could be added to without compacting.
+     */
+    /*@Nonnull*/
+    private final Rectangle largestFreeRect;
+
+    /**
+     * Statistics of each level, from top to bottom.
+     */
+    /*@Nonnull*/
+    private final List<LevelInfo> levels;
+
+    /**
+     * Constructs an {@link AtlasReport}.
+     *
+     * @param width Width of the backing store
+     * @param height Height of the backing store
+     * @param usedHeight Height of the backing store claimed by the packer
+     * @param strategy Name of the packing strategy, assumed not null
+     * @param glyphCount Number of glyphs stored
+     * @param usedArea Sum of the areas of the glyph rectangles
+     * @param verticalFragmentationRatio Vertical fragmentation ratio reported by the packer
+     * @param largestFreeRect Largest empty rectangle, assumed not null
+     * @param levels Statistics of each level, assumed not null
+     */
+    AtlasReport(/*@Nonnegative*/ final int width,
+                /*@Nonnegative*/ final int height,
+                /*@Nonnegative*/ final int usedHeight,
+                /*@Nonnull*/ final String strategy,
+                /*@Nonnegative*/ final int glyphCount,
+                /*@Nonnegative*/ final long usedArea,
+                final float verticalFragmentationRatio,
+                /*@Nonnull*/ final Rectangle largestFreeRect,
+                /*@Nonnull*/ final List<LevelInfo> levels) {
+        this.width = width;
+        this.height = height;
+        this.usedHeight = usedHeight;
+        this.strategy = strategy;
+        this.glyphCount = glyphCount;
+        this.usedArea = usedArea;
+        this.verticalFragmentationRatio = verticalFragmentationRatio;
+        this.largestFreeRect = new Rectangle(largestFreeRect);
+        this.levels = Collections.unmodifiableList(new ArrayList<LevelInfo>(levels));
+    }
+
+    /**
+     * Returns the number of glyphs stored.
+     *
+     * @return Number of glyphs stored, not negative
+     */
+    /*@Nonnegative*/
+    public int getGlyphCount() {
+        return glyphCount;
+    }
+
+    /**
+     * Returns the height of the backing store.
+     *
+     * @return Height of the backing store, not negative
+     */
+    /*@Nonnegative*/
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the largest empty rectangle a glyph could be added to without compacting.
+     *
+     * @return Copy of the largest free rectangle in backing store coordinates, not null, empty if
+     * the backing store is full
+     */
+    /*@Nonnull*/
+    public Rectangle getLargestFreeRect() {
+        return new Rectangle(largestFreeRect);
+    }
+
+    /**
+     * Returns the statistics of each level of the packer.
+     *
+     * @return Unmodifiable list of levels from top to bottom, not null, empty if the packer does
+     * not arrange glyphs in levels
+     */
+    /*@Nonnull*/
+    public List<LevelInfo> getLevels() {
+        return levels;
+    }
+
+    /**
+     * Returns the name of the packing strategy positioning the glyphs.
+     *
+     * @return Simple name of the strategy's class, e.g. {@code "LevelSet"}, not null
+     */
+    /*@Nonnull*/
+    public String getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Returns the sum of the areas of the glyph rectangles.
+     *
+     * @return Area covered by glyphs, not negative
+     */
+    /*@Nonnegative*/
+    public long getUsedArea() {
+        return usedArea;
+    }
+
+    /**
+     * Returns the height of the backing store claimed by the packer.
+     *
+     * @return Used height, not negative
+     */
+    /*@Nonnegative*/
+    public int getUsedHeight() {
+        return usedHeight;
+    }
+
+    /**
+     * Returns the vertical fragmentation ratio reported by the packer.
+     *
+     * <p>
+     * For levels this is the share of the used height taken by completely empty levels.
+     *
+     * @return Vertical fragmentation ratio
+     */
+    public float getVerticalFragmentationRatio() {
+        return verticalFragmentationRatio;
+    }
+
+    /**
+     * Returns the area claimed by the packer but not covered by a glyph.
+     *
+     * @return Wasted area, not negative
+     */
+    /*@Nonnegative*/
+    public long getWastedArea() {
+        return Math.max(0, ((long) width) * usedHeight - usedArea);
+    }
+
+    /**
+     * Returns the width of the backing store.
+     *
+     * @return Width of the backing store, not negative
+     */
+    /*@Nonnegative*/
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        final long total = ((long) width) * height;
+        sb.append(String.format("Atlas %dx%d packed by %s, used height %d, %d glyphs%n",
+                                width, height, strategy, usedHeight, glyphCount));
+        sb.append(String.format("  used area %d (%.1f%%), wasted area %d (%.1f%%)%n",
+                                usedArea, percent(usedArea, total),
+                                getWastedArea(), percent(getWastedArea(), total)));
+        sb.append(String.format("  vertical fragmentation %.3f, largest free rect %dx%d at %d,%d%n",
+                                verticalFragmentationRatio,
+                                largestFreeRect.width, largestFreeRect.height,
+                                largestFreeRect.x, largestFreeRect.y));
+        for (final LevelInfo level : levels) {
+            sb.append("  ").append(level).append(String.format("%n"));
+        }
+        if (levels.isEmpty() && (glyphCount > 0)) {
+            sb.append(String.format("  no level statistics, %s does not arrange glyphs in levels%n",
+                                    strategy));
+        }
+        return sb.toString();
+    }
+
+    private static double percent(final long part, final long total) {
+        return (total == 0) ? 0 : (100.0 * part / total);
+    }
+
+    /**
+     * Statistics of a single level of the packer.
+     */
+    /*@Immutable*/
+    public static final class LevelInfo {
+
+        /**
+         * Vertical position of the level.
+         */
+        /*@Nonnegative*/
+        private final int y;
+
+        /**
+         * Width of the level.
+         */
+        /*@Nonnegative*/
+        private final int width;
+
+        /**
+         * Height of the level.
+         */
+        /*@Nonnegative*/
+        private final int height;
+
+        /**
+         * Number of glyphs in the level.
+         */
+        /*@Nonnegative*/
+        private final int glyphCount;
+
+        /**
+         * Sum of the areas of the glyph rectangles in the level.
+         */
+        /*@Nonnegative*/
+        private final long usedArea;
+
+        /**
+         * Width of the largest gap in the level.
+         */
+        /*@Nonnegative*/
+        private final int largestFreeWidth;
+
+        /**
+         * Constructs a {@link LevelInfo}.
+         *
+         * @param y Vertical position of the level
+         * @param width Width of the level
+         * @param height Height of the level
+         * @param glyphCount Number of glyphs in the level
+         * @param usedArea Sum of the areas of the glyph rectangles in the level
+         * @param largestFreeWidth Width of the largest gap in the level
+         */
+        LevelInfo(/*@Nonnegative*/ final int y,
+                  /*@Nonnegative*/ final int width,
+                  /*@Nonnegative*/ final int height,
+                  /*@Nonnegative*/ final int glyphCount,
+                  /*@Nonnegative*/ final long usedArea,
+                  /*@Nonnegative*/ final int largestFreeWidth) {
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.glyphCount = glyphCount;
+            this.usedArea = usedArea;
+            this.largestFreeWidth = largestFreeWidth;
+        }
+
+        /**
+         * Returns the number of glyphs in the level.
+         *
+         * @return Number of glyphs, not negative
+         */
+        /*@Nonnegative*/
+        public int getGlyphCount() {
+            return glyphCount;
+        }
+
+        /**
+         * Returns the height of the level.
+         *
+         * @return Height of the level, not negative
+         */
+        /*@Nonnegative*/
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * Returns the width of the largest gap in the level.
+         *
+         * @return Width of the widest glyph that fits without compacting, not negative
+         */
+        /*@Nonnegative*/
+        public int getLargestFreeWidth() {
+            return largestFreeWidth;
+        }
+
+        /**
+         * Returns the sum of the areas of the glyph rectangles in the level.
+         *
+         * @return Area covered by glyphs, not negative
+         */
+        /*@Nonnegative*/
+        public long getUsedArea() {
+            return usedArea;
+        }
+
+        /**
+         * Returns the area of the level not covered by a glyph.
+         *
+         * <p>
+         * This includes both the gaps between glyphs and the space above glyphs shorter than the
+         * level.
+         *
+         * @return Wasted area, not negative
+         */
+        /*@Nonnegative*/
+        public long getWastedArea() {
+            return Math.max(0, ((long) width) * height - usedArea);
+        }
+
+        /**
+         * Returns the vertical position of the level.
+         *
+         * @return Position of the top of the level in the backing store, not negative
+         */
+        /*@Nonnegative*/
+        public int getY() {
+            return y;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("level y=%d h=%d: %d glyphs, wasted %d, largest free width %d",
+                                 y, height, glyphCount, getWastedArea(), largestFreeWidth);
+        }
+    }
+}
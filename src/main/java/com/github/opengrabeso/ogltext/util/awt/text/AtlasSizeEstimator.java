@@ -0,0 +1,186 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.font.LineMetrics;
+import java.util.HashSet;
+import java.util.Set;
+
+
+/**
+ * Utility for predicting how big a {@link GlyphCache} needs to be.
+ *
+ * <p>
+ * Each glyph is assumed to take up a cell as tall as the font's ascent plus descent and as wide as
+ * the average advance of a sample of characters, both with the padding and margin added by {@link
+ * AbstractGlyphProducer}.  Sizing the backing store from the number of cells needed lets it reach
+ * its final size right away instead of through a series of reallocations.
+ */
+/*@Immutable*/
+final class AtlasSizeEstimator {
+
+    /**
+     * Characters sampled for the average advance when no character set is known.
+     */
+    /*@Nonnull*/
+    private static final String DEFAULT_SAMPLE = createRange(' ', '~');
+
+    /**
+     * Fraction of the backing store expected to be covered by cells, the rest being lost at the end
+     * of each row.
+     */
+    private static final float PACKING_EFFICIENCY = 0.9f;
+
+    /**
+     * Width of a cell in pixels.
+     */
+    /*@Nonnegative*/
+    private final int cellWidth;
+
+    /**
+     * Height of a cell in pixels.
+     */
+    /*@Nonnegative*/
+    private final int cellHeight;
+
+    /**
+     * Constructs an {@link AtlasSizeEstimator}.
+     *
+     * @param font Font glyphs will be made of
+     * @param frc Details on how to render fonts
+     * @param sample Characters expected to be rendered, or null to sample printable ASCII
+     * @throws NullPointerException if font or font render context is null
+     */
+    AtlasSizeEstimator(/*@Nonnull*/ final Font font,
+                       /*@Nonnull*/ final FontRenderContext frc,
+                       /*@CheckForNull*/ final CharSequence sample) {
+
+        Check.notNull(font, "Font cannot be null");
+        Check.notNull(frc, "Font render context cannot be null");
+
+        final String str = (sample == null || sample.length() == 0) ? DEFAULT_SAMPLE : sample.toString();
+
+        // Tallest glyph the font should produce
+        final LineMetrics lm = font.getLineMetrics(str, frc);
+        final double height = lm.getAscent() + lm.getDescent();
+
+        // Average advance of the sample
+        final GlyphVector gv = font.createGlyphVector(frc, str);
+        double advance = 0;
+        for (int i = 0; i < gv.getNumGlyphs(); ++i) {
+            advance += gv.getGlyphMetrics(i).getAdvance();
+        }
+        advance /= Math.max(1, gv.getNumGlyphs());
+
+        // One pixel of padding and the margin on each side, plus one for rounding
+        final int boundary = AbstractGlyphProducer.getBoundary(font);
+        final int extra = 2 * (1 + boundary) + 1;
+        this.cellWidth = (int) Math.ceil(advance) + extra;
+        this.cellHeight = (int) Math.ceil(height) + extra;
+    }
+
+    /**
+     * Counts the distinct glyphs in a character set.
+     *
+     * @param chars Characters to count
+     * @return Number of distinct code points in the character set
+     * @throws NullPointerException if characters are null
+     */
+    /*@Nonnegative*/
+    static int countGlyphs(/*@Nonnull*/ final CharSequence chars) {
+
+        Check.notNull(chars, "Characters cannot be null");
+
+        final String str = chars.toString();
+        final Set<Integer> codePoints = new HashSet<Integer>();
+        for (int i = 0; i < str.length(); i += Character.charCount(str.codePointAt(i))) {
+            codePoints.add(str.codePointAt(i));
+        }
+        return codePoints.size();
+    }
+
+    /**
+     * Creates a string with a range of characters.
+     *
+     * @param first First character in range
+     * @param last Last character in range, inclusive
+     * @return String with the range of characters, not null
+     */
+    /*@Nonnull*/
+    private static String createRange(final char first, final char last) {
+        final StringBuilder sb = new StringBuilder();
+        for (char c = first; c <= last; ++c) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the height a backing store of a given width needs to hold a number of glyphs.
+     *
+     * @param glyphs Number of glyphs to hold
+     * @param width Width of the backing store
+     * @return Height of the backing store, not negative
+     * @throws IllegalArgumentException if number of glyphs is negative or width is not positive
+     */
+    /*@Nonnegative*/
+    int getHeight(/*@Nonnegative*/ final int glyphs, /*@Nonnegative*/ final int width) {
+
+        Check.argument(glyphs >= 0, "Number of glyphs is negative");
+        Check.argument(width > 0, "Width is not positive");
+
+        final int cellsPerRow = Math.max(1, (int) (width * PACKING_EFFICIENCY) / cellWidth);
+        final int rows = (glyphs + cellsPerRow - 1) / cellsPerRow;
+        return rows * cellHeight;
+    }
+
+    /**
+     * Returns the side of a square backing store able to hold a number of glyphs.
+     *
+     * @param glyphs Number of glyphs to hold
+     * @return Width and height of the backing store, not negative
+     * @throws IllegalArgumentException if number of glyphs is negative
+     */
+    /*@Nonnegative*/
+    int getSize(/*@Nonnegative*/ final int glyphs) {
+
+        Check.argument(glyphs >= 0, "Number of glyphs is negative");
+
+        final double area = (double) glyphs * cellWidth * cellHeight / PACKING_EFFICIENCY;
+        int size = (int) Math.ceil(Math.sqrt(area));
+
+        // Rows don't break up cells, so make sure the remainder of each one doesn't add up to more
+        while (getHeight(glyphs, size) > size) {
+            size += cellWidth;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,399 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import com.github.opengrabeso.jaagl.GL2GL3;
+import com.jogamp.common.nio.Buffers;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+
+/**
+ * Fixed grid of character cells kept in a texture buffer, for terminal-style text.
+ *
+ * <p>
+ * Each cell is one {@code RGBA32UI} texel holding one more than the slot of its glyph in a
+ * {@link GlyphMetricBuffer}, or zero if the cell is empty, followed by its foreground and
+ * background colors packed as {@code 0xRRGGBBAA}.  The buffer is made once, and only the cells
+ * changed since the last upload are sent again, one range per changed row.
+ *
+ * <p>
+ * Rows are stored as a ring.  Scrolling moves the row shown at the top instead of the cells, so
+ * only the rows that scroll into view are cleared and uploaded.  A smooth scroll offset in pixels
+ * can be added on top.
+ */
+/*@NotThreadSafe*/
+public final class CellGrid {
+
+    /**
+     * Number of ints in each cell.
+     */
+    private static final int INTS_PER_CELL = 4;
+
+    /**
+     * Size of an int in bytes.
+     */
+    private static final int SIZEOF_INT = 4;
+
+    /**
+     * Number of columns.
+     */
+    /*@Nonnegative*/
+    private final int columns;
+
+    /**
+     * Number of rows.
+     */
+    /*@Nonnegative*/
+    private final int rows;
+
+    /**
+     * Local copy of the cells in storage order, direct for uploading.
+     */
+    /*@Nonnull*/
+    private final IntBuffer cells;
+
+    /**
+     * First changed column of each stored row, or the number of columns if unchanged.
+     */
+    /*@Nonnull*/
+    private final int[] dirtyStart;
+
+    /**
+     * Column after the last changed column of each stored row.
+     */
+    /*@Nonnull*/
+    private final int[] dirtyEnd;
+
+    /**
+     * Stored row shown at the top.
+     */
+    /*@Nonnegative*/
+    private int top = 0;
+
+    /**
+     * Distance in pixels the grid is moved up on top of the rows scrolled.
+     */
+    private float scrollOffset = 0;
+
+    /**
+     * OpenGL handle to the buffer object, or zero if not created yet.
+     */
+    /*@Nonnegative*/
+    private int buffer = 0;
+
+    /**
+     * OpenGL handle to the buffer texture, or zero if not created yet.
+     */
+    /*@Nonnegative*/
+    private int texture = 0;
+
+    /**
+     * Constructs an empty {@link CellGrid}.
+     *
+     * @param columns Number of columns
+     * @param rows Number of rows
+     * @throws IllegalArgumentException if columns or rows is not positive
+     */
+    public CellGrid(/*@Nonnegative*/ final int columns, /*@Nonnegative*/ final int rows) {
+
+        Check.argument(columns > 0, "Columns must be positive");
+        Check.argument(rows > 0, "Rows must be positive");
+
+        this.columns = columns;
+        this.rows = rows;
+        this.cells = Buffers.newDirectIntBuffer(columns * rows * INTS_PER_CELL);
+        this.dirtyStart = new int[rows];
+        this.dirtyEnd = new int[rows];
+        Arrays.fill(dirtyStart, columns);
+    }
+
+    /**
+     * Binds the buffer texture to a texture unit, uploading the changed cells first.
+     *
+     * @param gl Current OpenGL context
+     * @param unit Texture unit, such as {@code GL_TEXTURE2}
+     * @throws NullPointerException if context is null
+     */
+    void bind(/*@Nonnull*/ final GL2GL3 gl, final int unit) {
+
+        Check.notNull(gl, "GL cannot be null");
+
+        upload(gl);
+        gl.glActiveTexture(unit);
+        gl.glBindTexture(gl.gl3().GL_TEXTURE_BUFFER(), texture);
+    }
+
+    /**
+     * Empties every cell.
+     */
+    public void clear() {
+        for (int row = 0; row < rows; ++row) {
+            clearRow(row);
+        }
+    }
+
+    /**
+     * Empties one row of cells.
+     *
+     * @param row Index of the row, from the top
+     * @throws IndexOutOfBoundsException if row is out of range
+     */
+    public void clearRow(/*@Nonnegative*/ final int row) {
+
+        checkRow(row);
+
+        clearStored(toStored(row));
+    }
+
+    /**
+     * Empties a stored row, marking it changed.
+     *
+     * @param stored Index of the row in storage order
+     */
+    private void clearStored(/*@Nonnegative*/ final int stored) {
+        final int start = stored * columns * INTS_PER_CELL;
+        for (int i = 0; i < columns * INTS_PER_CELL; ++i) {
+            cells.put(start + i, 0);
+        }
+        dirtyStart[stored] = 0;
+        dirtyEnd[stored] = columns;
+    }
+
+    /**
+     * Checks that a row is in range.
+     *
+     * @param row Index of the row, from the top
+     * @throws IndexOutOfBoundsException if row is out of range
+     */
+    private void checkRow(final int row) {
+        if (row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException("Row " + row + " is out of range");
+        }
+    }
+
+    /**
+     * Forgets the OpenGL objects after the context was lost, so the next draw makes them again.
+     */
+    public void contextRecreated() {
+        buffer = 0;
+        texture = 0;
+    }
+
+    /**
+     * Frees the OpenGL objects of the grid.
+     *
+     * @param gl Current OpenGL context
+     * @throws NullPointerException if context is null
+     */
+    public void dispose(/*@Nonnull*/ final GL2GL3 gl) {
+
+        Check.notNull(gl, "GL cannot be null");
+
+        if (texture != 0) {
+            gl.glDeleteTextures(new int[] { texture });
+            gl.glDeleteBuffers(new int[] { buffer });
+        }
+        contextRecreated();
+    }
+
+    /**
+     * Returns the number of columns.
+     *
+     * @return Number of columns
+     */
+    /*@Nonnegative*/
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return Number of rows
+     */
+    /*@Nonnegative*/
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the distance in pixels the grid is moved up on top of the rows scrolled.
+     *
+     * @return Smooth scroll offset in pixels
+     */
+    public float getScrollOffset() {
+        return scrollOffset;
+    }
+
+    /**
+     * Returns the stored row shown at the top, which the vertex shader counts rows from.
+     *
+     * @return Index of the top row in storage order
+     */
+    /*@Nonnegative*/
+    int getTop() {
+        return top;
+    }
+
+    /**
+     * Moves the rows up, clearing the rows that come into view.
+     *
+     * <p>
+     * Only the top row index changes; the cells that stay in view are neither moved nor uploaded
+     * again.
+     *
+     * @param lines Number of rows to move up, or down if negative
+     */
+    public void scroll(final int lines) {
+        if (Math.abs(lines) >= rows) {
+            clear();
+            return;
+        }
+        top = (top + lines + rows) % rows;
+        if (lines > 0) {
+            for (int row = rows - lines; row < rows; ++row) {
+                clearStored(toStored(row));
+            }
+        } else {
+            for (int row = 0; row < -lines; ++row) {
+                clearStored(toStored(row));
+            }
+        }
+    }
+
+    /**
+     * Changes one cell, marking it changed only if it differs.
+     *
+     * @param column Index of the column, from the left
+     * @param row Index of the row, from the top
+     * @param slot Slot of the glyph in a {@link GlyphMetricBuffer}, or negative to leave it empty
+     * @param foreground Color of the glyph as {@code 0xRRGGBBAA}
+     * @param background Color behind the glyph as {@code 0xRRGGBBAA}
+     * @throws IndexOutOfBoundsException if column or row is out of range
+     */
+    public void set(/*@Nonnegative*/ final int column,
+                    /*@Nonnegative*/ final int row,
+                    /*@CheckForSigned*/ final int slot,
+                    final int foreground,
+                    final int background) {
+
+        checkRow(row);
+        if (column < 0 || column >= columns) {
+            throw new IndexOutOfBoundsException("Column " + column + " is out of range");
+        }
+
+        final int stored = toStored(row);
+        final int i = (stored * columns + column) * INTS_PER_CELL;
+        final int glyph = Math.max(slot + 1, 0);
+        if (cells.get(i) == glyph
+                && cells.get(i + 1) == foreground
+                && cells.get(i + 2) == background) {
+            return;
+        }
+        cells.put(i, glyph);
+        cells.put(i + 1, foreground);
+        cells.put(i + 2, background);
+        dirtyStart[stored] = Math.min(dirtyStart[stored], column);
+        dirtyEnd[stored] = Math.max(dirtyEnd[stored], column + 1);
+    }
+
+    /**
+     * Changes the distance in pixels the grid is moved up on top of the rows scrolled.
+     *
+     * @param scrollOffset Smooth scroll offset in pixels, which may be negative
+     */
+    public void setScrollOffset(final float scrollOffset) {
+        this.scrollOffset = scrollOffset;
+    }
+
+    /**
+     * Returns the number of cells.
+     *
+     * @return Number of cells
+     */
+    /*@Nonnegative*/
+    public int size() {
+        return columns * rows;
+    }
+
+    /**
+     * Finds where a row shown on screen is stored.
+     *
+     * @param row Index of the row, from the top
+     * @return Index of the row in storage order
+     */
+    /*@Nonnegative*/
+    private int toStored(/*@Nonnegative*/ final int row) {
+        return (top + row) % rows;
+    }
+
+    /**
+     * Sends the changed cells to the buffer object, creating it if needed.
+     *
+     * @param gl Current OpenGL context, assumed not null
+     */
+    private void upload(/*@Nonnull*/ final GL2GL3 gl) {
+
+        final int target = gl.gl3().GL_TEXTURE_BUFFER();
+        if (texture == 0) {
+
+            // Create objects with every cell
+            final int[] handles = new int[1];
+            gl.glGenBuffers(handles);
+            buffer = handles[0];
+            gl.glGenTextures(handles);
+            texture = handles[0];
+            gl.glBindBuffer(target, buffer);
+            cells.rewind();
+            gl.glBufferData(target, cells.capacity() * SIZEOF_INT, cells, gl.GL_DYNAMIC_DRAW());
+            gl.glBindTexture(target, texture);
+            gl.gl3().glTexBuffer(target, gl.gl3().GL_RGBA32UI(), buffer);
+            gl.glBindTexture(target, 0);
+            Arrays.fill(dirtyStart, columns);
+            Arrays.fill(dirtyEnd, 0);
+        } else {
+
+            // Send the changed range of each row
+            gl.glBindBuffer(target, buffer);
+            for (int row = 0; row < rows; ++row) {
+                if (dirtyStart[row] < dirtyEnd[row]) {
+                    final int first = (row * columns + dirtyStart[row]) * INTS_PER_CELL;
+                    final int count = (dirtyEnd[row] - dirtyStart[row]) * INTS_PER_CELL;
+                    cells.position(first);
+                    gl.glBufferSubData(target, first * SIZEOF_INT, count * SIZEOF_INT, cells);
+                    dirtyStart[row] = columns;
+                    dirtyEnd[row] = 0;
+                }
+            }
+            cells.rewind();
+        }
+        gl.glBindBuffer(target, 0);
+    }
+}
@@ -30,15 +30,31 @@ package com.github.opengrabeso.ogltext.util.awt.text;
 import com.github.opengrabeso.jaagl.GL;
 import com.github.opengrabeso.ogltext.util.awt.TextRenderer.RenderDelegate;
 import com.github.opengrabeso.ogltext.util.packrect.BackingStoreManager;
+import com.github.opengrabeso.ogltext.util.packrect.Level;
+import com.github.opengrabeso.ogltext.util.packrect.LevelSet;
+import com.github.opengrabeso.ogltext.util.packrect.PackingStrategy;
 import com.github.opengrabeso.ogltext.util.packrect.Rect;
 import com.github.opengrabeso.ogltext.util.packrect.RectVisitor;
 import com.github.opengrabeso.ogltext.util.packrect.RectanglePacker;
 import com.github.opengrabeso.ogltext.util.texture.TextureCoords;
 
+import java.awt.Color;
 import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.font.FontRenderContext;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
 
 
 /**
@@ -102,6 +118,33 @@ public final class GlyphCache implements TextureBackingStore.EventListener {
     /*@Nonnegative*/
     private static final int MIN_BACKING_STORE_SIZE = 256;
 
+    /**
+     * Maximum size of a predicted backing store in pixels.
+     *
+     * <p>
+     * The initial backing store is made before the maximum texture size is known, so predictions
+     * are kept within what any reasonable card supports.
+     */
+    /*@Nonnegative*/
+    private static final int MAX_PREDICTED_BACKING_STORE_SIZE = 4096;
+
+    /**
+     * Step between the hues of levels in the atlas image, which keeps neighbors apart.
+     */
+    private static final float GOLDEN_RATIO_CONJUGATE = 0.618034f;
+
+    /**
+     * Orders rectangles of a level from left to right.
+     */
+    /*@Nonnull*/
+    private static final Comparator<Rect> RECT_X_COMPARATOR = new Comparator<Rect>() {
+
+        @Override
+        public int compare(/*@Nonnull*/ final Rect r1, /*@Nonnull*/ final Rect r2) {
+            return (r1.x() < r2.x()) ? -1 : ((r1.x() == r2.x()) ? 0 : 1);
+        }
+    };
+
     /**
      * Delegate to render text.
      */
@@ -126,6 +169,18 @@ public final class GlyphCache implements TextureBackingStore.EventListener {
     /*@Nonnull*/
     private final RectanglePacker packer;
 
+    /**
+     * Predictor of how big the backing store needs to be, or null if nothing is expected.
+     */
+    /*@CheckForNull*/
+    private final AtlasSizeEstimator estimator;
+
+    /**
+     * Number of distinct glyphs expected to be rendered, or zero if unknown.
+     */
+    /*@Nonnegative*/
+    private final int expectedGlyphs;
+
     /**
      * Texture to draw into.
      *
@@ -141,11 +196,41 @@ public final class GlyphCache implements TextureBackingStore.EventListener {
     /*@Nonnegative*/
     private int numRenderCycles = 0;
 
+    /**
+     * Times cache has been used in total, which tells how long ago a glyph was used.
+     */
+    /*@Nonnegative*/
+    private long renderCycle = 0;
+
     /**
      * True if done initializing.
      */
     private boolean ready = false;
 
+    /**
+     * Time in nanoseconds a compaction may take per render cycle, or zero to compact at once.
+     */
+    /*@Nonnegative*/
+    private long compactionBudget = 0;
+
+    /**
+     * Metrics to update, or null to not count anything.
+     */
+    /*@CheckForNull*/
+    private TextRendererMetrics metrics = null;
+
+    /**
+     * Array texture shared with other caches to upload to, or null to use own texture.
+     */
+    /*@CheckForNull*/
+    private GlyphTextureArray textureArray = null;
+
+    /**
+     * Layer of the array texture holding the glyphs of this cache.
+     */
+    /*@Nonnegative*/
+    private int layer = 0;
+
     /**
      * Constructs a {@link GlyphCache}.
      *
@@ -154,16 +239,23 @@ public final class GlyphCache implements TextureBackingStore.EventListener {
      * @param antialias True to render glyphs with smooth edges
      * @param subpixel True to consider subpixel positioning
      * @param mipmap True to create multiple sizes of texture
+     * @param expectedChars Characters expected to be rendered, or null if unknown
+     * @param expectedGlyphs Number of distinct glyphs expected to be rendered, or zero if unknown
      * @see #newInstance
      */
     private GlyphCache(/*@Nonnull*/ final Font font,
                        /*@Nonnull*/ final RenderDelegate rd,
                        final boolean antialias,
                        final boolean subpixel,
-                       final boolean mipmap, final boolean useRed) {
+                       final boolean mipmap, final boolean useRed,
+                       /*@CheckForNull*/ final CharSequence expectedChars,
+                       /*@Nonnegative*/ final int expectedGlyphs) {
         this.renderDelegate = rd;
         this.manager = new TextureBackingStoreManager(font, antialias, subpixel, mipmap, useRed);
-        this.packer = createPacker(font, manager);
+        this.estimator = (expectedGlyphs > 0) ? new AtlasSizeEstimator(
+                font, new FontRenderContext(null, antialias, subpixel), expectedChars) : null;
+        this.expectedGlyphs = expectedGlyphs;
+        this.packer = createPacker(font, manager, estimator, expectedGlyphs);
     }
 
     /**
@@ -183,7 +275,8 @@ public final class GlyphCache implements TextureBackingStore.EventListener {
      * Sets up the cache for rendering.
      *
      * <p>
-     * After calling this method the texture storing the glyphs will be bound.
+     * After calling this method the texture storing the glyphs will be bound, which is the
+     * {@link #setTextureArray array texture} if one is in use.
      *
      * @param gl Current OpenGL context
      * @throws NullPointerException if context is null
@@ -192,6 +285,8 @@ public final class GlyphCache implements TextureBackingStore.EventListener {
 
         Check.notNull(gl, "Context cannot be null");
 
+        manager.setGL(gl);
+
         // Set up if first time rendering
         if (!ready) {
             setMaxSize(gl);
@@ -199,8 +294,12 @@ public final class GlyphCache implements TextureBackingStore.EventListener {
         }
 
         // Bind the backing store
-        final TextureBackingStore bs = getBackingStore();
-        bs.bind(gl, gl.GL_TEXTURE0());
+        if (textureArray != null) {
+            textureArray.bind(gl, gl.GL_TEXTURE0());
+        } else {
+            final TextureBackingStore bs = getBackingStore();
+            bs.bind(gl, gl.GL_TEXTURE0());
+        }
     }
 
     /**
@@ -222,8 +321,10 @@ public final class GlyphCache implements TextureBackingStore.EventListener {
 
     /**
      * Clears entries that haven't been used in awhile.
+     *
+     * @param mayDefer True if a compaction may be spread over the following render cycles
      */
-    private void clearUnusedEntries() {
+    private void clearUnusedEntries(final boolean mayDefer) {
 
         log("Trying to clear unused entries...");
 
@@ -248,6 +349,7 @@ public final class GlyphCache implements TextureBackingStore.EventListener {
             packer.remove(rect);
             final Glyph glyph = ((TextData) rect.getUserData()).glyph;
             glyph.location = null;
+            count(TextRendererMetrics.Counter.EVICTIONS, 1);
             fireEvent(EventType.CLEAN, glyph);
             log("Cleared rectangle for glyph: %s", glyph);
             if (DEBUG) {
@@ -259,7 +361,13 @@ public final class GlyphCache implements TextureBackingStore.EventListener {
         final float frag = packer.verticalFragmentationRatio();
         if (!deadRects.isEmpty() && (frag > MAX_VERTICAL_FRAGMENTATION)) {
             log("Compacting due to fragmentation %s", frag);
-            packer.compact();
+            count(TextRendererMetrics.Counter.COMPACTIONS, 1);
+            if (mayDefer && (compactionBudget > 0)) {
+                packer.beginCompaction();
+            } else {
+                packer.compact();
+                clearTextureCoordinates();
+            }
         }
 
         // Force the backing store to update
@@ -306,17 +414,130 @@ public final class GlyphCache implements TextureBackingStore.EventListener {
         return glyph.location != null;
     }
 
+    /**
+     * Counts the glyphs currently stored in this {@link GlyphCache}.
+     *
+     * @return Number of glyphs stored, not negative
+     */
+    /*@Nonnegative*/
+    private int countGlyphs() {
+        final int[] count = { 0 };
+        packer.visit(new RectVisitor() {
+
+            @Override
+            public void visit(/*@Nonnull*/ final Rect rect) {
+                ++count[0];
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * Makes this {@link GlyphCache} usable again after the OpenGL context was destroyed and
+     * recreated.
+     *
+     * <p>
+     * All glyphs stay where they are in the backing store and keep their texture coordinates.
+     * Only the OpenGL texture is made again, from the local copy of the backing store, the next
+     * time the cache is used.
+     */
+    public void contextRecreated() {
+        getBackingStore().contextRecreated();
+        if (packer.isCompacting()) {
+            ((TextureBackingStore) packer.getNextBackingStore()).contextRecreated();
+        }
+
+        // The new context may support a different maximum texture size
+        ready = false;
+    }
+
+    /**
+     * Adds to a counter of the metrics, if there are any.
+     *
+     * @param counter Counter to add to, assumed not null
+     * @param amount Amount to add
+     */
+    private void count(/*@Nonnull*/ final TextRendererMetrics.Counter counter, final long amount) {
+        if (metrics != null) {
+            metrics.add(counter, amount);
+        }
+    }
+
+    /**
+     * Draws the backing store with the glyph rectangles outlined.
+     *
+     * <p>
+     * Each level of the packer gets a hue of its own, and the outlines of glyphs fade the longer
+     * they have gone unused, up to the point where they are about to be cleared.  A red line
+     * marks the used height of the backing store.  Needs no OpenGL context.
+     *
+     * @return Copy of the backing store with the overlay, not null
+     * @see #writeAtlasImage(OutputStream)
+     */
+    /*@Nonnull*/
+    public BufferedImage createAtlasImage() {
+
+        final TextureBackingStore bs = getBackingStore();
+        final BufferedImage image = new BufferedImage(
+                bs.getWidth(), bs.getHeight(), BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g2d = image.createGraphics();
+        try {
+            g2d.drawImage(bs.getImage(), 0, 0, null);
+
+            // Look the levels up by identity, whatever Rect.equals() may do
+            final Map<Rect, Integer> levelIndices = new IdentityHashMap<Rect, Integer>();
+            int index = 0;
+            for (final Level level : getLevels()) {
+                for (final Iterator<Rect> iter = level.iterator(); iter.hasNext(); ) {
+                    levelIndices.put(iter.next(), index);
+                }
+                ++index;
+            }
+
+            packer.visit(new RectVisitor() {
+
+                @Override
+                public void visit(/*@Nonnull*/ final Rect rect) {
+                    final Integer levelIndex = levelIndices.get(rect);
+                    final long age = renderCycle - ((TextData) rect.getUserData()).lastUsed();
+                    g2d.setColor(getOverlayColor((levelIndex != null) ? levelIndex : 0, age));
+                    g2d.drawRect(rect.x(), rect.y(), rect.w() - 1, rect.h() - 1);
+                }
+            });
+
+            final int usedHeight = packer.getUsedHeight();
+            if (usedHeight < bs.getHeight()) {
+                g2d.setColor(Color.RED);
+                g2d.drawLine(0, usedHeight, bs.getWidth() - 1, usedHeight);
+            }
+        } finally {
+            g2d.dispose();
+        }
+        return image;
+    }
+
     /**
      * Makes a packer for positioning glyphs.
      *
      * @param font Font used to make glyphs being stored, assumed not null
      * @param manager Handler of packer events, assumed not null
+     * @param estimator Predictor of the size needed, or null if no glyphs are expected
+     * @param expectedGlyphs Number of glyphs expected, or zero if unknown
      * @return Resulting packer, not null
      */
     /*@Nonnull*/
-    private static RectanglePacker createPacker(/*@Nonnull*/ final Font font,
-                                                /*@Nonnull*/ final BackingStoreManager manager) {
-        final int size = findBackingStoreSizeForFont(font);
+    private static RectanglePacker createPacker(
+            /*@Nonnull*/ final Font font,
+            /*@Nonnull*/ final BackingStoreManager manager,
+            /*@CheckForNull*/ final AtlasSizeEstimator estimator,
+            /*@Nonnegative*/ final int expectedGlyphs) {
+        final int size;
+        if (expectedGlyphs > 0) {
+            size = Math.max(MIN_BACKING_STORE_SIZE,
+                            Math.min(MAX_PREDICTED_BACKING_STORE_SIZE, estimator.getSize(expectedGlyphs)));
+        } else {
+            size = findBackingStoreSizeForFont(font);
+        }
         return new RectanglePacker(manager, size, size);
     }
 
@@ -330,7 +551,9 @@ public final class GlyphCache implements TextureBackingStore.EventListener {
 
         Check.notNull(gl, "Context cannot be null");
 
+        manager.setGL(gl);
         packer.dispose();
+        manager.setGL(null);
         if (backingStore != null) {
             backingStore.dispose(gl);
             backingStore = null;
@@ -356,11 +579,16 @@ public final class GlyphCache implements TextureBackingStore.EventListener {
         bs.clear(x, y, w, h);
 
         // Draw the text
+        final long start = (metrics != null) ? System.nanoTime() : 0;
         renderDelegate.drawGlyphVector(
                 bs.getGraphics(),
                 glyph.glyphVector,
                 getLeftBaselineLocation(glyph),
                 getBottomBaselineLocation(glyph));
+        if (metrics != null) {
+            count(TextRendererMetrics.Counter.RASTERIZATION_NANOS, System.nanoTime() - start);
+            count(TextRendererMetrics.Counter.GLYPHS_RASTERIZED, 1);
+        }
 
         // Mark it dirty
         bs.mark(x, y, w, h);
@@ -383,11 +611,25 @@ public final class GlyphCache implements TextureBackingStore.EventListener {
         update(gl);
 
         // Check if reached render cycle limit
+        ++renderCycle;
         if (++numRenderCycles >= CYCLES_PER_FLUSH) {
             numRenderCycles = 0;
             log("Reached cycle limit.");
-            clearUnusedEntries();
+            clearUnusedEntries(true);
         }
+
+        // Move another part of the entries if compacting
+        if (packer.isCompacting()) {
+            if (packer.compactStep(Integer.MAX_VALUE, compactionBudget)) {
+                clearTextureCoordinates();
+            } else if (textureArray == null) {
+                final TextureBackingStore next = (TextureBackingStore) packer.getNextBackingStore();
+                next.bind(gl, gl.GL_TEXTURE0());
+                update(gl, next);
+            }
+        }
+
+        manager.setGL(null);
     }
 
     /**
@@ -464,15 +706,82 @@ public final class GlyphCache implements TextureBackingStore.EventListener {
      * Sends an event to all the listeners.
      *
      * @param type Kind of event, assumed not null
-     * @param data Information to send with event, assumed not null
+     * @param data Information to send with event, null except for CLEAN
      */
-    private void fireEvent(/*@Nonnull*/ final EventType type, /*@Nonnull*/ final Object data) {
+    private void fireEvent(/*@Nonnull*/ final EventType type, /*@CheckForNull*/ final Object data) {
         for (final EventListener listener : listeners) {
             assert listener != null : "addListener rejects null";
             listener.onGlyphCacheEvent(type, data);
         }
     }
 
+    /**
+     * Describes how well this {@link GlyphCache} uses its backing store.
+     *
+     * <p>
+     * Needs no OpenGL context, so it may be called at any time, including when running headless.
+     * During an incremental compaction the report is of the backing store being compacted.
+     *
+     * @return Report of the current backing store, not null
+     * @see #createAtlasImage()
+     */
+    /*@Nonnull*/
+    public AtlasReport getAtlasReport() {
+
+        final TextureBackingStore bs = getBackingStore();
+        final int usedHeight = packer.getUsedHeight();
+
+        // Sum up all glyphs
+        final int[] glyphCount = { 0 };
+        final long[] usedArea = { 0 };
+        packer.visit(new RectVisitor() {
+
+            @Override
+            public void visit(/*@Nonnull*/ final Rect rect) {
+                ++glyphCount[0];
+                usedArea[0] += ((long) rect.w()) * rect.h();
+            }
+        });
+
+        // Space below the used height is free, and so are the gaps between glyphs of a level
+        final Rectangle largestFreeRect = new Rectangle(
+                0, usedHeight, bs.getWidth(), bs.getHeight() - usedHeight);
+        final List<AtlasReport.LevelInfo> levels = new ArrayList<AtlasReport.LevelInfo>();
+        for (final Level level : getLevels()) {
+            final List<Rect> rects = new ArrayList<Rect>();
+            for (final Iterator<Rect> iter = level.iterator(); iter.hasNext(); ) {
+                rects.add(iter.next());
+            }
+            Collections.sort(rects, RECT_X_COMPARATOR);
+
+            long levelArea = 0;
+            int largestFreeWidth = 0;
+            int x = 0;
+            for (final Rect rect : rects) {
+                levelArea += ((long) rect.w()) * rect.h();
+                largestFreeWidth = Math.max(largestFreeWidth, rect.x() - x);
+                offerFreeRect(largestFreeRect, x, level.yPos(), rect.x() - x, level.h());
+                x = rect.x() + rect.w();
+            }
+            largestFreeWidth = Math.max(largestFreeWidth, level.w() - x);
+            offerFreeRect(largestFreeRect, x, level.yPos(), level.w() - x, level.h());
+
+            levels.add(new AtlasReport.LevelInfo(
+                    level.yPos(), level.w(), level.h(), rects.size(), levelArea, largestFreeWidth));
+        }
+
+        return new AtlasReport(
+                bs.getWidth(),
+                bs.getHeight(),
+                usedHeight,
+                packer.getPackingStrategy().getClass().getSimpleName(),
+                glyphCount[0],
+                usedArea[0],
+                packer.verticalFragmentationRatio(),
+                largestFreeRect,
+                levels);
+    }
+
     /**
      * Returns object actually storing the rasterized glyphs.
      *
@@ -519,6 +828,15 @@ public final class GlyphCache implements TextureBackingStore.EventListener {
         return getBackingStore().getGraphics().getFontRenderContext();
     }
 
+    /**
+     * Returns the gamma glyph coverage is corrected with.
+     *
+     * @return Gamma of this glyph cache, positive
+     */
+    public float getGamma() {
+        return manager.getGamma();
+    }
+
     /**
      * Returns the height of this {@link GlyphCache}.
      *
@@ -529,6 +847,38 @@ public final class GlyphCache implements TextureBackingStore.EventListener {
         return getBackingStore().getHeight();
     }
 
+    /**
+     * Returns the levels of the packer, if it arranges glyphs in levels.
+     *
+     * @return Levels from top to bottom, not null, empty for other packing strategies
+     */
+    /*@Nonnull*/
+    private List<Level> getLevels() {
+        final List<Level> levels = new ArrayList<Level>();
+        final PackingStrategy strategy = packer.getPackingStrategy();
+        if (strategy instanceof LevelSet) {
+            for (final Iterator<Level> iter = ((LevelSet) strategy).iterator(); iter.hasNext(); ) {
+                levels.add(iter.next());
+            }
+        }
+        return levels;
+    }
+
+    /**
+     * Determines the color to outline a glyph with in the atlas image.
+     *
+     * @param levelIndex Index of the level containing the glyph
+     * @param age Render cycles since the glyph was last used
+     * @return Color of the outline, not null
+     */
+    /*@Nonnull*/
+    private static Color getOverlayColor(/*@Nonnegative*/ final int levelIndex,
+                                         /*@Nonnegative*/ final long age) {
+        final float hue = (levelIndex * GOLDEN_RATIO_CONJUGATE) % 1.0f;
+        final float staleness = Math.min(age, CYCLES_PER_FLUSH) / (float) CYCLES_PER_FLUSH;
+        return Color.getHSBColor(hue, 1.0f - 0.5f * staleness, 1.0f - 0.6f * staleness);
+    }
+
     /**
      * Determines the location of a glyph's left baseline.
      *
@@ -570,6 +920,15 @@ public final class GlyphCache implements TextureBackingStore.EventListener {
         return getBackingStore().getWidth();
     }
 
+    /**
+     * Checks if this {@link GlyphCache} is in the middle of an incremental compaction.
+     *
+     * @return True if entries are still being moved to a new backing store
+     */
+    boolean isCompacting() {
+        return packer.isCompacting();
+    }
+
     private static void log(/*@Nonnull*/ final String message) {
         if (DEBUG) {
             System.err.println(message);
@@ -589,11 +948,11 @@ public final class GlyphCache implements TextureBackingStore.EventListener {
      * @param glyph Glyph to mark
      * @throws NullPointerException if glyph is null
      */
-    static void markGlyphLocationUsed(/*@Nonnull*/ final Glyph glyph) {
+    void markGlyphLocationUsed(/*@Nonnull*/ final Glyph glyph) {
 
         Check.notNull(glyph, "Glyph cannot be null");
 
-        ((TextData) glyph.location.getUserData()).markUsed();
+        ((TextData) glyph.location.getUserData()).markUsed(renderCycle);
     }
 
     /**
@@ -618,11 +977,107 @@ public final class GlyphCache implements TextureBackingStore.EventListener {
         Check.notNull(font, "Font cannot be null");
         Check.notNull(rd, "Render delegate cannot be null");
 
-        final GlyphCache gc = new GlyphCache(font, rd, antialias, subpixel, mipmap, useRed);
+        return create(font, rd, antialias, subpixel, mipmap, useRed, null, 0);
+    }
+
+    /**
+     * Creates a new {@link GlyphCache} sized for a character set.
+     *
+     * <p>
+     * The backing store is made big enough for all of the characters right away, and is expanded
+     * straight to the predicted size if it still runs out of room, avoiding a series of
+     * reallocations while the characters are first drawn.
+     *
+     * @param font Font that was used to create glyphs that will be stored
+     * @param rd Controller of rendering bitmapped text
+     * @param antialias Whether to render glyphs with smooth edges
+     * @param subpixel Whether to consider subpixel positioning
+     * @param mipmap Whether to create multiple sizes for texture
+     * @param expectedChars Characters expected to be rendered
+     * @return New glyph cache instance, not null
+     * @throws NullPointerException if font, render delegate or characters are null
+     */
+    /*@Nonnull*/
+    public static GlyphCache newInstance(/*@Nonnull*/ final Font font,
+                                         /*@Nonnull*/ final RenderDelegate rd,
+                                         final boolean antialias,
+                                         final boolean subpixel,
+                                         final boolean mipmap, final boolean useRed,
+                                         /*@Nonnull*/ final CharSequence expectedChars) {
+
+        Check.notNull(font, "Font cannot be null");
+        Check.notNull(rd, "Render delegate cannot be null");
+        Check.notNull(expectedChars, "Characters cannot be null");
+
+        return create(font, rd, antialias, subpixel, mipmap, useRed,
+                      expectedChars, AtlasSizeEstimator.countGlyphs(expectedChars));
+    }
+
+    /**
+     * Creates a new {@link GlyphCache} sized for a number of glyphs.
+     *
+     * @param font Font that was used to create glyphs that will be stored
+     * @param rd Controller of rendering bitmapped text
+     * @param antialias Whether to render glyphs with smooth edges
+     * @param subpixel Whether to consider subpixel positioning
+     * @param mipmap Whether to create multiple sizes for texture
+     * @param expectedGlyphs Number of distinct glyphs expected to be rendered
+     * @return New glyph cache instance, not null
+     * @throws NullPointerException if font or render delegate is null
+     * @throws IllegalArgumentException if number of glyphs is negative
+     * @see #newInstance(Font, RenderDelegate, boolean, boolean, boolean, boolean, CharSequence)
+     */
+    /*@Nonnull*/
+    public static GlyphCache newInstance(/*@Nonnull*/ final Font font,
+                                         /*@Nonnull*/ final RenderDelegate rd,
+                                         final boolean antialias,
+                                         final boolean subpixel,
+                                         final boolean mipmap, final boolean useRed,
+                                         /*@Nonnegative*/ final int expectedGlyphs) {
+
+        Check.notNull(font, "Font cannot be null");
+        Check.notNull(rd, "Render delegate cannot be null");
+        Check.argument(expectedGlyphs >= 0, "Number of glyphs is negative");
+
+        return create(font, rd, antialias, subpixel, mipmap, useRed, null, expectedGlyphs);
+    }
+
+    /**
+     * Creates a new {@link GlyphCache}, registering it with its backing store manager.
+     */
+    /*@Nonnull*/
+    private static GlyphCache create(/*@Nonnull*/ final Font font,
+                                     /*@Nonnull*/ final RenderDelegate rd,
+                                     final boolean antialias,
+                                     final boolean subpixel,
+                                     final boolean mipmap, final boolean useRed,
+                                     /*@CheckForNull*/ final CharSequence expectedChars,
+                                     /*@Nonnegative*/ final int expectedGlyphs) {
+        final GlyphCache gc = new GlyphCache(
+                font, rd, antialias, subpixel, mipmap, useRed, expectedChars, expectedGlyphs);
         gc.manager.addListener(gc);
         return gc;
     }
 
+    /**
+     * Replaces the largest free rectangle found so far if another one is bigger.
+     *
+     * @param largest Largest free rectangle found so far, assumed not null
+     * @param x Position of left side of free rectangle
+     * @param y Position of top side of free rectangle
+     * @param w Width of free rectangle, which may be zero
+     * @param h Height of free rectangle, which may be zero
+     */
+    private static void offerFreeRect(/*@Nonnull*/ final Rectangle largest,
+                                      final int x,
+                                      final int y,
+                                      final int w,
+                                      final int h) {
+        if (((long) w) * h > ((long) largest.width) * largest.height) {
+            largest.setBounds(x, y, w, h);
+        }
+    }
+
     /**
      * Responds to an event from the backing store.
      *
@@ -648,6 +1103,7 @@ public final class GlyphCache implements TextureBackingStore.EventListener {
      * Responds to the backing store failing (reallocation).
      */
     private void onBackingStoreFailure() {
+        count(TextRendererMetrics.Counter.CLEARS, 1);
         packer.clear();
         fireEvent(EventType.CLEAR, null);
     }
@@ -671,11 +1127,75 @@ public final class GlyphCache implements TextureBackingStore.EventListener {
      * keep things simple.  Note that if we don't clear the used bit here, the backing store tends
      * to increase very quickly to its maximum size, at least with the TextFlow demo when the text
      * is being continually re-laid out.
+     *
+     * <p>
+     * If glyphs are expected and the backing store still needs to grow afterwards, it grows to the
+     * size predicted for the expected number of glyphs, or twice the number of glyphs stored if
+     * that has been exceeded.  Otherwise it grows by the packer's usual factor.
      */
     private void onBackingStoreReallocate() {
+        count(TextRendererMetrics.Counter.REALLOCATIONS, 1);
         fireEvent(EventType.REALLOCATE, null);
-        clearUnusedEntries();
+        clearUnusedEntries(false);
         clearTextureCoordinates();
+
+        if (estimator != null) {
+            final int glyphs = Math.max(expectedGlyphs, 2 * countGlyphs());
+            packer.setPreferredHeight(estimator.getHeight(glyphs, getWidth()));
+        }
+    }
+
+    /**
+     * Changes how much time compacting the backing store may take per render cycle.
+     *
+     * <p>
+     * With a budget of zero, the default, a fragmented backing store is compacted all at once,
+     * which may cause a noticeable hitch with large caches.  Otherwise the entries are moved to
+     * the new backing store over as many calls to {@link #endRendering} as necessary, while the
+     * current backing store continues to be used for drawing.
+     *
+     * @param nanos Time in nanoseconds, or zero to compact at once
+     * @throws IllegalArgumentException if time is negative
+     */
+    public void setCompactionBudget(/*@Nonnegative*/ final long nanos) {
+
+        Check.argument(nanos >= 0, "Time is negative");
+
+        this.compactionBudget = nanos;
+    }
+
+    /**
+     * Changes the gamma glyph coverage is corrected with.
+     *
+     * <p>
+     * With intensity textures the correction is applied while uploading, so the whole texture is
+     * uploaded again on the next update.  {@code GL_RED} textures keep the raw coverage and leave
+     * the correction to the renderer.
+     *
+     * @param gamma Gamma to correct coverage with, where one means no correction
+     * @throws IllegalArgumentException if gamma is not positive
+     */
+    public void setGamma(final float gamma) {
+
+        Check.argument(gamma > 0, "Gamma must be positive");
+
+        manager.setGamma(gamma);
+        getBackingStore().setGamma(gamma);
+        if (packer.isCompacting()) {
+            ((TextureBackingStore) packer.getNextBackingStore()).setGamma(gamma);
+        }
+    }
+
+    /**
+     * Changes where cache activity is counted.
+     *
+     * <p>
+     * Counts rasterized glyphs, texture uploads, reallocations, compactions and evictions.
+     *
+     * @param metrics Metrics to update, or null to not count anything
+     */
+    public void setMetrics(/*@CheckForNull*/ final TextRendererMetrics metrics) {
+        this.metrics = metrics;
     }
 
     /**
@@ -688,6 +1208,62 @@ public final class GlyphCache implements TextureBackingStore.EventListener {
         packer.setMaxSize(maxSize, maxSize);
     }
 
+    /**
+     * Changes the algorithm used to position glyphs in the backing store.
+     *
+     * <p>
+     * Glyphs already stored are re-laid out with the new strategy, which reallocates the backing
+     * store.  This is best done before any text is drawn.
+     *
+     * @param strategy Creator of the packing strategy to use, e.g. {@code SkylineSet.FACTORY}
+     * @throws NullPointerException if strategy is null
+     */
+    public void setPackingStrategy(/*@Nonnull*/ final PackingStrategy.Factory strategy) {
+
+        Check.notNull(strategy, "Strategy cannot be null");
+
+        packer.setPackingStrategy(strategy);
+        clearTextureCoordinates();
+    }
+
+    /**
+     * Makes the array texture in use, if any, big enough for the backing store before updating.
+     *
+     * <p>
+     * Caches sharing an array texture call this before any of them updates, so the array grows
+     * to fit all their backing stores at once.
+     */
+    public void requireLayer() {
+        if (textureArray != null) {
+            final TextureBackingStore bs = getBackingStore();
+            textureArray.require(bs.getWidth(), bs.getHeight());
+        }
+    }
+
+    /**
+     * Changes the texture glyphs are uploaded to, to a layer of an array texture.
+     *
+     * <p>
+     * The array texture may be shared with caches of other fonts, each uploading to its own
+     * layer, so that their glyphs can be drawn together.  Texture coordinates stay relative to
+     * the backing store, leaving it to the renderer to scale them to the layer.  While
+     * compacting incrementally, the backing store being filled is only uploaded once it is done.
+     *
+     * @param array Array texture to upload to, or null to go back to own texture
+     * @param layer Index of layer to upload to
+     * @throws IllegalArgumentException if layer is negative or not less than
+     * {@link GlyphTextureArray#MAX_LAYERS}
+     */
+    public void setTextureArray(/*@CheckForNull*/ final GlyphTextureArray array,
+                                /*@Nonnegative*/ final int layer) {
+
+        Check.argument(layer >= 0 && layer < GlyphTextureArray.MAX_LAYERS,
+                       "Layer is out of range");
+
+        this.textureArray = array;
+        this.layer = layer;
+    }
+
     /**
      * Changes whether this {@link GlyphCache}'s texture should interpolate when sampling.
      *
@@ -712,8 +1288,46 @@ public final class GlyphCache implements TextureBackingStore.EventListener {
 
         Check.notNull(gl, "GL cannot be null");
 
-        final TextureBackingStore bs = getBackingStore();
-        bs.update(gl);
+        update(gl, getBackingStore());
+    }
+
+    /**
+     * Uploads any recently drawn data of a backing store to its texture, counting the upload.
+     *
+     * @param gl Current OpenGL context, assumed not null
+     * @param bs Backing store to update, assumed not null
+     */
+    private void update(/*@Nonnull*/ final GL gl, /*@Nonnull*/ final TextureBackingStore bs) {
+
+        final int area = bs.getDirtyArea();
+        if ((metrics == null) || (area == 0)) {
+            updateTexture(gl, bs);
+            return;
+        }
+
+        final long start = System.nanoTime();
+        updateTexture(gl, bs);
+        count(TextRendererMetrics.Counter.UPLOAD_NANOS, System.nanoTime() - start);
+        count(TextRendererMetrics.Counter.TEXTURE_UPLOADS, 1);
+        count(TextRendererMetrics.Counter.DIRTY_AREA, area);
+
+        // Backing stores have a single byte per pixel
+        count(TextRendererMetrics.Counter.BYTES_UPLOADED, area);
+    }
+
+    /**
+     * Uploads any recently drawn data of a backing store to its texture or the array texture.
+     *
+     * @param gl Current OpenGL context, assumed not null
+     * @param bs Backing store to update, assumed not null
+     */
+    private void updateTexture(/*@Nonnull*/ final GL gl,
+                               /*@Nonnull*/ final TextureBackingStore bs) {
+        if (textureArray != null) {
+            bs.update(gl, textureArray, layer);
+        } else {
+            bs.update(gl);
+        }
     }
 
     /**
@@ -741,6 +1355,26 @@ public final class GlyphCache implements TextureBackingStore.EventListener {
         markGlyphLocationUsed(glyph);
     }
 
+    /**
+     * Writes the backing store with the glyph rectangles outlined as a PNG image.
+     *
+     * <p>
+     * Needs no OpenGL context.  The stream is not closed.
+     *
+     * @param out Stream to write the image to
+     * @throws NullPointerException if stream is null
+     * @throws IOException if the image could not be written
+     * @see #createAtlasImage()
+     */
+    public void writeAtlasImage(/*@Nonnull*/ final OutputStream out) throws IOException {
+
+        Check.notNull(out, "Stream cannot be null");
+
+        if (!ImageIO.write(createAtlasImage(), "png", out)) {
+            throw new IOException("No writer for PNG images");
+        }
+    }
+
     /**
      * Object that wants to be notified of cache events.
      */
@@ -750,10 +1384,11 @@ public final class GlyphCache implements TextureBackingStore.EventListener {
          * Responds to an event from a {@link GlyphCache}.
          *
          * @param type Type of event
-         * @param data Object that triggered the event, i.e., a glyph
-         * @throws NullPointerException if event type or data is null (optional)
+         * @param data Glyph removed for {@link EventType#CLEAN}, null except for CLEAN
+         * @throws NullPointerException if event type is null, or data is null for CLEAN
+         *                              (optional)
          */
-        void onGlyphCacheEvent(/*@Nonnull*/ EventType type, /*@Nonnull*/ Object data);
+        void onGlyphCacheEvent(/*@Nonnull*/ EventType type, /*@CheckForNull*/ Object data);
     }
 
     /**
@@ -794,6 +1429,12 @@ public final class GlyphCache implements TextureBackingStore.EventListener {
          */
         private boolean used;
 
+        /**
+         * Render cycle the text was last used in.
+         */
+        /*@Nonnegative*/
+        private long lastUsed;
+
         /**
          * Constructs a {@link TextData} from a glyph.
          *
@@ -811,11 +1452,22 @@ public final class GlyphCache implements TextureBackingStore.EventListener {
             used = false;
         }
 
+        /**
+         * Returns the render cycle the text was last used in.
+         */
+        /*@Nonnegative*/
+        long lastUsed() {
+            return lastUsed;
+        }
+
         /**
          * Indicates this {@link TextData} was just used.
+         *
+         * @param renderCycle Current render cycle
          */
-        void markUsed() {
+        void markUsed(/*@Nonnegative*/ final long renderCycle) {
             used = true;
+            lastUsed = renderCycle;
         }
 
         /**
@@ -0,0 +1,563 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import com.github.opengrabeso.ogltext.util.awt.TextRenderer.RenderDelegate;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.font.TextAttribute;
+import java.awt.geom.Rectangle2D;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+/**
+ * Advances and bounds of characters in a font, safe to use from any thread.
+ *
+ * <p>
+ * Each character is measured the first time it is asked for, and the result is kept in a table
+ * that is read without locking.  Measurements are immutable once published, so a character may
+ * be measured twice if two threads ask for it at the same moment, but only one result is ever
+ * kept.
+ *
+ * <p>
+ * Bounds of strings with simple layout are combined from the bounds and advances of their
+ * characters, without laying them out.  Bounds of other strings are laid out by the render
+ * delegate, and the most recently used ones are kept.
+ *
+ * <p>
+ * If the font asks for kerning with {@link TextAttribute#KERNING}, the kerning of pairs of simple
+ * characters is also kept.  Each character's pairs with all characters seen before are found
+ * with a single layout the first time it is needed.
+ *
+ * <p>
+ * Glyph producers take their measurements from here as well, so a character drawn by a {@link
+ * com.github.opengrabeso.ogltext.util.awt.TextRenderer TextRenderer} and measured by a layout
+ * thread is only measured once.  The render delegate is called from whichever thread asks first,
+ * so it must be thread-safe; the default one is.
+ */
+/*@ThreadSafe*/
+public final class GlyphMeasurements {
+
+    /**
+     * Number of bits of a character selecting the entry within a page.
+     */
+    private static final int PAGE_BITS = 8;
+
+    /**
+     * Number of characters in a page.
+     */
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    /**
+     * Number of pages covering all characters.
+     */
+    private static final int PAGE_COUNT = (Character.MAX_VALUE + 1) >> PAGE_BITS;
+
+    /**
+     * Number of bounds of strings with complex layout kept.
+     */
+    private static final int COMPLEX_BOUNDS_SIZE = 256;
+
+    /**
+     * Font characters are measured in.
+     */
+    /*@Nonnull*/
+    private final Font font;
+
+    /**
+     * Delegate computing visual bounds.
+     */
+    /*@Nonnull*/
+    private final RenderDelegate renderDelegate;
+
+    /**
+     * Details on how fonts are rendered.
+     */
+    /*@Nonnull*/
+    private final FontRenderContext fontRenderContext;
+
+    /**
+     * True if the font asks for pairs of characters to be kerned.
+     */
+    private final boolean kerning;
+
+    /**
+     * Distance between baselines of consecutive lines.
+     */
+    /*@Nonnegative*/
+    private final float lineHeight;
+
+    /**
+     * Kerning of pairs of the characters seen so far, replaced as characters are added.
+     */
+    /*@Nonnull*/
+    private volatile KerningTable kerningTable = KerningTable.EMPTY;
+
+    /**
+     * Lock for adding characters to the kerning table.
+     */
+    /*@Nonnull*/
+    private final Object kerningLock = new Object();
+
+    /**
+     * Measurements by character, in pages created when first needed.
+     */
+    /*@Nonnull*/
+    private final AtomicReferenceArray<AtomicReferenceArray<Measurement>> pages =
+            new AtomicReferenceArray<AtomicReferenceArray<Measurement>>(PAGE_COUNT);
+
+    /**
+     * Padded bounds of strings with complex layout, least recently used first, guarded by itself.
+     */
+    /*@Nonnull*/
+    private final Map<String, Rectangle2D> complexBounds = new BoundsCache(COMPLEX_BOUNDS_SIZE);
+
+    /**
+     * Constructs a {@link GlyphMeasurements}.
+     *
+     * @param font Font to measure characters in
+     * @param rd Delegate computing visual bounds, must be thread-safe
+     * @param frc Details on how fonts are rendered
+     * @throws NullPointerException if font, render delegate, or font render context is null
+     */
+    public GlyphMeasurements(/*@Nonnull*/ final Font font,
+                             /*@Nonnull*/ final RenderDelegate rd,
+                             /*@Nonnull*/ final FontRenderContext frc) {
+
+        Check.notNull(font, "Font cannot be null");
+        Check.notNull(rd, "Render delegate cannot be null");
+        Check.notNull(frc, "Font render context cannot be null");
+
+        this.font = font;
+        this.renderDelegate = rd;
+        this.fontRenderContext = frc;
+        this.kerning = TextAttribute.KERNING_ON.equals(font.getAttributes().get(TextAttribute.KERNING));
+        this.lineHeight = font.getLineMetrics("", frc).getHeight();
+    }
+
+    /**
+     * Adds inner space to a rectangle.
+     *
+     * <p>
+     * Need to round to integer coordinates.
+     *
+     * <p>
+     * Also give ourselves a little slop around the reported bounds of glyphs because it looks like
+     * neither the visual nor the pixel bounds works perfectly well.
+     *
+     * @param src Original rectangle
+     * @return Rectangle with padding added, not null
+     * @throws NullPointerException if rectangle is null
+     */
+    /*@Nonnull*/
+    static Rectangle2D addPaddingTo(/*@Nonnull*/ final Rectangle2D src) {
+
+        final int minX = (int) Math.floor(src.getMinX()) - 1;
+        final int minY = (int) Math.floor(src.getMinY()) - 1;
+        final int maxX = (int) Math.ceil(src.getMaxX()) + 1;
+        final int maxY = (int) Math.ceil(src.getMaxY()) + 1;
+
+        return new Rectangle2D.Float(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    /**
+     * Adds a character to the kerning table, finding its pairs with all characters already in it.
+     *
+     * <p>
+     * Lays out the character alternating with each known character and itself, so every pair is
+     * adjacent once in each order, and compares the positions of the glyphs to their advances.
+     *
+     * @param c Character to add, assumed not above the largest simple character
+     * @return Kerning table containing the character, not null
+     */
+    /*@Nonnull*/
+    private KerningTable addKerning(final char c) {
+        synchronized (kerningLock) {
+
+            final KerningTable table = kerningTable;
+            if (table.contains(c)) {
+                return table;
+            }
+
+            // Make the text
+            final char[] known = table.getCharacters();
+            final char[] text = new char[2 * known.length + 2];
+            int len = 0;
+            for (final char other : known) {
+                text[len++] = c;
+                text[len++] = other;
+            }
+            text[len++] = c;
+            text[len++] = c;
+
+            // Find the pairs with an adjustment
+            final GlyphVector gv = font.layoutGlyphVector(
+                    fontRenderContext, text, 0, len, Font.LAYOUT_LEFT_TO_RIGHT);
+            final char[] lefts = new char[len];
+            final char[] rights = new char[len];
+            final float[] adjustments = new float[len];
+            int count = 0;
+            if (gv.getNumGlyphs() == len) {
+                for (int i = 0; i + 1 < len; ++i) {
+                    final double distance = gv.getGlyphPosition(i + 1).getX()
+                            - gv.getGlyphPosition(i).getX();
+                    final float adjustment = (float) (distance - get(text[i]).advance);
+                    if (Math.abs(adjustment) > 1e-3f) {
+                        lefts[count] = text[i];
+                        rights[count] = text[i + 1];
+                        adjustments[count] = adjustment;
+                        ++count;
+                    }
+                }
+            }
+
+            kerningTable = table.plus(c, lefts, rights, adjustments, count);
+            return kerningTable;
+        }
+    }
+
+    /**
+     * Returns the measurement of a character, measuring it if needed.
+     *
+     * @param c Character to measure
+     * @return Measurement of the character, not null
+     */
+    /*@Nonnull*/
+    Measurement get(final char c) {
+
+        // Find the page
+        final int index = c >> PAGE_BITS;
+        AtomicReferenceArray<Measurement> page = pages.get(index);
+        if (page == null) {
+            pages.compareAndSet(index, null, new AtomicReferenceArray<Measurement>(PAGE_SIZE));
+            page = pages.get(index);
+        }
+
+        // Find the measurement
+        final int offset = c & (PAGE_SIZE - 1);
+        final Measurement measurement = page.get(offset);
+        if (measurement != null) {
+            return measurement;
+        }
+
+        // Measure, keeping whichever result was published first
+        page.compareAndSet(offset, null, measure(c));
+        return page.get(offset);
+    }
+
+    /**
+     * Determines the distance to the next character after a character.
+     *
+     * @param c Character to find advance of
+     * @return Distance to the next character, which may be negative
+     */
+    /*@CheckForSigned*/
+    public float getAdvance(final char c) {
+        return get(c).advance;
+    }
+
+    /**
+     * Determines how much closer or further apart a pair of characters is placed.
+     *
+     * <p>
+     * Always zero unless the font asks for kerning, or if either character is not simple.
+     *
+     * @param left Character on the left
+     * @param right Character following it
+     * @return Change to the advance of the left character, which may be negative
+     */
+    /*@CheckForSigned*/
+    public float getKerning(final char left, final char right) {
+
+        if (!kerning || left > KerningTable.MAX_CHARACTER || right > KerningTable.MAX_CHARACTER) {
+            return 0;
+        }
+
+        KerningTable table = kerningTable;
+        if (!table.contains(left)) {
+            table = addKerning(left);
+        }
+        if (!table.contains(right)) {
+            table = addKerning(right);
+        }
+        return table.get(left, right);
+    }
+
+    /**
+     * Determines how much closer or further apart a pair of glyphs is placed.
+     *
+     * <p>
+     * Glyphs representing multiple characters are laid out by Java 2D already, so only pairs
+     * of single characters are kerned.
+     *
+     * @param left Glyph on the left, not null
+     * @param right Glyph following it, not null
+     * @return Change to the advance of the left glyph, which may be negative
+     */
+    /*@CheckForSigned*/
+    public float getKerning(/*@Nonnull*/ final Glyph left, /*@Nonnull*/ final Glyph right) {
+        if (left.character == '\0' || right.character == '\0') {
+            return 0;
+        }
+        return getKerning(left.character, right.character);
+    }
+
+    /**
+     * Determines the visual bounds of a character with padding added.
+     *
+     * @param c Character to find bounds of
+     * @return Copy of visual bounds with padding added, not null
+     */
+    /*@Nonnull*/
+    public Rectangle2D getBounds(final char c) {
+        return (Rectangle2D) get(c).paddedBounds.clone();
+    }
+
+    /**
+     * Determines the visual bounds of a string with padding added.
+     *
+     * <p>
+     * Strings with simple layout are combined from the measurements of their characters, and
+     * agree with Java 2D to within a pixel.  Others are laid out, unless they were recently.
+     *
+     * @param str Text to find bounds of
+     * @return Visual bounds of string with padding added, not null
+     * @throws NullPointerException if string is null
+     */
+    /*@Nonnull*/
+    public Rectangle2D getBounds(/*@Nonnull*/ final String str) {
+
+        Check.notNull(str, "String cannot be null");
+
+        // Combine characters if possible
+        final int len = str.length();
+        if (len == 1) {
+            return getBounds(str.charAt(0));
+        } else if (len > 1 && !AbstractGlyphProducer.hasComplexCharacters(str)) {
+            return addPaddingTo(getSimpleBounds(str));
+        }
+
+        // Otherwise lay out the string once
+        Rectangle2D bounds;
+        synchronized (complexBounds) {
+            bounds = complexBounds.get(str);
+        }
+        if (bounds == null) {
+            bounds = addPaddingTo(renderDelegate.getBounds(str, font, fontRenderContext));
+            synchronized (complexBounds) {
+                complexBounds.put(str, bounds);
+            }
+        }
+        return (Rectangle2D) bounds.clone();
+    }
+
+    /**
+     * Returns the font characters are measured in.
+     *
+     * @return Font characters are measured in, not null
+     */
+    /*@Nonnull*/
+    public Font getFont() {
+        return font;
+    }
+
+    /**
+     * Returns the details on how fonts are rendered.
+     *
+     * @return Font render context, not null
+     */
+    /*@Nonnull*/
+    public FontRenderContext getFontRenderContext() {
+        return fontRenderContext;
+    }
+
+    /**
+     * Checks if the font asks for pairs of characters to be kerned.
+     *
+     * @return True if {@link #getKerning} may be other than zero
+     */
+    public boolean hasKerning() {
+        return kerning;
+    }
+
+    /**
+     * Returns the distance between baselines of consecutive lines of text.
+     *
+     * @return Sum of the font's ascent, descent, and leading
+     */
+    /*@Nonnegative*/
+    public float getLineHeight() {
+        return lineHeight;
+    }
+
+    /**
+     * Returns the delegate computing visual bounds.
+     *
+     * @return Render delegate, not null
+     */
+    /*@Nonnull*/
+    RenderDelegate getRenderDelegate() {
+        return renderDelegate;
+    }
+
+    /**
+     * Combines the visual bounds of the characters in a string with simple layout.
+     *
+     * <p>
+     * Characters are placed one after another by their advances and kerning, and characters
+     * without any outline, like spaces, are left out, the same way Java 2D does.
+     *
+     * @param str Text with simple layout, assumed not null
+     * @return Visual bounds of the string without padding, not null
+     */
+    /*@Nonnull*/
+    private Rectangle2D getSimpleBounds(/*@Nonnull*/ final String str) {
+
+        float x = 0;
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+
+        final int len = str.length();
+        for (int i = 0; i < len; ++i) {
+            final Measurement measurement = get(str.charAt(i));
+            final Rectangle2D visual = measurement.visualBounds;
+            if (!visual.isEmpty()) {
+                minX = Math.min(minX, x + visual.getMinX());
+                minY = Math.min(minY, visual.getMinY());
+                maxX = Math.max(maxX, x + visual.getMaxX());
+                maxY = Math.max(maxY, visual.getMaxY());
+            }
+            x += measurement.advance;
+            if (kerning && i + 1 < len) {
+                x += getKerning(str.charAt(i), str.charAt(i + 1));
+            }
+        }
+
+        if (minX > maxX) {
+            return new Rectangle2D.Float();
+        }
+        return new Rectangle2D.Double(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    /**
+     * Checks if a character can be laid out on its own, without shaping it with its neighbors.
+     *
+     * @param c Character to check
+     * @return True if the character is in one of the scripts glyphs are made for one at a time
+     */
+    public static boolean isSimple(final char c) {
+        return c <= KerningTable.MAX_CHARACTER;
+    }
+
+    /**
+     * Measures a character.
+     *
+     * @param c Character to measure
+     * @return Measurement of the character, not null
+     */
+    /*@Nonnull*/
+    private Measurement measure(final char c) {
+        final GlyphVector gv = font.createGlyphVector(fontRenderContext, new char[] { c });
+        final Rectangle2D visualBounds = renderDelegate.getBounds(gv, fontRenderContext);
+        return new Measurement(gv.getGlyphMetrics(0).getAdvance(), visualBounds);
+    }
+
+    /**
+     * Map dropping the least recently used entry when it grows too big.
+     */
+    private static final class BoundsCache extends LinkedHashMap<String, Rectangle2D> {
+
+        /**
+         * Version of serialized form.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Largest number of entries kept.
+         */
+        /*@Nonnegative*/
+        private final int capacity;
+
+        /**
+         * Constructs a {@link BoundsCache}.
+         *
+         * @param capacity Largest number of entries kept
+         */
+        BoundsCache(/*@Nonnegative*/ final int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Rectangle2D> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    /**
+     * Advance and bounds of a character.
+     */
+    /*@Immutable*/
+    static final class Measurement {
+
+        /**
+         * Distance to the next character.
+         */
+        final float advance;
+
+        /**
+         * Visual bounds, never modified.
+         */
+        /*@Nonnull*/
+        final Rectangle2D visualBounds;
+
+        /**
+         * Visual bounds with padding added, never modified.
+         */
+        /*@Nonnull*/
+        final Rectangle2D paddedBounds;
+
+        /**
+         * Constructs a {@link Measurement}.
+         *
+         * @param advance Distance to the next character
+         * @param visualBounds Visual bounds, assumed not null and not modified afterwards
+         */
+        Measurement(final float advance, /*@Nonnull*/ final Rectangle2D visualBounds) {
+            this.advance = advance;
+            this.visualBounds = visualBounds;
+            this.paddedBounds = addPaddingTo(visualBounds);
+        }
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import com.github.opengrabeso.jaagl.GL2GL3;
+import com.github.opengrabeso.ogltext.util.texture.TextureCoords;
+import com.jogamp.common.nio.Buffers;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Table of glyph measurements and texture coordinates kept in a texture buffer for shaders.
+ *
+ * <p>
+ * Each glyph added gets a <i>slot</i> of two {@code RGBA32F} texels.  The first holds the offset
+ * of the glyph's box from the pen position and its size, as {@code (kerning, -descent, width,
+ * height)}.  The second holds its texture coordinates in the cache, as {@code (left, bottom,
+ * right, top)}.  {@link StaticText} refers to glyphs only by slot, so the vertex shader can build
+ * each quad from the table.
+ *
+ * <p>
+ * A local copy of the table is kept, and only the slots changed since the last upload are sent.
+ * Sizes never change, but texture coordinates move whenever the cache is compacted or grown, so
+ * {@link #update} looks every glyph up again.  The cost of that grows with the number of different
+ * glyphs, not with the length of the text.
+ */
+/*@NotThreadSafe*/
+public final class GlyphMetricBuffer {
+
+    /**
+     * Largest number of glyphs, limited by the 16 bits {@link StaticText} stores a slot in.
+     */
+    public static final int MAX_GLYPHS = 1 << 16;
+
+    /**
+     * Number of texels for each glyph.
+     */
+    static final int TEXELS_PER_GLYPH = 2;
+
+    /**
+     * Number of floats for each glyph.
+     */
+    private static final int FLOATS_PER_GLYPH = TEXELS_PER_GLYPH * 4;
+
+    /**
+     * Size of a float in bytes.
+     */
+    private static final int SIZEOF_FLOAT = 4;
+
+    /**
+     * Number of glyphs room is made for at first.
+     */
+    private static final int INITIAL_CAPACITY = 128;
+
+    /**
+     * Glyphs in order of their slots.
+     */
+    /*@Nonnull*/
+    private final List<Glyph> glyphs = new ArrayList<Glyph>();
+
+    /**
+     * Slot of each glyph in this table, by identity, since a glyph may be in several tables.
+     */
+    /*@Nonnull*/
+    private final Map<Glyph, Integer> slots = new IdentityHashMap<Glyph, Integer>();
+
+    /**
+     * Texture coordinates last copied for each slot, compared by identity.
+     */
+    /*@Nonnull*/
+    private final List<TextureCoords> coordinates = new ArrayList<TextureCoords>();
+
+    /**
+     * Local copy of the table, direct for uploading.
+     */
+    /*@Nonnull*/
+    private FloatBuffer values = Buffers.newDirectFloatBuffer(INITIAL_CAPACITY * FLOATS_PER_GLYPH);
+
+    /**
+     * Index of first slot changed since the last upload.
+     */
+    /*@Nonnegative*/
+    private int dirtyStart = 0;
+
+    /**
+     * Index after last slot changed since the last upload.
+     */
+    /*@Nonnegative*/
+    private int dirtyEnd = 0;
+
+    /**
+     * Number of slots the buffer object has room for, or zero if it has no storage yet.
+     */
+    /*@Nonnegative*/
+    private int allocated = 0;
+
+    /**
+     * OpenGL handle to the buffer object, or zero if not created yet.
+     */
+    /*@Nonnegative*/
+    private int buffer = 0;
+
+    /**
+     * OpenGL handle to the buffer texture, or zero if not created yet.
+     */
+    /*@Nonnegative*/
+    private int texture = 0;
+
+    /**
+     * Constructs an empty {@link GlyphMetricBuffer}.
+     */
+    public GlyphMetricBuffer() {
+        // empty
+    }
+
+    /**
+     * Gives a glyph a slot in the table, unless it already has one.
+     *
+     * @param glyph Glyph to add
+     * @return Slot of the glyph
+     * @throws NullPointerException if glyph is null
+     * @throws IllegalStateException if the table is full
+     */
+    /*@Nonnegative*/
+    public int add(/*@Nonnull*/ final Glyph glyph) {
+
+        Check.notNull(glyph, "Glyph cannot be null");
+
+        final Integer existing = slots.get(glyph);
+        if (existing != null) {
+            return existing;
+        }
+        Check.state(glyphs.size() < MAX_GLYPHS, "Too many glyphs");
+
+        // Make room
+        final int slot = glyphs.size();
+        if (values.capacity() < (slot + 1) * FLOATS_PER_GLYPH) {
+            final FloatBuffer larger = Buffers.newDirectFloatBuffer(values.capacity() * 2);
+            values.rewind();
+            larger.put(values);
+            values = larger;
+        }
+
+        // Store the box, leaving the coordinates for the next update
+        final int i = slot * FLOATS_PER_GLYPH;
+        values.put(i, glyph.kerning);
+        values.put(i + 1, -glyph.descent);
+        values.put(i + 2, glyph.width);
+        values.put(i + 3, glyph.height);
+        slots.put(glyph, slot);
+        glyphs.add(glyph);
+        coordinates.add(null);
+        markDirty(slot);
+        return slot;
+    }
+
+    /**
+     * Binds the buffer texture to a texture unit.
+     *
+     * @param gl Current OpenGL context
+     * @param unit Texture unit, such as {@code GL_TEXTURE1}
+     * @throws NullPointerException if context is null
+     * @throws IllegalStateException if never updated
+     */
+    void bind(/*@Nonnull*/ final GL2GL3 gl, final int unit) {
+
+        Check.notNull(gl, "GL cannot be null");
+        Check.state(texture != 0, "Must be updated first");
+
+        gl.glActiveTexture(unit);
+        gl.glBindTexture(gl.gl3().GL_TEXTURE_BUFFER(), texture);
+    }
+
+    /**
+     * Forgets the OpenGL objects after the context was lost, so the next update makes them again.
+     */
+    public void contextRecreated() {
+        buffer = 0;
+        texture = 0;
+        allocated = 0;
+        for (int i = 0; i < coordinates.size(); ++i) {
+            coordinates.set(i, null);
+        }
+    }
+
+    /**
+     * Frees the OpenGL objects of the table.
+     *
+     * @param gl Current OpenGL context
+     * @throws NullPointerException if context is null
+     */
+    public void dispose(/*@Nonnull*/ final GL2GL3 gl) {
+
+        Check.notNull(gl, "GL cannot be null");
+
+        if (texture != 0) {
+            gl.glDeleteTextures(new int[] { texture });
+            gl.glDeleteBuffers(new int[] { buffer });
+        }
+        contextRecreated();
+    }
+
+    /**
+     * Widens the range of slots to upload to include one.
+     *
+     * @param slot Index of changed slot
+     */
+    private void markDirty(/*@Nonnegative*/ final int slot) {
+        if (dirtyStart >= dirtyEnd) {
+            dirtyStart = slot;
+            dirtyEnd = slot + 1;
+        } else {
+            dirtyStart = Math.min(dirtyStart, slot);
+            dirtyEnd = Math.max(dirtyEnd, slot + 1);
+        }
+    }
+
+    /**
+     * Returns the number of glyphs in the table.
+     *
+     * @return Number of glyphs in the table
+     */
+    /*@Nonnegative*/
+    public int size() {
+        return glyphs.size();
+    }
+
+    /**
+     * Makes sure every glyph is in a cache and uploads the texture coordinates that changed.
+     *
+     * <p>
+     * Glyphs already in the cache are marked as used first, so making room for the missing ones
+     * does not evict them.  Missing glyphs are added before any coordinates are copied, since
+     * adding them may move the others, and added again if the cache grew more than once and
+     * evicted some of them anyway.
+     *
+     * @param gl Current OpenGL context
+     * @param cache Cache the glyphs are drawn from
+     * @throws NullPointerException if context or cache is null
+     */
+    public void update(/*@Nonnull*/ final GL2GL3 gl, /*@Nonnull*/ final GlyphCache cache) {
+
+        Check.notNull(gl, "GL cannot be null");
+        Check.notNull(cache, "Cache cannot be null");
+
+        // Mark resident glyphs used, so making room for others does not evict them
+        for (final Glyph glyph : glyphs) {
+            if (glyph.location != null) {
+                cache.markGlyphLocationUsed(glyph);
+            }
+        }
+
+        // Add missing glyphs, and any evicted while adding them
+        boolean missing = true;
+        while (missing) {
+            missing = false;
+            for (final Glyph glyph : glyphs) {
+                if (glyph.location == null) {
+                    cache.upload(glyph);
+                    missing = true;
+                }
+            }
+        }
+
+        // Copy coordinates that moved
+        for (int slot = 0; slot < glyphs.size(); ++slot) {
+            final TextureCoords coords = cache.find(glyphs.get(slot));
+            if (coords != coordinates.get(slot)) {
+                final int i = slot * FLOATS_PER_GLYPH + 4;
+                values.put(i, coords.left());
+                values.put(i + 1, coords.bottom());
+                values.put(i + 2, coords.right());
+                values.put(i + 3, coords.top());
+                coordinates.set(slot, coords);
+                markDirty(slot);
+            }
+        }
+
+        upload(gl);
+    }
+
+    /**
+     * Sends the changed slots to the buffer object, creating or growing it if needed.
+     *
+     * @param gl Current OpenGL context, assumed not null
+     */
+    private void upload(/*@Nonnull*/ final GL2GL3 gl) {
+
+        // Create objects
+        if (texture == 0) {
+            final int[] handles = new int[1];
+            gl.glGenBuffers(handles);
+            buffer = handles[0];
+            gl.glGenTextures(handles);
+            texture = handles[0];
+        }
+
+        final int target = gl.gl3().GL_TEXTURE_BUFFER();
+        gl.glBindBuffer(target, buffer);
+        if (allocated < glyphs.size()) {
+
+            // Send everything, with room to grow
+            allocated = values.capacity() / FLOATS_PER_GLYPH;
+            values.rewind();
+            gl.glBufferData(target, values.capacity() * SIZEOF_FLOAT, values, gl.GL_DYNAMIC_DRAW());
+            gl.glBindTexture(target, texture);
+            gl.gl3().glTexBuffer(target, gl.gl3().GL_RGBA32F(), buffer);
+            gl.glBindTexture(target, 0);
+        } else if (dirtyStart < dirtyEnd) {
+
+            // Send the changed range
+            values.position(dirtyStart * FLOATS_PER_GLYPH);
+            gl.glBufferSubData(
+                    target,
+                    dirtyStart * FLOATS_PER_GLYPH * SIZEOF_FLOAT,
+                    (dirtyEnd - dirtyStart) * FLOATS_PER_GLYPH * SIZEOF_FLOAT,
+                    values);
+            values.rewind();
+        }
+        gl.glBindBuffer(target, 0);
+        dirtyStart = 0;
+        dirtyEnd = 0;
+    }
+}
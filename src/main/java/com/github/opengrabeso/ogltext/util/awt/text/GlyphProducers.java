@@ -67,10 +67,27 @@ public final class GlyphProducers {
         Check.notNull(rd, "Render delegate cannot be null");
         Check.notNull(frc, "Font render context cannot be null");
 
+        return get(new GlyphMeasurements(font, rd, frc), ub);
+    }
+
+    /**
+     * Creates a {@link GlyphProducer} based on a range of characters, sharing measurements.
+     *
+     * @param measurements Measurements of the font, shared with the producer
+     * @param ub Range of characters to support
+     * @return Correct glyph producer for unicode block, not null
+     * @throws NullPointerException if measurements is null
+     */
+    /*@Nonnull*/
+    public static GlyphProducer get(/*@Nonnull*/ final GlyphMeasurements measurements,
+                                    /*@CheckForNull*/ final UnicodeBlock ub) {
+
+        Check.notNull(measurements, "Measurements cannot be null");
+
         if (ub == UnicodeBlock.BASIC_LATIN) {
-            return new AsciiGlyphProducer(font, rd, frc);
+            return new AsciiGlyphProducer(measurements);
         } else {
-            return new UnicodeGlyphProducer(font, rd, frc);
+            return new UnicodeGlyphProducer(measurements);
         }
     }
 }
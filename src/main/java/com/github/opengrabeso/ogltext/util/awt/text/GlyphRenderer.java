@@ -59,6 +59,11 @@ public interface GlyphRenderer {
                         /*@Nonnegative*/ int height,
                         boolean disableDepthTest, boolean gl3);
 
+    /**
+     * Stops clipping glyphs drawn afterwards.
+     */
+    void clearClip();
+
     /**
      * Frees resources used by this {@link GlyphRenderer}.
      *
@@ -66,6 +71,27 @@ public interface GlyphRenderer {
      */
     void dispose(/*@Nonnull*/ GL2GL3 gl);
 
+    /**
+     * Draws a {@link StaticText} kept on the GPU in one call.
+     *
+     * <p>
+     * Glyphs queued before are drawn first.  Clipping and culling are not applied.
+     *
+     * @param gl Current OpenGL context
+     * @param glyphs Table of glyphs the text refers to, already updated
+     * @param text Text to draw
+     * @param x Position of the first baseline on X axis
+     * @param y Position of the first baseline on Y axis
+     * @param z Position on Z axis
+     * @throws UnsupportedOperationException if not using OpenGL 3
+     */
+    void drawBuffer(/*@Nonnull*/ GL2GL3 gl,
+                    /*@Nonnull*/ GlyphMetricBuffer glyphs,
+                    /*@Nonnull*/ StaticText text,
+                    /*@CheckForSigned*/ float x,
+                    /*@CheckForSigned*/ float y,
+                    /*@CheckForSigned*/ float z);
+
     /**
      * Draws a glyph with this {@link GlyphRenderer}.
      *
@@ -108,6 +134,44 @@ public interface GlyphRenderer {
      */
     boolean getUseVertexArrays();
 
+    /**
+     * Checks if a rectangle facing the viewer may be visible.
+     *
+     * <p>
+     * In orthographic mode the rectangle is checked against the viewport, and in 3D mode against
+     * the view frustum of the transform, if one was set.  The check is conservative, so some
+     * rectangles reported visible may not be.
+     *
+     * @param xl Position of one vertical edge
+     * @param yb Position of one horizontal edge
+     * @param xr Position of the other vertical edge
+     * @param yt Position of the other horizontal edge
+     * @param z Position on Z axis
+     * @return False if the rectangle is certainly outside the view
+     */
+    boolean isVisible(/*@CheckForSigned*/ float xl,
+                      /*@CheckForSigned*/ float yb,
+                      /*@CheckForSigned*/ float xr,
+                      /*@CheckForSigned*/ float yt,
+                      /*@CheckForSigned*/ float z);
+
+    /**
+     * Clips glyphs drawn afterwards to a rectangle.
+     *
+     * <p>
+     * Glyphs are cut to the rectangle before they are queued, with their texture coordinates
+     * adjusted to match, so changing the rectangle does not flush the queued glyphs.
+     *
+     * @param xl Position of the left edge, in the coordinates glyphs are drawn in
+     * @param yb Position of the bottom edge
+     * @param xr Position of the right edge
+     * @param yt Position of the top edge
+     */
+    void setClip(/*@CheckForSigned*/ float xl,
+                 /*@CheckForSigned*/ float yb,
+                 /*@CheckForSigned*/ float xr,
+                 /*@CheckForSigned*/ float yt);
+
     /**
      * Changes the color used to draw the text.
      *
@@ -118,6 +182,39 @@ public interface GlyphRenderer {
      */
     void setColor(final GL2GL3 gl, float r, float g, float b, float a);
 
+    /**
+     * Changes whether glyphs outside the view are left out instead of being drawn.
+     *
+     * @param culling True to leave out glyphs that are not {@link #isVisible visible}
+     */
+    void setCulling(boolean culling);
+
+    /**
+     * Changes the gamma glyph coverage is corrected with, if the renderer applies it.
+     *
+     * @param gamma Gamma to correct coverage with, where one means no correction
+     * @throws IllegalArgumentException if gamma is not positive (optional)
+     */
+    void setGamma(float gamma);
+
+    /**
+     * Changes the layer of the array texture glyphs drawn afterwards are read from.
+     *
+     * <p>
+     * The layer is stored with each glyph, so changing it does not flush the queued glyphs.
+     * Ignored unless the renderer draws from an array texture.
+     *
+     * @param layer Index of the layer
+     */
+    void setLayer(/*@Nonnegative*/ int layer);
+
+    /**
+     * Changes where draw calls, quads and the reasons for flushing are counted.
+     *
+     * @param metrics Metrics to update, or null to not count anything
+     */
+    void setMetrics(/*@CheckForNull*/ TextRendererMetrics metrics);
+
     /**
      * Changes the transformation matrix for drawing in 3D.
      *
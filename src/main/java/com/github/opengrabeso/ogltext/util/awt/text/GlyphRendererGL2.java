@@ -106,6 +106,21 @@ public final class GlyphRendererGL2 extends AbstractGlyphRenderer {
         Check.notNull(gl, "GL cannot be null");
     }
 
+    /**
+     * Refuses to draw static text, since it needs texture buffers and instancing.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    protected void doDrawBuffer(/*@Nonnull*/ final GL2GL3 gl,
+                                /*@Nonnull*/ final GlyphMetricBuffer glyphs,
+                                /*@Nonnull*/ final StaticText text,
+                                /*@CheckForSigned*/ final float x,
+                                /*@CheckForSigned*/ final float y,
+                                /*@CheckForSigned*/ final float z) {
+        throw new UnsupportedOperationException("Static text needs OpenGL 3");
+    }
+
     @Override
     protected void doEndRendering(/*@Nonnull*/ final GL2GL3 gl) {
 
@@ -192,6 +207,11 @@ public final class GlyphRendererGL2 extends AbstractGlyphRenderer {
         return useVertexArrays;
     }
 
+    @Override
+    public void setGamma(final float gamma) {
+        // Applied to the intensity texture while uploading instead
+    }
+
     @Override
     public void setUseVertexArrays(final boolean useVertexArrays) {
         if (useVertexArrays != this.useVertexArrays) {
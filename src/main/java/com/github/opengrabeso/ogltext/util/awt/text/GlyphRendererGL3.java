@@ -33,6 +33,19 @@ import com.github.opengrabeso.jaagl.GL3;
 
 /**
  * Utility for drawing glyphs with OpenGL 3.
+ *
+ * <p>
+ * Uniforms are kept in two {@code std140} uniform blocks.  {@code Glyphs} belongs to the renderer
+ * and holds its transform, color and gamma, so nothing needs uploading when several renderers
+ * take turns with the shared program.  {@code Projection} holds the orthographic projection and
+ * is shared by all renderers of a context, so it is only uploaded when the size of the viewport
+ * changes.  Both are bound to fixed binding points at the start of each render cycle.
+ *
+ * <p>
+ * A layered renderer draws from a {@link GlyphTextureArray} instead, reading the layer of each
+ * glyph from its texture coordinates and scaling the coordinates by the size of that layer's
+ * backing store from the {@code Layers} block.  Glyphs of several fonts can then be drawn in one
+ * batch.
  */
 /*@VisibleForTesting*/
 /*@NotThreadSafe*/
@@ -44,12 +57,21 @@ public final class GlyphRendererGL3 extends AbstractGlyphRenderer {
     /*@Nonnull*/
     private static final String VERT_SOURCE =
         "#version 140\n" +
-        "uniform mat4 MVPMatrix;\n" +
+        "layout(std140) uniform Projection {\n" +
+        "   mat4 ProjectionMatrix;\n" +
+        "};\n" +
+        "layout(std140) uniform Glyphs {\n" +
+        "   mat4 MVPMatrix;\n" +
+        "   vec4 Color;\n" +
+        "   float InverseGamma;\n" +
+        "   float Orthographic;\n" +
+        "};\n" +
         "in vec4 MCVertex;\n" +
         "in vec2 TexCoord0;\n" +
         "out vec2 Coord0;\n" +
         "void main() {\n" +
-        "   gl_Position = MVPMatrix * MCVertex;\n" +
+        "   mat4 m = (Orthographic != 0.0) ? ProjectionMatrix : MVPMatrix;\n" +
+        "   gl_Position = m * MCVertex;\n" +
         "   Coord0 = TexCoord0;\n" +
         "}\n";
 
@@ -59,16 +81,173 @@ public final class GlyphRendererGL3 extends AbstractGlyphRenderer {
     /*@Nonnull*/
     private static final String FRAG_SOURCE =
         "#version 140\n" +
+        "layout(std140) uniform Glyphs {\n" +
+        "   mat4 MVPMatrix;\n" +
+        "   vec4 Color;\n" +
+        "   float InverseGamma;\n" +
+        "   float Orthographic;\n" +
+        "};\n" +
         "uniform sampler2D Texture;\n" +
-        "uniform vec4 Color=vec4(1,1,1,1);\n" +
         "in vec2 Coord0;\n" +
         "out vec4 FragColor;\n" +
         "void main() {\n" +
         "   float sample;\n" +
-        "   sample = texture(Texture,Coord0).r;\n" +
+        "   sample = pow(texture(Texture,Coord0).r,InverseGamma);\n" +
         "   FragColor = Color * sample;\n" +
         "}\n";
 
+    /**
+     * Source code of vertex shader for drawing from an array texture.
+     */
+    /*@Nonnull*/
+    private static final String LAYERED_VERT_SOURCE =
+        "#version 140\n" +
+        "layout(std140) uniform Projection {\n" +
+        "   mat4 ProjectionMatrix;\n" +
+        "};\n" +
+        "layout(std140) uniform Glyphs {\n" +
+        "   mat4 MVPMatrix;\n" +
+        "   vec4 Color;\n" +
+        "   float InverseGamma;\n" +
+        "   float Orthographic;\n" +
+        "};\n" +
+        "layout(std140) uniform Layers {\n" +
+        "   vec4 LayerScale[" + GlyphTextureArray.MAX_LAYERS + "];\n" +
+        "};\n" +
+        "in vec4 MCVertex;\n" +
+        "in vec3 TexCoord0;\n" +
+        "out vec3 Coord0;\n" +
+        "void main() {\n" +
+        "   mat4 m = (Orthographic != 0.0) ? ProjectionMatrix : MVPMatrix;\n" +
+        "   gl_Position = m * MCVertex;\n" +
+        "   vec2 scale = LayerScale[int(TexCoord0.z)].xy;\n" +
+        "   Coord0 = vec3(TexCoord0.xy * scale, TexCoord0.z);\n" +
+        "}\n";
+
+    /**
+     * Source code of fragment shader for drawing from an array texture.
+     */
+    /*@Nonnull*/
+    private static final String LAYERED_FRAG_SOURCE =
+        "#version 140\n" +
+        "layout(std140) uniform Glyphs {\n" +
+        "   mat4 MVPMatrix;\n" +
+        "   vec4 Color;\n" +
+        "   float InverseGamma;\n" +
+        "   float Orthographic;\n" +
+        "};\n" +
+        "uniform sampler2DArray Texture;\n" +
+        "in vec3 Coord0;\n" +
+        "out vec4 FragColor;\n" +
+        "void main() {\n" +
+        "   float sample;\n" +
+        "   sample = pow(texture(Texture,Coord0).r,InverseGamma);\n" +
+        "   FragColor = Color * sample;\n" +
+        "}\n";
+
+    /**
+     * Source code of vertex shader for drawing a {@link StaticText}.
+     *
+     * <p>
+     * Draws one instance of six vertices per character.  The line of the character is found by a
+     * binary search on the index of each line's first character.
+     */
+    /*@Nonnull*/
+    private static final String BUFFER_VERT_SOURCE =
+        "#version 140\n" +
+        "layout(std140) uniform Projection {\n" +
+        "   mat4 ProjectionMatrix;\n" +
+        "};\n" +
+        "layout(std140) uniform Glyphs {\n" +
+        "   mat4 MVPMatrix;\n" +
+        "   vec4 Color;\n" +
+        "   float InverseGamma;\n" +
+        "   float Orthographic;\n" +
+        "};\n" +
+        "uniform samplerBuffer Metrics;\n" +
+        "uniform usamplerBuffer Characters;\n" +
+        "uniform samplerBuffer Lines;\n" +
+        "uniform vec4 Origin;\n" +
+        "out vec2 Coord0;\n" +
+        "const vec2 Corners[6] = vec2[6](\n" +
+        "   vec2(1,1), vec2(0,1), vec2(0,0), vec2(1,1), vec2(0,0), vec2(1,0));\n" +
+        "void main() {\n" +
+        "   int lo = 0;\n" +
+        "   int hi = textureSize(Lines) - 1;\n" +
+        "   float id = float(gl_InstanceID);\n" +
+        "   while (lo < hi) {\n" +
+        "      int mid = (lo + hi + 1) / 2;\n" +
+        "      if (texelFetch(Lines, mid).z <= id) lo = mid; else hi = mid - 1;\n" +
+        "   }\n" +
+        "   uvec2 character = texelFetch(Characters, gl_InstanceID).xy;\n" +
+        "   int slot = int(character.x) * " + GlyphMetricBuffer.TEXELS_PER_GLYPH + ";\n" +
+        "   vec4 box = texelFetch(Metrics, slot);\n" +
+        "   vec4 uv = texelFetch(Metrics, slot + 1);\n" +
+        "   vec2 corner = Corners[gl_VertexID];\n" +
+        "   vec2 pen = Origin.xy + texelFetch(Lines, lo).xy;\n" +
+        "   pen.x += float(character.y) * 0.25;\n" +
+        "   mat4 m = (Orthographic != 0.0) ? ProjectionMatrix : MVPMatrix;\n" +
+        "   gl_Position = m * vec4(pen + box.xy + corner * box.zw, Origin.z, 1.0);\n" +
+        "   Coord0 = mix(uv.xy, uv.zw, corner);\n" +
+        "}\n";
+
+    /**
+     * Name of the projection block, also naming the shared buffer.
+     */
+    /*@Nonnull*/
+    static final String PROJECTION_BLOCK = "Projection";
+
+    /**
+     * Name of the per-renderer block.
+     */
+    /*@Nonnull*/
+    private static final String GLYPHS_BLOCK = "Glyphs";
+
+    /**
+     * Binding point of the projection block.
+     */
+    static final int PROJECTION_BINDING = 0;
+
+    /**
+     * Binding point of the per-renderer block.
+     */
+    private static final int GLYPHS_BINDING = 1;
+
+    /**
+     * Number of floats in the projection block.
+     */
+    static final int PROJECTION_SIZE = UniformBuffer.MAT4_SIZE;
+
+    /**
+     * Index of the transform in the per-renderer block.
+     */
+    private static final int TRANSFORM = 0;
+
+    /**
+     * Index of the color in the per-renderer block.
+     */
+    private static final int COLOR = 16;
+
+    /**
+     * Index of the inverse gamma in the per-renderer block.
+     */
+    private static final int INVERSE_GAMMA = 20;
+
+    /**
+     * Index of the orthographic flag in the per-renderer block.
+     */
+    private static final int ORTHOGRAPHIC = 21;
+
+    /**
+     * Number of floats in the per-renderer block, padded to a multiple of four.
+     */
+    private static final int GLYPHS_SIZE = 24;
+
+    // Texture units of the tables read when drawing a static text
+    private static final int METRICS_UNIT = 1;
+    private static final int CHARACTERS_UNIT = 2;
+    private static final int LINES_UNIT = 3;
+
     /**
      * True if blending needs to be reset.
      */
@@ -82,34 +261,73 @@ public final class GlyphRendererGL3 extends AbstractGlyphRenderer {
     private boolean restoreDepthTest;
 
     /**
-     * Shader program.
+     * Key of the context in the {@link ProgramCache}, kept to release what was acquired with it.
+     */
+    /*@Nonnull*/
+    private final Object context;
+
+    /**
+     * Shader program, shared with other renderers of the context.
      */
     /*@Nonnegative*/
     private final int program;
 
     /**
-     * Uniform for modelview projection.
+     * True if drawing from an array texture.
+     */
+    private final boolean layered;
+
+    /**
+     * Shader program for static text, or zero until the first one is drawn.
+     */
+    /*@Nonnegative*/
+    private int bufferProgram = 0;
+
+    /**
+     * Location of the origin uniform in the static text program.
+     */
+    private int originLocation;
+
+    /**
+     * Origin of the static text being drawn.
      */
     /*@Nonnull*/
-    private final Mat4Uniform transform;
+    private final float[] origin = new float[4];
 
     /**
-     * Uniform for color of glyphs.
+     * Buffer for the projection block, shared with other renderers of the context.
      */
     /*@Nonnull*/
-    private final Vec4Uniform color;
+    private final UniformBuffer projection;
 
     /**
-     * Width of last orthographic render.
+     * Buffer for the transform, color and gamma of this renderer.
      */
-    /*@Nonnegative*/
-    private int lastWidth = 0;
+    /*@Nonnull*/
+    private final UniformBuffer glyphs;
 
     /**
-     * Height of last orthographic render
+     * Inverse of the gamma to correct glyph coverage with, stored at the next render cycle.
      */
-    /*@Nonnegative*/
-    private int lastHeight = 0;
+    private float inverseGamma;
+
+    /**
+     * Orthographic projection for the last width and height, in row-major order.
+     */
+    /*@Nonnull*/
+    private final float[] ortho = new float[UniformBuffer.MAT4_SIZE];
+
+    /**
+     * Width of last orthographic render, or negative before the first.
+     */
+    /*@CheckForSigned*/
+    private int lastWidth = -1;
+
+    /**
+     * Height of last orthographic render, or negative before the first.
+     */
+    /*@CheckForSigned*/
+    private int lastHeight = -1;
 
     /**
      * Constructs a {@link GlyphRendererGL3}.
@@ -119,12 +337,55 @@ public final class GlyphRendererGL3 extends AbstractGlyphRenderer {
      */
     /*@VisibleForTesting*/
     public GlyphRendererGL3(/*@Nonnull*/ final GL2GL3 gl) {
+        this(gl, false);
+    }
 
-        Check.notNull(gl, "GL cannot be null");
+    /**
+     * Constructs a {@link GlyphRendererGL3} that may draw from an array texture.
+     *
+     * @param gl Current OpenGL context
+     * @param layered True to draw from a {@link GlyphTextureArray}
+     * @throws NullPointerException if context is null
+     */
+    public GlyphRendererGL3(/*@Nonnull*/ final GL2GL3 gl, final boolean layered) {
+        this(gl, layered, gl);
+    }
 
-        this.program = ShaderLoader.loadProgram(gl, VERT_SOURCE, FRAG_SOURCE);
-        this.transform = new Mat4Uniform(gl, program, "MVPMatrix");
-        this.color = new Vec4Uniform(gl, program, "Color");
+    /**
+     * Constructs a {@link GlyphRendererGL3} sharing its program with renderers of the same key.
+     *
+     * @param gl Current OpenGL context
+     * @param layered True to draw from a {@link GlyphTextureArray}
+     * @param context Key of the context, or of its share group, in the {@link ProgramCache}
+     * @throws NullPointerException if context or key is null
+     */
+    public GlyphRendererGL3(/*@Nonnull*/ final GL2GL3 gl,
+                            final boolean layered,
+                            /*@Nonnull*/ final Object context) {
+
+        Check.notNull(gl, "GL cannot be null");
+        Check.notNull(context, "Context cannot be null");
+
+        this.context = context;
+        this.layered = layered;
+        if (layered) {
+            this.program = ProgramCache.acquire(
+                    gl, context, LAYERED_VERT_SOURCE, LAYERED_FRAG_SOURCE);
+            gl.glUniformBlockBinding(
+                    program,
+                    gl.glGetUniformBlockIndex(program, GlyphTextureArray.LAYERS_BLOCK),
+                    GlyphTextureArray.LAYERS_BINDING);
+        } else {
+            this.program = ProgramCache.acquire(gl, context, VERT_SOURCE, FRAG_SOURCE);
+        }
+        gl.glUniformBlockBinding(
+                program, gl.glGetUniformBlockIndex(program, PROJECTION_BLOCK), PROJECTION_BINDING);
+        gl.glUniformBlockBinding(
+                program, gl.glGetUniformBlockIndex(program, GLYPHS_BLOCK), GLYPHS_BINDING);
+        this.projection = ProgramCache.acquireBuffer(
+                gl, context, PROJECTION_BLOCK, PROJECTION_SIZE);
+        this.glyphs = new UniformBuffer(gl, GLYPHS_SIZE);
+        setGamma(Texture2D.DEFAULT_GAMMA);
     }
 
     @Override
@@ -138,8 +399,10 @@ public final class GlyphRendererGL3 extends AbstractGlyphRenderer {
         Check.argument(width >= 0, "Width cannot be negative");
         Check.argument(height >= 0, "Height cannot be negative");
 
-        // Activate program
+        // Activate program and blocks
         gl.glUseProgram(program);
+        projection.bind(gl, PROJECTION_BINDING);
+        glyphs.bind(gl, GLYPHS_BINDING);
 
         // Check blending and depth test
         restoreBlending = false;
@@ -163,6 +426,9 @@ public final class GlyphRendererGL3 extends AbstractGlyphRenderer {
         if (ortho) {
             doSetTransformOrtho(gl, width, height);
         }
+        glyphs.set(ORTHOGRAPHIC, ortho ? 1 : 0);
+        glyphs.set(INVERSE_GAMMA, inverseGamma);
+        glyphs.update(gl);
     }
 
     @Override
@@ -170,7 +436,7 @@ public final class GlyphRendererGL3 extends AbstractGlyphRenderer {
 
         Check.notNull(gl, "GL cannot be null");
 
-        return new QuadPipelineGL30(gl, program);
+        return new QuadPipelineGL30(gl, program, layered);
     }
 
     protected void doDispose(/*@Nonnull*/ final GL2GL3 gl) {
@@ -178,7 +444,67 @@ public final class GlyphRendererGL3 extends AbstractGlyphRenderer {
         Check.notNull(gl, "GL cannot be null");
 
         gl.glUseProgram(0);
-        gl.glDeleteProgram(program);
+        glyphs.dispose(gl);
+        ProgramCache.releaseBuffer(gl, context, projection);
+        ProgramCache.release(gl, context, program);
+        if (bufferProgram != 0) {
+            ProgramCache.release(gl, context, bufferProgram);
+            bufferProgram = 0;
+        }
+    }
+
+    /**
+     * Draws a static text as one instance of a quad per character.
+     *
+     * @throws UnsupportedOperationException if drawing from an array texture
+     */
+    @Override
+    protected void doDrawBuffer(/*@Nonnull*/ final GL2GL3 gl,
+                                /*@Nonnull*/ final GlyphMetricBuffer glyphs,
+                                /*@Nonnull*/ final StaticText text,
+                                /*@CheckForSigned*/ final float x,
+                                /*@CheckForSigned*/ final float y,
+                                /*@CheckForSigned*/ final float z) {
+
+        Check.notNull(gl, "GL cannot be null");
+        Check.notNull(glyphs, "Glyph metric buffer cannot be null");
+        Check.notNull(text, "Text cannot be null");
+
+        if (layered) {
+            throw new UnsupportedOperationException("Static text cannot use an array texture");
+        }
+
+        // Make the program on first use
+        if (bufferProgram == 0) {
+            bufferProgram = ProgramCache.acquire(gl, context, BUFFER_VERT_SOURCE, FRAG_SOURCE);
+            gl.glUniformBlockBinding(
+                    bufferProgram,
+                    gl.glGetUniformBlockIndex(bufferProgram, PROJECTION_BLOCK),
+                    PROJECTION_BINDING);
+            gl.glUniformBlockBinding(
+                    bufferProgram,
+                    gl.glGetUniformBlockIndex(bufferProgram, GLYPHS_BLOCK),
+                    GLYPHS_BINDING);
+            gl.glUseProgram(bufferProgram);
+            gl.glUniform1i(gl.glGetUniformLocation(bufferProgram, "Metrics"), METRICS_UNIT);
+            gl.glUniform1i(gl.glGetUniformLocation(bufferProgram, "Characters"), CHARACTERS_UNIT);
+            gl.glUniform1i(gl.glGetUniformLocation(bufferProgram, "Lines"), LINES_UNIT);
+            originLocation = gl.glGetUniformLocation(bufferProgram, "Origin");
+        }
+
+        // Bind the tables, leaving the glyph texture on the first unit
+        gl.glUseProgram(bufferProgram);
+        glyphs.bind(gl, gl.GL_TEXTURE0() + METRICS_UNIT);
+        text.bind(gl, gl.GL_TEXTURE0() + CHARACTERS_UNIT, gl.GL_TEXTURE0() + LINES_UNIT);
+        gl.glActiveTexture(gl.GL_TEXTURE0());
+
+        // Draw and go back to the quad program
+        origin[0] = x;
+        origin[1] = y;
+        origin[2] = z;
+        gl.glUniform4fv(originLocation, 1, origin, 0);
+        gl.gl3().glDrawArraysInstanced(gl.GL_TRIANGLES(), 0, 6, text.size());
+        gl.glUseProgram(program);
     }
 
     @Override
@@ -210,11 +536,11 @@ public final class GlyphRendererGL3 extends AbstractGlyphRenderer {
 
         Check.notNull(gl, "GL cannot be null");
 
-        color.value[0] = r;
-        color.value[1] = g;
-        color.value[2] = b;
-        color.value[3] = a;
-        color.update(gl);
+        glyphs.set(COLOR, r);
+        glyphs.set(COLOR + 1, g);
+        glyphs.set(COLOR + 2, b);
+        glyphs.set(COLOR + 3, a);
+        glyphs.update(gl);
     }
 
     @Override
@@ -225,10 +551,8 @@ public final class GlyphRendererGL3 extends AbstractGlyphRenderer {
         Check.notNull(gl, "GL cannot be null");
         Check.notNull(value, "Value cannot be null");
 
-        if (transform.location >= 0) {
-            gl.glUniformMatrix4fv(transform.location, 1, transpose, value, 0);
-        }
-        transform.dirty = true;
+        glyphs.setMatrix(TRANSFORM, value, transpose);
+        glyphs.update(gl);
     }
 
     @Override
@@ -242,18 +566,14 @@ public final class GlyphRendererGL3 extends AbstractGlyphRenderer {
 
         // Recompute if width and height changed
         if (width != lastWidth || height != lastHeight) {
-            Projection.orthographic(transform.value, width, height);
-            transform.transpose = true;
-            transform.dirty = true;
+            Projection.orthographic(ortho, width, height);
             lastWidth = width;
             lastHeight = height;
         }
 
-        // Upload if made dirty anywhere
-        if (transform.dirty) {
-            transform.update(gl);
-            transform.dirty = false;
-        }
+        // Upload unless the context already has it
+        projection.setMatrix(0, ortho, true);
+        projection.update(gl);
     }
 
     @Override
@@ -261,6 +581,24 @@ public final class GlyphRendererGL3 extends AbstractGlyphRenderer {
         return true;
     }
 
+    /**
+     * Changes the gamma glyph coverage is corrected with.
+     *
+     * <p>
+     * The texture holds raw coverage, which the fragment shader raises to the power of the
+     * inverse of the gamma.  Takes effect from the next render cycle.
+     *
+     * @param gamma Gamma to correct coverage with
+     * @throws IllegalArgumentException if gamma is not positive
+     */
+    @Override
+    public void setGamma(final float gamma) {
+
+        Check.argument(gamma > 0, "Gamma must be positive");
+
+        inverseGamma = 1 / gamma;
+    }
+
     @Override
     public void setUseVertexArrays(final boolean useVertexArrays) {
         // empty
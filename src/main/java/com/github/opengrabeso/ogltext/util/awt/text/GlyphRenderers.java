@@ -53,11 +53,30 @@ public final class GlyphRenderers {
      */
     /*@Nonnull*/
     public static GlyphRenderer get(/*@Nonnull*/ final GL gl, final boolean gl3) {
+        return get(gl, gl3, gl);
+    }
+
+    /**
+     * Creates a {@link GlyphRenderer} based on the current OpenGL context, sharing shader programs
+     * with other renderers of a context key.
+     *
+     * @param gl Current OpenGL context
+     * @param gl3 True to draw with OpenGL 3
+     * @param context Key of the context, or of its share group, in the {@link ProgramCache}
+     * @return New glyph renderer for the given context, not null
+     * @throws NullPointerException if context or key is null
+     * @throws UnsupportedOperationException if GL is unsupported
+     */
+    /*@Nonnull*/
+    public static GlyphRenderer get(/*@Nonnull*/ final GL gl,
+                                    final boolean gl3,
+                                    /*@Nonnull*/ final Object context) {
 
         Check.notNull(gl, "GL cannot be null");
+        Check.notNull(context, "Context cannot be null");
 
         if (gl3) {
-            return new GlyphRendererGL3(gl.getGL3());
+            return new GlyphRendererGL3(gl.getGL3(), false, context);
         } else {
             return new GlyphRendererGL2();
         }
@@ -0,0 +1,373 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import com.github.opengrabeso.jaagl.GL;
+import com.github.opengrabeso.jaagl.GL3;
+
+import java.awt.Rectangle;
+import java.nio.ByteBuffer;
+
+
+/**
+ * Two-dimensional array texture holding the glyphs of several fonts, one font per layer.
+ *
+ * <p>
+ * Each layer is filled from the backing store of one {@link GlyphCache}, so quads of several
+ * fonts can be drawn in one batch.  Backing stores may be smaller than the layers and grow at
+ * different times.  Texture coordinates stay relative to the backing store, and the layers
+ * uniform block holds the scale from backing store to layer coordinates of each layer, which
+ * the shader applies.
+ *
+ * <p>
+ * The texture grows when a backing store no longer fits, or when a new layer is needed.  Growing
+ * discards the contents, so every attached layer is uploaded again from its backing store right
+ * away, in the same place, and quads of other fonts already queued stay valid.  Sizes {@link
+ * #require required} up front are allocated in one go, so the texture does not grow once per
+ * font.  Needs OpenGL 3.
+ */
+/*@NotThreadSafe*/
+public final class GlyphTextureArray extends Texture {
+
+    /**
+     * Largest number of layers, i.e. of fonts sharing the texture.
+     */
+    /*@Nonnegative*/
+    public static final int MAX_LAYERS = 16;
+
+    /**
+     * Name of the uniform block with the scale of each layer.
+     */
+    /*@Nonnull*/
+    static final String LAYERS_BLOCK = "Layers";
+
+    /**
+     * Binding point of the uniform block with the scale of each layer.
+     */
+    static final int LAYERS_BINDING = 2;
+
+    /**
+     * Number of floats per layer in the uniform block, since arrays are padded to vectors.
+     */
+    private static final int FLOATS_PER_LAYER = 4;
+
+    /**
+     * Scale of texture coordinates of each layer, with the S and T axes first.
+     */
+    /*@Nonnull*/
+    private final UniformBuffer scales;
+
+    /**
+     * Backing store last uploaded to each layer, or null if the layer needs a full upload.
+     */
+    /*@Nonnull*/
+    private final TextureBackingStore[] sources = new TextureBackingStore[MAX_LAYERS];
+
+    /**
+     * Size of the texture on X axis, or zero before it is allocated.
+     */
+    /*@Nonnegative*/
+    private int width = 0;
+
+    /**
+     * Size of the texture on Y axis, or zero before it is allocated.
+     */
+    /*@Nonnegative*/
+    private int height = 0;
+
+    /**
+     * Number of layers allocated.
+     */
+    /*@Nonnegative*/
+    private int depth = 0;
+
+    /**
+     * Number of layers to allocate at least when the texture grows.
+     */
+    /*@Nonnegative*/
+    private int reservedDepth = 1;
+
+    /**
+     * Size on X axis to allocate at least when the texture grows.
+     */
+    /*@Nonnegative*/
+    private int requiredWidth = 0;
+
+    /**
+     * Size on Y axis to allocate at least when the texture grows.
+     */
+    /*@Nonnegative*/
+    private int requiredHeight = 0;
+
+    /**
+     * Creates a {@link GlyphTextureArray} with no storage yet.
+     *
+     * @param gl Current OpenGL context
+     * @param smooth True to interpolate samples
+     * @throws NullPointerException if context is null
+     * @throws IllegalArgumentException if context is not OpenGL 3
+     */
+    public GlyphTextureArray(/*@Nonnull*/ final GL gl, final boolean smooth) {
+
+        super(gl, gl.gl3().GL_TEXTURE_2D_ARRAY(), false);
+
+        this.scales = new UniformBuffer(gl.getGL2GL3(), MAX_LAYERS * FLOATS_PER_LAYER);
+        bind(gl, gl.GL_TEXTURE0());
+        setFiltering(gl, smooth);
+    }
+
+    /**
+     * Makes room for a backing store in a layer and stores its scale.
+     *
+     * @param gl Current OpenGL context
+     * @param layer Index of layer
+     * @param bs Backing store to upload to the layer
+     * @return True if the whole backing store has to be uploaded
+     * @throws NullPointerException if context or backing store is null
+     * @throws IndexOutOfBoundsException if layer is negative or not less than {@link #MAX_LAYERS}
+     */
+    boolean attach(/*@Nonnull*/ final GL gl,
+                   /*@Nonnegative*/ final int layer,
+                   /*@Nonnull*/ final TextureBackingStore bs) {
+
+        Check.notNull(gl, "GL cannot be null");
+        Check.notNull(bs, "Backing store cannot be null");
+        if (layer < 0 || layer >= MAX_LAYERS) {
+            throw new IndexOutOfBoundsException("Layer is out of range: " + layer);
+        }
+
+        // Grow if the backing store, the layer, or any required size does not fit
+        final int w = Math.max(requiredWidth, bs.getWidth());
+        final int h = Math.max(requiredHeight, bs.getHeight());
+        if (w > width || h > height || layer >= depth) {
+            allocate(gl, Math.max(width, w), Math.max(height, h),
+                     Math.max(Math.max(depth, layer + 1), reservedDepth));
+        }
+
+        // Scale backing store coordinates to the layer
+        scales.set(layer * FLOATS_PER_LAYER, ((float) bs.getWidth()) / width);
+        scales.set(layer * FLOATS_PER_LAYER + 1, ((float) bs.getHeight()) / height);
+        scales.update(gl.getGL2GL3());
+
+        // Check if the layer holds something else
+        if (sources[layer] == bs) {
+            return false;
+        }
+        sources[layer] = bs;
+        return true;
+    }
+
+    /**
+     * Specifies the storage of the texture, uploading the layers attached before again.
+     *
+     * @param gl Current OpenGL context, assumed not null
+     * @param width Size of texture on X axis, assumed positive
+     * @param height Size of texture on Y axis, assumed positive
+     * @param depth Number of layers, assumed positive
+     */
+    private void allocate(/*@Nonnull*/ final GL gl,
+                          /*@Nonnegative*/ final int width,
+                          /*@Nonnegative*/ final int height,
+                          /*@Nonnegative*/ final int depth) {
+
+        final GL3 gl3 = gl.gl3();
+        bind(gl, gl.GL_TEXTURE0());
+        gl3.glTexImage3D(
+                type,                      // target
+                0,                         // level
+                gl3.GL_RED(),              // internal format
+                width,                     // width
+                height,                    // height
+                depth,                     // depth
+                0,                         // border
+                gl3.GL_RED(),              // format (unused)
+                gl.GL_UNSIGNED_BYTE(),     // type (unused)
+                null);                     // pixels
+
+        this.width = width;
+        this.height = height;
+        this.depth = depth;
+
+        // Restore layers updated before, since other fonts may have quads queued from them
+        for (int i = 0; i < MAX_LAYERS; ++i) {
+            if (sources[i] != null) {
+                sources[i].restore(gl, this, i);
+            }
+        }
+    }
+
+    /**
+     * Binds the texture on a texture unit, and the scales of its layers to their binding point.
+     *
+     * @param gl Current OpenGL context
+     * @param unit OpenGL enumeration for a texture unit, i.e., {@code GL_TEXTURE0}
+     * @throws NullPointerException if context is null
+     * @throws IllegalArgumentException if unit is invalid
+     */
+    @Override
+    void bind(/*@Nonnull*/ final GL gl, final int unit) {
+        super.bind(gl, unit);
+        scales.bind(gl.getGL2GL3(), LAYERS_BINDING);
+    }
+
+    /**
+     * Destroys the texture and the scales of its layers.
+     *
+     * @param gl Current OpenGL context
+     * @throws NullPointerException if context is null
+     */
+    @Override
+    public void dispose(/*@Nonnull*/ final GL gl) {
+        super.dispose(gl);
+        scales.dispose(gl.getGL2GL3());
+    }
+
+    /**
+     * Returns the number of layers allocated.
+     *
+     * @return Number of layers, zero before the first update
+     */
+    /*@Nonnegative*/
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Returns the size of the texture on Y axis.
+     *
+     * @return Height of each layer, zero before the first update
+     */
+    /*@Nonnegative*/
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the size of the texture on X axis.
+     *
+     * @return Width of each layer, zero before the first update
+     */
+    /*@Nonnegative*/
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Makes the texture allocate a number of layers the next time it grows, at least.
+     *
+     * <p>
+     * Reserving the layers of all fonts up front avoids growing, and uploading all layers again,
+     * as each font is first drawn.
+     *
+     * @param layers Number of layers expected
+     * @throws IllegalArgumentException if layers is not positive or more than {@link #MAX_LAYERS}
+     */
+    public void reserve(/*@Nonnegative*/ final int layers) {
+
+        Check.argument(layers > 0 && layers <= MAX_LAYERS, "Number of layers is out of range");
+
+        reservedDepth = layers;
+    }
+
+    /**
+     * Makes the texture big enough for a backing store the next time it grows, at least.
+     *
+     * <p>
+     * Requiring the sizes of all backing stores before attaching any of them makes the texture
+     * grow, and upload the layers attached before again, only once.
+     *
+     * @param width Size of backing store on X axis
+     * @param height Size of backing store on Y axis
+     * @throws IllegalArgumentException if width or height is negative
+     */
+    void require(/*@Nonnegative*/ final int width, /*@Nonnegative*/ final int height) {
+
+        Check.argument(width >= 0, "Width cannot be negative");
+        Check.argument(height >= 0, "Height cannot be negative");
+
+        requiredWidth = Math.max(requiredWidth, width);
+        requiredHeight = Math.max(requiredHeight, height);
+    }
+
+    /**
+     * Copies an area of a backing store's image to a layer.
+     *
+     * @param gl Current OpenGL context
+     * @param layer Index of layer, already {@link #attach attached}
+     * @param pixels Data of entire image
+     * @param rowLength Width of entire image
+     * @param area Region to update
+     * @throws NullPointerException if context, pixels, or area is null
+     */
+    void update(/*@Nonnull*/ final GL gl,
+                /*@Nonnegative*/ final int layer,
+                /*@Nonnull*/ final ByteBuffer pixels,
+                /*@Nonnegative*/ final int rowLength,
+                /*@Nonnull*/ final Rectangle area) {
+
+        Check.notNull(gl, "GL cannot be null");
+        Check.notNull(pixels, "Pixels cannot be null");
+        Check.notNull(area, "Area cannot be null");
+
+        // Store unpack parameters
+        final int[] parameters = new int[] {
+            gl.glGetInteger(gl.GL_UNPACK_ALIGNMENT()),
+            gl.glGetInteger(gl.GL_UNPACK_SKIP_ROWS()),
+            gl.glGetInteger(gl.GL_UNPACK_SKIP_PIXELS()),
+            gl.glGetInteger(gl.GL_UNPACK_ROW_LENGTH())
+        };
+
+        // Change unpack parameters to pick the area out of the image
+        gl.glPixelStorei(gl.GL_UNPACK_ALIGNMENT(), 1);
+        gl.glPixelStorei(gl.GL_UNPACK_SKIP_ROWS(), area.y);
+        gl.glPixelStorei(gl.GL_UNPACK_SKIP_PIXELS(), area.x);
+        gl.glPixelStorei(gl.GL_UNPACK_ROW_LENGTH(), rowLength);
+        pixels.rewind();
+
+        // Update the layer
+        final GL3 gl3 = gl.gl3();
+        gl3.glTexSubImage3D(
+                type,                   // target
+                0,                      // mipmap level
+                area.x,                 // x offset
+                area.y,                 // y offset
+                layer,                  // z offset
+                area.width,             // width
+                area.height,            // height
+                1,                      // depth
+                gl3.GL_RED(),           // format
+                gl.GL_UNSIGNED_BYTE(),  // type
+                pixels);                // pixels
+
+        // Reset unpack parameters
+        gl.glPixelStorei(gl.GL_UNPACK_ALIGNMENT(), parameters[0]);
+        gl.glPixelStorei(gl.GL_UNPACK_SKIP_ROWS(), parameters[1]);
+        gl.glPixelStorei(gl.GL_UNPACK_SKIP_PIXELS(), parameters[2]);
+        gl.glPixelStorei(gl.GL_UNPACK_ROW_LENGTH(), parameters[3]);
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import com.github.opengrabeso.jaagl.GL2GL3;
+
+
+/**
+ * Utility for drawing a {@link CellGrid} with OpenGL 3.
+ *
+ * <p>
+ * The whole grid is one instanced draw of six vertices per instance.  The first instance of each
+ * cell draws its background and the second its glyph, so all backgrounds are drawn before any
+ * glyph and glyphs reaching into a neighboring cell are not covered.  The vertex shader places
+ * each cell from its index, the top row of the grid and the scroll offset, so nothing but changed
+ * cells is ever uploaded.  The projection is shared with the {@link GlyphRendererGL3} instances of
+ * the context.
+ */
+/*@NotThreadSafe*/
+public final class GridRendererGL3 {
+
+    /**
+     * Source code of vertex shader.
+     */
+    /*@Nonnull*/
+    private static final String VERT_SOURCE =
+        "#version 140\n" +
+        "layout(std140) uniform Projection {\n" +
+        "   mat4 ProjectionMatrix;\n" +
+        "};\n" +
+        "uniform samplerBuffer Metrics;\n" +
+        "uniform usamplerBuffer Cells;\n" +
+        "uniform vec4 Grid[2];\n" +
+        "flat out vec4 CellColor;\n" +
+        "flat out float Textured;\n" +
+        "out vec2 Coord0;\n" +
+        "const vec2 Corners[6] = vec2[6](\n" +
+        "   vec2(1,1), vec2(0,1), vec2(0,0), vec2(1,1), vec2(0,0), vec2(1,0));\n" +
+        "vec4 unpack(uint c) {\n" +
+        "   return vec4((uvec4(c) >> uvec4(24u, 16u, 8u, 0u)) & 0xFFu) / 255.0;\n" +
+        "}\n" +
+        "void main() {\n" +
+        "   int count = textureSize(Cells);\n" +
+        "   bool glyph = gl_InstanceID >= count;\n" +
+        "   int index = glyph ? gl_InstanceID - count : gl_InstanceID;\n" +
+        "   uvec4 cell = texelFetch(Cells, index);\n" +
+        "   int columns = int(Grid[1].w);\n" +
+        "   int stored = index / columns;\n" +
+        "   int row = stored - int(Grid[1].z);\n" +
+        "   if (row < 0) row += count / columns;\n" +
+        "   vec2 origin = vec2(Grid[1].x + float(index - stored * columns) * Grid[0].x,\n" +
+        "                      Grid[1].y - float(row + 1) * Grid[0].y + Grid[0].w);\n" +
+        "   vec4 box = vec4(0.0, 0.0, Grid[0].xy);\n" +
+        "   vec4 uv = vec4(0.0);\n" +
+        "   CellColor = unpack(cell.z);\n" +
+        "   if (glyph) {\n" +
+        "      int slot = (int(cell.x) - 1) * " + GlyphMetricBuffer.TEXELS_PER_GLYPH + ";\n" +
+        "      box = (cell.x == 0u) ? vec4(0.0) : texelFetch(Metrics, slot);\n" +
+        "      box.y += Grid[0].z;\n" +
+        "      uv = (cell.x == 0u) ? vec4(0.0) : texelFetch(Metrics, slot + 1);\n" +
+        "      CellColor = unpack(cell.y);\n" +
+        "   }\n" +
+        "   if (CellColor.a == 0.0) box.zw = vec2(0.0);\n" +
+        "   vec2 corner = Corners[gl_VertexID];\n" +
+        "   Textured = glyph ? 1.0 : 0.0;\n" +
+        "   gl_Position = ProjectionMatrix * vec4(origin + box.xy + corner * box.zw, 0.0, 1.0);\n" +
+        "   Coord0 = mix(uv.xy, uv.zw, corner);\n" +
+        "}\n";
+
+    /**
+     * Source code of fragment shader.
+     */
+    /*@Nonnull*/
+    private static final String FRAG_SOURCE =
+        "#version 140\n" +
+        "uniform sampler2D Texture;\n" +
+        "uniform float InverseGamma;\n" +
+        "flat in vec4 CellColor;\n" +
+        "flat in float Textured;\n" +
+        "in vec2 Coord0;\n" +
+        "out vec4 FragColor;\n" +
+        "void main() {\n" +
+        "   float sample = 1.0;\n" +
+        "   if (Textured != 0.0) {\n" +
+        "      sample = pow(texture(Texture,Coord0).r,InverseGamma);\n" +
+        "   }\n" +
+        "   FragColor = CellColor * sample;\n" +
+        "}\n";
+
+    // Texture units of the tables read by the vertex shader
+    private static final int METRICS_UNIT = 1;
+    private static final int CELLS_UNIT = 2;
+
+    /**
+     * Number of floats in the grid uniform.
+     */
+    private static final int GRID_SIZE = 8;
+
+    /**
+     * Key of the context in the {@link ProgramCache}, kept to release what was acquired with it.
+     */
+    /*@Nonnull*/
+    private final Object context;
+
+    /**
+     * Shader program, shared with other grid renderers of the context.
+     */
+    /*@Nonnegative*/
+    private final int program;
+
+    /**
+     * Buffer for the projection block, shared with other renderers of the context.
+     */
+    /*@Nonnull*/
+    private final UniformBuffer projection;
+
+    /**
+     * Location of the grid uniform.
+     */
+    private final int gridLocation;
+
+    /**
+     * Location of the inverse gamma uniform.
+     */
+    private final int inverseGammaLocation;
+
+    /**
+     * Cell size, baseline and scroll offset, then origin, top row and columns.
+     */
+    /*@Nonnull*/
+    private final float[] grid = new float[GRID_SIZE];
+
+    /**
+     * Orthographic projection for the last width and height, in row-major order.
+     */
+    /*@Nonnull*/
+    private final float[] ortho = new float[UniformBuffer.MAT4_SIZE];
+
+    /**
+     * Inverse of the gamma to correct glyph coverage with.
+     */
+    private float inverseGamma = 1 / Texture2D.DEFAULT_GAMMA;
+
+    /**
+     * True if blending needs to be reset.
+     */
+    private boolean restoreBlending;
+
+    /**
+     * True if depth test needs to be reset.
+     */
+    private boolean restoreDepthTest;
+
+    /**
+     * Constructs a {@link GridRendererGL3}.
+     *
+     * @param gl Current OpenGL context
+     * @param context Key of the context, or of its share group, in the {@link ProgramCache}
+     * @throws NullPointerException if context or key is null
+     */
+    public GridRendererGL3(/*@Nonnull*/ final GL2GL3 gl, /*@Nonnull*/ final Object context) {
+
+        Check.notNull(gl, "GL cannot be null");
+        Check.notNull(context, "Context cannot be null");
+
+        this.context = context;
+        this.program = ProgramCache.acquire(gl, context, VERT_SOURCE, FRAG_SOURCE);
+        gl.glUniformBlockBinding(
+                program,
+                gl.glGetUniformBlockIndex(program, GlyphRendererGL3.PROJECTION_BLOCK),
+                GlyphRendererGL3.PROJECTION_BINDING);
+        this.projection = ProgramCache.acquireBuffer(
+                gl, context, GlyphRendererGL3.PROJECTION_BLOCK, GlyphRendererGL3.PROJECTION_SIZE);
+        gl.glUseProgram(program);
+        gl.glUniform1i(gl.glGetUniformLocation(program, "Metrics"), METRICS_UNIT);
+        gl.glUniform1i(gl.glGetUniformLocation(program, "Cells"), CELLS_UNIT);
+        gl.glUseProgram(0);
+        this.gridLocation = gl.glGetUniformLocation(program, "Grid");
+        this.inverseGammaLocation = gl.glGetUniformLocation(program, "InverseGamma");
+    }
+
+    /**
+     * Starts a render cycle with an orthographic projection.
+     *
+     * @param gl Current OpenGL context
+     * @param width Width of current OpenGL viewport
+     * @param height Height of current OpenGL viewport
+     * @throws NullPointerException if context is null
+     * @throws IllegalArgumentException if width or height is negative
+     */
+    public void beginRendering(/*@Nonnull*/ final GL2GL3 gl,
+                               /*@Nonnegative*/ final int width,
+                               /*@Nonnegative*/ final int height) {
+
+        Check.notNull(gl, "GL cannot be null");
+        Check.argument(width >= 0, "Width cannot be negative");
+        Check.argument(height >= 0, "Height cannot be negative");
+
+        // Activate program and projection
+        gl.glUseProgram(program);
+        Projection.orthographic(ortho, width, height);
+        projection.setMatrix(0, ortho, true);
+        projection.update(gl);
+        projection.bind(gl, GlyphRendererGL3.PROJECTION_BINDING);
+        gl.glUniform1f(inverseGammaLocation, inverseGamma);
+
+        // Check blending and depth test
+        restoreBlending = false;
+        if (!gl.glIsEnabled(gl.GL_BLEND())) {
+            gl.glEnable(gl.GL_BLEND());
+            gl.glBlendFunc(gl.GL_ONE(), gl.GL_ONE_MINUS_SRC_ALPHA());
+            restoreBlending = true;
+        }
+        restoreDepthTest = false;
+        if (gl.glIsEnabled(gl.GL_DEPTH_TEST())) {
+            gl.glDisable(gl.GL_DEPTH_TEST());
+            restoreDepthTest = true;
+        }
+    }
+
+    /**
+     * Frees resources used by this {@link GridRendererGL3}.
+     *
+     * @param gl Current OpenGL context
+     * @throws NullPointerException if context is null
+     */
+    public void dispose(/*@Nonnull*/ final GL2GL3 gl) {
+
+        Check.notNull(gl, "GL cannot be null");
+
+        gl.glUseProgram(0);
+        ProgramCache.releaseBuffer(gl, context, projection);
+        ProgramCache.release(gl, context, program);
+    }
+
+    /**
+     * Draws a grid in one call, uploading its changed cells first.
+     *
+     * <p>
+     * The glyph texture must be bound to the first texture unit.
+     *
+     * @param gl Current OpenGL context
+     * @param glyphs Table of glyphs the cells refer to, already updated
+     * @param cells Grid to draw
+     * @param x Position of the left edge of the grid
+     * @param y Position of the top edge of the grid
+     * @param cellWidth Width of each cell
+     * @param cellHeight Height of each cell
+     * @param baseline Height of the baseline above the bottom of each cell
+     * @throws NullPointerException if context, table or grid is null
+     */
+    public void draw(/*@Nonnull*/ final GL2GL3 gl,
+                     /*@Nonnull*/ final GlyphMetricBuffer glyphs,
+                     /*@Nonnull*/ final CellGrid cells,
+                     /*@CheckForSigned*/ final float x,
+                     /*@CheckForSigned*/ final float y,
+                     /*@Nonnegative*/ final float cellWidth,
+                     /*@Nonnegative*/ final float cellHeight,
+                     /*@CheckForSigned*/ final float baseline) {
+
+        Check.notNull(gl, "GL cannot be null");
+        Check.notNull(glyphs, "Glyph metric buffer cannot be null");
+        Check.notNull(cells, "Grid cannot be null");
+
+        // Bind the tables, leaving the glyph texture on the first unit
+        glyphs.bind(gl, gl.GL_TEXTURE0() + METRICS_UNIT);
+        cells.bind(gl, gl.GL_TEXTURE0() + CELLS_UNIT);
+        gl.glActiveTexture(gl.GL_TEXTURE0());
+
+        // Place the grid
+        grid[0] = cellWidth;
+        grid[1] = cellHeight;
+        grid[2] = baseline;
+        grid[3] = cells.getScrollOffset();
+        grid[4] = x;
+        grid[5] = y;
+        grid[6] = cells.getTop();
+        grid[7] = cells.getColumns();
+        gl.glUniform4fv(gridLocation, 2, grid, 0);
+
+        // Backgrounds of all cells, then glyphs of all cells
+        gl.gl3().glDrawArraysInstanced(gl.GL_TRIANGLES(), 0, 6, 2 * cells.size());
+    }
+
+    /**
+     * Finishes a render cycle.
+     *
+     * @param gl Current OpenGL context
+     * @throws NullPointerException if context is null
+     */
+    public void endRendering(/*@Nonnull*/ final GL2GL3 gl) {
+
+        Check.notNull(gl, "GL cannot be null");
+
+        gl.glUseProgram(0);
+        if (restoreBlending) {
+            gl.glDisable(gl.GL_BLEND());
+        }
+        if (restoreDepthTest) {
+            gl.glEnable(gl.GL_DEPTH_TEST());
+        }
+    }
+
+    /**
+     * Changes the gamma glyph coverage is corrected with, from the next render cycle.
+     *
+     * @param gamma Gamma to correct coverage with
+     * @throws IllegalArgumentException if gamma is not positive
+     */
+    public void setGamma(final float gamma) {
+
+        Check.argument(gamma > 0, "Gamma must be positive");
+
+        inverseGamma = 1 / gamma;
+    }
+}
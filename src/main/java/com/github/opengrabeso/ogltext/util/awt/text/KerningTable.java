@@ -0,0 +1,237 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+
+/**
+ * Kerning of pairs of characters, stored in primitive arrays.
+ *
+ * <p>
+ * A table knows which characters were examined, and holds the adjustment of every pair of them
+ * that is not zero, in an open addressing hash table keyed by both characters.  Tables are never
+ * changed; {@link #plus} makes a bigger one.
+ */
+/*@Immutable*/
+final class KerningTable {
+
+    /**
+     * Largest character that can be examined.
+     */
+    static final char MAX_CHARACTER = 0x2AE;
+
+    /**
+     * Table with no characters examined.
+     */
+    /*@Nonnull*/
+    static final KerningTable EMPTY = new KerningTable(
+            new long[(MAX_CHARACTER >> 6) + 1], new char[0], new int[1], new float[1], 0);
+
+    /**
+     * Bit set of characters examined.
+     */
+    /*@Nonnull*/
+    private final long[] members;
+
+    /**
+     * Characters examined, in the order they were added.
+     */
+    /*@Nonnull*/
+    private final char[] characters;
+
+    /**
+     * Keys of pairs, left character in the high half, zero for empty slots.
+     */
+    /*@Nonnull*/
+    private final int[] keys;
+
+    /**
+     * Adjustments of pairs, in the same slots as their keys.
+     */
+    /*@Nonnull*/
+    private final float[] values;
+
+    /**
+     * Number of pairs stored.
+     */
+    /*@Nonnegative*/
+    private final int size;
+
+    /**
+     * Constructs a {@link KerningTable}.
+     *
+     * @param members Bit set of characters examined, assumed not null
+     * @param characters Characters examined, assumed not null
+     * @param keys Keys of pairs, length a power of two, assumed not null
+     * @param values Adjustments of pairs, assumed not null
+     * @param size Number of pairs stored
+     */
+    private KerningTable(/*@Nonnull*/ final long[] members,
+                         /*@Nonnull*/ final char[] characters,
+                         /*@Nonnull*/ final int[] keys,
+                         /*@Nonnull*/ final float[] values,
+                         /*@Nonnegative*/ final int size) {
+        this.members = members;
+        this.characters = characters;
+        this.keys = keys;
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * Checks if a character was examined.
+     *
+     * @param c Character to check
+     * @return True if pairs with the character are known
+     */
+    boolean contains(final char c) {
+        return (c <= MAX_CHARACTER) && ((members[c >> 6] & (1L << c)) != 0);
+    }
+
+    /**
+     * Finds the adjustment of a pair.
+     *
+     * @param left Character on the left
+     * @param right Character on the right
+     * @return Change to the advance of the left character, zero if none
+     */
+    float get(final char left, final char right) {
+        final int key = (left << 16) | right;
+        final int mask = keys.length - 1;
+        for (int i = hash(key) & mask; keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the characters examined.
+     *
+     * @return Characters in the order they were added, not to be modified
+     */
+    /*@Nonnull*/
+    char[] getCharacters() {
+        return characters;
+    }
+
+    /**
+     * Mixes the bits of a key.
+     *
+     * @param key Key of a pair
+     * @return Hash of the key
+     */
+    private static int hash(final int key) {
+        final int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Makes a table with one more character examined.
+     *
+     * @param c Character examined, assumed not already contained and not above the maximum
+     * @param lefts Left characters of pairs found, assumed not null
+     * @param rights Right characters of pairs found, assumed not null
+     * @param adjustments Adjustments of pairs found, assumed not null
+     * @param count Number of pairs found
+     * @return New table, not null
+     */
+    /*@Nonnull*/
+    KerningTable plus(final char c,
+                      /*@Nonnull*/ final char[] lefts,
+                      /*@Nonnull*/ final char[] rights,
+                      /*@Nonnull*/ final float[] adjustments,
+                      /*@Nonnegative*/ final int count) {
+
+        // Add the character
+        final long[] newMembers = members.clone();
+        newMembers[c >> 6] |= 1L << c;
+        final char[] newCharacters = new char[characters.length + 1];
+        System.arraycopy(characters, 0, newCharacters, 0, characters.length);
+        newCharacters[characters.length] = c;
+
+        // Keep the table at most half full
+        int capacity = keys.length;
+        while (capacity < 2 * (size + count)) {
+            capacity *= 2;
+        }
+        final int[] newKeys = new int[capacity];
+        final float[] newValues = new float[capacity];
+        int newSize = 0;
+        for (int i = 0; i < keys.length; ++i) {
+            if (keys[i] != 0) {
+                newSize += put(newKeys, newValues, keys[i], values[i]);
+            }
+        }
+        for (int i = 0; i < count; ++i) {
+            final int key = (lefts[i] << 16) | rights[i];
+            if (key != 0) {
+                newSize += put(newKeys, newValues, key, adjustments[i]);
+            }
+        }
+
+        return new KerningTable(newMembers, newCharacters, newKeys, newValues, newSize);
+    }
+
+    /**
+     * Stores a pair in arrays with room for it.
+     *
+     * @param keys Keys of pairs, assumed not null and not full
+     * @param values Adjustments of pairs, assumed not null
+     * @param key Key of pair, assumed not zero
+     * @param value Adjustment of pair
+     * @return One if the pair was added, zero if it replaced one
+     */
+    private static int put(/*@Nonnull*/ final int[] keys,
+                           /*@Nonnull*/ final float[] values,
+                           final int key,
+                           final float value) {
+        final int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        while (keys[i] != 0) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return 0;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        return 1;
+    }
+
+    /**
+     * Returns the number of pairs with an adjustment.
+     *
+     * @return Number of pairs stored
+     */
+    /*@Nonnegative*/
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import java.util.Arrays;
+
+
+/**
+ * Places rectangles that must not overlap, refusing the ones that would.
+ *
+ * <p>
+ * Placed rectangles are kept in a uniform grid hashed by cell, so checking a new rectangle only
+ * looks at rectangles sharing a cell with it.  With cells about the size of the rectangles, that
+ * is a few cells and a few rectangles each, and placing <i>n</i> rectangles takes time linear in
+ * <i>n</i>.  Rectangles only touching at an edge do not overlap.
+ *
+ * <p>
+ * Which rectangles get placed depends only on the order they are offered in, so callers place the
+ * most important ones first.
+ */
+/*@NotThreadSafe*/
+public final class LabelPlacer {
+
+    /**
+     * Number of slots the hash table starts with, a power of two.
+     */
+    private static final int INITIAL_SLOTS = 256;
+
+    /**
+     * Number of rectangles or cell entries room is made for at first.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Width and height of each cell.
+     */
+    private final float cellSize;
+
+    /**
+     * Edges of placed rectangles, as left, bottom, right and top.
+     */
+    /*@Nonnull*/
+    private float[] rects = new float[INITIAL_CAPACITY * 4];
+
+    /**
+     * Number of placed rectangles.
+     */
+    /*@Nonnegative*/
+    private int count = 0;
+
+    /**
+     * Cell of each slot of the hash table, valid where the head is not negative.
+     */
+    /*@Nonnull*/
+    private long[] keys = new long[INITIAL_SLOTS];
+
+    /**
+     * First entry of each slot of the hash table, or -1 if the slot is free.
+     */
+    /*@Nonnull*/
+    private int[] heads = newHeads(INITIAL_SLOTS);
+
+    /**
+     * Number of used slots of the hash table.
+     */
+    /*@Nonnegative*/
+    private int used = 0;
+
+    /**
+     * Rectangle of each entry.
+     */
+    /*@Nonnull*/
+    private int[] entryRects = new int[INITIAL_CAPACITY];
+
+    /**
+     * Next entry in the same cell, or -1 for the last.
+     */
+    /*@Nonnull*/
+    private int[] entryNext = new int[INITIAL_CAPACITY];
+
+    /**
+     * Number of entries.
+     */
+    /*@Nonnegative*/
+    private int entries = 0;
+
+    /**
+     * Constructs an empty {@link LabelPlacer}.
+     *
+     * @param cellSize Width and height of each cell, about the size of a typical rectangle
+     * @throws IllegalArgumentException if cell size is not positive
+     */
+    public LabelPlacer(final float cellSize) {
+
+        Check.argument(cellSize > 0, "Cell size must be positive");
+
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Adds an entry for a rectangle to a cell.
+     *
+     * @param key Cell to add to
+     * @param rect Index of the rectangle
+     */
+    private void addEntry(final long key, /*@Nonnegative*/ final int rect) {
+        if (entries == entryRects.length) {
+            entryRects = Arrays.copyOf(entryRects, entries * 2);
+            entryNext = Arrays.copyOf(entryNext, entries * 2);
+        }
+        final int slot = findSlot(key);
+        if (heads[slot] < 0) {
+            keys[slot] = key;
+            ++used;
+        }
+        entryRects[entries] = rect;
+        entryNext[entries] = heads[slot];
+        heads[slot] = entries;
+        ++entries;
+        if (2 * used > heads.length) {
+            rehash();
+        }
+    }
+
+    /**
+     * Removes all placed rectangles, keeping the memory for reuse.
+     */
+    public void clear() {
+        Arrays.fill(heads, -1);
+        used = 0;
+        count = 0;
+        entries = 0;
+    }
+
+    /**
+     * Finds the slot of a cell in the hash table, or the free slot it would go in.
+     *
+     * @param key Cell to find
+     * @return Index of the slot
+     */
+    /*@Nonnegative*/
+    private int findSlot(final long key) {
+        final int mask = heads.length - 1;
+        int slot = hash(key) & mask;
+        while (heads[slot] >= 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the number of placed rectangles.
+     *
+     * @return Number of placed rectangles
+     */
+    /*@Nonnegative*/
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Mixes the bits of a cell key.
+     *
+     * @param key Cell to hash
+     * @return Hash of the cell
+     */
+    private static int hash(final long key) {
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Combines the indices of a cell into a key.
+     *
+     * @param cx Index of the cell on the X axis
+     * @param cy Index of the cell on the Y axis
+     * @return Key of the cell
+     */
+    private static long key(final int cx, final int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Makes an array of free hash table slots.
+     *
+     * @param n Number of slots
+     * @return Array of -1 values, not null
+     */
+    /*@Nonnull*/
+    private static int[] newHeads(/*@Nonnegative*/ final int n) {
+        final int[] heads = new int[n];
+        Arrays.fill(heads, -1);
+        return heads;
+    }
+
+    /**
+     * Checks if a rectangle overlaps any rectangle in a cell.
+     *
+     * @param key Cell to check
+     * @param xl Position of the left edge
+     * @param yb Position of the bottom edge
+     * @param xr Position of the right edge
+     * @param yt Position of the top edge
+     * @return True if the rectangle overlaps a placed one
+     */
+    private boolean overlaps(final long key,
+                             final float xl,
+                             final float yb,
+                             final float xr,
+                             final float yt) {
+        final int slot = findSlot(key);
+        for (int e = heads[slot]; e >= 0; e = entryNext[e]) {
+            final int i = entryRects[e] * 4;
+            if (xl < rects[i + 2] && rects[i] < xr && yb < rects[i + 3] && rects[i + 1] < yt) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Places a rectangle unless it overlaps one placed before.
+     *
+     * @param xl Position of the left edge
+     * @param yb Position of the bottom edge
+     * @param xr Position of the right edge
+     * @param yt Position of the top edge
+     * @return True if the rectangle was placed, false if it overlaps
+     */
+    public boolean place(final float xl, final float yb, final float xr, final float yt) {
+
+        final int cx0 = toCell(xl);
+        final int cy0 = toCell(yb);
+        final int cx1 = toCell(xr);
+        final int cy1 = toCell(yt);
+
+        // Check the cells it covers
+        for (int cy = cy0; cy <= cy1; ++cy) {
+            for (int cx = cx0; cx <= cx1; ++cx) {
+                if (overlaps(key(cx, cy), xl, yb, xr, yt)) {
+                    return false;
+                }
+            }
+        }
+
+        // Store it
+        if (4 * count == rects.length) {
+            rects = Arrays.copyOf(rects, rects.length * 2);
+        }
+        final int i = 4 * count;
+        rects[i] = xl;
+        rects[i + 1] = yb;
+        rects[i + 2] = xr;
+        rects[i + 3] = yt;
+        for (int cy = cy0; cy <= cy1; ++cy) {
+            for (int cx = cx0; cx <= cx1; ++cx) {
+                addEntry(key(cx, cy), count);
+            }
+        }
+        ++count;
+        return true;
+    }
+
+    /**
+     * Doubles the number of slots of the hash table, keeping the entries.
+     */
+    private void rehash() {
+        final long[] oldKeys = keys;
+        final int[] oldHeads = heads;
+        keys = new long[oldKeys.length * 2];
+        heads = newHeads(oldHeads.length * 2);
+        for (int s = 0; s < oldHeads.length; ++s) {
+            if (oldHeads[s] >= 0) {
+                final int slot = findSlot(oldKeys[s]);
+                keys[slot] = oldKeys[s];
+                heads[slot] = oldHeads[s];
+            }
+        }
+    }
+
+    /**
+     * Finds the cell of a coordinate.
+     *
+     * @param v Coordinate on either axis
+     * @return Index of the cell along that axis
+     */
+    private int toCell(final float v) {
+        return (int) Math.floor(v / cellSize);
+    }
+}
@@ -0,0 +1,454 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import java.util.Arrays;
+
+
+/**
+ * Text broken into lines to fit a width.
+ *
+ * <p>
+ * A layout measures the position of every character in its text once, as a running sum of
+ * advances and kerning, so the width of any run of characters is a subtraction.  Lines are broken
+ * greedily after whitespace, or between characters if a word does not fit on its own, and
+ * always at line feeds.  Whitespace at the end of a line does not count toward its width.
+ *
+ * <p>
+ * Changing the width only breaks the lines again from the positions already measured, and
+ * nothing at all if no line was wrapped and the longest one still fits.
+ */
+/*@NotThreadSafe*/
+public final class ParagraphLayout {
+
+    /**
+     * Text laid out.
+     */
+    /*@Nonnull*/
+    private final String text;
+
+    /**
+     * Distance between baselines of consecutive lines.
+     */
+    /*@Nonnegative*/
+    private final float lineHeight;
+
+    /**
+     * Horizontal position of each character from the start of the text, with one more for the end.
+     */
+    /*@Nonnull*/
+    private final float[] offsets;
+
+    /**
+     * Advance of each character.
+     */
+    /*@Nonnull*/
+    private final float[] advances;
+
+    /**
+     * Width lines were broken to fit.
+     */
+    private float width = Float.NaN;
+
+    /**
+     * True if any line was broken because it did not fit.
+     */
+    private boolean wrapped;
+
+    /**
+     * Width of the longest line.
+     */
+    /*@Nonnegative*/
+    private float maxLineWidth;
+
+    /**
+     * Number of lines.
+     */
+    /*@Nonnegative*/
+    private int lineCount;
+
+    /**
+     * Index of the first character of each line.
+     */
+    /*@Nonnull*/
+    private int[] lineStarts = new int[1];
+
+    /**
+     * Index after the last character of each line, without trailing whitespace.
+     */
+    /*@Nonnull*/
+    private int[] lineEnds = new int[1];
+
+    /**
+     * Width of each line.
+     */
+    /*@Nonnull*/
+    private float[] lineWidths = new float[1];
+
+    /**
+     * Text of each line, made when first needed.
+     */
+    /*@Nonnull*/
+    private String[] lines = new String[1];
+
+    /**
+     * Constructs a {@link ParagraphLayout}.
+     *
+     * <p>
+     * Lines are not broken until a width is set.
+     *
+     * @param measurements Measurements of characters in the font, not null
+     * @param text Text to lay out, not null
+     * @throws NullPointerException if measurements or text is null
+     */
+    public ParagraphLayout(/*@Nonnull*/ final GlyphMeasurements measurements,
+                           /*@Nonnull*/ final String text) {
+
+        Check.notNull(measurements, "Measurements cannot be null");
+        Check.notNull(text, "Text cannot be null");
+
+        this.text = text;
+        this.lineHeight = measurements.getLineHeight();
+
+        final int len = text.length();
+        offsets = new float[len + 1];
+        advances = new float[len];
+        final boolean kerning = measurements.hasKerning();
+        for (int i = 0; i < len; ++i) {
+            final char c = text.charAt(i);
+            advances[i] = measurements.getAdvance(c);
+            offsets[i + 1] = offsets[i] + advances[i];
+            if (kerning && i + 1 < len) {
+                offsets[i + 1] += measurements.getKerning(c, text.charAt(i + 1));
+            }
+        }
+    }
+
+    /**
+     * Stores a line, keeping its text if it did not move.
+     *
+     * @param start Index of the first character of the line
+     * @param end Index after the last character of the line
+     */
+    private void addLine(/*@Nonnegative*/ final int start, /*@Nonnegative*/ final int end) {
+
+        if (lineCount == lineStarts.length) {
+            final int capacity = lineCount * 2;
+            lineStarts = Arrays.copyOf(lineStarts, capacity);
+            lineEnds = Arrays.copyOf(lineEnds, capacity);
+            lineWidths = Arrays.copyOf(lineWidths, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+        }
+
+        if (lineStarts[lineCount] != start || lineEnds[lineCount] != end) {
+            lineStarts[lineCount] = start;
+            lineEnds[lineCount] = end;
+            lines[lineCount] = null;
+        }
+
+        final float lineWidth = measure(start, end);
+        lineWidths[lineCount] = lineWidth;
+        maxLineWidth = Math.max(maxLineWidth, lineWidth);
+        ++lineCount;
+    }
+
+    /**
+     * Breaks the text into lines no wider than the width, where possible.
+     */
+    private void breakLines() {
+
+        lineCount = 0;
+        wrapped = false;
+        maxLineWidth = 0;
+
+        final int len = text.length();
+        int start = 0;
+        while (true) {
+
+            // Find where the line ends and the next one starts
+            int end = len;
+            int next = -1;
+            int lastSpace = -1;
+            for (int i = start; i < len; ++i) {
+                final char c = text.charAt(i);
+                if (c == '\n') {
+                    end = i;
+                    next = i + 1;
+                    break;
+                } else if (Character.isWhitespace(c)) {
+                    lastSpace = i;
+                } else if (i > start && offsets[i] + advances[i] - offsets[start] > width) {
+                    if (lastSpace > start) {
+                        end = lastSpace;
+                        next = skipSpaces(lastSpace);
+                    } else {
+                        // Split between characters, but not inside a surrogate pair, which
+                        // stays on this line if it is all there is
+                        int split = i;
+                        if (Character.isLowSurrogate(c)
+                                && Character.isHighSurrogate(text.charAt(i - 1))) {
+                            split = (i - 1 > start) ? i - 1 : i + 1;
+                        }
+                        end = split;
+                        next = (split < len) ? split : -1;
+                    }
+                    wrapped = true;
+                    break;
+                }
+            }
+
+            addLine(start, trimSpaces(start, end));
+            if (next < 0) {
+                break;
+            }
+            start = next;
+        }
+    }
+
+    /**
+     * Returns the text of a line.
+     *
+     * @param line Index of line
+     * @return Characters of the line without trailing whitespace, not null
+     * @throws IndexOutOfBoundsException if line is out of range
+     */
+    /*@Nonnull*/
+    public String getLine(/*@Nonnegative*/ final int line) {
+        checkLine(line);
+        String str = lines[line];
+        if (str == null) {
+            str = text.substring(lineStarts[line], lineEnds[line]);
+            lines[line] = str;
+        }
+        return str;
+    }
+
+    /**
+     * Returns the number of lines.
+     *
+     * @return Number of lines, at least one once a width is set
+     */
+    /*@Nonnegative*/
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Returns the index after the last character of a line, without trailing whitespace.
+     *
+     * @param line Index of line
+     * @return Index into the text
+     * @throws IndexOutOfBoundsException if line is out of range
+     */
+    /*@Nonnegative*/
+    public int getLineEnd(/*@Nonnegative*/ final int line) {
+        checkLine(line);
+        return lineEnds[line];
+    }
+
+    /**
+     * Returns the distance between baselines of consecutive lines at single spacing.
+     *
+     * @return Line height of the font
+     */
+    /*@Nonnegative*/
+    public float getLineHeight() {
+        return lineHeight;
+    }
+
+    /**
+     * Determines how far a line is moved to align it within the width.
+     *
+     * @param line Index of line
+     * @param alignment Where to place lines narrower than the width, not null
+     * @return Horizontal offset of the line
+     * @throws NullPointerException if alignment is null
+     * @throws IndexOutOfBoundsException if line is out of range
+     */
+    /*@CheckForSigned*/
+    public float getLineOffset(/*@Nonnegative*/ final int line,
+                               /*@Nonnull*/ final Alignment alignment) {
+        Check.notNull(alignment, "Alignment cannot be null");
+        checkLine(line);
+        switch (alignment) {
+        case CENTER:
+            return (width - lineWidths[line]) / 2;
+        case RIGHT:
+            return width - lineWidths[line];
+        default:
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the index of the first character of a line.
+     *
+     * @param line Index of line
+     * @return Index into the text
+     * @throws IndexOutOfBoundsException if line is out of range
+     */
+    /*@Nonnegative*/
+    public int getLineStart(/*@Nonnegative*/ final int line) {
+        checkLine(line);
+        return lineStarts[line];
+    }
+
+    /**
+     * Returns the width of a line, without trailing whitespace.
+     *
+     * @param line Index of line
+     * @return Width of the line, which may exceed the layout's width if a character does not fit
+     * @throws IndexOutOfBoundsException if line is out of range
+     */
+    /*@Nonnegative*/
+    public float getLineWidth(/*@Nonnegative*/ final int line) {
+        checkLine(line);
+        return lineWidths[line];
+    }
+
+    /**
+     * Returns the text laid out.
+     *
+     * @return Text given to the constructor, not null
+     */
+    /*@Nonnull*/
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Returns the width lines were broken to fit.
+     *
+     * @return Width, or NaN if not set yet
+     */
+    public float getWidth() {
+        return width;
+    }
+
+    /**
+     * Checks a line index is in range.
+     *
+     * @param line Index of line
+     * @throws IndexOutOfBoundsException if line is out of range
+     */
+    private void checkLine(final int line) {
+        if (line < 0 || line >= lineCount) {
+            throw new IndexOutOfBoundsException("Line " + line + " out of " + lineCount);
+        }
+    }
+
+    /**
+     * Measures a run of characters.
+     *
+     * @param start Index of the first character
+     * @param end Index after the last character
+     * @return Distance from the left of the first character to the right of the last
+     */
+    /*@Nonnegative*/
+    private float measure(/*@Nonnegative*/ final int start, /*@Nonnegative*/ final int end) {
+        if (end == start) {
+            return 0;
+        }
+        return offsets[end - 1] + advances[end - 1] - offsets[start];
+    }
+
+    /**
+     * Changes the width lines are broken to fit.
+     *
+     * @param width Width of the paragraph, positive
+     * @throws IllegalArgumentException if width is not positive
+     */
+    public void setWidth(/*@Nonnegative*/ final float width) {
+
+        Check.argument(width > 0, "Width must be positive");
+
+        if (width == this.width) {
+            return;
+        }
+        final boolean unchanged = (lineCount > 0) && !wrapped && (maxLineWidth <= width);
+        this.width = width;
+        if (!unchanged) {
+            breakLines();
+        }
+    }
+
+    /**
+     * Skips whitespace other than line feeds.
+     *
+     * @param index Index into the text
+     * @return Index of the first character at or after index that is not skipped
+     */
+    /*@Nonnegative*/
+    private int skipSpaces(/*@Nonnegative*/ int index) {
+        final int len = text.length();
+        while (index < len) {
+            final char c = text.charAt(index);
+            if (c == '\n' || !Character.isWhitespace(c)) {
+                break;
+            }
+            ++index;
+        }
+        return index;
+    }
+
+    /**
+     * Leaves whitespace off the end of a run of characters.
+     *
+     * @param start Index of the first character
+     * @param end Index after the last character
+     * @return Index after the last character that is not whitespace, or start
+     */
+    /*@Nonnegative*/
+    private int trimSpaces(/*@Nonnegative*/ final int start, /*@Nonnegative*/ int end) {
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            --end;
+        }
+        return end;
+    }
+
+    /**
+     * Placement of lines narrower than the width of a paragraph.
+     */
+    public enum Alignment {
+
+        /**
+         * Lines start at the left edge.
+         */
+        LEFT,
+
+        /**
+         * Lines are centered between the edges.
+         */
+        CENTER,
+
+        /**
+         * Lines end at the right edge.
+         */
+        RIGHT;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import com.github.opengrabeso.jaagl.GL2GL3;
+
+
+/**
+ * Access to the program binaries of an OpenGL driver.
+ *
+ * <p>
+ * {@link ProgramCache} can store linked shader programs on disk and load them on the next start
+ * instead of compiling them again.  This needs {@code glGetProgramBinary} and {@code
+ * glProgramBinary} from OpenGL 4.1 or {@code ARB_get_program_binary}, which are reached through
+ * the application's OpenGL binding, so the application provides an implementation of this
+ * interface for it.
+ *
+ * @see ProgramCache#setBinaryCache
+ */
+public interface ProgramBinaryAccess {
+
+    /**
+     * Identifies the driver of a context, typically from its vendor, renderer and version strings.
+     *
+     * <p>
+     * Binaries are only loaded by a driver with the same identification as the one that made
+     * them.
+     *
+     * @param gl Current OpenGL context
+     * @return Identification of the driver, or null if the context cannot provide binaries
+     */
+    /*@CheckForNull*/
+    String getDriver(/*@Nonnull*/ GL2GL3 gl);
+
+    /**
+     * Retrieves the binary of a linked program.
+     *
+     * @param gl Current OpenGL context
+     * @param program OpenGL handle to a linked program
+     * @return Binary of the program, or null if the driver does not provide one
+     */
+    /*@CheckForNull*/
+    Binary getBinary(/*@Nonnull*/ GL2GL3 gl, /*@Nonnegative*/ int program);
+
+    /**
+     * Loads a binary into a program instead of linking it from shaders.
+     *
+     * @param gl Current OpenGL context
+     * @param program OpenGL handle to a program without shaders
+     * @param binary Binary retrieved earlier
+     * @return True if the program was linked, false if the driver rejected the binary
+     */
+    boolean loadBinary(/*@Nonnull*/ GL2GL3 gl, /*@Nonnegative*/ int program, /*@Nonnull*/ Binary binary);
+
+    /**
+     * Asks the driver to keep the binary of a program retrievable, before the program is linked.
+     *
+     * @param gl Current OpenGL context
+     * @param program OpenGL handle to a program not yet linked
+     */
+    void setRetrievable(/*@Nonnull*/ GL2GL3 gl, /*@Nonnegative*/ int program);
+
+    /**
+     * Binary of a linked program in a driver specific format.
+     */
+    /*@Immutable*/
+    public static final class Binary {
+
+        /**
+         * Driver specific format of the data.
+         */
+        private final int format;
+
+        /**
+         * Program data.
+         */
+        /*@Nonnull*/
+        private final byte[] data;
+
+        /**
+         * Constructs a {@link Binary}.
+         *
+         * @param format Driver specific format of the data
+         * @param data Program data, copied
+         * @throws NullPointerException if data is null
+         */
+        public Binary(final int format, /*@Nonnull*/ final byte[] data) {
+
+            Check.notNull(data, "Data cannot be null");
+
+            this.format = format;
+            this.data = data.clone();
+        }
+
+        /**
+         * Returns the program data.
+         *
+         * @return Copy of program data, not null
+         */
+        /*@Nonnull*/
+        public byte[] getData() {
+            return data.clone();
+        }
+
+        /**
+         * Returns the driver specific format of the data.
+         *
+         * @return Format of the data
+         */
+        public int getFormat() {
+            return format;
+        }
+    }
+}
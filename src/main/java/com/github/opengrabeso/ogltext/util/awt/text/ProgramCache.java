@@ -0,0 +1,588 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import com.github.opengrabeso.jaagl.GL2GL3;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+
+/**
+ * Shader programs and uniform buffers shared by all glyph renderers of an OpenGL context.
+ *
+ * <p>
+ * Compiling and linking a program can take a noticeable time, and every text renderer used to
+ * do it for itself.  {@code ProgramCache} instead links each pair of shaders once per context,
+ * counts the renderers using it, and deletes it when the last one releases it.
+ *
+ * <p>
+ * Contexts are told apart by a key the renderer passes, since the OpenGL objects of jaagl do not
+ * say which context they belong to.  Renderers use the OpenGL object they were made with unless
+ * the application gives them a key of its own, e.g. the native context, so that renderers given
+ * different OpenGL objects for one context share their programs.  Programs and buffer objects are
+ * shared between contexts of a share group, so one key may as well stand for the whole group.  A
+ * renderer releases what it acquired with the key it acquired it with.  Keys are held weakly, and
+ * entries of keys that were garbage collected are forgotten.
+ *
+ * <p>
+ * Uniform buffers holding state common to all renderers, such as the projection, are shared the
+ * same way, by name.
+ *
+ * <p>
+ * With a directory and a {@link ProgramBinaryAccess} set by {@link #setBinaryCache}, linked
+ * programs are also stored on disk, keyed by the driver and the shader sources, and loaded from
+ * there when a program is first needed in a later run.  The disk cache is best effort: files that
+ * cannot be read, written, or loaded are ignored and the program is linked from source.
+ */
+/*@ThreadSafe*/
+public final class ProgramCache {
+
+    /**
+     * Number of bytes in a binary cache file before the program data.
+     */
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * Extension of binary cache files.
+     */
+    /*@Nonnull*/
+    private static final String EXTENSION = ".bin";
+
+    /**
+     * Encoding of text hashed into keys of binary cache files.
+     */
+    /*@Nonnull*/
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Programs currently linked, guarded by the class.
+     */
+    /*@Nonnull*/
+    private static final List<Entry> entries = new ArrayList<Entry>();
+
+    /**
+     * Uniform buffers currently shared, guarded by the class.
+     */
+    /*@Nonnull*/
+    private static final List<BufferEntry> buffers = new ArrayList<BufferEntry>();
+
+    /**
+     * Directory to store program binaries in, or null to not store them.
+     */
+    /*@CheckForNull*/
+    private static File binaryDirectory;
+
+    /**
+     * Access to program binaries of the driver, or null to not store them.
+     */
+    /*@CheckForNull*/
+    private static ProgramBinaryAccess binaryAccess;
+
+    /**
+     * Prevents instantiation.
+     */
+    private ProgramCache() {
+        // empty
+    }
+
+    /**
+     * Returns a program for a pair of shaders, linking it if the context does not have one yet.
+     *
+     * <p>
+     * Each call must be matched with a call to {@link #release}.
+     *
+     * @param gl Current OpenGL context
+     * @param context Key of the context, or of its share group
+     * @param vss Vertex shader source
+     * @param fss Fragment shader source
+     * @return OpenGL handle to the shader program, not negative
+     * @throws NullPointerException if context, key, or either source is null
+     * @throws IllegalArgumentException if either source is empty
+     */
+    /*@Nonnegative*/
+    static synchronized int acquire(/*@Nonnull*/ final GL2GL3 gl,
+                                    /*@Nonnull*/ final Object context,
+                                    /*@Nonnull*/ final String vss,
+                                    /*@Nonnull*/ final String fss) {
+
+        Check.notNull(gl, "GL cannot be null");
+        Check.notNull(context, "Context cannot be null");
+        Check.notNull(vss, "Vertex shader source cannot be null");
+        Check.notNull(fss, "Fragment shader source cannot be null");
+
+        purge();
+        for (final Entry entry : entries) {
+            if (entry.context.get() == context && entry.vss.equals(vss) && entry.fss.equals(fss)) {
+                ++entry.references;
+                return entry.program;
+            }
+        }
+
+        final int program = loadProgram(gl, vss, fss);
+        entries.add(new Entry(context, vss, fss, program));
+        return program;
+    }
+
+    /**
+     * Returns a uniform buffer shared by name, creating it if the context does not have one yet.
+     *
+     * <p>
+     * Each call must be matched with a call to {@link #releaseBuffer}.
+     *
+     * @param gl Current OpenGL context
+     * @param context Key of the context, or of its share group
+     * @param name Name of the buffer
+     * @param size Number of floats in the buffer, used when creating it
+     * @return Uniform buffer of the context, not null
+     * @throws NullPointerException if context, key, or name is null
+     * @throws IllegalArgumentException if size is not positive
+     */
+    /*@Nonnull*/
+    static synchronized UniformBuffer acquireBuffer(/*@Nonnull*/ final GL2GL3 gl,
+                                                    /*@Nonnull*/ final Object context,
+                                                    /*@Nonnull*/ final String name,
+                                                    /*@Nonnegative*/ final int size) {
+
+        Check.notNull(gl, "GL cannot be null");
+        Check.notNull(context, "Context cannot be null");
+        Check.notNull(name, "Name cannot be null");
+
+        purge();
+        for (final BufferEntry entry : buffers) {
+            if (entry.context.get() == context && entry.name.equals(name)) {
+                ++entry.references;
+                return entry.buffer;
+            }
+        }
+
+        final UniformBuffer buffer = new UniformBuffer(gl, size);
+        buffers.add(new BufferEntry(context, name, buffer));
+        return buffer;
+    }
+
+    /**
+     * Forgets the programs and buffers of a context that was destroyed and recreated.
+     *
+     * <p>
+     * They are not deleted, since they were destroyed with the context.  Renderers that still
+     * hold them are expected to acquire new ones.
+     *
+     * @param context Key of the context that was recreated
+     * @throws NullPointerException if key is null
+     */
+    public static synchronized void contextRecreated(/*@Nonnull*/ final Object context) {
+
+        Check.notNull(context, "Context cannot be null");
+
+        final Iterator<Entry> it = entries.iterator();
+        while (it.hasNext()) {
+            final Object other = it.next().context.get();
+            if (isDestroyed(other) || other == context) {
+                it.remove();
+            }
+        }
+        final Iterator<BufferEntry> bit = buffers.iterator();
+        while (bit.hasNext()) {
+            final Object other = bit.next().context.get();
+            if (isDestroyed(other) || other == context) {
+                bit.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns a hex digest identifying a program binary.
+     *
+     * @param driver Identification of the driver, assumed not null
+     * @param vss Vertex shader source, assumed not null
+     * @param fss Fragment shader source, assumed not null
+     * @return Name of the binary cache file without extension, not null
+     */
+    /*@Nonnull*/
+    private static String getKey(/*@Nonnull*/ final String driver,
+                                 /*@Nonnull*/ final String vss,
+                                 /*@Nonnull*/ final String fss) {
+
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        final String text = driver + "\n" + vss + "\n" + fss;
+        final StringBuilder sb = new StringBuilder();
+        for (final byte b : digest.digest(text.getBytes(UTF_8))) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Checks if the context of an entry is gone.
+     *
+     * @param context Key of the context of the entry, or null if it was garbage collected
+     * @return True if the entry can be forgotten
+     */
+    private static boolean isDestroyed(/*@CheckForNull*/ final Object context) {
+        return context == null;
+    }
+
+    /**
+     * Links a program, from a stored binary if one is available.
+     *
+     * @param gl Current OpenGL context, assumed not null
+     * @param vss Vertex shader source, assumed not null
+     * @param fss Fragment shader source, assumed not null
+     * @return OpenGL handle to the shader program, not negative
+     */
+    /*@Nonnegative*/
+    private static int loadProgram(/*@Nonnull*/ final GL2GL3 gl,
+                                   /*@Nonnull*/ final String vss,
+                                   /*@Nonnull*/ final String fss) {
+
+        final File directory = binaryDirectory;
+        final ProgramBinaryAccess access = binaryAccess;
+        final String driver = (access == null) ? null : access.getDriver(gl);
+        if (directory == null || access == null || driver == null) {
+            return ShaderLoader.loadProgram(gl, vss, fss);
+        }
+
+        // Try the stored binary first
+        final File file = new File(directory, getKey(driver, vss, fss) + EXTENSION);
+        final ProgramBinaryAccess.Binary stored = readBinary(file);
+        if (stored != null) {
+            final int program = gl.glCreateProgram();
+            if (access.loadBinary(gl, program, stored)) {
+                return program;
+            }
+            gl.glDeleteProgram(program);
+            file.delete();
+        }
+
+        // Link from source and store the result for next time
+        final int program = ShaderLoader.loadProgram(gl, vss, fss, access);
+        final ProgramBinaryAccess.Binary binary = access.getBinary(gl, program);
+        if (binary != null) {
+            writeBinary(directory, file, binary);
+        }
+        return program;
+    }
+
+    /**
+     * Removes entries of contexts that were destroyed or garbage collected.
+     */
+    private static void purge() {
+        final Iterator<Entry> it = entries.iterator();
+        while (it.hasNext()) {
+            if (isDestroyed(it.next().context.get())) {
+                it.remove();
+            }
+        }
+        final Iterator<BufferEntry> bit = buffers.iterator();
+        while (bit.hasNext()) {
+            if (isDestroyed(bit.next().context.get())) {
+                bit.remove();
+            }
+        }
+    }
+
+    /**
+     * Reads a program binary from a cache file.
+     *
+     * @param file Binary cache file, assumed not null
+     * @return Program binary, or null if the file does not exist or is not valid
+     */
+    /*@CheckForNull*/
+    private static ProgramBinaryAccess.Binary readBinary(/*@Nonnull*/ final File file) {
+
+        final long size = file.length();
+        if (size <= HEADER_SIZE || size > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(file));
+            final int format = in.readInt();
+            final int length = in.readInt();
+            if (length != size - HEADER_SIZE) {
+                return null;
+            }
+            final byte[] data = new byte[length];
+            in.readFully(data);
+            return new ProgramBinaryAccess.Binary(format, data);
+        } catch (final IOException e) {
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (final IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases a program returned by {@link #acquire}, deleting it when no renderer uses it.
+     *
+     * <p>
+     * A program the cache does not know of, e.g. because it was acquired with another key, is
+     * deleted right away rather than leaked.
+     *
+     * @param gl Current OpenGL context
+     * @param context Key the program was acquired with
+     * @param program OpenGL handle to the shader program
+     * @throws NullPointerException if context or key is null
+     */
+    static synchronized void release(/*@Nonnull*/ final GL2GL3 gl,
+                                     /*@Nonnull*/ final Object context,
+                                     final int program) {
+
+        Check.notNull(gl, "GL cannot be null");
+        Check.notNull(context, "Context cannot be null");
+
+        final Iterator<Entry> it = entries.iterator();
+        while (it.hasNext()) {
+            final Entry entry = it.next();
+            if (entry.context.get() == context && entry.program == program) {
+                if (--entry.references == 0) {
+                    it.remove();
+                    gl.glDeleteProgram(program);
+                }
+                return;
+            }
+        }
+        gl.glDeleteProgram(program);
+    }
+
+    /**
+     * Releases a uniform buffer returned by {@link #acquireBuffer}, deleting it when no renderer
+     * uses it.
+     *
+     * <p>
+     * Like programs, a buffer the cache does not know of is deleted right away.
+     *
+     * @param gl Current OpenGL context
+     * @param context Key the buffer was acquired with
+     * @param buffer Uniform buffer to release
+     * @throws NullPointerException if context, key, or buffer is null
+     */
+    static synchronized void releaseBuffer(/*@Nonnull*/ final GL2GL3 gl,
+                                           /*@Nonnull*/ final Object context,
+                                           /*@Nonnull*/ final UniformBuffer buffer) {
+
+        Check.notNull(gl, "GL cannot be null");
+        Check.notNull(context, "Context cannot be null");
+        Check.notNull(buffer, "Buffer cannot be null");
+
+        final Iterator<BufferEntry> it = buffers.iterator();
+        while (it.hasNext()) {
+            final BufferEntry entry = it.next();
+            if (entry.context.get() == context && entry.buffer == buffer) {
+                if (--entry.references == 0) {
+                    it.remove();
+                    buffer.dispose(gl);
+                }
+                return;
+            }
+        }
+        buffer.dispose(gl);
+    }
+
+    /**
+     * Changes where and how program binaries are stored.
+     *
+     * <p>
+     * Affects programs linked after the call.
+     *
+     * @param directory Directory to store binaries in, created when needed, or null to disable
+     * @param access Access to program binaries of the driver, or null to disable
+     */
+    public static synchronized void setBinaryCache(/*@CheckForNull*/ final File directory,
+                                                   /*@CheckForNull*/ final ProgramBinaryAccess access) {
+        binaryDirectory = directory;
+        binaryAccess = access;
+    }
+
+    /**
+     * Writes a program binary to a cache file, replacing it in one step.
+     *
+     * @param directory Directory of the file, assumed not null
+     * @param file Binary cache file, assumed not null
+     * @param binary Program binary, assumed not null
+     */
+    private static void writeBinary(/*@Nonnull*/ final File directory,
+                                    /*@Nonnull*/ final File file,
+                                    /*@Nonnull*/ final ProgramBinaryAccess.Binary binary) {
+
+        File temp = null;
+        DataOutputStream out = null;
+        try {
+            directory.mkdirs();
+            temp = File.createTempFile("program", ".tmp", directory);
+            out = new DataOutputStream(new FileOutputStream(temp));
+            final byte[] data = binary.getData();
+            out.writeInt(binary.getFormat());
+            out.writeInt(data.length);
+            out.write(data);
+            out.close();
+            out = null;
+            if (!temp.renameTo(file)) {
+                file.delete();
+                temp.renameTo(file);
+            }
+        } catch (final IOException e) {
+            // ignore, binaries are only an optimization
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (final IOException e) {
+                    // ignore
+                }
+            }
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Uniform buffer shared within a context.
+     */
+    private static final class BufferEntry {
+
+        /**
+         * Key of the OpenGL context of the buffer.
+         */
+        /*@Nonnull*/
+        final WeakReference<Object> context;
+
+        /**
+         * Name of the buffer.
+         */
+        /*@Nonnull*/
+        final String name;
+
+        /**
+         * Shared buffer.
+         */
+        /*@Nonnull*/
+        final UniformBuffer buffer;
+
+        /**
+         * Number of renderers using the buffer.
+         */
+        /*@Nonnegative*/
+        int references = 1;
+
+        /**
+         * Constructs a {@link BufferEntry}.
+         *
+         * @param context Key of the OpenGL context of the buffer, assumed not null
+         * @param name Name of the buffer, assumed not null
+         * @param buffer Shared buffer, assumed not null
+         */
+        BufferEntry(/*@Nonnull*/ final Object context,
+                    /*@Nonnull*/ final String name,
+                    /*@Nonnull*/ final UniformBuffer buffer) {
+            this.context = new WeakReference<Object>(context);
+            this.name = name;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * Program linked for a context.
+     */
+    private static final class Entry {
+
+        /**
+         * Key of the OpenGL context of the program.
+         */
+        /*@Nonnull*/
+        final WeakReference<Object> context;
+
+        /**
+         * Vertex shader source.
+         */
+        /*@Nonnull*/
+        final String vss;
+
+        /**
+         * Fragment shader source.
+         */
+        /*@Nonnull*/
+        final String fss;
+
+        /**
+         * OpenGL handle to the shader program.
+         */
+        /*@Nonnegative*/
+        final int program;
+
+        /**
+         * Number of renderers using the program.
+         */
+        /*@Nonnegative*/
+        int references = 1;
+
+        /**
+         * Constructs an {@link Entry}.
+         *
+         * @param context Key of the OpenGL context of the program, assumed not null
+         * @param vss Vertex shader source, assumed not null
+         * @param fss Fragment shader source, assumed not null
+         * @param program OpenGL handle to the shader program
+         */
+        Entry(/*@Nonnull*/ final Object context,
+              /*@Nonnull*/ final String vss,
+              /*@Nonnull*/ final String fss,
+              /*@Nonnegative*/ final int program) {
+            this.context = new WeakReference<Object>(context);
+            this.vss = vss;
+            this.fss = fss;
+            this.program = program;
+        }
+    }
+}
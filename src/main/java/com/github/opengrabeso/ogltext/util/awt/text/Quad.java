@@ -79,4 +79,9 @@ public final class Quad {
      * Top texture coordinate.
      */
     public float tt;
+
+    /**
+     * Layer of an array texture, ignored unless the pipeline draws from one.
+     */
+    public float layer;
 }
@@ -44,6 +44,10 @@ import com.github.opengrabeso.jaagl.GL3;
  * represent one quad.  An alternative implementation using one {@code GL_FAN} per quad was also
  * tested, but proved slower in most cases.  Apparently the penalty imposed by the extra work
  * required by the driver outweighed the benefit of transferring less vertices.
+ *
+ * <p>
+ * A layered pipeline gives each texture coordinate a third component, the layer of an array
+ * texture the quad is drawn from, so quads from several layers can be drawn at once.
  */
 /*@VisibleForTesting*/
 /*@NotThreadSafe*/
@@ -85,6 +89,11 @@ public final class QuadPipelineGL30 extends AbstractQuadPipeline {
     /*@Nonnegative*/
     private final int vao;
 
+    /**
+     * True if texture coordinates include the layer of an array texture.
+     */
+    private final boolean layered;
+
     /**
      * Constructs a {@link QuadPipelineGL30}.
      *
@@ -95,14 +104,47 @@ public final class QuadPipelineGL30 extends AbstractQuadPipeline {
      */
     /*@VisibleForTesting*/
     public QuadPipelineGL30(/*@Nonnull*/ final GL2GL3 gl, /*@Nonnegative*/ final int shaderProgram) {
+        this(gl, shaderProgram, false);
+    }
+
+    /**
+     * Constructs a {@link QuadPipelineGL30} that may include layers in texture coordinates.
+     *
+     * @param gl Current OpenGL context
+     * @param shaderProgram Shader program to render quads with
+     * @param layered True to pass the layer of each quad with its texture coordinates
+     * @throws NullPointerException if context is null
+     * @throws IllegalArgumentException if shader program is less than one
+     */
+    /*@VisibleForTesting*/
+    public QuadPipelineGL30(/*@Nonnull*/ final GL2GL3 gl,
+                            /*@Nonnegative*/ final int shaderProgram,
+                            final boolean layered) {
 
-        super(VERTS_PER_PRIM, PRIMS_PER_QUAD);
+        super(VERTS_PER_PRIM, PRIMS_PER_QUAD,
+              layered ? FLOATS_PER_LAYERED_COORD : FLOATS_PER_COORD);
 
         Check.notNull(gl, "GL cannot be null");
         Check.argument(shaderProgram > 0, "Shader program cannot be less than one");
 
+        this.layered = layered;
         this.vbo = createVertexBufferObject(gl, BYTES_PER_BUFFER);
-        this.vao = createVertexArrayObject(gl, shaderProgram, vbo);
+        this.vao = createVertexArrayObject(gl, shaderProgram, vbo, COORD_SIZE, VERT_SIZE);
+    }
+
+    /**
+     * Adds a texture coordinate of a quad, with its layer if the pipeline is layered.
+     *
+     * @param quad Quad being added, assumed not null
+     * @param s Texture coordinate for X axis
+     * @param t Texture coordinate for Y axis
+     */
+    private void addCoord(/*@Nonnull*/ final Quad quad, final float s, final float t) {
+        if (layered) {
+            addCoord(s, t, quad.layer);
+        } else {
+            addCoord(s, t);
+        }
     }
 
     @Override
@@ -121,12 +163,16 @@ public final class QuadPipelineGL30 extends AbstractQuadPipeline {
      * @param gl Current OpenGL context, assumed not null
      * @param program OpenGL handle to the shader program, assumed not negative
      * @param vbo OpenGL handle to VBO holding vertices, assumed not negative
+     * @param coordSize Number of components in a texture coordinate, assumed two or three
+     * @param stride Number of bytes between successive vertices, assumed positive
      * @return OpenGL handle to resulting VAO
      */
     /*@Nonnegative*/
     private static int createVertexArrayObject(/*@Nonnull*/ final GL2GL3 gl,
                                                /*@Nonnegative*/ final int program,
-                                               /*@Nonnegative*/ final int vbo) {
+                                               /*@Nonnegative*/ final int vbo,
+                                               /*@Nonnegative*/ final int coordSize,
+                                               /*@Nonnegative*/ final int stride) {
 
         // Generate
         final int[] handles = new int[1];
@@ -148,7 +194,7 @@ public final class QuadPipelineGL30 extends AbstractQuadPipeline {
                     FLOATS_PER_POINT,    // number of components
                     gl.GL_FLOAT(),        // type
                     false,               // normalized
-                    STRIDE,              // stride
+                    stride,              // stride
                     POINT_OFFSET);       // offset
         }
 
@@ -158,10 +204,10 @@ public final class QuadPipelineGL30 extends AbstractQuadPipeline {
             gl.glEnableVertexAttribArray(coordLoc);
             gl.glVertexAttribPointer(
                     coordLoc,            // location
-                    FLOATS_PER_COORD,    // number of components
+                    coordSize,           // number of components
                     gl.GL_FLOAT(),        // type
                     false,               // normalized
-                    STRIDE,              // stride
+                    stride,              // stride
                     COORD_OFFSET);       // offset
         }
 
@@ -192,19 +238,19 @@ public final class QuadPipelineGL30 extends AbstractQuadPipeline {
 
         // Add upper-left triangle
         addPoint(quad.xr, quad.yt, quad.z);
-        addCoord(quad.sr, quad.tt);
+        addCoord(quad, quad.sr, quad.tt);
         addPoint(quad.xl, quad.yt, quad.z);
-        addCoord(quad.sl, quad.tt);
+        addCoord(quad, quad.sl, quad.tt);
         addPoint(quad.xl, quad.yb, quad.z);
-        addCoord(quad.sl, quad.tb);
+        addCoord(quad, quad.sl, quad.tb);
 
         // Add lower-right triangle
         addPoint(quad.xr, quad.yt, quad.z);
-        addCoord(quad.sr, quad.tt);
+        addCoord(quad, quad.sr, quad.tt);
         addPoint(quad.xl, quad.yb, quad.z);
-        addCoord(quad.sl, quad.tb);
+        addCoord(quad, quad.sl, quad.tb);
         addPoint(quad.xr, quad.yb, quad.z);
-        addCoord(quad.sr, quad.tb);
+        addCoord(quad, quad.sr, quad.tb);
     }
 
     @Override
@@ -38,7 +38,8 @@ import com.github.opengrabeso.ogltext.util.glsl.ShaderUtil;
  * <p>
  * {@code ShaderLoader} is a simple utility for loading shaders.  It takes shaders directly as
  * strings.  It will create and compile the shaders, and link them together into a program.  Both
- * compiling and linking are verified.
+ * compiling and linking are verified.  Programs are not validated, since validation depends on
+ * the state at the time of drawing and waits for the driver to finish linking.
  *
  * <p>
  * Note it is highly recommended that if the developer passes the strings directly to {@code
@@ -80,30 +81,38 @@ public final class ShaderLoader {
     }
 
     /**
-     * Checks that a shader program was validated successfully.
+     * Loads a shader program from a pair of strings.
      *
-     * @param gl OpenGL context, assumed not null
-     * @param program OpenGL handle to a shader program
-     * @return True if program was validated successfully
+     * @param gl Current OpenGL context
+     * @param vss Vertex shader source
+     * @param fss Fragment shader source
+     * @return OpenGL handle to the shader program, not negative
+     * @throws NullPointerException if context or either source is null
+     * @throws IllegalArgumentException if either source is empty
      */
-    private static boolean isProgramValidated(/*@Nonnull*/ final GL2GL3 gl, final int program) {
-        return ShaderUtil.isProgramStatusValid(gl, program, gl.GL_VALIDATE_STATUS());
+    /*@Nonnegative*/
+    public static int loadProgram(/*@Nonnull*/ final GL2GL3 gl,
+                                  /*@Nonnull*/ final String vss,
+                                  /*@Nonnull*/ final String fss) {
+        return loadProgram(gl, vss, fss, null);
     }
 
     /**
-     * Loads a shader program from a pair of strings.
+     * Loads a shader program from a pair of strings, keeping its binary retrievable.
      *
      * @param gl Current OpenGL context
      * @param vss Vertex shader source
      * @param fss Fragment shader source
+     * @param access Access to program binaries, or null to link normally
      * @return OpenGL handle to the shader program, not negative
      * @throws NullPointerException if context or either source is null
      * @throws IllegalArgumentException if either source is empty
      */
     /*@Nonnegative*/
-    public static int loadProgram(/*@Nonnull*/ final GL2GL3 gl,
-                                  /*@Nonnull*/ final String vss,
-                                  /*@Nonnull*/ final String fss) {
+    static int loadProgram(/*@Nonnull*/ final GL2GL3 gl,
+                           /*@Nonnull*/ final String vss,
+                           /*@Nonnull*/ final String fss,
+                           /*@CheckForNull*/ final ProgramBinaryAccess access) {
 
         Check.notNull(gl, "GL cannot be null");
         Check.notNull(vss, "Vertex shader source cannot be null");
@@ -119,11 +128,13 @@ public final class ShaderLoader {
         final int program = gl.glCreateProgram();
         gl.glAttachShader(program, vs);
         gl.glAttachShader(program, fs);
+        if (access != null) {
+            access.setRetrievable(gl, program);
+        }
 
-        // Link and validate the program
+        // Link the program
         gl.glLinkProgram(program);
-        gl.glValidateProgram(program);
-        if ((!isProgramLinked(gl, program)) || (!isProgramValidated(gl, program))) {
+        if (!isProgramLinked(gl, program)) {
             final String log = ShaderUtil.getProgramInfoLog(gl, program);
             throw gl.newGLException(log);
         }
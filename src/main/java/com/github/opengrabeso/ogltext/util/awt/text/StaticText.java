@@ -0,0 +1,323 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import com.github.opengrabeso.jaagl.GL2GL3;
+import com.github.opengrabeso.jaagl.GL3;
+import com.jogamp.common.nio.Buffers;
+
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Block of text laid out once and kept on the GPU, for drawing large texts that rarely change.
+ *
+ * <p>
+ * Each visible character is stored as two 16-bit numbers, its slot in a {@link GlyphMetricBuffer}
+ * and its pen position on the line in quarter pixels, with kerning already applied.  Lines are
+ * stored as their origin and the index of their first character.  Drawing the text uploads
+ * nothing; the vertex shader looks up the line and glyph of each character and builds its quad.
+ *
+ * <p>
+ * Lines are split at line feeds and go down by the line height of the font.  Whitespace and
+ * glyphs without size are left out, and characters past {@link #MAX_LINE_WIDTH} are cut off.
+ * The buffers are made on the first draw and kept until {@link #dispose}.
+ */
+/*@NotThreadSafe*/
+public final class StaticText {
+
+    /**
+     * Widest line in pixels, limited by the 16 bits a pen position is stored in.
+     */
+    public static final float MAX_LINE_WIDTH = 0xFFFF / 4f;
+
+    /**
+     * Most characters in one text, so the index of a character is exact as a float.
+     */
+    public static final int MAX_CHARACTERS = 1 << 24;
+
+    /**
+     * Number of pen position steps in one pixel.
+     */
+    private static final float PEN_STEPS = 4;
+
+    /**
+     * Number of floats for each line.
+     */
+    private static final int FLOATS_PER_LINE = 4;
+
+    /**
+     * Size of a short in bytes.
+     */
+    private static final int SIZEOF_SHORT = 2;
+
+    /**
+     * Size of a float in bytes.
+     */
+    private static final int SIZEOF_FLOAT = 4;
+
+    /**
+     * Table the slots refer to.
+     */
+    /*@Nonnull*/
+    final GlyphMetricBuffer glyphs;
+
+    /**
+     * Text the block was laid out from.
+     */
+    /*@Nonnull*/
+    private final String text;
+
+    /**
+     * Slot and pen position of each character.
+     */
+    /*@Nonnull*/
+    private final ShortBuffer characters;
+
+    /**
+     * Origin, first character and padding of each line.
+     */
+    /*@Nonnull*/
+    private final FloatBuffer lines;
+
+    /**
+     * Number of characters to draw.
+     */
+    /*@Nonnegative*/
+    private final int size;
+
+    /**
+     * OpenGL handles to the character buffer and texture, then the line buffer and texture.
+     */
+    /*@Nonnull*/
+    private final int[] handles = new int[4];
+
+    /**
+     * Lays out a {@link StaticText}.
+     *
+     * @param producer Producer of the glyphs of the text
+     * @param measurements Line height and kerning of the font
+     * @param glyphs Table to add the glyphs to
+     * @param text Text to lay out, line feeds start new lines
+     * @throws NullPointerException if any argument is null
+     * @throws IllegalArgumentException if the text has too many characters
+     * @throws IllegalStateException if the table runs out of slots
+     */
+    public StaticText(/*@Nonnull*/ final GlyphProducer producer,
+                      /*@Nonnull*/ final GlyphMeasurements measurements,
+                      /*@Nonnull*/ final GlyphMetricBuffer glyphs,
+                      /*@Nonnull*/ final String text) {
+
+        Check.notNull(producer, "Glyph producer cannot be null");
+        Check.notNull(measurements, "Glyph measurements cannot be null");
+        Check.notNull(glyphs, "Glyph metric buffer cannot be null");
+        Check.notNull(text, "Text cannot be null");
+        Check.argument(text.length() <= MAX_CHARACTERS, "Text is too long");
+
+        this.glyphs = glyphs;
+        this.text = text;
+
+        short[] chars = new short[2 * Math.max(text.length(), 1)];
+        float[] origins = new float[FLOATS_PER_LINE * 8];
+        int count = 0;
+        int lineCount = 0;
+        final float lineHeight = measurements.getLineHeight();
+        final boolean kerning = measurements.hasKerning();
+        int start = 0;
+        for (int line = 0; start <= text.length(); ++line) {
+            int end = text.indexOf('\n', start);
+            if (end < 0) {
+                end = text.length();
+            }
+
+            // Place each glyph of the line
+            final int first = count;
+            final List<Glyph> list = producer.createGlyphs(text.substring(start, end));
+            float x = 0;
+            Glyph previous = null;
+            for (final Glyph glyph : list) {
+                if (kerning && previous != null) {
+                    x += measurements.getKerning(previous, glyph);
+                }
+                previous = glyph;
+                final int pen = Math.round(Math.max(x, 0) * PEN_STEPS);
+                if (pen > 0xFFFF) {
+                    break;
+                }
+                if (isVisible(glyph)) {
+                    if (2 * count == chars.length) {
+                        chars = Arrays.copyOf(chars, 2 * chars.length);
+                    }
+                    chars[2 * count] = (short) glyphs.add(glyph);
+                    chars[2 * count + 1] = (short) pen;
+                    ++count;
+                }
+                x += glyph.advance;
+            }
+
+            // Store lines that have something to draw
+            if (count > first) {
+                if (FLOATS_PER_LINE * lineCount == origins.length) {
+                    origins = Arrays.copyOf(origins, 2 * origins.length);
+                }
+                final int i = FLOATS_PER_LINE * lineCount;
+                origins[i] = 0;
+                origins[i + 1] = -line * lineHeight;
+                origins[i + 2] = first;
+                ++lineCount;
+            }
+            start = end + 1;
+        }
+
+        this.size = count;
+        this.characters = Buffers.newDirectShortBuffer(chars, 0, 2 * count);
+        this.lines = Buffers.newDirectFloatBuffer(origins, 0, FLOATS_PER_LINE * lineCount);
+    }
+
+    /**
+     * Binds the character and line textures, creating and filling them on the first call.
+     *
+     * @param gl Current OpenGL context
+     * @param charactersUnit Texture unit for the characters, such as {@code GL_TEXTURE2}
+     * @param linesUnit Texture unit for the lines
+     * @throws NullPointerException if context is null
+     */
+    void bind(/*@Nonnull*/ final GL2GL3 gl, final int charactersUnit, final int linesUnit) {
+
+        Check.notNull(gl, "GL cannot be null");
+
+        final GL3 gl3 = gl.gl3();
+        if (handles[1] == 0) {
+            create(gl, 0, characters, characters.capacity() * SIZEOF_SHORT, gl3.GL_RG16UI());
+            create(gl, 2, lines, lines.capacity() * SIZEOF_FLOAT, gl3.GL_RGBA32F());
+        }
+        gl.glActiveTexture(charactersUnit);
+        gl.glBindTexture(gl3.GL_TEXTURE_BUFFER(), handles[1]);
+        gl.glActiveTexture(linesUnit);
+        gl.glBindTexture(gl3.GL_TEXTURE_BUFFER(), handles[3]);
+    }
+
+    /**
+     * Forgets the OpenGL objects after the context was lost, so the next draw makes them again.
+     */
+    public void contextRecreated() {
+        Arrays.fill(handles, 0);
+    }
+
+    /**
+     * Makes a buffer object holding data and a buffer texture reading from it.
+     *
+     * @param gl Current OpenGL context, assumed not null
+     * @param index Index of the buffer handle, followed by the texture handle
+     * @param data Data to store, assumed not null
+     * @param bytes Size of the data in bytes
+     * @param format Format of the texels
+     */
+    private void create(/*@Nonnull*/ final GL2GL3 gl,
+                        /*@Nonnegative*/ final int index,
+                        /*@Nonnull*/ final Buffer data,
+                        /*@Nonnegative*/ final int bytes,
+                        final int format) {
+
+        final int target = gl.gl3().GL_TEXTURE_BUFFER();
+        final int[] handle = new int[1];
+        gl.glGenBuffers(handle);
+        handles[index] = handle[0];
+        gl.glGenTextures(handle);
+        handles[index + 1] = handle[0];
+
+        // Keep one texel so an empty text still has valid storage
+        gl.glBindBuffer(target, handles[index]);
+        gl.glBufferData(target, Math.max(bytes, 16), bytes > 0 ? data : null, gl.GL_STATIC_DRAW());
+        gl.glBindBuffer(target, 0);
+        gl.glBindTexture(target, handles[index + 1]);
+        gl.gl3().glTexBuffer(target, format, handles[index]);
+        gl.glBindTexture(target, 0);
+    }
+
+    /**
+     * Frees the OpenGL objects of the text.
+     *
+     * @param gl Current OpenGL context
+     * @throws NullPointerException if context is null
+     */
+    public void dispose(/*@Nonnull*/ final GL2GL3 gl) {
+
+        Check.notNull(gl, "GL cannot be null");
+
+        if (handles[1] != 0) {
+            gl.glDeleteTextures(new int[] { handles[1], handles[3] });
+            gl.glDeleteBuffers(new int[] { handles[0], handles[2] });
+        }
+        contextRecreated();
+    }
+
+    /**
+     * Returns the number of lines with something to draw.
+     *
+     * @return Number of lines with something to draw
+     */
+    /*@Nonnegative*/
+    public int getLineCount() {
+        return lines.capacity() / FLOATS_PER_LINE;
+    }
+
+    /**
+     * Returns the text the block was laid out from.
+     *
+     * @return Text the block was laid out from, not null
+     */
+    /*@Nonnull*/
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Checks if a glyph leaves a mark.
+     *
+     * @param glyph Glyph to check, assumed not null
+     * @return True if the glyph has a size and is not whitespace
+     */
+    private static boolean isVisible(/*@Nonnull*/ final Glyph glyph) {
+        return glyph.width > 0 && glyph.height > 0 && !Character.isWhitespace(glyph.character);
+    }
+
+    /**
+     * Returns the number of characters to draw.
+     *
+     * @return Number of characters to draw, each one quad
+     */
+    /*@Nonnegative*/
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,527 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Locale;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+
+/**
+ * Counters and timers of what a text renderer spends its time on.
+ *
+ * <p>
+ * Each {@link Counter} is kept twice: in total since construction or the last {@link #reset},
+ * and for the last finished frame, i.e. between the last calls to {@link #beginFrame} and {@link
+ * #endFrame}.  Timers are counters of nanoseconds.
+ *
+ * <p>
+ * The counters can be read with {@link #get} and {@link #getLastFrame}, or published as a JMX
+ * MBean with {@link #register}.  In the latter case every counter becomes a read-only attribute,
+ * e.g. {@code GlyphMisses} and {@code LastFrameGlyphMisses}, and {@code reset} an operation.
+ *
+ * <p>
+ * Metrics are updated and read with {@link #get} from the rendering thread only.  The MBean
+ * instead reads a copy of the counters made at the end of each frame, so a JMX client sees the
+ * values of the last finished frame, all from the same frame.  Resetting through JMX takes effect
+ * at the start or end of the next frame.
+ */
+/*@NotThreadSafe*/
+public final class TextRendererMetrics {
+
+    /**
+     * Domain of the names metrics are registered with.
+     */
+    /*@Nonnull*/
+    public static final String JMX_DOMAIN = "com.github.opengrabeso.ogltext";
+
+    /**
+     * Totals since construction or the last reset.
+     */
+    /*@Nonnull*/
+    private final long[] totals = new long[Counter.VALUES.length];
+
+    /**
+     * Values of the frame in progress.
+     */
+    /*@Nonnull*/
+    private final long[] frame = new long[Counter.VALUES.length];
+
+    /**
+     * Values of the last finished frame.
+     */
+    /*@Nonnull*/
+    private final long[] lastFrame = new long[Counter.VALUES.length];
+
+    /**
+     * Copy of the totals and last frame values for other threads, interleaved by counter.
+     */
+    /*@Nonnull*/
+    private volatile long[] published = new long[2 * Counter.VALUES.length];
+
+    /**
+     * True if a reset was requested from another thread.
+     */
+    private volatile boolean resetRequested = false;
+
+    /**
+     * Time the frame in progress was started at.
+     */
+    private long frameStart = 0;
+
+    /**
+     * Name of the MBean publishing these metrics, or null if not registered.
+     */
+    /*@CheckForNull*/
+    private ObjectName name = null;
+
+    /**
+     * Constructs a {@link TextRendererMetrics} with all counters at zero.
+     */
+    public TextRendererMetrics() {
+        // empty
+    }
+
+    /**
+     * Adds an amount to a counter.
+     *
+     * @param counter Counter to add to
+     * @param amount Amount to add
+     * @throws NullPointerException if counter is null
+     */
+    public void add(/*@Nonnull*/ final Counter counter, final long amount) {
+        final int i = counter.ordinal();
+        totals[i] += amount;
+        frame[i] += amount;
+    }
+
+    /**
+     * Starts a frame.
+     */
+    public void beginFrame() {
+        resetIfRequested();
+        frameStart = System.nanoTime();
+    }
+
+    /**
+     * Finishes a frame, making its values available from {@link #getLastFrame}.
+     */
+    public void endFrame() {
+        increment(Counter.FRAMES);
+        add(Counter.FRAME_NANOS, System.nanoTime() - frameStart);
+        System.arraycopy(frame, 0, lastFrame, 0, frame.length);
+        Arrays.fill(frame, 0);
+        if (!resetIfRequested()) {
+            publish();
+        }
+    }
+
+    /**
+     * Returns the total of a counter.
+     *
+     * @param counter Counter to get total of
+     * @return Total since construction or the last reset
+     * @throws NullPointerException if counter is null
+     */
+    public long get(/*@Nonnull*/ final Counter counter) {
+        return totals[counter.ordinal()];
+    }
+
+    /**
+     * Returns the value of a counter in the last finished frame.
+     *
+     * @param counter Counter to get value of
+     * @return Value in the last frame, or zero if no frame was finished since the last reset
+     * @throws NullPointerException if counter is null
+     */
+    public long getLastFrame(/*@Nonnull*/ final Counter counter) {
+        return lastFrame[counter.ordinal()];
+    }
+
+    /**
+     * Adds one to a counter.
+     *
+     * @param counter Counter to add to
+     * @throws NullPointerException if counter is null
+     */
+    public void increment(/*@Nonnull*/ final Counter counter) {
+        add(counter, 1);
+    }
+
+    /**
+     * Makes a copy of the counters for the MBean to read.
+     */
+    private void publish() {
+        final long[] values = new long[2 * Counter.VALUES.length];
+        for (int i = 0; i < totals.length; ++i) {
+            values[2 * i] = totals[i];
+            values[2 * i + 1] = lastFrame[i];
+        }
+        published = values;
+    }
+
+    /**
+     * Publishes these metrics as a JMX MBean in the platform MBean server.
+     *
+     * <p>
+     * The MBean is named {@code com.github.opengrabeso.ogltext:type=TextRenderer,name=<name>}.
+     * Metrics already registered are unregistered first.
+     *
+     * @param name Name to tell the text renderer apart from others, e.g. "hud"
+     * @return Name the MBean was registered with, not null
+     * @throws NullPointerException if name is null
+     * @throws JMException if the MBean could not be registered
+     */
+    /*@Nonnull*/
+    public ObjectName register(/*@Nonnull*/ final String name) throws JMException {
+
+        Check.notNull(name, "Name cannot be null");
+
+        unregister();
+
+        final ObjectName objectName = new ObjectName(
+                JMX_DOMAIN + ":type=TextRenderer,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new MBean(), objectName);
+        this.name = objectName;
+        return objectName;
+    }
+
+    /**
+     * Resets all counters to zero.
+     */
+    public void reset() {
+        resetRequested = false;
+        Arrays.fill(totals, 0);
+        Arrays.fill(frame, 0);
+        Arrays.fill(lastFrame, 0);
+        publish();
+    }
+
+    /**
+     * Resets all counters to zero if that was requested from another thread.
+     *
+     * @return True if the counters were reset
+     */
+    private boolean resetIfRequested() {
+        if (resetRequested) {
+            reset();
+            return true;
+        }
+        return false;
+    }
+
+    /*@Nonnull*/
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("TextRendererMetrics[");
+        for (final Counter counter : Counter.VALUES) {
+            if (counter.ordinal() > 0) {
+                sb.append(", ");
+            }
+            sb.append(counter.getAttributeName()).append('=').append(get(counter));
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * Stops publishing these metrics as a JMX MBean.
+     *
+     * <p>
+     * Does nothing if they are not registered.
+     *
+     * @throws JMException if the MBean could not be unregistered
+     */
+    public void unregister() throws JMException {
+        if (name != null) {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            name = null;
+        }
+    }
+
+    /**
+     * Quantity measured by {@link TextRendererMetrics}.
+     */
+    public enum Counter {
+
+        /**
+         * Frames finished.
+         */
+        FRAMES,
+
+        /**
+         * Time spent between the start and end of frames, in nanoseconds.
+         */
+        FRAME_NANOS,
+
+        /**
+         * Glyphs drawn, each of them looked up in the glyph cache.
+         */
+        GLYPH_LOOKUPS,
+
+        /**
+         * Glyphs drawn that were already in the glyph cache.
+         */
+        GLYPH_HITS,
+
+        /**
+         * Glyphs drawn that had to be added to the glyph cache.
+         */
+        GLYPH_MISSES,
+
+        /**
+         * Glyphs drawn into the backing store by Java2D.
+         */
+        GLYPHS_RASTERIZED,
+
+        /**
+         * Time spent drawing glyphs into the backing store, in nanoseconds.
+         */
+        RASTERIZATION_NANOS,
+
+        /**
+         * Updates of the OpenGL texture from the backing store.
+         */
+        TEXTURE_UPLOADS,
+
+        /**
+         * Bytes transferred to the OpenGL texture.
+         */
+        BYTES_UPLOADED,
+
+        /**
+         * Pixels of the backing store changed since the last upload.
+         */
+        DIRTY_AREA,
+
+        /**
+         * Time spent preparing and transferring pixels to the OpenGL texture, in nanoseconds.
+         */
+        UPLOAD_NANOS,
+
+        /**
+         * Batches of quads sent to OpenGL.
+         */
+        DRAW_CALLS,
+
+        /**
+         * Quads drawn, one per glyph.
+         */
+        QUADS,
+
+        /**
+         * Strings left out whole because their bounds were outside the view.
+         */
+        STRINGS_CULLED,
+
+        /**
+         * Glyphs left out because they were outside the view, in strings that were not.
+         */
+        GLYPHS_CULLED,
+
+        /**
+         * Labels left out because they overlapped more important ones.
+         */
+        LABELS_DROPPED,
+
+        /**
+         * Batches drawn because the quad pipeline was full.
+         */
+        FLUSHES_FULL,
+
+        /**
+         * Batches drawn because the color or transform changed.
+         */
+        FLUSHES_STATE,
+
+        /**
+         * Batches drawn because flush was called.
+         */
+        FLUSHES_EXPLICIT,
+
+        /**
+         * Batches drawn because the backing store was reallocated.
+         */
+        FLUSHES_REALLOCATION,
+
+        /**
+         * Batches drawn at the end of a render cycle.
+         */
+        FLUSHES_END,
+
+        /**
+         * Times the backing store was reallocated.
+         */
+        REALLOCATIONS,
+
+        /**
+         * Times the backing store was compacted, at once or over several frames.
+         */
+        COMPACTIONS,
+
+        /**
+         * Glyphs removed from the glyph cache because they weren't used in a while.
+         */
+        EVICTIONS,
+
+        /**
+         * Times the whole glyph cache was cleared because the backing store couldn't grow.
+         */
+        CLEARS;
+
+        /**
+         * All counters, to avoid copying the array on every use.
+         */
+        /*@Nonnull*/
+        private static final Counter[] VALUES = values();
+
+        /**
+         * Returns the name of this counter in camel case, e.g. "GlyphMisses".
+         *
+         * @return Name of counter as a JMX attribute, not null
+         */
+        /*@Nonnull*/
+        public String getAttributeName() {
+            final StringBuilder sb = new StringBuilder();
+            for (final String word : name().split("_")) {
+                sb.append(word.charAt(0)).append(word.substring(1).toLowerCase(Locale.ROOT));
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * JMX view of the metrics.
+     */
+    private final class MBean implements DynamicMBean {
+
+        /**
+         * Prefix of attributes of the last frame.
+         */
+        /*@Nonnull*/
+        private static final String LAST_FRAME = "LastFrame";
+
+        @Override
+        public Object getAttribute(/*@Nonnull*/ final String attribute)
+                throws AttributeNotFoundException {
+            return getAttribute(published, attribute);
+        }
+
+        /**
+         * Returns an attribute from a copy of the counters.
+         *
+         * @param values Totals and last frame values, interleaved by counter, assumed not null
+         * @param attribute Name of the attribute, assumed not null
+         * @return Value of the attribute, not null
+         * @throws AttributeNotFoundException if there is no such attribute
+         */
+        /*@Nonnull*/
+        private Object getAttribute(/*@Nonnull*/ final long[] values,
+                                    /*@Nonnull*/ final String attribute)
+                throws AttributeNotFoundException {
+            final boolean last = attribute.startsWith(LAST_FRAME);
+            final String counterName = last ? attribute.substring(LAST_FRAME.length()) : attribute;
+            for (final Counter counter : Counter.VALUES) {
+                if (counter.getAttributeName().equals(counterName)) {
+                    return values[2 * counter.ordinal() + (last ? 1 : 0)];
+                }
+            }
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        @Override
+        public AttributeList getAttributes(/*@Nonnull*/ final String[] attributes) {
+            final long[] values = published;
+            final AttributeList list = new AttributeList();
+            for (final String attribute : attributes) {
+                try {
+                    list.add(new Attribute(attribute, getAttribute(values, attribute)));
+                } catch (final AttributeNotFoundException e) {
+                    // Left out, as the interface demands
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            final MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[2 * Counter.VALUES.length];
+            for (final Counter counter : Counter.VALUES) {
+                final String name = counter.getAttributeName();
+                attributes[2 * counter.ordinal()] = new MBeanAttributeInfo(
+                        name, "long", "Total of " + name, true, false, false);
+                attributes[2 * counter.ordinal() + 1] = new MBeanAttributeInfo(
+                        LAST_FRAME + name, "long", name + " in the last frame", true, false, false);
+            }
+            final MBeanOperationInfo reset = new MBeanOperationInfo(
+                    "reset", "Resets all counters to zero", new MBeanParameterInfo[0], "void",
+                    MBeanOperationInfo.ACTION);
+            return new MBeanInfo(
+                    TextRendererMetrics.class.getName(), "Text renderer metrics", attributes, null,
+                    new MBeanOperationInfo[] { reset }, null);
+        }
+
+        @Override
+        public Object invoke(/*@Nonnull*/ final String actionName,
+                             final Object[] params,
+                             final String[] signature) throws ReflectionException {
+            if ("reset".equals(actionName)) {
+                // Leave the counters to the rendering thread, but show the reset right away
+                resetRequested = true;
+                published = new long[2 * Counter.VALUES.length];
+                return null;
+            }
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        @Override
+        public void setAttribute(final Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Attributes are read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(final AttributeList attributes) {
+            return new AttributeList();
+        }
+    }
+}
@@ -124,7 +124,8 @@ abstract class Texture {
         return (
             type == gl.GL_TEXTURE_1D() ||
             type == gl.GL_TEXTURE_2D() ||
-            type == gl.GL_TEXTURE_3D()
+            type == gl.GL_TEXTURE_3D() ||
+            (gl.isGL3() && type == gl.gl3().GL_TEXTURE_2D_ARRAY())
         );
     }
 
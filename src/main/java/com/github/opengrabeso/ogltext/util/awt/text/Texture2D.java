@@ -38,6 +38,14 @@ import java.nio.ByteBuffer;
  */
 abstract class Texture2D extends Texture {
 
+    /**
+     * Gamma applied to glyph coverage unless changed.
+     *
+     * <p>
+     * Java 2D rasterizes glyphs with linear coverage, which looks thin once blended.
+     */
+    static final float DEFAULT_GAMMA = 2.2f;
+
     // Size on X axis
     /*@Nonnegative*/
     protected final int width;
@@ -46,6 +54,14 @@ abstract class Texture2D extends Texture {
     /*@Nonnegative*/
     protected final int height;
 
+    // Table converting samples before upload, or null to upload as they are
+    /*@CheckForNull*/
+    private byte[] lookupTable = null;
+
+    // Converted samples of the area being updated, kept between updates
+    /*@CheckForNull*/
+    private ByteBuffer converted = null;
+
     /**
      * Creates a 2D texture.
      *
@@ -96,6 +112,53 @@ abstract class Texture2D extends Texture {
                 null);                     // pixels
     }
 
+    /**
+     * Converts the samples of an area with the lookup table.
+     *
+     * @param pixels Data of entire image, assumed not null
+     * @param area Region to convert, assumed not null
+     * @return Converted samples of the region only, not null
+     */
+    /*@Nonnull*/
+    private ByteBuffer convert(/*@Nonnull*/ final ByteBuffer pixels,
+                               /*@Nonnull*/ final Rectangle area) {
+
+        final int size = area.width * area.height;
+        if ((converted == null) || (converted.capacity() < size)) {
+            converted = ByteBuffer.allocateDirect(size);
+        }
+
+        converted.clear();
+        for (int y = area.y; y < area.y + area.height; ++y) {
+            final int row = y * width;
+            for (int x = area.x; x < area.x + area.width; ++x) {
+                converted.put(lookupTable[pixels.get(row + x) & 0xff]);
+            }
+        }
+        converted.flip();
+        return converted;
+    }
+
+    /**
+     * Makes a table raising samples to the power of the inverse of a gamma.
+     *
+     * @param gamma Gamma to correct samples with
+     * @return Table with an entry for each sample value, not null
+     * @throws IllegalArgumentException if gamma is not positive
+     */
+    /*@Nonnull*/
+    static byte[] createGammaTable(final float gamma) {
+
+        Check.argument(gamma > 0, "Gamma must be positive");
+
+        final byte[] table = new byte[256];
+        for (int i = 0; i < table.length; ++i) {
+            final double t = Math.pow(i / 255.0, 1 / gamma);
+            table[i] = (byte) (t * 255);
+        }
+        return table;
+    }
+
     /**
      * Determines the proper texture format for an OpenGL context.
      *
@@ -114,12 +177,31 @@ abstract class Texture2D extends Texture {
      */
     protected abstract int getInternalFormat(/*@Nonnull*/ GL gl);
 
+    /**
+     * Changes how samples are converted before they are uploaded.
+     *
+     * <p>
+     * Only affects later updates; areas already uploaded are left as they are.
+     *
+     * @param lookupTable Table with an entry for each sample value, or null to upload samples as
+     * they are
+     * @throws IllegalArgumentException if table does not have 256 entries
+     */
+    final void setLookupTable(/*@CheckForNull*/ final byte[] lookupTable) {
+
+        Check.argument((lookupTable == null) || (lookupTable.length == 256),
+                       "Lookup table must have 256 entries");
+
+        this.lookupTable = lookupTable;
+    }
+
     /**
      * Updates the texture.
      *
      * <p>
      * Copies an area from the local image to the
-     * OpenGL texture.  Only this area will be modified.
+     * OpenGL texture.  Only this area will be modified.  Without a {@link #setLookupTable lookup
+     * table} the image is handed to OpenGL as it is, otherwise just the area is converted first.
      *
      * @param gl Current OpenGL context
      * @param pixels Data of entire image
@@ -143,22 +225,22 @@ abstract class Texture2D extends Texture {
             gl.glGetInteger(gl.GL_UNPACK_ROW_LENGTH())
         };
 
-        // Change unpack parameters
+        // Change unpack parameters, picking the area out of the image unless it was converted
+        final ByteBuffer data;
         gl.glPixelStorei(gl.GL_UNPACK_ALIGNMENT(), 1);
-        gl.glPixelStorei(gl.GL_UNPACK_SKIP_ROWS(), area.y);
-        gl.glPixelStorei(gl.GL_UNPACK_SKIP_PIXELS(), area.x);
-        gl.glPixelStorei(gl.GL_UNPACK_ROW_LENGTH(), width);
-
-        // fonts look better when SRGB conversion is done on the textures
-        // this could be done in a shader for GL3, but not for GL2
-        pixels.rewind();
-        ByteBuffer adjustedPixels = ByteBuffer.allocateDirect(pixels.remaining());
-        while (pixels.hasRemaining()) {
-            int p = pixels.get() & 0xff;
-            double t = Math.pow(p / 255.0, 1 / 2.2);
-            adjustedPixels.put((byte)(t * 255));
+        if (lookupTable == null) {
+            gl.glPixelStorei(gl.GL_UNPACK_SKIP_ROWS(), area.y);
+            gl.glPixelStorei(gl.GL_UNPACK_SKIP_PIXELS(), area.x);
+            gl.glPixelStorei(gl.GL_UNPACK_ROW_LENGTH(), width);
+            pixels.rewind();
+            data = pixels;
+        } else {
+            gl.glPixelStorei(gl.GL_UNPACK_SKIP_ROWS(), 0);
+            gl.glPixelStorei(gl.GL_UNPACK_SKIP_PIXELS(), 0);
+            gl.glPixelStorei(gl.GL_UNPACK_ROW_LENGTH(), area.width);
+            data = convert(pixels, area);
         }
-        adjustedPixels.flip();
+
         // Update the texture
         gl.glTexSubImage2D(
                 gl.GL_TEXTURE_2D(),     // target
@@ -169,7 +251,7 @@ abstract class Texture2D extends Texture {
                 area.height,          // height
                 getFormat(gl),        // format
                 gl.GL_UNSIGNED_BYTE(),  // type
-                adjustedPixels);              // pixels
+                data);                // pixels
 
         // Reset unpack parameters
         gl.glPixelStorei(gl.GL_UNPACK_ALIGNMENT(), parameters[0]);
@@ -127,6 +127,21 @@ final class TextureBackingStore {
      */
     private boolean useRed = false;
 
+    /**
+     * Gamma to correct glyph coverage with when uploading.
+     */
+    private float gamma = Texture2D.DEFAULT_GAMMA;
+
+    /**
+     * Table applying gamma when uploading, or null if the renderer applies it.
+     *
+     * <p>
+     * Only needed for intensity textures; OpenGL 3 renders {@code GL_RED} textures with a shader
+     * correcting the raw coverage.
+     */
+    /*@CheckForNull*/
+    private byte[] gammaTable;
+
     /**
      * Constructs a {@link TextureBackingStore}.
      *
@@ -161,6 +176,7 @@ final class TextureBackingStore {
         this.mipmap = mipmap;
         this.smooth = smooth;
         this.useRed = useRed;
+        this.gammaTable = useRed ? null : Texture2D.createGammaTable(gamma);
     }
 
     /**
@@ -180,6 +196,19 @@ final class TextureBackingStore {
         texture.bind(gl, unit);
     }
 
+    /**
+     * Forgets the underlying OpenGL texture after its context was destroyed and recreated.
+     *
+     * <p>
+     * The texture is not deleted, since its name is no longer valid.  A new one is made the next
+     * time the backing store is bound or updated, and the whole local copy is uploaded to it.
+     */
+    void contextRecreated() {
+        texture = null;
+        smoothChanged = false;
+        mark(0, 0, width, height);
+    }
+
     /**
      * Clears out an area in the backing store.
      *
@@ -270,9 +299,20 @@ final class TextureBackingStore {
             } else {
                 texture = new GrayTexture2D(gl, width, height, smooth, mipmap);
             }
+            texture.setLookupTable(gammaTable);
         }
     }
 
+    /**
+     * Returns the size of the area that will be uploaded on the next update.
+     *
+     * @return Number of pixels changed since the last update
+     */
+    /*@Nonnegative*/
+    final int getDirtyArea() {
+        return (dirtyRegion == null) ? 0 : (dirtyRegion.width * dirtyRegion.height);
+    }
+
     /**
      * Returns Java2D Graphics2D object for drawing into this store.
      *
@@ -373,6 +413,44 @@ final class TextureBackingStore {
         }
     }
 
+    /**
+     * Uploads the whole image to a layer of an array texture again, after the array grew.
+     *
+     * @param gl Current OpenGL context, assumed not null
+     * @param array Array texture to upload to, assumed not null
+     * @param layer Index of layer this backing store was attached to
+     */
+    void restore(/*@Nonnull*/ final GL gl,
+                 /*@Nonnull*/ final GlyphTextureArray array,
+                 /*@Nonnegative*/ final int layer) {
+        array.update(gl, layer, pixels, width, new Rectangle(0, 0, width, height));
+    }
+
+    /**
+     * Changes the gamma glyph coverage is corrected with.
+     *
+     * <p>
+     * If the correction is applied when uploading, the whole texture is uploaded again on the
+     * next update.
+     *
+     * @param gamma Gamma to correct coverage with
+     * @throws IllegalArgumentException if gamma is not positive
+     */
+    final void setGamma(final float gamma) {
+
+        Check.argument(gamma > 0, "Gamma must be positive");
+
+        if (useRed || (gamma == this.gamma)) {
+            return;
+        }
+        this.gamma = gamma;
+        gammaTable = Texture2D.createGammaTable(gamma);
+        if (texture != null) {
+            texture.setLookupTable(gammaTable);
+        }
+        mark(0, 0, width, height);
+    }
+
     /**
      * Specifies whether the texture should interpolate samples.
      */
@@ -407,6 +485,33 @@ final class TextureBackingStore {
         }
     }
 
+    /**
+     * Uploads any recently drawn data to a layer of an array texture instead of own texture.
+     *
+     * <p>
+     * Everything is uploaded if the layer held something else before, or was reallocated.
+     *
+     * @param gl Current OpenGL context
+     * @param array Array texture to upload to
+     * @param layer Index of layer to upload to
+     * @throws NullPointerException if context or array is null
+     */
+    void update(/*@Nonnull*/ final GL gl,
+                /*@Nonnull*/ final GlyphTextureArray array,
+                /*@Nonnegative*/ final int layer) {
+
+        Check.notNull(gl, "GL cannot be null");
+        Check.notNull(array, "Array cannot be null");
+
+        if (array.attach(gl, layer, this)) {
+            mark(0, 0, width, height);
+        }
+        if (dirtyRegion != null) {
+            array.update(gl, layer, pixels, width, dirtyRegion);
+            dirtyRegion = null;
+        }
+    }
+
     /**
      * Observer of texture backing store events.
      */
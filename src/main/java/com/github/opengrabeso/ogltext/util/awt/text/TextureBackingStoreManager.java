@@ -93,6 +93,17 @@ final class TextureBackingStoreManager implements BackingStoreManager {
 
     private boolean useRed = false;
 
+    /**
+     * Gamma to correct glyph coverage with.
+     */
+    private float gamma = Texture2D.DEFAULT_GAMMA;
+
+    /**
+     * OpenGL context of the current render cycle, or null to use the current context.
+     */
+    /*@CheckForNull*/
+    private GL gl;
+
     /**
      * Constructs a {@link TextureBackingStoreManager}.
      *
@@ -191,22 +202,32 @@ final class TextureBackingStoreManager implements BackingStoreManager {
         }
 
         // Make a new backing store
-        return new TextureBackingStore(
+        final TextureBackingStore bs = new TextureBackingStore(
                 width, height,
                 font,
                 antialias, subpixel,
                 smooth, mipmap, useRed);
+        bs.setGamma(gamma);
+        return bs;
     }
 
     /**
      * Starts a copy from an old backing store to a new one.
      *
+     * <p>
+     * Areas of a new backing store are only uploaded once something is moved there, so when using
+     * mipmaps, which are computed from the whole texture, the new backing store is marked dirty
+     * entirely.
+     *
      * @param obs Backing store being copied from
      * @param nbs Backing store being copied to
      */
     @Override
     public void beginMovement(final Object obs, final Object nbs) {
-        // empty
+        if (mipmap && (obs != nbs)) {
+            final TextureBackingStore ntbs = (TextureBackingStore) nbs;
+            ntbs.mark(0, 0, ntbs.getWidth(), ntbs.getHeight());
+        }
     }
 
     /**
@@ -236,7 +257,7 @@ final class TextureBackingStoreManager implements BackingStoreManager {
         Check.notNull(bs, "Backing store cannot be null");
 
         // Dispose the backing store
-        final GL gl = GLContext.getCurrentGL();
+        final GL gl = (this.gl != null) ? this.gl : GLContext.getCurrentGL();
         final TextureBackingStore tbs = (TextureBackingStore) bs;
         tbs.dispose(gl);
     }
@@ -245,24 +266,16 @@ final class TextureBackingStoreManager implements BackingStoreManager {
      * Finishes a copy from an old backing store to a new one.
      *
      * <p>
-     * Marks all of the new backing store dirty.  The next time it is updated all of the new data
-     * will be copied to the texture.
+     * Each move already marked its destination dirty, so the next time the new backing store is
+     * updated all of the moved data will be copied to the texture.
      *
      * @param obs Backing store being copied from
      * @param nbs Backing store being copied to
      * @throws NullPointerException if new backing store is null
-     * @throws ClassCastException if new backing store is not a {@code TextureBackingStore}
      */
     @Override
     public void endMovement(final Object obs, /*@Nonnull*/ final Object nbs) {
-
         Check.notNull(nbs, "Backing store cannot be null");
-
-        // Mark the entire backing store as dirty
-        final TextureBackingStore ntbs = (TextureBackingStore) nbs;
-        final int width = ntbs.getWidth();
-        final int height = ntbs.getHeight();
-        ntbs.mark(0, 0, width, height);
     }
 
     /**
@@ -277,6 +290,13 @@ final class TextureBackingStoreManager implements BackingStoreManager {
         }
     }
 
+    /**
+     * Returns the gamma glyph coverage is corrected with.
+     */
+    final float getGamma() {
+        return gamma;
+    }
+
     /**
      * Returns true if is interpolating samples.
      */
@@ -292,6 +312,9 @@ final class TextureBackingStoreManager implements BackingStoreManager {
      * resized, but it can also be called when a backing store is compacted.  In that case {@code
      * obs} will be equal to {@code nbs}.  This situation may need to be handled differently.
      *
+     * <p>
+     * The new location is marked dirty so it gets uploaded with the next update.
+     *
      * @param obs Old backing store being copied from
      * @param ol Area of old backing store to copy
      * @param nbs New backing store being copied to
@@ -330,6 +353,7 @@ final class TextureBackingStoreManager implements BackingStoreManager {
                     ol.y() + ol.h(),
                     null);
         }
+        ntbs.mark(nl.x(), nl.y(), nl.w(), nl.h());
     }
 
     /**
@@ -362,6 +386,32 @@ final class TextureBackingStoreManager implements BackingStoreManager {
         return false;
     }
 
+    /**
+     * Changes the OpenGL context backing stores are disposed with.
+     *
+     * <p>
+     * Backing stores may be deleted by the packer in the middle of a render cycle, where there
+     * is no other way to get at the context it was started with.
+     *
+     * @param gl Context of the current render cycle, or null to use the current context
+     */
+    final void setGL(/*@CheckForNull*/ final GL gl) {
+        this.gl = gl;
+    }
+
+    /**
+     * Changes the gamma new backing stores correct glyph coverage with.
+     *
+     * @param gamma Gamma to correct coverage with
+     * @throws IllegalArgumentException if gamma is not positive
+     */
+    final void setGamma(final float gamma) {
+
+        Check.argument(gamma > 0, "Gamma must be positive");
+
+        this.gamma = gamma;
+    }
+
     /**
      * Changes whether texture should interpolate samples.
      *
@@ -58,7 +58,17 @@ final class UnicodeGlyphProducer extends AbstractGlyphProducer {
     UnicodeGlyphProducer(/*@Nonnull*/ final Font font,
                          /*@Nonnull*/ final RenderDelegate rd,
                          /*@Nonnull*/ final FontRenderContext frc) {
-        super(font, rd, frc);
+        this(new GlyphMeasurements(font, rd, frc));
+    }
+
+    /**
+     * Constructs a {@link UnicodeGlyphProducer} sharing measurements.
+     *
+     * @param measurements Shared measurements of the font glyphs will be made from
+     * @throws NullPointerException if measurements is null
+     */
+    UnicodeGlyphProducer(/*@Nonnull*/ final GlyphMeasurements measurements) {
+        super(measurements);
     }
 
     @Override
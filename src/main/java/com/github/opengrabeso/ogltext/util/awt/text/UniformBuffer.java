@@ -0,0 +1,205 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import com.jogamp.common.nio.Buffers;
+import com.github.opengrabeso.jaagl.GL2GL3;
+
+import java.nio.FloatBuffer;
+
+
+/**
+ * Uniform block backed by a buffer object, with a local copy of its values.
+ *
+ * <p>
+ * Values are laid out by the caller following the {@code std140} rules, indexed in floats.
+ * Setting a value that is already stored does nothing, and {@link #update} only uploads the range
+ * of floats changed since the last upload.
+ */
+/*@NotThreadSafe*/
+final class UniformBuffer {
+
+    /**
+     * Size of a float in bytes.
+     */
+    private static final int SIZEOF_FLOAT = 4;
+
+    /**
+     * Number of floats in a 4x4 matrix.
+     */
+    static final int MAT4_SIZE = 16;
+
+    /**
+     * Local copy of values, direct for uploading.
+     */
+    /*@Nonnull*/
+    private final FloatBuffer values;
+
+    /**
+     * OpenGL handle to the buffer object.
+     */
+    /*@Nonnegative*/
+    private final int handle;
+
+    /**
+     * Index of first float changed since the last upload.
+     */
+    /*@Nonnegative*/
+    private int dirtyStart;
+
+    /**
+     * Index after last float changed since the last upload.
+     */
+    /*@Nonnegative*/
+    private int dirtyEnd;
+
+    /**
+     * Constructs a {@link UniformBuffer} with all values zero.
+     *
+     * @param gl Current OpenGL context
+     * @param size Number of floats in the block
+     * @throws NullPointerException if context is null
+     * @throws IllegalArgumentException if size is not positive
+     */
+    UniformBuffer(/*@Nonnull*/ final GL2GL3 gl, /*@Nonnegative*/ final int size) {
+
+        Check.notNull(gl, "GL cannot be null");
+        Check.argument(size > 0, "Size must be positive");
+
+        this.values = Buffers.newDirectFloatBuffer(size);
+        this.dirtyStart = size;
+        this.dirtyEnd = 0;
+
+        final int[] handles = new int[1];
+        gl.glGenBuffers(handles);
+        this.handle = handles[0];
+        gl.glBindBuffer(gl.GL_UNIFORM_BUFFER(), handle);
+        gl.glBufferData(gl.GL_UNIFORM_BUFFER(), size * SIZEOF_FLOAT, values, gl.GL_DYNAMIC_DRAW());
+        gl.glBindBuffer(gl.GL_UNIFORM_BUFFER(), 0);
+    }
+
+    /**
+     * Binds the buffer to a uniform block binding point.
+     *
+     * @param gl Current OpenGL context
+     * @param binding Index of binding point
+     * @throws NullPointerException if context is null
+     */
+    void bind(/*@Nonnull*/ final GL2GL3 gl, /*@Nonnegative*/ final int binding) {
+
+        Check.notNull(gl, "GL cannot be null");
+
+        gl.glBindBufferBase(gl.GL_UNIFORM_BUFFER(), binding, handle);
+    }
+
+    /**
+     * Deletes the buffer object.
+     *
+     * @param gl Current OpenGL context
+     * @throws NullPointerException if context is null
+     */
+    void dispose(/*@Nonnull*/ final GL2GL3 gl) {
+
+        Check.notNull(gl, "GL cannot be null");
+
+        gl.glDeleteBuffers(new int[] { handle });
+    }
+
+    /**
+     * Checks if any value changed since the last upload.
+     *
+     * @return True if {@link #update} would upload something
+     */
+    boolean isDirty() {
+        return dirtyStart < dirtyEnd;
+    }
+
+    /**
+     * Changes one value.
+     *
+     * @param index Index of float in the block
+     * @param value Value to store
+     * @throws IndexOutOfBoundsException if index is out of the block
+     */
+    void set(/*@Nonnegative*/ final int index, final float value) {
+        if (Float.floatToIntBits(values.get(index)) != Float.floatToIntBits(value)) {
+            values.put(index, value);
+            dirtyStart = Math.min(dirtyStart, index);
+            dirtyEnd = Math.max(dirtyEnd, index + 1);
+        }
+    }
+
+    /**
+     * Changes a 4x4 matrix, stored in column-major order.
+     *
+     * @param index Index of first float of the matrix in the block
+     * @param matrix Values of the matrix
+     * @param transpose True if the matrix is in row-major order
+     * @throws NullPointerException if matrix is null
+     * @throws IndexOutOfBoundsException if matrix does not fit in the block
+     */
+    void setMatrix(/*@Nonnegative*/ final int index,
+                   /*@Nonnull*/ final float[] matrix,
+                   final boolean transpose) {
+
+        Check.notNull(matrix, "Matrix cannot be null");
+
+        for (int i = 0; i < MAT4_SIZE; ++i) {
+            final int j = transpose ? ((i % 4) * 4 + (i / 4)) : i;
+            set(index + i, matrix[j]);
+        }
+    }
+
+    /**
+     * Uploads the values changed since the last upload, if any.
+     *
+     * @param gl Current OpenGL context
+     * @throws NullPointerException if context is null
+     */
+    void update(/*@Nonnull*/ final GL2GL3 gl) {
+
+        Check.notNull(gl, "GL cannot be null");
+
+        if (!isDirty()) {
+            return;
+        }
+
+        values.position(dirtyStart);
+        gl.glBindBuffer(gl.GL_UNIFORM_BUFFER(), handle);
+        gl.glBufferSubData(
+                gl.GL_UNIFORM_BUFFER(),                   // target
+                dirtyStart * SIZEOF_FLOAT,                // offset
+                (dirtyEnd - dirtyStart) * SIZEOF_FLOAT,   // size
+                values);                                  // data
+        gl.glBindBuffer(gl.GL_UNIFORM_BUFFER(), 0);
+        values.rewind();
+
+        dirtyStart = values.capacity();
+        dirtyEnd = 0;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.trace;
+
+import com.github.opengrabeso.ogltext.util.awt.text.Check;
+
+import java.util.Arrays;
+
+
+/**
+ * Times of the render cycles of one {@link TraceReplayer#replay replay}.
+ *
+ * <p>
+ * Percentiles use the nearest rank method, so they are always times that were actually measured.
+ */
+/*@Immutable*/
+public final class ReplayResult {
+
+    /**
+     * Nanoseconds each render cycle took, in order of increasing time.
+     */
+    /*@Nonnull*/
+    private final long[] sortedNanos;
+
+    /**
+     * Nanoseconds all render cycles took.
+     */
+    /*@Nonnegative*/
+    private final long totalNanos;
+
+    /**
+     * Constructs a {@link ReplayResult}.
+     *
+     * @param frameNanos Nanoseconds each render cycle took, assumed not null, not kept
+     */
+    ReplayResult(/*@Nonnull*/ final long[] frameNanos) {
+        this.sortedNanos = Arrays.copyOf(frameNanos, frameNanos.length);
+        Arrays.sort(sortedNanos);
+        long total = 0;
+        for (final long nanos : sortedNanos) {
+            total += nanos;
+        }
+        this.totalNanos = total;
+    }
+
+    /**
+     * Returns the number of render cycles replayed.
+     *
+     * @return Number of render cycles, not negative
+     */
+    /*@Nonnegative*/
+    public int getFrameCount() {
+        return sortedNanos.length;
+    }
+
+    /**
+     * Returns the time of the slowest render cycle.
+     *
+     * @return Nanoseconds of slowest render cycle, or zero if there were none
+     */
+    /*@Nonnegative*/
+    public long getMaxNanos() {
+        return (sortedNanos.length == 0) ? 0 : sortedNanos[sortedNanos.length - 1];
+    }
+
+    /**
+     * Returns the average time of a render cycle.
+     *
+     * @return Average nanoseconds per render cycle, or zero if there were none
+     */
+    /*@Nonnegative*/
+    public double getMeanNanos() {
+        return (sortedNanos.length == 0) ? 0 : ((double) totalNanos) / sortedNanos.length;
+    }
+
+    /**
+     * Returns the time within which a share of the render cycles finished.
+     *
+     * @param percent Share of render cycles, from 0 to 100
+     * @return Nanoseconds at the percentile, or zero if there were no render cycles
+     * @throws IllegalArgumentException if percent is out of range
+     */
+    /*@Nonnegative*/
+    public long getPercentileNanos(final double percent) {
+
+        Check.argument(percent >= 0 && percent <= 100, "Percent must be between 0 and 100");
+
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        final int rank = (int) Math.ceil(percent / 100 * sortedNanos.length);
+        return sortedNanos[Math.max(rank, 1) - 1];
+    }
+
+    /**
+     * Returns the time all render cycles took.
+     *
+     * @return Nanoseconds of all render cycles, not negative
+     */
+    /*@Nonnegative*/
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%d frames: mean %.1f us, p50 %.1f us, p90 %.1f us, p99 %.1f us, max %.1f us",
+                getFrameCount(),
+                getMeanNanos() / 1e3,
+                getPercentileNanos(50) / 1e3,
+                getPercentileNanos(90) / 1e3,
+                getPercentileNanos(99) / 1e3,
+                getMaxNanos() / 1e3);
+    }
+}
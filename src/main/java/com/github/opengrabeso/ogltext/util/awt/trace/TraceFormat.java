@@ -0,0 +1,154 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.trace;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+
+/**
+ * Layout of a {@link TraceRecorder trace} of {@code TextRenderer} calls.
+ *
+ * <p>
+ * A trace starts with {@link #MAGIC}, {@link #VERSION} and the font the renderer was made with
+ * (name, style and size).  Then each call is an opcode followed by its arguments.  Integers are
+ * written as zigzag variable length quantities, floats as four bytes.  The text of draw calls is
+ * written once and referred to by index after that, so a heads-up display drawing the same labels
+ * every frame costs a few bytes per call.  The trace ends with the stream.
+ */
+final class TraceFormat {
+
+    /**
+     * First four bytes of a trace, "OGLT".
+     */
+    static final int MAGIC = 0x4F474C54;
+
+    /**
+     * Version of the layout, increased on incompatible changes.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Maximum number of strings remembered; later new strings are always written out in full.
+     */
+    static final int MAX_STRINGS = 65536;
+
+    /**
+     * Encoding of strings.
+     */
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Start of an orthographic render cycle: width, height, whether to disable the depth test.
+     */
+    static final int BEGIN = 1;
+
+    /**
+     * Start of a 3D render cycle.
+     */
+    static final int BEGIN_3D = 2;
+
+    /**
+     * End of an orthographic render cycle.
+     */
+    static final int END = 3;
+
+    /**
+     * End of a 3D render cycle.
+     */
+    static final int END_3D = 4;
+
+    /**
+     * Orthographic text: string, x, y.
+     */
+    static final int DRAW = 5;
+
+    /**
+     * 3D text: string, x, y, z, scale, whether to flip vertically.
+     */
+    static final int DRAW_3D = 6;
+
+    /**
+     * Color change: red, green, blue, alpha.
+     */
+    static final int COLOR = 7;
+
+    /**
+     * Transform change: sixteen matrix elements.
+     */
+    static final int TRANSFORM = 8;
+
+    /**
+     * Explicit flush.
+     */
+    static final int FLUSH = 9;
+
+    /**
+     * Prevents instantiation.
+     */
+    private TraceFormat() {
+        // empty
+    }
+
+    /**
+     * Reads an integer written by {@link #writeInt}.
+     *
+     * @param in Stream to read from, assumed not null
+     * @return Integer read
+     * @throws IOException if stream could not be read or integer is malformed
+     */
+    static int readInt(/*@Nonnull*/ final DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (value >>> 1) ^ -(value & 1);
+            }
+        }
+        throw new IOException("Malformed integer in trace");
+    }
+
+    /**
+     * Writes an integer so small magnitudes take few bytes.
+     *
+     * @param out Stream to write to, assumed not null
+     * @param value Integer to write
+     * @throws IOException if stream could not be written
+     */
+    static void writeInt(/*@Nonnull*/ final DataOutput out, final int value) throws IOException {
+        int zigzag = (value << 1) ^ (value >> 31);
+        while ((zigzag & ~0x7F) != 0) {
+            out.writeByte((zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        out.writeByte(zigzag);
+    }
+}
@@ -0,0 +1,425 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.trace;
+
+import com.github.opengrabeso.jaagl.GL2GL3;
+import com.github.opengrabeso.ogltext.util.awt.TextRenderer;
+import com.github.opengrabeso.ogltext.util.awt.text.Check;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Wrapper of a {@link TextRenderer} recording what it is asked to do.
+ *
+ * <p>
+ * {@code TraceRecorder} has the rendering methods of {@code TextRenderer}.  Each call is passed
+ * on to the renderer and written to a compact binary trace, which {@link TraceReplayer} can play
+ * back on another renderer to compare changes on identical input.  Swap the renderer of an
+ * application for a recorder, run it, and {@link #close} the recorder when done:
+ *
+ * <pre>
+ * recorder = new TraceRecorder(renderer, new FileOutputStream("hud.trace"));
+ * ...
+ * recorder.beginRendering(drawable.getWidth(), drawable.getHeight());
+ * recorder.draw("Text to draw", xPosition, yPosition);
+ * recorder.endRendering();
+ * ...
+ * recorder.close();
+ * </pre>
+ *
+ * <p>
+ * Rendering methods do not throw {@link IOException}s, so that a recorder can replace a renderer
+ * without changing the application.  Instead, the first failure to write stops recording and is
+ * thrown by {@link #close}.
+ *
+ * @see TraceReplayer
+ */
+/*@NotThreadSafe*/
+public final class TraceRecorder implements Closeable {
+
+    /**
+     * Renderer being recorded.
+     */
+    /*@Nonnull*/
+    private final TextRenderer renderer;
+
+    /**
+     * Stream trace is written to.
+     */
+    /*@Nonnull*/
+    private final DataOutputStream out;
+
+    /**
+     * Indices of strings already written, starting from one.
+     */
+    /*@Nonnull*/
+    private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+    /**
+     * First failure to write the trace, or null if there was none.
+     */
+    /*@CheckForNull*/
+    private IOException failure = null;
+
+    /**
+     * Creates a {@link TraceRecorder}.
+     *
+     * @param renderer Renderer to pass calls on to
+     * @param out Stream to write the trace to, which is closed with the recorder
+     * @throws NullPointerException if renderer or stream is null
+     * @throws IOException if the start of the trace could not be written
+     */
+    public TraceRecorder(/*@Nonnull*/ final TextRenderer renderer,
+                         /*@Nonnull*/ final OutputStream out) throws IOException {
+
+        Check.notNull(renderer, "Renderer cannot be null");
+        Check.notNull(out, "Stream cannot be null");
+
+        this.renderer = renderer;
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+
+        final Font font = renderer.getFont();
+        this.out.writeInt(TraceFormat.MAGIC);
+        this.out.writeInt(TraceFormat.VERSION);
+        this.out.writeUTF(font.getName());
+        this.out.writeInt(font.getStyle());
+        this.out.writeFloat(font.getSize2D());
+    }
+
+    /**
+     * Starts a 3D render cycle.
+     *
+     * @see TextRenderer#begin3DRendering()
+     */
+    public void begin3DRendering() {
+        try {
+            start(TraceFormat.BEGIN_3D);
+        } catch (IOException e) {
+            fail(e);
+        }
+        renderer.begin3DRendering();
+    }
+
+    /**
+     * Starts an orthographic render cycle.
+     *
+     * @param width Width of the current on-screen OpenGL drawable
+     * @param height Height of the current on-screen OpenGL drawable
+     * @see TextRenderer#beginRendering(int, int)
+     */
+    public void beginRendering(/*@Nonnegative*/ final int width,
+                               /*@Nonnegative*/ final int height) {
+        beginRendering(width, height, true);
+    }
+
+    /**
+     * Starts an orthographic render cycle.
+     *
+     * @param width Width of the current on-screen OpenGL drawable
+     * @param height Height of the current on-screen OpenGL drawable
+     * @param disableDepthTest True to disable the depth test
+     * @see TextRenderer#beginRendering(int, int, boolean)
+     */
+    public void beginRendering(/*@Nonnegative*/ final int width,
+                               /*@Nonnegative*/ final int height,
+                               final boolean disableDepthTest) {
+        try {
+            if (start(TraceFormat.BEGIN)) {
+                TraceFormat.writeInt(out, width);
+                TraceFormat.writeInt(out, height);
+                out.writeBoolean(disableDepthTest);
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+        renderer.beginRendering(width, height, disableDepthTest);
+    }
+
+    /**
+     * Finishes recording and closes the stream.
+     *
+     * <p>
+     * The renderer is left as it is.
+     *
+     * @throws IOException if any part of the trace could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            out.close();
+        } catch (IOException e) {
+            fail(e);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Draws text at a location.
+     *
+     * @param text Text to draw
+     * @param x Position to draw on X axis
+     * @param y Position to draw on Y axis
+     * @throws NullPointerException if text is null
+     * @see TextRenderer#draw(CharSequence, int, int)
+     */
+    public void draw(/*@Nonnull*/ final CharSequence text,
+                     /*@CheckForSigned*/ final int x,
+                     /*@CheckForSigned*/ final int y) {
+
+        Check.notNull(text, "Text cannot be null");
+
+        try {
+            if (start(TraceFormat.DRAW)) {
+                writeString(text.toString());
+                TraceFormat.writeInt(out, x);
+                TraceFormat.writeInt(out, y);
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+        renderer.draw(text, x, y);
+    }
+
+    /**
+     * Draws text at a location in 3D space.
+     *
+     * @param text Text to draw
+     * @param x Position to draw on X axis
+     * @param y Position to draw on Y axis
+     * @param z Position to draw on Z axis
+     * @param scale Uniform scale applied to width and height of text
+     * @param verticalFlip True to flip the text upside down
+     * @throws NullPointerException if text is null
+     * @see TextRenderer#draw3D(CharSequence, float, float, float, float, boolean)
+     */
+    public void draw3D(/*@Nonnull*/ final CharSequence text,
+                       /*@CheckForSigned*/ final float x,
+                       /*@CheckForSigned*/ final float y,
+                       /*@CheckForSigned*/ final float z,
+                       /*@CheckForSigned*/ final float scale,
+                       final boolean verticalFlip) {
+
+        Check.notNull(text, "Text cannot be null");
+
+        try {
+            if (start(TraceFormat.DRAW_3D)) {
+                writeString(text.toString());
+                out.writeFloat(x);
+                out.writeFloat(y);
+                out.writeFloat(z);
+                out.writeFloat(scale);
+                out.writeBoolean(verticalFlip);
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+        renderer.draw3D(text, x, y, z, scale, verticalFlip);
+    }
+
+    /**
+     * Finishes a 3D render cycle.
+     *
+     * @see TextRenderer#end3DRendering()
+     */
+    public void end3DRendering() {
+        try {
+            start(TraceFormat.END_3D);
+        } catch (IOException e) {
+            fail(e);
+        }
+        renderer.end3DRendering();
+    }
+
+    /**
+     * Finishes an orthographic render cycle.
+     *
+     * @see TextRenderer#endRendering()
+     */
+    public void endRendering() {
+        try {
+            start(TraceFormat.END);
+        } catch (IOException e) {
+            fail(e);
+        }
+        renderer.endRendering();
+    }
+
+    /**
+     * Stops recording after a failure to write the trace.
+     *
+     * @param e Failure, assumed not null
+     */
+    private void fail(/*@Nonnull*/ final IOException e) {
+        if (failure == null) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Forces all queued text to be drawn.
+     *
+     * @see TextRenderer#flush()
+     */
+    public void flush() {
+        try {
+            start(TraceFormat.FLUSH);
+        } catch (IOException e) {
+            fail(e);
+        }
+        renderer.flush();
+    }
+
+    /**
+     * Returns the renderer calls are passed on to.
+     *
+     * @return Renderer being recorded, not null
+     */
+    /*@Nonnull*/
+    public TextRenderer getRenderer() {
+        return renderer;
+    }
+
+    /**
+     * Changes the color of text drawn afterwards.
+     *
+     * @param color Color to use
+     * @throws NullPointerException if color is null
+     * @see TextRenderer#setColor(Color)
+     */
+    public void setColor(/*@Nonnull*/ final Color color) {
+
+        Check.notNull(color, "Color cannot be null");
+
+        final float r = ((float) color.getRed()) / 255f;
+        final float g = ((float) color.getGreen()) / 255f;
+        final float b = ((float) color.getBlue()) / 255f;
+        final float a = ((float) color.getAlpha()) / 255f;
+        setColor(r, g, b, a);
+    }
+
+    /**
+     * Changes the color of text drawn afterwards.
+     *
+     * @param r Red component of color
+     * @param g Green component of color
+     * @param b Blue component of color
+     * @param a Alpha component of color
+     * @see TextRenderer#setColor(float, float, float, float)
+     */
+    public void setColor(/*@CheckForSigned*/ final float r,
+                         /*@CheckForSigned*/ final float g,
+                         /*@CheckForSigned*/ final float b,
+                         /*@CheckForSigned*/ final float a) {
+        try {
+            if (start(TraceFormat.COLOR)) {
+                out.writeFloat(r);
+                out.writeFloat(g);
+                out.writeFloat(b);
+                out.writeFloat(a);
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+        renderer.setColor(r, g, b, a);
+    }
+
+    /**
+     * Changes the transformation matrix of text drawn afterwards.
+     *
+     * @param gl Current OpenGL context
+     * @param matrix Transformation matrix in column-major order
+     * @throws NullPointerException if matrix is null
+     * @see TextRenderer#setTransform(GL2GL3, float[])
+     */
+    public void setTransform(final GL2GL3 gl, /*@Nonnull*/ final float matrix[]) {
+
+        Check.notNull(matrix, "Matrix cannot be null");
+        Check.argument(matrix.length >= 16, "Matrix needs sixteen elements");
+
+        try {
+            if (start(TraceFormat.TRANSFORM)) {
+                for (int i = 0; i < 16; ++i) {
+                    out.writeFloat(matrix[i]);
+                }
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+        renderer.setTransform(gl, matrix);
+    }
+
+    /**
+     * Writes the opcode of a call unless recording has stopped.
+     *
+     * @param op Opcode of call
+     * @return True if the arguments should be written as well
+     * @throws IOException if stream could not be written
+     */
+    private boolean start(final int op) throws IOException {
+        if (failure != null) {
+            return false;
+        }
+        out.writeByte(op);
+        return true;
+    }
+
+    /**
+     * Writes a string, or just its index if it was written before.
+     *
+     * @param str String to write, assumed not null
+     * @throws IOException if stream could not be written
+     */
+    private void writeString(/*@Nonnull*/ final String str) throws IOException {
+
+        final Integer index = strings.get(str);
+        if (index != null) {
+            TraceFormat.writeInt(out, index);
+            return;
+        }
+
+        // Zero announces a new string
+        TraceFormat.writeInt(out, 0);
+        final byte[] bytes = str.getBytes(TraceFormat.UTF_8);
+        TraceFormat.writeInt(out, bytes.length);
+        out.write(bytes);
+        if (strings.size() < TraceFormat.MAX_STRINGS) {
+            strings.put(str, strings.size() + 1);
+        }
+    }
+}
@@ -0,0 +1,470 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.trace;
+
+import com.github.opengrabeso.jaagl.GL2GL3;
+import com.github.opengrabeso.ogltext.util.awt.TextRenderer;
+import com.github.opengrabeso.ogltext.util.awt.text.Check;
+
+import java.awt.Font;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Player of a trace made by {@link TraceRecorder}.
+ *
+ * <p>
+ * The whole trace is decoded when the {@code TraceReplayer} is created, so reading it does not
+ * count towards the frame times.  {@link #replay} then issues the recorded calls to a renderer as
+ * fast as it takes them, timing each render cycle.  A trace may be replayed any number of times,
+ * for example once to warm up and again to measure:
+ *
+ * <pre>
+ * final TraceReplayer replayer = new TraceReplayer(new FileInputStream("hud.trace"));
+ * final TextRenderer renderer = new TextRenderer(replayer.getFont(), gl);
+ * replayer.replay(renderer, gl);
+ * System.out.println(replayer.replay(renderer, gl));
+ * </pre>
+ *
+ * <p>
+ * Frame times are measured on the CPU.  With a real OpenGL context they include waiting for the
+ * driver only as far as the driver makes the calls wait.
+ *
+ * @see TraceRecorder
+ */
+/*@ThreadSafe*/
+public final class TraceReplayer {
+
+    /**
+     * Font the recorded renderer was made with.
+     */
+    /*@Nonnull*/
+    private final Font font;
+
+    /**
+     * Recorded calls in order.
+     */
+    /*@Nonnull*/
+    private final Command[] commands;
+
+    /**
+     * Number of render cycles in the trace.
+     */
+    /*@Nonnegative*/
+    private final int frameCount;
+
+    /**
+     * Creates a {@link TraceReplayer} by reading a trace.
+     *
+     * <p>
+     * The stream is read to its end, but not closed.
+     *
+     * @param in Stream to read the trace from
+     * @throws NullPointerException if stream is null
+     * @throws IOException if stream could not be read or is not a valid trace
+     */
+    public TraceReplayer(/*@Nonnull*/ final InputStream in) throws IOException {
+
+        Check.notNull(in, "Stream cannot be null");
+
+        final DataInputStream din = new DataInputStream(new BufferedInputStream(in));
+        if (din.readInt() != TraceFormat.MAGIC) {
+            throw new IOException("Not a text renderer trace");
+        }
+        final int version = din.readInt();
+        if (version != TraceFormat.VERSION) {
+            throw new IOException("Unsupported trace version " + version);
+        }
+        final String name = din.readUTF();
+        final int style = din.readInt();
+        final float size = din.readFloat();
+        this.font = new Font(name, style, 1).deriveFont(size);
+
+        final List<Command> commands = new ArrayList<Command>();
+        final List<String> strings = new ArrayList<String>();
+        int frameCount = 0;
+        int op;
+        while ((op = din.read()) >= 0) {
+            final Command command = readCommand(din, op, strings);
+            if (command.endsFrame()) {
+                ++frameCount;
+            }
+            commands.add(command);
+        }
+        this.commands = commands.toArray(new Command[commands.size()]);
+        this.frameCount = frameCount;
+    }
+
+    /**
+     * Returns the font the recorded renderer was made with.
+     *
+     * @return Font of recorded renderer, not null
+     */
+    /*@Nonnull*/
+    public Font getFont() {
+        return font;
+    }
+
+    /**
+     * Returns the number of render cycles in the trace.
+     *
+     * @return Number of render cycles, not negative
+     */
+    /*@Nonnegative*/
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Decodes a single call.
+     *
+     * @param in Stream to read arguments from, assumed not null
+     * @param op Opcode of call
+     * @param strings Strings read so far, assumed not null
+     * @return Decoded call, not null
+     * @throws IOException if stream could not be read or opcode is unknown
+     */
+    /*@Nonnull*/
+    private static Command readCommand(/*@Nonnull*/ final DataInputStream in,
+                                       final int op,
+                                       /*@Nonnull*/ final List<String> strings) throws IOException {
+        switch (op) {
+        case TraceFormat.BEGIN:
+            return new Begin(TraceFormat.readInt(in), TraceFormat.readInt(in), in.readBoolean());
+        case TraceFormat.BEGIN_3D:
+        case TraceFormat.END:
+        case TraceFormat.END_3D:
+        case TraceFormat.FLUSH:
+            return new Simple(op);
+        case TraceFormat.DRAW:
+            return new Draw(readString(in, strings), TraceFormat.readInt(in), TraceFormat.readInt(in));
+        case TraceFormat.DRAW_3D:
+            return new Draw3D(readString(in, strings),
+                              in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat(),
+                              in.readBoolean());
+        case TraceFormat.COLOR:
+            return new SetColor(in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat());
+        case TraceFormat.TRANSFORM:
+            final float[] matrix = new float[16];
+            for (int i = 0; i < 16; ++i) {
+                matrix[i] = in.readFloat();
+            }
+            return new SetTransform(matrix);
+        default:
+            throw new IOException("Unknown opcode " + op + " in trace");
+        }
+    }
+
+    /**
+     * Reads a string, or looks it up if it was read before.
+     *
+     * @param in Stream to read from, assumed not null
+     * @param strings Strings read so far, assumed not null
+     * @return String read, not null
+     * @throws IOException if stream could not be read or index is invalid
+     */
+    /*@Nonnull*/
+    private static String readString(/*@Nonnull*/ final DataInputStream in,
+                                     /*@Nonnull*/ final List<String> strings) throws IOException {
+
+        final int index = TraceFormat.readInt(in);
+        if (index > 0) {
+            if (index > strings.size()) {
+                throw new IOException("Invalid string index " + index + " in trace");
+            }
+            return strings.get(index - 1);
+        }
+
+        final int length = TraceFormat.readInt(in);
+        if (length < 0) {
+            throw new IOException("Invalid string length " + length + " in trace");
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        final String str = new String(bytes, TraceFormat.UTF_8);
+        if (strings.size() < TraceFormat.MAX_STRINGS) {
+            strings.add(str);
+        }
+        return str;
+    }
+
+    /**
+     * Issues all recorded calls to a renderer.
+     *
+     * <p>
+     * The renderer should be made with the {@link #getFont font} of the trace for results to be
+     * comparable.  The OpenGL context is only needed by recorded transform changes.
+     *
+     * @param renderer Renderer to issue calls to
+     * @param gl Current OpenGL context, or null if the trace changes no transforms
+     * @return Times the render cycles took, not null
+     * @throws NullPointerException if renderer is null
+     */
+    /*@Nonnull*/
+    public ReplayResult replay(/*@Nonnull*/ final TextRenderer renderer,
+                               /*@CheckForNull*/ final GL2GL3 gl) {
+
+        Check.notNull(renderer, "Renderer cannot be null");
+
+        final long[] frameNanos = new long[frameCount];
+        int frame = 0;
+        long start = 0;
+        for (final Command command : commands) {
+            if (command.beginsFrame()) {
+                start = System.nanoTime();
+            }
+            command.run(renderer, gl);
+            if (command.endsFrame()) {
+                frameNanos[frame++] = System.nanoTime() - start;
+            }
+        }
+        return new ReplayResult(frameNanos);
+    }
+
+    /**
+     * Recorded call.
+     */
+    /*@Immutable*/
+    private abstract static class Command {
+
+        /**
+         * Opcode of call.
+         */
+        final int op;
+
+        /**
+         * Constructs a {@link Command}.
+         *
+         * @param op Opcode of call
+         */
+        Command(final int op) {
+            this.op = op;
+        }
+
+        /**
+         * Returns true if this call starts a render cycle.
+         */
+        final boolean beginsFrame() {
+            return (op == TraceFormat.BEGIN) || (op == TraceFormat.BEGIN_3D);
+        }
+
+        /**
+         * Returns true if this call finishes a render cycle.
+         */
+        final boolean endsFrame() {
+            return (op == TraceFormat.END) || (op == TraceFormat.END_3D);
+        }
+
+        /**
+         * Issues this call to a renderer.
+         *
+         * @param renderer Renderer to issue call to, assumed not null
+         * @param gl Current OpenGL context, may be null
+         */
+        abstract void run(/*@Nonnull*/ TextRenderer renderer, /*@CheckForNull*/ GL2GL3 gl);
+    }
+
+    /**
+     * Recorded call without arguments.
+     */
+    /*@Immutable*/
+    private static final class Simple extends Command {
+
+        Simple(final int op) {
+            super(op);
+        }
+
+        @Override
+        void run(/*@Nonnull*/ final TextRenderer renderer, /*@CheckForNull*/ final GL2GL3 gl) {
+            switch (op) {
+            case TraceFormat.BEGIN_3D:
+                renderer.begin3DRendering();
+                break;
+            case TraceFormat.END:
+                renderer.endRendering();
+                break;
+            case TraceFormat.END_3D:
+                renderer.end3DRendering();
+                break;
+            case TraceFormat.FLUSH:
+                renderer.flush();
+                break;
+            default:
+                throw new AssertionError("Unexpected opcode " + op);
+            }
+        }
+    }
+
+    /**
+     * Recorded start of an orthographic render cycle.
+     */
+    /*@Immutable*/
+    private static final class Begin extends Command {
+
+        /*@Nonnegative*/
+        private final int width;
+
+        /*@Nonnegative*/
+        private final int height;
+
+        private final boolean disableDepthTest;
+
+        Begin(final int width, final int height, final boolean disableDepthTest) {
+            super(TraceFormat.BEGIN);
+            this.width = width;
+            this.height = height;
+            this.disableDepthTest = disableDepthTest;
+        }
+
+        @Override
+        void run(/*@Nonnull*/ final TextRenderer renderer, /*@CheckForNull*/ final GL2GL3 gl) {
+            renderer.beginRendering(width, height, disableDepthTest);
+        }
+    }
+
+    /**
+     * Recorded orthographic text.
+     */
+    /*@Immutable*/
+    private static final class Draw extends Command {
+
+        /*@Nonnull*/
+        private final String text;
+
+        /*@CheckForSigned*/
+        private final int x;
+
+        /*@CheckForSigned*/
+        private final int y;
+
+        Draw(/*@Nonnull*/ final String text, final int x, final int y) {
+            super(TraceFormat.DRAW);
+            this.text = text;
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        void run(/*@Nonnull*/ final TextRenderer renderer, /*@CheckForNull*/ final GL2GL3 gl) {
+            renderer.draw(text, x, y);
+        }
+    }
+
+    /**
+     * Recorded 3D text.
+     */
+    /*@Immutable*/
+    private static final class Draw3D extends Command {
+
+        /*@Nonnull*/
+        private final String text;
+
+        private final float x;
+
+        private final float y;
+
+        private final float z;
+
+        private final float scale;
+
+        private final boolean verticalFlip;
+
+        Draw3D(/*@Nonnull*/ final String text,
+               final float x,
+               final float y,
+               final float z,
+               final float scale,
+               final boolean verticalFlip) {
+            super(TraceFormat.DRAW_3D);
+            this.text = text;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.scale = scale;
+            this.verticalFlip = verticalFlip;
+        }
+
+        @Override
+        void run(/*@Nonnull*/ final TextRenderer renderer, /*@CheckForNull*/ final GL2GL3 gl) {
+            renderer.draw3D(text, x, y, z, scale, verticalFlip);
+        }
+    }
+
+    /**
+     * Recorded color change.
+     */
+    /*@Immutable*/
+    private static final class SetColor extends Command {
+
+        private final float r;
+
+        private final float g;
+
+        private final float b;
+
+        private final float a;
+
+        SetColor(final float r, final float g, final float b, final float a) {
+            super(TraceFormat.COLOR);
+            this.r = r;
+            this.g = g;
+            this.b = b;
+            this.a = a;
+        }
+
+        @Override
+        void run(/*@Nonnull*/ final TextRenderer renderer, /*@CheckForNull*/ final GL2GL3 gl) {
+            renderer.setColor(r, g, b, a);
+        }
+    }
+
+    /**
+     * Recorded transform change.
+     */
+    /*@Immutable*/
+    private static final class SetTransform extends Command {
+
+        /*@Nonnull*/
+        private final float[] matrix;
+
+        SetTransform(/*@Nonnull*/ final float[] matrix) {
+            super(TraceFormat.TRANSFORM);
+            this.matrix = matrix;
+        }
+
+        @Override
+        void run(/*@Nonnull*/ final TextRenderer renderer, /*@CheckForNull*/ final GL2GL3 gl) {
+            renderer.setTransform(gl, matrix);
+        }
+    }
+}
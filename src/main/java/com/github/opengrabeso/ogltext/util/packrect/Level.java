@@ -47,8 +47,16 @@ public class Level {
   private final int yPos;
   private final LevelSet holder;
 
-  private final List<Rect> rects = new ArrayList<Rect>();
-  private List<Rect> freeList;
+  // Insertion ordered, but removal doesn't need a search
+  private Set<Rect> rects = new LinkedHashSet<Rect>();
+  // Free blocks left behind by removed Rects, keyed by their x
+  // coordinate; adjacent blocks are always coalesced
+  private final TreeMap<Integer, Rect> freeList = new TreeMap<Integer, Rect>();
+  // The same free blocks ordered by width, then x, so that both the
+  // smallest block a Rect fits in and the largest block are found in
+  // logarithmic time
+  private final TreeMap<Long, Rect> freeBySize = new TreeMap<Long, Rect>();
+  private int freeListWidth;
   private int nextAddX;
 
   static class RectXComparator implements Comparator<Rect> {
@@ -75,6 +83,28 @@ public class Level {
   public int h()    { return height; }
   public int yPos() { return yPos;   }
 
+  LevelSet holder() { return holder; }
+
+  /** Returns the total width available in this Level, counting both
+      the free list and the remaining space at the end. */
+  public int freeWidth() {
+    return freeListWidth + (width - nextAddX);
+  }
+
+  /** Returns the width of the largest rectangle which can be added
+      to this Level without compacting it. */
+  public int largestFreeWidth() {
+    final int res = width - nextAddX;
+    if (freeBySize.isEmpty())
+      return res;
+    return Math.max(res, freeBySize.lastEntry().getValue().w());
+  }
+
+  /** Indicates whether removals left gaps in this Level. */
+  public boolean hasFreeList() {
+    return !freeList.isEmpty();
+  }
+
   /** Tries to add the given rectangle to this level only allowing
       non-disruptive changes like trivial expansion of the last level
       in the RectanglePacker and allocation from the free list. More
@@ -100,37 +130,28 @@ public class Level {
     // See whether we can add at the end
     if (nextAddX + rect.w() <= width) {
       rect.setPosition(nextAddX, yPos);
-      rects.add(rect);
+      install(rect);
       nextAddX += rect.w();
       return true;
     }
 
-    // See whether we can add from the free list
-    if (freeList != null) {
-      Rect candidate = null;
-      for (final Iterator<Rect> iter = freeList.iterator(); iter.hasNext(); ) {
-        final Rect cur = iter.next();
-        if (cur.canContain(rect)) {
-          candidate = cur;
-          break;
-        }
-      }
-
-      if (candidate != null) {
+    // See whether we can add from the free list, taking the narrowest
+    // block the rect fits in
+    if (freeListWidth >= rect.w()) {
+      final Map.Entry<Long, Rect> entry = freeBySize.ceilingEntry(sizeKey(rect.w(), 0));
+      if (entry != null) {
         // Remove the candidate from the free list
-        freeList.remove(candidate);
+        final Rect candidate = removeFree(entry.getValue().x());
         // Set up and add the real rect
         rect.setPosition(candidate.x(), candidate.y());
-        rects.add(rect);
-        // Re-add any remaining free space
+        install(rect);
+        // Re-add any remaining free space; it can't be adjacent to
+        // any other free block
         if (candidate.w() > rect.w()) {
           candidate.setPosition(candidate.x() + rect.w(), candidate.y());
           candidate.setSize(candidate.w() - rect.w(), height);
-          freeList.add(candidate);
+          addFree(candidate);
         }
-
-        coalesceFreeList();
-
         return true;
       }
     }
@@ -142,17 +163,27 @@ public class Level {
   public boolean remove(final Rect rect) {
     if (!rects.remove(rect))
       return false;
+    rect.setLevel(null);
+
+    // Merge the space with the free blocks on either side
+    int x = rect.x();
+    int w = rect.w();
+    final Map.Entry<Integer, Rect> before = freeList.lowerEntry(x);
+    if (before != null && before.getValue().maxX() + 1 == x) {
+      final Rect free = removeFree(before.getKey());
+      x = free.x();
+      w += free.w();
+    }
+    if (freeList.containsKey(x + w)) {
+      w += removeFree(x + w).w();
+    }
 
-    // If this is the rightmost rectangle, instead of adding its space
-    // to the free list, we can just decrease the nextAddX
-    if (rect.maxX() + 1 == nextAddX) {
-      nextAddX -= rect.w();
+    // If this is the rightmost space, instead of adding it to the free
+    // list, we can just decrease the nextAddX
+    if (x + w == nextAddX) {
+      nextAddX = x;
     } else {
-      if (freeList == null) {
-        freeList = new ArrayList<Rect>();
-      }
-      freeList.add(new Rect(rect.x(), rect.y(), rect.w(), height, null));
-      coalesceFreeList();
+      addFree(new Rect(x, yPos, w, height, null));
     }
 
     return true;
@@ -168,23 +199,17 @@ public class Level {
   public boolean couldAllocateIfCompacted(final Rect rect) {
     if (rect.h() > height)
       return false;
-    if (freeList == null)
+    if (freeList.isEmpty())
       return false;
-    int freeListWidth = 0;
-    for (final Iterator<Rect> iter = freeList.iterator(); iter.hasNext(); ) {
-      final Rect cur = iter.next();
-      freeListWidth += cur.w();
-    }
-    // Add on the remaining space at the end
-    freeListWidth += (width - nextAddX);
-    return (freeListWidth >= rect.w());
+    return (freeWidth() >= rect.w());
   }
 
   public void compact(final Object backingStore, final BackingStoreManager manager) {
-    Collections.sort(rects, rectXComparator);
+    final List<Rect> sorted = new ArrayList<Rect>(rects);
+    Collections.sort(sorted, rectXComparator);
     int nextCompactionDest = 0;
     manager.beginMovement(backingStore, backingStore);
-    for (final Iterator<Rect> iter = rects.iterator(); iter.hasNext(); ) {
+    for (final Iterator<Rect> iter = sorted.iterator(); iter.hasNext(); ) {
       final Rect cur = iter.next();
       if (cur.x() != nextCompactionDest) {
         manager.move(backingStore, cur,
@@ -195,6 +220,8 @@ public class Level {
     }
     nextAddX = nextCompactionDest;
     freeList.clear();
+    freeBySize.clear();
+    freeListWidth = 0;
     manager.endMovement(backingStore, backingStore);
   }
 
@@ -215,45 +242,55 @@ public class Level {
       update the new Rects in a newly laid-out LevelSet with the
       original Rects. */
   public void updateRectangleReferences() {
-    for (int i = 0; i < rects.size(); i++) {
-      final Rect cur = rects.get(i);
-      final Rect next = cur.getNextLocation();
-      next.setPosition(cur.x(), cur.y());
-      if (cur.w() != next.w() || cur.h() != next.h())
+    final Set<Rect> next = new LinkedHashSet<Rect>();
+    for (final Iterator<Rect> iter = rects.iterator(); iter.hasNext(); ) {
+      final Rect cur = iter.next();
+      final Rect orig = cur.getNextLocation();
+      orig.setPosition(cur.x(), cur.y());
+      if (cur.w() != orig.w() || cur.h() != orig.h())
         throw new RuntimeException("Unexpected disparity in rectangle sizes during updateRectangleReferences");
-      rects.set(i, next);
+      orig.setLevel(this);
+      next.add(orig);
     }
+    rects = next;
   }
 
-  private void coalesceFreeList() {
-    if (freeList == null)
-      return;
-    if (freeList.isEmpty())
-      return;
-
-    // Try to coalesce adjacent free blocks in the free list
-    Collections.sort(freeList, rectXComparator);
-    int i = 0;
-    while (i < freeList.size() - 1) {
-      final Rect r1 = freeList.get(i);
-      final Rect r2 = freeList.get(i+1);
-      if (r1.maxX() + 1 == r2.x()) {
-        // Coalesce r1 and r2 into one block
-        freeList.remove(i+1);
-        r1.setSize(r1.w() + r2.w(), r1.h());
-      } else {
-        ++i;
-      }
-    }
-    // See whether the last block bumps up against the addition point
-    final Rect last = freeList.get(freeList.size() - 1);
-    if (last.maxX() + 1 == nextAddX) {
-      nextAddX -= last.w();
-      freeList.remove(freeList.size() - 1);
-    }
-    if (freeList.isEmpty()) {
-      freeList = null;
+  /** Detaches all Rects from this Level. */
+  void clear() {
+    for (final Iterator<Rect> iter = rects.iterator(); iter.hasNext(); ) {
+      final Rect rect = iter.next();
+      if (rect.getLevel() == this)
+        rect.setLevel(null);
     }
+    rects.clear();
+    freeList.clear();
+    freeBySize.clear();
+    freeListWidth = 0;
+    nextAddX = 0;
+  }
+
+  private void install(final Rect rect) {
+    rects.add(rect);
+    rect.setLevel(this);
+  }
+
+  private void addFree(final Rect free) {
+    freeList.put(free.x(), free);
+    freeBySize.put(sizeKey(free.w(), free.x()), free);
+    freeListWidth += free.w();
+  }
+
+  private Rect removeFree(final int x) {
+    final Rect free = freeList.remove(x);
+    freeBySize.remove(sizeKey(free.w(), free.x()));
+    freeListWidth -= free.w();
+    return free;
+  }
+
+  // Orders free blocks by width first; the x coordinate makes the key
+  // unique
+  private static long sizeKey(final int width, final int x) {
+    return ((long) width << 32) | x;
   }
 
   //----------------------------------------------------------------------
@@ -261,15 +298,12 @@ public class Level {
   //
 
   public void dumpFreeSpace() {
-    int freeListWidth = 0;
-    for (final Iterator<Rect> iter = freeList.iterator(); iter.hasNext(); ) {
+    for (final Iterator<Rect> iter = freeList.values().iterator(); iter.hasNext(); ) {
       final Rect cur = iter.next();
       System.err.println(" Free rectangle at " + cur);
-      freeListWidth += cur.w();
     }
     // Add on the remaining space at the end
     System.err.println(" Remaining free space " + (width - nextAddX));
-    freeListWidth += (width - nextAddX);
-    System.err.println(" Total free space " + freeListWidth);
+    System.err.println(" Total free space " + freeWidth());
   }
 }
@@ -50,9 +50,25 @@ import java.util.*;
     contained within the RectanglePacker and encompasses the storage
     algorithm for the contained Rects. */
 
-public class LevelSet {
+public class LevelSet implements PackingStrategy {
+  /** Creates LevelSets for the RectanglePacker. This is the default
+      PackingStrategy. */
+  public static final PackingStrategy.Factory FACTORY = new PackingStrategy.Factory() {
+    @Override
+    public PackingStrategy create(final int w, final int h) {
+      return new LevelSet(w, h);
+    }
+  };
+
   // Maintained in sorted order by increasing Y coordinate
   private final List<com.github.opengrabeso.ogltext.util.packrect.Level> levels = new ArrayList<com.github.opengrabeso.ogltext.util.packrect.Level>();
+  // Levels by height, then by the width of their largest free block
+  // and Y coordinate (see key()), so finding a Level a Rect fits into
+  // doesn't have to look at the full ones
+  private final TreeMap<Integer, TreeMap<Long, Level>> freeSpace = new TreeMap<Integer, TreeMap<Long, Level>>();
+  // Levels with a free list by height, then by their total free width,
+  // i.e. the ones compaction could make room in
+  private final TreeMap<Integer, TreeMap<Long, Level>> fragmented = new TreeMap<Integer, TreeMap<Long, Level>>();
   private int nextAddY;
   private final int w;
   private int h;
@@ -64,33 +80,38 @@ public class LevelSet {
     this.h = h;
   }
 
+  @Override
   public int w() { return w; }
+  @Override
   public int h() { return h; }
 
   /** Returns true if the given rectangle was successfully added to
       the LevelSet given its current dimensions, false if not. Caller
       is responsible for performing compaction, expansion, etc. as a
       consequence. */
+  @Override
   public boolean add(final Rect rect) {
     if (rect.w() > w)
       return false;
 
-    // Go in reverse order through the levels seeing whether we can
-    // trivially satisfy the allocation request
-    for (int i = levels.size() - 1; i >= 0; --i) {
-      final Level level = levels.get(i);
-      if (level.add(rect))
-        return true;
+    // See whether we can trivially satisfy the allocation request,
+    // preferring the lowest Level with the smallest sufficient block
+    final Level level = find(freeSpace, rect);
+    if (level != null) {
+      final boolean res = addTo(level, rect);
+      if (!res)
+        throw new RuntimeException("Unexpected failure in addition to Level");
+      return true;
     }
 
     // See whether compaction could satisfy this allocation. This
-    // increases the computational complexity of the addition process,
-    // but prevents us from expanding unnecessarily.
-    for (int i = levels.size() - 1; i >= 0; --i) {
-      final Level level = levels.get(i);
-      if (level.couldAllocateIfCompacted(rect))
-        return false;
-    }
+    // prevents us from expanding unnecessarily.
+    if (find(fragmented, rect) != null)
+      return false;
+
+    // The last Level may be expanded trivially
+    if (!levels.isEmpty() && addTo(levels.get(levels.size() - 1), rect))
+      return true;
 
     // OK, we need to either add a new Level or expand the backing
     // store. Try to add a new Level.
@@ -100,42 +121,47 @@ public class LevelSet {
     final Level newLevel = new Level(w, rect.h(), nextAddY, this);
     levels.add(newLevel);
     nextAddY += rect.h();
-    final boolean res = newLevel.add(rect);
+    final boolean res = addTo(newLevel, rect);
     if (!res)
       throw new RuntimeException("Unexpected failure in addition to new Level");
     return true;
   }
 
   /** Removes the given Rect from this LevelSet. */
+  @Override
   public boolean remove(final Rect rect) {
-    for (int i = levels.size() - 1; i >= 0; --i) {
-      final Level level = levels.get(i);
-      if (level.remove(rect))
-        return true;
-    }
+    final Level level = rect.getLevel();
+    if (level == null || level.holder() != this)
+      return false;
 
-    return false;
+    unindex(level);
+    final boolean res = level.remove(rect);
+    index(level);
+    return res;
   }
 
   /** Allocates the given Rectangle, performing compaction of a Level
       if necessary. This is the correct fallback path to {@link
       #add(Rect)} above. Returns true if allocated successfully, false
       otherwise (indicating the need to expand the backing store). */
+  @Override
   public boolean compactAndAdd(final Rect rect,
                                final Object backingStore,
                                final BackingStoreManager manager) {
-    for (int i = levels.size() - 1; i >= 0; --i) {
-      final Level level = levels.get(i);
-      if (level.couldAllocateIfCompacted(rect)) {
-        level.compact(backingStore, manager);
-        final boolean res = level.add(rect);
-        if (!res)
-          throw new RuntimeException("Unexpected failure to add after compaction");
-        return true;
-      }
-    }
+    if (rect.w() > w)
+      return false;
 
-    return false;
+    final Level level = find(fragmented, rect);
+    if (level == null)
+      return false;
+
+    unindex(level);
+    level.compact(backingStore, manager);
+    final boolean res = level.add(rect);
+    index(level);
+    if (!res)
+      throw new RuntimeException("Unexpected failure to add after compaction");
+    return true;
   }
 
   /** Indicates whether it's legal to trivially increase the height of
@@ -155,12 +181,14 @@ public class LevelSet {
   }
 
   /** Gets the used height of the levels in this LevelSet. */
+  @Override
   public int getUsedHeight() {
     return nextAddY;
   }
 
   /** Sets the height of this LevelSet. It is only legal to reduce the
       height to greater than or equal to the currently used height. */
+  @Override
   public void setHeight(final int height) throws IllegalArgumentException {
     if (height < getUsedHeight()) {
       throw new IllegalArgumentException("May not reduce height below currently used height");
@@ -173,6 +201,7 @@ public class LevelSet {
       completely empty Levels divided by the overall used height of
       the LevelSet. A high vertical fragmentation ratio indicates that
       it may be profitable to perform a compaction. */
+  @Override
   public float verticalFragmentationRatio() {
     int freeHeight = 0;
     final int usedHeight = getUsedHeight();
@@ -192,6 +221,7 @@ public class LevelSet {
   }
 
   /** Visits all Rects contained in this LevelSet. */
+  @Override
   public void visit(final RectVisitor visitor) {
     for (final Iterator<Level> iter = levels.iterator(); iter.hasNext(); ) {
       final Level level = iter.next();
@@ -203,6 +233,7 @@ public class LevelSet {
       the "next locations" of those Rects. This is actually used to
       update the new Rects in a newly laid-out LevelSet with the
       original Rects. */
+  @Override
   public void updateRectangleReferences() {
     for (final Iterator<Level> iter = levels.iterator(); iter.hasNext(); ) {
       final Level level = iter.next();
@@ -211,8 +242,76 @@ public class LevelSet {
   }
 
   /** Clears out all Levels stored in this LevelSet. */
+  @Override
   public void clear() {
+    for (final Iterator<Level> iter = levels.iterator(); iter.hasNext(); ) {
+      final Level level = iter.next();
+      level.clear();
+    }
     levels.clear();
+    freeSpace.clear();
+    fragmented.clear();
     nextAddY = 0;
   }
+
+  // Adds the rect to the level, keeping the index up to date
+  private boolean addTo(final Level level, final Rect rect) {
+    unindex(level);
+    final boolean res = level.add(rect);
+    index(level);
+    return res;
+  }
+
+  // Finds the Level with the smallest height and then the smallest
+  // width in the index which can hold the rect
+  private static Level find(final TreeMap<Integer, TreeMap<Long, Level>> index, final Rect rect) {
+    for (final Iterator<TreeMap<Long, Level>> iter = index.tailMap(rect.h()).values().iterator(); iter.hasNext(); ) {
+      final Map.Entry<Long, Level> entry = iter.next().ceilingEntry(key(rect.w(), 0));
+      if (entry != null)
+        return entry.getValue();
+    }
+    return null;
+  }
+
+  // Orders the Levels of one height by width first; the Y coordinate
+  // makes the key unique
+  private static long key(final int width, final int yPos) {
+    return ((long) width << 32) | yPos;
+  }
+
+  private void index(final Level level) {
+    final int largest = level.largestFreeWidth();
+    if (largest > 0)
+      put(freeSpace, level.h(), key(largest, level.yPos()), level);
+    if (level.hasFreeList())
+      put(fragmented, level.h(), key(level.freeWidth(), level.yPos()), level);
+  }
+
+  // Must be called before anything changing the free space or the
+  // height of the level
+  private void unindex(final Level level) {
+    remove(freeSpace, level.h(), key(level.largestFreeWidth(), level.yPos()));
+    if (level.hasFreeList())
+      remove(fragmented, level.h(), key(level.freeWidth(), level.yPos()));
+  }
+
+  private static void put(final TreeMap<Integer, TreeMap<Long, Level>> index,
+                          final int height, final long key, final Level level) {
+    TreeMap<Long, Level> bucket = index.get(height);
+    if (bucket == null) {
+      bucket = new TreeMap<Long, Level>();
+      index.put(height, bucket);
+    }
+    bucket.put(key, level);
+  }
+
+  private static void remove(final TreeMap<Integer, TreeMap<Long, Level>> index,
+                             final int height, final long key) {
+    final TreeMap<Long, Level> bucket = index.get(height);
+    if (bucket == null)
+      return;
+    bucket.remove(key);
+    if (bucket.isEmpty())
+      index.remove(height);
+  }
 }
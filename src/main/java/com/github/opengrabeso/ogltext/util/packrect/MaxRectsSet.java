@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2006 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of Sun Microsystems, Inc. or the names of
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. ALL
+ * EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED. SUN
+ * MICROSYSTEMS, INC. ("SUN") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL SUN OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * SUN HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ *
+ * You acknowledge that this software is not designed or intended for use
+ * in the design, construction, operation or maintenance of any nuclear
+ * facility.
+ *
+ * Sun gratefully acknowledges that this software was originally authored
+ * and developed by Kenneth Bradley Russell and Christopher John Kline.
+ */
+
+package com.github.opengrabeso.ogltext.util.packrect;
+
+import java.util.*;
+
+/** PackingStrategy maintaining the list of maximal free rectangles of
+    the managed region (the "MaxRects" algorithm). Each new rectangle
+    goes into the free rectangle where its bottom edge stays closest
+    to the top of the backing store, so that the used height grows as
+    slowly as possible, with the tightest fit breaking ties. All free
+    rectangles it overlaps are then split and the ones contained in
+    others are pruned. <P>
+
+    This packs mixed sizes most densely of the bundled strategies, at
+    the price of additions which are linear in the number of free
+    rectangles. */
+
+public class MaxRectsSet implements PackingStrategy {
+  /** Creates MaxRectsSets for the RectanglePacker. */
+  public static final PackingStrategy.Factory FACTORY = new PackingStrategy.Factory() {
+    @Override
+    public PackingStrategy create(final int w, final int h) {
+      return new MaxRectsSet(w, h);
+    }
+  };
+
+  private final List<Rect> rects = new ArrayList<Rect>();
+  private final List<Rect> freeList = new ArrayList<Rect>();
+  private final int w;
+  private int h;
+  private long usedArea;
+
+  /** A MaxRectsSet manages all of the backing store for a region of a
+      specified width and height. */
+  public MaxRectsSet(final int w, final int h) {
+    this.w = w;
+    this.h = h;
+    freeList.add(new Rect(0, 0, w, h, null));
+  }
+
+  @Override
+  public int w() { return w; }
+  @Override
+  public int h() { return h; }
+
+  @Override
+  public boolean add(final Rect rect) {
+    if (rect.w() > w || rect.h() > h)
+      return false;
+
+    Rect candidate = null;
+    int bestBottom = Integer.MAX_VALUE;
+    int bestShortSide = Integer.MAX_VALUE;
+    for (final Iterator<Rect> iter = freeList.iterator(); iter.hasNext(); ) {
+      final Rect cur = iter.next();
+      if (cur.canContain(rect)) {
+        final int bottom = cur.y() + rect.h();
+        final int shortSide = Math.min(cur.w() - rect.w(), cur.h() - rect.h());
+        if (bottom < bestBottom ||
+            (bottom == bestBottom && shortSide < bestShortSide)) {
+          candidate = cur;
+          bestBottom = bottom;
+          bestShortSide = shortSide;
+        }
+      }
+    }
+    if (candidate == null)
+      return false;
+
+    rect.setPosition(candidate.x(), candidate.y());
+    rects.add(rect);
+    usedArea += (long) rect.w() * rect.h();
+    if (rect.w() > 0 && rect.h() > 0) {
+      splitFreeList(rect);
+      pruneFreeList();
+    }
+    return true;
+  }
+
+  @Override
+  public boolean remove(final Rect rect) {
+    if (!rects.remove(rect))
+      return false;
+
+    usedArea -= (long) rect.w() * rect.h();
+    if (rect.w() > 0 && rect.h() > 0) {
+      freeList.add(new Rect(rect.x(), rect.y(), rect.w(), rect.h(), null));
+      pruneFreeList();
+    }
+    return true;
+  }
+
+  /** MaxRectsSets can not be compacted in place; always returns false
+      so that the RectanglePacker falls back to a full re-layout. */
+  @Override
+  public boolean compactAndAdd(final Rect rect,
+                               final Object backingStore,
+                               final BackingStoreManager manager) {
+    return false;
+  }
+
+  @Override
+  public int getUsedHeight() {
+    int usedHeight = 0;
+    for (final Iterator<Rect> iter = rects.iterator(); iter.hasNext(); ) {
+      final Rect cur = iter.next();
+      usedHeight = Math.max(usedHeight, cur.y() + cur.h());
+    }
+    return usedHeight;
+  }
+
+  @Override
+  public void setHeight(final int height) throws IllegalArgumentException {
+    if (height < getUsedHeight()) {
+      throw new IllegalArgumentException("May not reduce height below currently used height");
+    }
+    if (height > h) {
+      // Free rectangles touching the bottom edge grow with it, and the
+      // new strip is free across the whole width
+      for (final Iterator<Rect> iter = freeList.iterator(); iter.hasNext(); ) {
+        final Rect cur = iter.next();
+        if (cur.y() + cur.h() == h) {
+          cur.setSize(cur.w(), height - cur.y());
+        }
+      }
+      freeList.add(new Rect(0, h, w, height - h, null));
+    } else {
+      for (final Iterator<Rect> iter = freeList.iterator(); iter.hasNext(); ) {
+        final Rect cur = iter.next();
+        if (cur.y() >= height) {
+          iter.remove();
+        } else if (cur.y() + cur.h() > height) {
+          cur.setSize(cur.w(), height - cur.y());
+        }
+      }
+    }
+    h = height;
+    pruneFreeList();
+  }
+
+  /** Returns the fraction of the used region of this MaxRectsSet which
+      is not covered by any rectangle. */
+  @Override
+  public float verticalFragmentationRatio() {
+    final int usedHeight = getUsedHeight();
+    if (usedHeight == 0)
+      return 0.0f;
+    return 1.0f - (float) usedArea / ((float) usedHeight * w);
+  }
+
+  @Override
+  public void visit(final RectVisitor visitor) {
+    for (final Iterator<Rect> iter = rects.iterator(); iter.hasNext(); ) {
+      visitor.visit(iter.next());
+    }
+  }
+
+  @Override
+  public void updateRectangleReferences() {
+    for (int i = 0; i < rects.size(); i++) {
+      final Rect cur = rects.get(i);
+      final Rect next = cur.getNextLocation();
+      next.setPosition(cur.x(), cur.y());
+      if (cur.w() != next.w() || cur.h() != next.h())
+        throw new RuntimeException("Unexpected disparity in rectangle sizes during updateRectangleReferences");
+      rects.set(i, next);
+    }
+  }
+
+  @Override
+  public void clear() {
+    rects.clear();
+    freeList.clear();
+    freeList.add(new Rect(0, 0, w, h, null));
+    usedArea = 0;
+  }
+
+  //----------------------------------------------------------------------
+  // Internals only below this point
+  //
+
+  // Replaces every free rectangle overlapping the given used one with
+  // up to four maximal free rectangles around it
+  private void splitFreeList(final Rect used) {
+    final int count = freeList.size();
+    for (int i = count - 1; i >= 0; --i) {
+      final Rect cur = freeList.get(i);
+      if (used.x() >= cur.x() + cur.w() || used.x() + used.w() <= cur.x() ||
+          used.y() >= cur.y() + cur.h() || used.y() + used.h() <= cur.y())
+        continue;
+
+      freeList.remove(i);
+      if (used.x() > cur.x()) {
+        freeList.add(new Rect(cur.x(), cur.y(), used.x() - cur.x(), cur.h(), null));
+      }
+      if (used.x() + used.w() < cur.x() + cur.w()) {
+        freeList.add(new Rect(used.x() + used.w(), cur.y(),
+                              cur.x() + cur.w() - used.x() - used.w(), cur.h(), null));
+      }
+      if (used.y() > cur.y()) {
+        freeList.add(new Rect(cur.x(), cur.y(), cur.w(), used.y() - cur.y(), null));
+      }
+      if (used.y() + used.h() < cur.y() + cur.h()) {
+        freeList.add(new Rect(cur.x(), used.y() + used.h(),
+                              cur.w(), cur.y() + cur.h() - used.y() - used.h(), null));
+      }
+    }
+  }
+
+  // Removes free rectangles which are fully contained in another one
+  private void pruneFreeList() {
+    for (int i = 0; i < freeList.size(); i++) {
+      for (int j = i + 1; j < freeList.size(); j++) {
+        final Rect a = freeList.get(i);
+        final Rect b = freeList.get(j);
+        if (contains(b, a)) {
+          freeList.remove(i);
+          --i;
+          break;
+        }
+        if (contains(a, b)) {
+          freeList.remove(j);
+          --j;
+        }
+      }
+    }
+  }
+
+  private static boolean contains(final Rect outer, final Rect inner) {
+    return (inner.x() >= outer.x() && inner.y() >= outer.y() &&
+            inner.x() + inner.w() <= outer.x() + outer.w() &&
+            inner.y() + inner.h() <= outer.y() + outer.h());
+  }
+}
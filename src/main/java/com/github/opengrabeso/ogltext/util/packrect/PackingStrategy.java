@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2006 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of Sun Microsystems, Inc. or the names of
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. ALL
+ * EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED. SUN
+ * MICROSYSTEMS, INC. ("SUN") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL SUN OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * SUN HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ *
+ * You acknowledge that this software is not designed or intended for use
+ * in the design, construction, operation or maintenance of any nuclear
+ * facility.
+ *
+ * Sun gratefully acknowledges that this software was originally authored
+ * and developed by Kenneth Bradley Russell and Christopher John Kline.
+ */
+
+package com.github.opengrabeso.ogltext.util.packrect;
+
+/** The storage algorithm used by a RectanglePacker to decide where
+    on the backing store the contained Rects live. The RectanglePacker
+    itself only deals with allocation of backing stores, compaction
+    and expansion; everything that depends on the actual layout of the
+    rectangles is delegated to an implementation of this interface.
+    <P>
+
+    {@link LevelSet} is the original shelf-based algorithm. {@link
+    SkylineSet} and {@link MaxRectsSet} trade some addition speed for
+    denser packing when the heights of the added rectangles vary a
+    lot. */
+
+public interface PackingStrategy {
+  /** Creates empty PackingStrategy instances for the RectanglePacker,
+      which needs a new one every time it re-lays out the backing
+      store. */
+  public interface Factory {
+    public PackingStrategy create(int w, int h);
+  }
+
+  public int w();
+  public int h();
+
+  /** Returns true if the given rectangle was successfully added given
+      the current dimensions, false if not. Caller is responsible for
+      performing compaction, expansion, etc. as a consequence. */
+  public boolean add(Rect rect);
+
+  /** Removes the given Rect. Returns false if the Rect was not
+      contained in this PackingStrategy. */
+  public boolean remove(Rect rect);
+
+  /** Allocates the given Rectangle, moving other rectangles within the
+      existing backing store if that is supported by the
+      implementation. This is the fallback path to {@link #add(Rect)}
+      above. Returns true if allocated successfully, false otherwise
+      (indicating the need to expand the backing store). */
+  public boolean compactAndAdd(Rect rect,
+                               Object backingStore,
+                               BackingStoreManager manager);
+
+  /** Gets the height used by the contained rectangles. */
+  public int getUsedHeight();
+
+  /** Sets the height of the managed region. It is only legal to
+      reduce the height to greater than or equal to the currently used
+      height. */
+  public void setHeight(int height) throws IllegalArgumentException;
+
+  /** Returns a ratio between 0 and 1 estimating how much of the used
+      height could be reclaimed by re-laying out the contained
+      rectangles. A high ratio indicates that it may be profitable to
+      perform a compaction. */
+  public float verticalFragmentationRatio();
+
+  /** Visits all contained Rects. */
+  public void visit(RectVisitor visitor);
+
+  /** Updates the references to the Rect objects with the "next
+      locations" of those Rects. This is used to update the new Rects
+      in a newly laid-out PackingStrategy with the original Rects. */
+  public void updateRectangleReferences();
+
+  /** Removes all contained Rects. */
+  public void clear();
+}
@@ -115,6 +115,9 @@ public class Rect {
   public void setUserData(final Object obj) { userData = obj; }
   public void setNextLocation(final Rect nextLocation) { this.nextLocation = nextLocation; }
 
+  Level getLevel() { return level; }
+  void setLevel(final Level level) { this.level = level; }
+
   // Helpers for computations.
 
   /** Returns the maximum x-coordinate contained within this
@@ -45,12 +45,15 @@ import java.util.*;
     image regions) into a larger backing store rectangle (typically
     representing a large texture). Supports automatic compaction of
     the space on the backing store, and automatic expansion of the
-    backing store, when necessary. */
+    backing store, when necessary. The placement of the rectangles
+    itself is left to a {@link PackingStrategy}, by default a {@link
+    LevelSet}. */
 
 public class RectanglePacker {
   private final BackingStoreManager manager;
   private Object backingStore;
-  private LevelSet levels;
+  private PackingStrategy levels;
+  private PackingStrategy.Factory strategyFactory;
   private static final float EXPANSION_FACTOR = 0.5f;
   private static final float SHRINK_FACTOR = 0.3f;
 
@@ -60,6 +63,19 @@ public class RectanglePacker {
   private int maxWidth  = -1;
   private int maxHeight = -1;
 
+  private int preferredHeight = -1;
+
+  // State of an incremental compaction, see beginCompaction(). The
+  // new layout and backing store are built next to the current ones,
+  // which stay valid until the last rectangle has been moved.
+  private PackingStrategy nextLevels;
+  private Object nextBackingStore;
+  // Rects to move, sorted by their location in the new layout
+  private List<Rect> pendingMoves;
+  private int nextPendingMove;
+  // Rects added to the current layout while compacting
+  private Set<Rect> addedDuringCompaction;
+
   static class RectHComparator implements Comparator<Rect> {
     @Override
     public int compare(final Rect r1, final Rect r2) {
@@ -73,11 +89,31 @@ public class RectanglePacker {
   }
   private static final Comparator<Rect> rectHComparator = new RectHComparator();
 
+  static class NextLocationComparator implements Comparator<Rect> {
+    @Override
+    public int compare(final Rect r1, final Rect r2) {
+      final Rect n1 = r1.getNextLocation();
+      final Rect n2 = r2.getNextLocation();
+      if (n1.y() != n2.y())
+        return n1.y() - n2.y();
+      return n1.x() - n2.x();
+    }
+  }
+  private static final Comparator<Rect> nextLocationComparator = new NextLocationComparator();
+
   public RectanglePacker(final BackingStoreManager manager,
                          final int initialWidth,
                          final int initialHeight) {
+    this(manager, initialWidth, initialHeight, LevelSet.FACTORY);
+  }
+
+  public RectanglePacker(final BackingStoreManager manager,
+                         final int initialWidth,
+                         final int initialHeight,
+                         final PackingStrategy.Factory strategyFactory) {
     this.manager = manager;
-    levels = new LevelSet(initialWidth, initialHeight);
+    this.strategyFactory = strategyFactory;
+    levels = strategyFactory.create(initialWidth, initialHeight);
     this.initialWidth = initialWidth;
     this.initialHeight = initialHeight;
   }
@@ -100,6 +136,51 @@ public class RectanglePacker {
     this.maxHeight = maxHeight;
   }
 
+  /** Sets the height the backing store should be expanded to the next
+      time it runs out of room, if that is more than the usual
+      expansion. Lets the BackingStoreManager, which may know how many
+      more rectangles are to come, reach the final size in one step
+      instead of several reallocations. A negative value restores the
+      usual expansion. */
+  public void setPreferredHeight(final int preferredHeight) {
+    this.preferredHeight = preferredHeight;
+  }
+
+  /** Switches to a different PackingStrategy. Rects already added are
+      re-laid out using the new strategy, which moves them to a new
+      backing store; if there are none the current backing store is
+      kept. */
+  public void setPackingStrategy(final PackingStrategy.Factory strategyFactory) {
+    if (strategyFactory == this.strategyFactory)
+      return;
+    this.strategyFactory = strategyFactory;
+    if (backingStore == null || isEmpty()) {
+      // Nothing to move, the backing store can be kept as it is
+      levels = strategyFactory.create(levels.w(), levels.h());
+    } else {
+      compactImpl(null);
+    }
+  }
+
+  /** Returns the PackingStrategy currently holding the Rects. While
+      an incremental compaction is in progress this is the one of the
+      current backing store. Meant for inspection only; Rects must
+      still be added and removed through the RectanglePacker. */
+  public PackingStrategy getPackingStrategy() {
+    return levels;
+  }
+
+  private boolean isEmpty() {
+    final boolean[] empty = { true };
+    levels.visit(new RectVisitor() {
+        @Override
+        public void visit(final Rect rect) {
+          empty[0] = false;
+        }
+      });
+    return empty[0];
+  }
+
   /** Decides upon an (x, y) position for the given rectangle (leaving
       its width and height unchanged) and places it on the backing
       store. May provoke re-layout of other Rects already added. If
@@ -117,13 +198,29 @@ public class RectanglePacker {
 
     do {
       // Try to allocate
-      if (levels.add(rect))
+      if (levels.add(rect)) {
+        addedWhileCompacting(rect);
         return;
+      }
+
+      if (isCompacting()) {
+        // The new layout has been made with spare room; switch to it
+        // now instead of growing the current one. This replaces the
+        // backing store like any expansion, so the manager is told
+        // first; it may even complete the compaction itself.
+        manager.preExpand(rect, 0);
+        if (isCompacting())
+          completeCompaction();
+        add(rect);
+        return;
+      }
 
       if (manager.canCompact()) {
         // Try to allocate with horizontal compaction
-        if (levels.compactAndAdd(rect, backingStore, manager))
+        if (levels.compactAndAdd(rect, backingStore, manager)) {
+          addedWhileCompacting(rect);
           return;
+        }
         // Let the manager have a chance at potentially evicting some entries
         tryAgain = manager.preExpand(rect, attemptNumber++);
       } else {
@@ -144,7 +241,17 @@ public class RectanglePacker {
 
   /** Removes the given rectangle from this RectanglePacker. */
   public void remove(final Rect rect) {
-    levels.remove(rect);
+    if (!levels.remove(rect))
+      return;
+
+    if (isCompacting()) {
+      if (!addedDuringCompaction.remove(rect)) {
+        // Drop it from the new layout too; a null next location tells
+        // compactStep() to skip it
+        nextLevels.remove(rect.getNextLocation());
+        rect.setNextLocation(null);
+      }
+    }
   }
 
   /** Visits all Rects contained in this RectanglePacker. */
@@ -153,22 +260,158 @@ public class RectanglePacker {
   }
 
   /** Returns the vertical fragmentation ratio of this
-      RectanglePacker. This is defined as the ratio of the sum of the
-      heights of all completely empty Levels divided by the overall
-      used height of the LevelSet. A high vertical fragmentation ratio
-      indicates that it may be profitable to perform a compaction. */
+      RectanglePacker, as defined by its PackingStrategy. For the
+      default LevelSet this is the ratio of the sum of the heights of
+      all completely empty Levels divided by the overall used height.
+      A high vertical fragmentation ratio indicates that it may be
+      profitable to perform a compaction. */
   public float verticalFragmentationRatio() {
     return levels.verticalFragmentationRatio();
   }
 
+  /** Returns the height of the backing store region actually used
+      by the PackingStrategy. Together with the sizes of the contained
+      Rects this gives the packing density. */
+  public int getUsedHeight() {
+    return levels.getUsedHeight();
+  }
+
   /** Forces a compaction cycle, which typically results in allocating
-      a new backing store and copying all entries to it. */
+      a new backing store and copying all entries to it. If an
+      incremental compaction is in progress it is completed instead. */
   public void compact() {
-    compactImpl(null);
+    if (isCompacting()) {
+      completeCompaction();
+    } else {
+      compactImpl(null);
+    }
   }
 
-  // The "cause" rect may be null
-  private void compactImpl(final Rect cause) {
+  /** Starts an incremental compaction. The new layout is computed and
+      the new backing store allocated right away, but the rectangles
+      are moved only by subsequent calls to {@link #compactStep}. Until
+      the last one has been moved the current backing store and the
+      locations of all Rects remain valid, and Rects may be added and
+      removed as usual; their new locations are taken care of when the
+      compaction completes. Does nothing if a compaction is already in
+      progress or nothing has been added yet. */
+  public void beginCompaction() {
+    if (isCompacting() || backingStore == null)
+      return;
+
+    nextLevels = layout(null);
+    nextBackingStore = manager.allocateBackingStore(nextLevels.w(), nextLevels.h());
+    pendingMoves = new ArrayList<Rect>();
+    levels.visit(new RectVisitor() {
+        @Override
+        public void visit(final Rect cur) {
+          pendingMoves.add(cur);
+        }
+      });
+    // Moving in the order of the new layout keeps the area of the new
+    // backing store touched by each step small
+    Collections.sort(pendingMoves, nextLocationComparator);
+    nextPendingMove = 0;
+    addedDuringCompaction = new LinkedHashSet<Rect>();
+    manager.beginMovement(backingStore, nextBackingStore);
+  }
+
+  /** Indicates whether an incremental compaction is in progress. */
+  public boolean isCompacting() {
+    return nextLevels != null;
+  }
+
+  /** Returns the backing store an incremental compaction is moving the
+      rectangles to, or null if no compaction is in progress. */
+  public Object getNextBackingStore() {
+    return nextBackingStore;
+  }
+
+  /** Moves up to the given number of rectangles of an incremental
+      compaction to the new backing store, stopping early once the
+      given number of nanoseconds has elapsed. At least one rectangle
+      is moved per call. When all of them have been moved the new
+      backing store replaces the current one. Returns true if no
+      compaction is in progress any more. */
+  public boolean compactStep(final int maxRects, final long maxNanos) {
+    if (!isCompacting())
+      return true;
+
+    final long start = System.nanoTime();
+    int moved = 0;
+    while (nextPendingMove < pendingMoves.size()) {
+      final Rect cur = pendingMoves.get(nextPendingMove);
+      pendingMoves.set(nextPendingMove++, null);
+      if (cur.getNextLocation() == null)
+        continue; // Removed in the meantime
+      manager.move(backingStore, cur, nextBackingStore, cur.getNextLocation());
+      if (++moved >= maxRects || System.nanoTime() - start >= maxNanos)
+        return false;
+    }
+    finishCompaction();
+    return true;
+  }
+
+  /** Moves all remaining rectangles of an incremental compaction at
+      once and switches to the new backing store. */
+  public void completeCompaction() {
+    compactStep(Integer.MAX_VALUE, Long.MAX_VALUE);
+  }
+
+  private void addedWhileCompacting(final Rect rect) {
+    if (isCompacting()) {
+      rect.setNextLocation(null);
+      addedDuringCompaction.add(rect);
+    }
+  }
+
+  private void finishCompaction() {
+    // Rectangles added since the compaction started have no place in
+    // the new layout yet
+    for (final Iterator<Rect> iter = addedDuringCompaction.iterator(); iter.hasNext(); ) {
+      final Rect cur = iter.next();
+      final Rect newRect = new Rect(0, 0, cur.w(), cur.h(), null);
+      if (!nextLevels.add(newRect)) {
+        // Out of luck; start over with a regular compaction, which is
+        // allowed to grow the backing store
+        abortCompaction();
+        compactImpl(null);
+        return;
+      }
+      cur.setNextLocation(newRect);
+      newRect.setNextLocation(cur);
+    }
+    for (final Iterator<Rect> iter = addedDuringCompaction.iterator(); iter.hasNext(); ) {
+      final Rect cur = iter.next();
+      manager.move(backingStore, cur, nextBackingStore, cur.getNextLocation());
+    }
+
+    nextLevels.updateRectangleReferences();
+    manager.endMovement(backingStore, nextBackingStore);
+    manager.deleteBackingStore(backingStore);
+    backingStore = nextBackingStore;
+    levels = nextLevels;
+    clearCompaction();
+  }
+
+  private void abortCompaction() {
+    manager.endMovement(backingStore, nextBackingStore);
+    manager.deleteBackingStore(nextBackingStore);
+    clearCompaction();
+  }
+
+  private void clearCompaction() {
+    nextLevels = null;
+    nextBackingStore = null;
+    pendingMoves = null;
+    addedDuringCompaction = null;
+  }
+
+  // Computes a new layout of all contained rectangles, linking each
+  // one to its new location with setNextLocation(). The "cause" rect
+  // may be null; if not, the new layout is made large enough to hold
+  // it as well.
+  private PackingStrategy layout(final Rect cause) {
     // Have to either expand, compact or both. Need to figure out what
     // direction to go. Prefer to expand vertically. Expand
     // horizontally only if rectangle being added is too wide. FIXME:
@@ -178,7 +421,7 @@ public class RectanglePacker {
     boolean done = false;
     int newWidth = levels.w();
     int newHeight = levels.h();
-    LevelSet nextLevelSet = null;
+    PackingStrategy nextLevelSet = null;
     int attemptNumber = 0;
     boolean needAdditionFailureNotification = false;
 
@@ -187,8 +430,12 @@ public class RectanglePacker {
         if (cause.w() > newWidth) {
           newWidth = cause.w();
         } else {
-          newHeight = (int) (newHeight * (1.0f + EXPANSION_FACTOR));
+          newHeight = Math.max((int) (newHeight * (1.0f + EXPANSION_FACTOR)), preferredHeight);
         }
+      } else if (attemptNumber > 0) {
+        // A plain re-layout is not guaranteed to fit into the same
+        // area when the strategy places the rectangles differently
+        newHeight = (int) (newHeight * (1.0f + EXPANSION_FACTOR));
       }
 
       // Clamp to maximum values
@@ -202,21 +449,20 @@ public class RectanglePacker {
         needAdditionFailureNotification = true;
       }
 
-      nextLevelSet = new LevelSet(newWidth, newHeight);
+      nextLevelSet = strategyFactory.create(newWidth, newHeight);
 
       // Make copies of all existing rectangles
       final List<Rect> newRects = new ArrayList<Rect>();
-      for (final Iterator<Level> i1 = levels.iterator(); i1.hasNext(); ) {
-        final Level level = i1.next();
-        for (final Iterator<Rect> i2 = level.iterator(); i2.hasNext(); ) {
-          final Rect cur = i2.next();
-          final Rect newRect = new Rect(0, 0, cur.w(), cur.h(), null);
-          cur.setNextLocation(newRect);
-          // Hook up the reverse mapping too for easier replacement
-          newRect.setNextLocation(cur);
-          newRects.add(newRect);
-        }
-      }
+      levels.visit(new RectVisitor() {
+          @Override
+          public void visit(final Rect cur) {
+            final Rect newRect = new Rect(0, 0, cur.w(), cur.h(), null);
+            cur.setNextLocation(newRect);
+            // Hook up the reverse mapping too for easier replacement
+            newRect.setNextLocation(cur);
+            newRects.add(newRect);
+          }
+        });
       // Sort them by decreasing height (note: this isn't really
       // guaranteed to improve the chances of a successful layout)
       Collections.sort(newRects, rectHComparator);
@@ -250,47 +496,63 @@ public class RectanglePacker {
     // yielded excess empty space.
     if (nextLevelSet.getUsedHeight() > 0 &&
         nextLevelSet.getUsedHeight() < nextLevelSet.h() * SHRINK_FACTOR) {
-      int shrunkHeight = Math.max(initialHeight,
+      int shrunkHeight = Math.max(Math.max(initialHeight, preferredHeight),
                                   (int) (nextLevelSet.getUsedHeight() * (1.0f + EXPANSION_FACTOR)));
       if (maxHeight > 0 && shrunkHeight > maxHeight) {
         shrunkHeight = maxHeight;
       }
-      nextLevelSet.setHeight(shrunkHeight);
+      if (shrunkHeight < nextLevelSet.h()) {
+        nextLevelSet.setHeight(shrunkHeight);
+      }
     }
 
-    // If we temporarily added the new rectangle to the new LevelSet,
+    // If we temporarily added the new rectangle to the new layout,
     // take it out since we don't "really" add it here but in add(), above
     if (cause != null) {
       nextLevelSet.remove(cause);
     }
 
+    return nextLevelSet;
+  }
+
+  // The "cause" rect may be null
+  private void compactImpl(final Rect cause) {
+    if (isCompacting()) {
+      // Starting over is cheaper than moving everything twice
+      abortCompaction();
+    }
+
+    final PackingStrategy nextLevelSet = layout(cause);
+
     // OK, now we have a new layout and a mapping from the old to the
     // new locations of rectangles on the backing store. Allocate a
     // new backing store, move the contents over and deallocate the
     // old one.
+    final Object oldBackingStore = backingStore;
     final Object newBackingStore = manager.allocateBackingStore(nextLevelSet.w(),
                                                           nextLevelSet.h());
-    manager.beginMovement(backingStore, newBackingStore);
-    for (final Iterator<Level> i1 = levels.iterator(); i1.hasNext(); ) {
-      final Level level = i1.next();
-      for (final Iterator<Rect> i2 = level.iterator(); i2.hasNext(); ) {
-        final Rect cur = i2.next();
-        manager.move(backingStore, cur,
-                     newBackingStore, cur.getNextLocation());
-      }
-    }
+    manager.beginMovement(oldBackingStore, newBackingStore);
+    levels.visit(new RectVisitor() {
+        @Override
+        public void visit(final Rect cur) {
+          manager.move(oldBackingStore, cur,
+                       newBackingStore, cur.getNextLocation());
+        }
+      });
     // Replace references to temporary rectangles with original ones
     nextLevelSet.updateRectangleReferences();
-    manager.endMovement(backingStore, newBackingStore);
+    manager.endMovement(oldBackingStore, newBackingStore);
     // Now delete the old backing store
-    manager.deleteBackingStore(backingStore);
-    // Update to new versions of backing store and LevelSet
+    manager.deleteBackingStore(oldBackingStore);
+    // Update to new versions of backing store and layout
     backingStore = newBackingStore;
     levels = nextLevelSet;
   }
 
   /** Clears all Rects contained in this RectanglePacker. */
   public void clear() {
+    if (isCompacting())
+      abortCompaction();
     levels.clear();
   }
 
@@ -298,6 +560,8 @@ public class RectanglePacker {
       BackingStoreManager. This RectanglePacker may no longer be used
       after calling this method. */
   public void dispose() {
+    if (isCompacting())
+      abortCompaction();
     if (backingStore != null)
       manager.deleteBackingStore(backingStore);
     backingStore = null;
@@ -0,0 +1,444 @@
+/*
+ * Copyright (c) 2006 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * - Redistribution of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * - Redistribution in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * Neither the name of Sun Microsystems, Inc. or the names of
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. ALL
+ * EXPRESS OR IMPLIED CONDITIONS, REPRESENTATIONS AND WARRANTIES,
+ * INCLUDING ANY IMPLIED WARRANTY OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE OR NON-INFRINGEMENT, ARE HEREBY EXCLUDED. SUN
+ * MICROSYSTEMS, INC. ("SUN") AND ITS LICENSORS SHALL NOT BE LIABLE FOR
+ * ANY DAMAGES SUFFERED BY LICENSEE AS A RESULT OF USING, MODIFYING OR
+ * DISTRIBUTING THIS SOFTWARE OR ITS DERIVATIVES. IN NO EVENT WILL SUN OR
+ * ITS LICENSORS BE LIABLE FOR ANY LOST REVENUE, PROFIT OR DATA, OR FOR
+ * DIRECT, INDIRECT, SPECIAL, CONSEQUENTIAL, INCIDENTAL OR PUNITIVE
+ * DAMAGES, HOWEVER CAUSED AND REGARDLESS OF THE THEORY OF LIABILITY,
+ * ARISING OUT OF THE USE OF OR INABILITY TO USE THIS SOFTWARE, EVEN IF
+ * SUN HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH DAMAGES.
+ *
+ * You acknowledge that this software is not designed or intended for use
+ * in the design, construction, operation or maintenance of any nuclear
+ * facility.
+ *
+ * Sun gratefully acknowledges that this software was originally authored
+ * and developed by Kenneth Bradley Russell and Christopher John Kline.
+ */
+
+package com.github.opengrabeso.ogltext.util.packrect;
+
+import java.util.*;
+
+/** PackingStrategy keeping track of the "skyline" formed by the top
+    edges of the rectangles added so far. Each new rectangle is placed
+    at the lowest position on the skyline it fits onto (bottom-left
+    rule). Space left below the skyline, either by gaps under a newly
+    placed rectangle or by removed rectangles, is remembered in a free
+    list and reused before the skyline is raised. Adjacent free areas
+    are merged, and once a rectangle does not fit any more after some
+    were removed, the skyline is rebuilt from the remaining
+    rectangles. The free list is bounded by dropping its smallest
+    areas. <P>
+
+    Compared to the shelf-based {@link LevelSet}, rectangles of very
+    different heights do not waste the space above the shorter ones,
+    which makes this strategy a better fit for mixed glyph heights
+    (accents, emoji, whole-string complex glyphs). */
+
+public class SkylineSet implements PackingStrategy {
+  /** Creates SkylineSets for the RectanglePacker. */
+  public static final PackingStrategy.Factory FACTORY = new PackingStrategy.Factory() {
+    @Override
+    public PackingStrategy create(final int w, final int h) {
+      return new SkylineSet(w, h);
+    }
+  };
+
+  // One horizontal segment of the skyline. The segments are kept
+  // sorted by x, cover the whole width and never overlap.
+  private static class Segment {
+    int x;
+    int y;
+    int w;
+
+    Segment(final int x, final int y, final int w) {
+      this.x = x;
+      this.y = y;
+      this.w = w;
+    }
+  }
+
+  // An area below the skyline not covered by any rectangle. Free
+  // areas never overlap.
+  private static class FreeArea {
+    final int x;
+    final int y;
+    final int w;
+    final int h;
+    final long sizeKey;
+
+    FreeArea(final int x, final int y, final int w, final int h, final long sizeKey) {
+      this.x = x;
+      this.y = y;
+      this.w = w;
+      this.h = h;
+      this.sizeKey = sizeKey;
+    }
+  }
+
+  // Beyond this many free areas the smallest ones are forgotten; their
+  // space is recovered by the next re-layout
+  private static final int MAX_FREE_AREAS = 512;
+
+  private final List<Segment> skyline = new ArrayList<Segment>();
+  private Set<Rect> rects = new LinkedHashSet<Rect>();
+  // Free areas ordered by area, then by age, so the first one a
+  // rectangle fits into wastes the least space
+  private final TreeMap<Long, FreeArea> freeBySize = new TreeMap<Long, FreeArea>();
+  // The same free areas by their top left, top right and bottom left
+  // corners, to find the neighbours to merge with
+  private final Map<Long, FreeArea> freeByTopLeft = new HashMap<Long, FreeArea>();
+  private final Map<Long, FreeArea> freeByTopRight = new HashMap<Long, FreeArea>();
+  private final Map<Long, FreeArea> freeByBottomLeft = new HashMap<Long, FreeArea>();
+  private int freeSerial;
+  private boolean removedSinceRebuild;
+  private final int w;
+  private int h;
+  private int usedHeight;
+  private long usedArea;
+
+  /** A SkylineSet manages all of the backing store for a region of a
+      specified width and height. */
+  public SkylineSet(final int w, final int h) {
+    this.w = w;
+    this.h = h;
+    skyline.add(new Segment(0, 0, w));
+  }
+
+  @Override
+  public int w() { return w; }
+  @Override
+  public int h() { return h; }
+
+  @Override
+  public boolean add(final Rect rect) {
+    if (rect.w() > w)
+      return false;
+
+    if (addFromFreeList(rect)) {
+      rects.add(rect);
+      usedArea += (long) rect.w() * rect.h();
+      return true;
+    }
+
+    if (!addToSkyline(rect)) {
+      // Removed rectangles may have left room above the free areas
+      if (!removedSinceRebuild)
+        return false;
+      rebuild();
+      if (!addFromFreeList(rect) && !addToSkyline(rect))
+        return false;
+    }
+    rects.add(rect);
+    usedArea += (long) rect.w() * rect.h();
+    return true;
+  }
+
+  @Override
+  public boolean remove(final Rect rect) {
+    if (!rects.remove(rect))
+      return false;
+
+    if (rects.isEmpty()) {
+      clear();
+      return true;
+    }
+    usedArea -= (long) rect.w() * rect.h();
+    addFree(rect.x(), rect.y(), rect.w(), rect.h());
+    removedSinceRebuild = true;
+    return true;
+  }
+
+  /** SkylineSets can not be compacted in place; always returns false
+      so that the RectanglePacker falls back to a full re-layout. */
+  @Override
+  public boolean compactAndAdd(final Rect rect,
+                               final Object backingStore,
+                               final BackingStoreManager manager) {
+    return false;
+  }
+
+  @Override
+  public int getUsedHeight() {
+    return usedHeight;
+  }
+
+  @Override
+  public void setHeight(final int height) throws IllegalArgumentException {
+    if (height < getUsedHeight()) {
+      throw new IllegalArgumentException("May not reduce height below currently used height");
+    }
+    h = height;
+  }
+
+  /** Returns the fraction of the used region of this SkylineSet which
+      is not covered by any rectangle. */
+  @Override
+  public float verticalFragmentationRatio() {
+    if (usedHeight == 0)
+      return 0.0f;
+    return 1.0f - (float) usedArea / ((float) usedHeight * w);
+  }
+
+  @Override
+  public void visit(final RectVisitor visitor) {
+    for (final Iterator<Rect> iter = rects.iterator(); iter.hasNext(); ) {
+      visitor.visit(iter.next());
+    }
+  }
+
+  @Override
+  public void updateRectangleReferences() {
+    final Set<Rect> updated = new LinkedHashSet<Rect>();
+    for (final Iterator<Rect> iter = rects.iterator(); iter.hasNext(); ) {
+      final Rect cur = iter.next();
+      final Rect next = cur.getNextLocation();
+      next.setPosition(cur.x(), cur.y());
+      if (cur.w() != next.w() || cur.h() != next.h())
+        throw new RuntimeException("Unexpected disparity in rectangle sizes during updateRectangleReferences");
+      updated.add(next);
+    }
+    rects = updated;
+  }
+
+  @Override
+  public void clear() {
+    skyline.clear();
+    skyline.add(new Segment(0, 0, w));
+    rects.clear();
+    removedSinceRebuild = false;
+    freeBySize.clear();
+    freeByTopLeft.clear();
+    freeByTopRight.clear();
+    freeByBottomLeft.clear();
+    usedHeight = 0;
+    usedArea = 0;
+  }
+
+  //----------------------------------------------------------------------
+  // Internals only below this point
+  //
+
+  // Returns the y coordinate at which a rectangle of the given width
+  // would rest if its left edge was aligned with the given segment,
+  // or -1 if it would stick out of the right edge
+  private int fitAt(final int index, final int width) {
+    final Segment first = skyline.get(index);
+    if (first.x + width > w)
+      return -1;
+    int y = 0;
+    int remaining = width;
+    for (int i = index; remaining > 0; i++) {
+      final Segment cur = skyline.get(i);
+      y = Math.max(y, cur.y);
+      remaining -= cur.w;
+    }
+    return y;
+  }
+
+  // Finds the segment where the rectangle ends up lowest, preferring
+  // the leftmost position on ties, and places it there
+  private boolean addToSkyline(final Rect rect) {
+    int bestIndex = -1;
+    int bestY = Integer.MAX_VALUE;
+    for (int i = 0; i < skyline.size(); i++) {
+      final int y = fitAt(i, rect.w());
+      if (y >= 0 && y + rect.h() <= h && y < bestY) {
+        bestIndex = i;
+        bestY = y;
+      }
+    }
+    if (bestIndex < 0)
+      return false;
+
+    place(bestIndex, bestY, rect);
+    return true;
+  }
+
+  // Places the rectangle on the skyline at the given segment, raising
+  // the skyline under it and remembering the gaps left below
+  private void place(final int index, final int y, final Rect rect) {
+    final int x = skyline.get(index).x;
+    rect.setPosition(x, y);
+    if (rect.w() == 0)
+      return;
+
+    final int right = x + rect.w();
+    int i = index;
+    while (i < skyline.size() && skyline.get(i).x < right) {
+      final Segment cur = skyline.get(i);
+      final int covered = Math.min(cur.x + cur.w, right) - cur.x;
+      if (cur.y < y) {
+        addFree(cur.x, cur.y, covered, y - cur.y);
+      }
+      if (covered == cur.w) {
+        skyline.remove(i);
+      } else {
+        cur.x += covered;
+        cur.w -= covered;
+        break;
+      }
+    }
+    skyline.add(index, new Segment(x, y + rect.h(), rect.w()));
+    usedHeight = Math.max(usedHeight, y + rect.h());
+
+    // Merge with the neighbouring segments if they are of equal height
+    if (index + 1 < skyline.size() && skyline.get(index + 1).y == y + rect.h()) {
+      skyline.get(index).w += skyline.remove(index + 1).w;
+    }
+    if (index > 0 && skyline.get(index - 1).y == y + rect.h()) {
+      skyline.get(index - 1).w += skyline.remove(index).w;
+    }
+  }
+
+  // Places the rectangle into the best fitting free area below the
+  // skyline, if there is any
+  private boolean addFromFreeList(final Rect rect) {
+    // Areas smaller than the rectangle can not hold it
+    final long area = (long) rect.w() * rect.h();
+    FreeArea candidate = null;
+    for (final Iterator<FreeArea> iter = freeBySize.tailMap(area << 32).values().iterator();
+         iter.hasNext(); ) {
+      final FreeArea cur = iter.next();
+      if (cur.w >= rect.w() && cur.h >= rect.h()) {
+        candidate = cur;
+        break;
+      }
+    }
+    if (candidate == null)
+      return false;
+
+    removeFree(candidate);
+    rect.setPosition(candidate.x, candidate.y);
+    // Split the remaining space along the longer leftover edge
+    final int rightW = candidate.w - rect.w();
+    final int bottomH = candidate.h - rect.h();
+    if (rightW > bottomH) {
+      addFree(candidate.x + rect.w(), candidate.y, rightW, candidate.h);
+      addFree(candidate.x, candidate.y + rect.h(), rect.w(), bottomH);
+    } else {
+      addFree(candidate.x + rect.w(), candidate.y, rightW, rect.h());
+      addFree(candidate.x, candidate.y + rect.h(), candidate.w, bottomH);
+    }
+    return true;
+  }
+
+  // Adds a free area, merging it with the free areas sharing a whole
+  // edge with it
+  private void addFree(int x, int y, int w, int h) {
+    if (w <= 0 || h <= 0)
+      return;
+
+    boolean merged = true;
+    while (merged) {
+      merged = false;
+      FreeArea other = freeByTopLeft.get(point(x + w, y));
+      if (other != null && other.h == h) {
+        removeFree(other);
+        w += other.w;
+        merged = true;
+      }
+      other = freeByTopRight.get(point(x, y));
+      if (other != null && other.h == h) {
+        removeFree(other);
+        x = other.x;
+        w += other.w;
+        merged = true;
+      }
+      other = freeByTopLeft.get(point(x, y + h));
+      if (other != null && other.w == w) {
+        removeFree(other);
+        h += other.h;
+        merged = true;
+      }
+      other = freeByBottomLeft.get(point(x, y));
+      if (other != null && other.w == w) {
+        removeFree(other);
+        y = other.y;
+        h += other.h;
+        merged = true;
+      }
+    }
+
+    final long sizeKey = ((long) w * h << 32) | (freeSerial++ & 0xFFFFFFFFL);
+    final FreeArea free = new FreeArea(x, y, w, h, sizeKey);
+    freeBySize.put(sizeKey, free);
+    freeByTopLeft.put(point(x, y), free);
+    freeByTopRight.put(point(x + w, y), free);
+    freeByBottomLeft.put(point(x, y + h), free);
+    if (freeBySize.size() > MAX_FREE_AREAS) {
+      removeFree(freeBySize.firstEntry().getValue());
+    }
+  }
+
+  private void removeFree(final FreeArea free) {
+    freeBySize.remove(free.sizeKey);
+    freeByTopLeft.remove(point(free.x, free.y));
+    freeByTopRight.remove(point(free.x + free.w, free.y));
+    freeByBottomLeft.remove(point(free.x, free.y + free.h));
+  }
+
+  // Recomputes the skyline as the top of the highest remaining
+  // rectangle in each column, dropping it where rectangles were
+  // removed, and clips the free areas to the space below it
+  private void rebuild() {
+    final int[] top = new int[w];
+    for (final Iterator<Rect> iter = rects.iterator(); iter.hasNext(); ) {
+      final Rect cur = iter.next();
+      for (int x = cur.x(); x < cur.x() + cur.w(); x++) {
+        top[x] = Math.max(top[x], cur.y() + cur.h());
+      }
+    }
+
+    skyline.clear();
+    usedHeight = 0;
+    for (int x = 0; x < w; x++) {
+      if (x == 0 || top[x] != top[x - 1]) {
+        skyline.add(new Segment(x, top[x], 0));
+      }
+      skyline.get(skyline.size() - 1).w++;
+      usedHeight = Math.max(usedHeight, top[x]);
+    }
+
+    final List<FreeArea> free = new ArrayList<FreeArea>(freeBySize.values());
+    freeBySize.clear();
+    freeByTopLeft.clear();
+    freeByTopRight.clear();
+    freeByBottomLeft.clear();
+    for (int i = 0; i < free.size(); i++) {
+      final FreeArea cur = free.get(i);
+      int ceiling = cur.y + cur.h;
+      for (int x = cur.x; x < cur.x + cur.w; x++) {
+        ceiling = Math.min(ceiling, top[x]);
+      }
+      addFree(cur.x, cur.y, cur.w, ceiling - cur.y);
+    }
+    removedSinceRebuild = false;
+  }
+
+  private static long point(final int x, final int y) {
+    return ((long) x << 32) | (y & 0xFFFFFFFFL);
+  }
+}
@@ -0,0 +1,694 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import com.github.opengrabeso.jaagl.GL2;
+import com.github.opengrabeso.jaagl.GL2GL3;
+import com.github.opengrabeso.jaagl.GL3;
+import com.jogamp.opengl.GLException;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+
+/**
+ * OpenGL implementation that renders nothing, but counts what is asked of it.
+ *
+ * <p>
+ * Lets the whole text rendering stack run without a window or a video card, so its CPU cost can
+ * be measured and its use of OpenGL checked on build machines.  {@code CountingGL} records:
+ * <ul>
+ *   <li>How many times each OpenGL function was called;
+ *   <li>Draw calls and the vertices they drew;
+ *   <li>Bytes transferred to textures and buffers;
+ *   <li>State changes, and how many of them were redundant.
+ * </ul>
+ *
+ * <p>
+ * The same object implements {@link GL2} and {@link GL3}; which one it pretends to be only
+ * matters to {@code isGL2} and {@code isGL3}.  Constants are taken from JOGL.  Names are handed
+ * out in sequence, shaders always compile and programs always link.  Functions it knows nothing
+ * about do nothing and return zero, false or null.
+ */
+/*@NotThreadSafe*/
+public final class CountingGL implements InvocationHandler {
+
+    /**
+     * Value of {@code GL_MAX_TEXTURE_SIZE} by default.
+     */
+    /*@Nonnegative*/
+    public static final int DEFAULT_MAX_TEXTURE_SIZE = 4096;
+
+    /**
+     * Number of arguments selecting which state a state-setting function changes.
+     */
+    /*@Nonnull*/
+    private static final Map<String, Integer> STATE_FUNCTIONS = new HashMap<String, Integer>();
+
+    static {
+        STATE_FUNCTIONS.put("glActiveTexture", 0);
+        STATE_FUNCTIONS.put("glBindBuffer", 1);
+        STATE_FUNCTIONS.put("glBindBufferBase", 2);
+        STATE_FUNCTIONS.put("glBindVertexArray", 0);
+        STATE_FUNCTIONS.put("glBlendFunc", 0);
+        STATE_FUNCTIONS.put("glClearColor", 0);
+        STATE_FUNCTIONS.put("glColor4f", 0);
+        STATE_FUNCTIONS.put("glMatrixMode", 0);
+        STATE_FUNCTIONS.put("glPixelStorei", 1);
+        STATE_FUNCTIONS.put("glTexEnvi", 2);
+        STATE_FUNCTIONS.put("glUseProgram", 0);
+        STATE_FUNCTIONS.put("glViewport", 0);
+    }
+
+    /**
+     * Values of OpenGL constants by name.
+     */
+    /*@Nonnull*/
+    private static final Map<String, Object> CONSTANTS = new HashMap<String, Object>();
+
+    /**
+     * Proxy implementing the OpenGL interfaces.
+     */
+    /*@Nonnull*/
+    private final Object proxy;
+
+    /**
+     * True to pretend to be an OpenGL 3 context.
+     */
+    private final boolean gl3;
+
+    /**
+     * Number of calls to each function.
+     */
+    /*@Nonnull*/
+    private final Map<String, Integer> calls = new TreeMap<String, Integer>();
+
+    /**
+     * Current value of each piece of state changed so far.
+     */
+    /*@Nonnull*/
+    private final Map<String, List<Object>> state = new HashMap<String, List<Object>>();
+
+    /**
+     * Locations handed out for attributes and uniforms, by program and name.
+     */
+    /*@Nonnull*/
+    private final Map<String, Integer> locations = new HashMap<String, Integer>();
+
+    /**
+     * Layers of the last array texture allocated that were uploaded to since.
+     */
+    /*@Nonnull*/
+    private final Set<Integer> filledLayers = new HashSet<Integer>();
+
+    /**
+     * Value of {@code GL_MAX_TEXTURE_SIZE}.
+     */
+    /*@Nonnegative*/
+    private int maxTextureSize = DEFAULT_MAX_TEXTURE_SIZE;
+
+    /**
+     * Number of layers of the last array texture allocated.
+     */
+    /*@Nonnegative*/
+    private int arrayDepth = 0;
+
+    /**
+     * Last name handed out.
+     */
+    private int lastName = 0;
+
+    /**
+     * Number of calls to all functions.
+     */
+    private int totalCalls = 0;
+
+    /**
+     * Number of draw calls.
+     */
+    private int drawCalls = 0;
+
+    /**
+     * Number of vertices drawn.
+     */
+    private long vertices = 0;
+
+    /**
+     * Number of draw calls made while a layer of the array texture was empty.
+     */
+    private int emptyLayerDraws = 0;
+
+    /**
+     * Number of bytes transferred to textures.
+     */
+    private long textureBytes = 0;
+
+    /**
+     * Number of bytes transferred to buffers.
+     */
+    private long bufferBytes = 0;
+
+    /**
+     * Number of bytes transferred to uniform buffers.
+     */
+    private long uniformBufferBytes = 0;
+
+    /**
+     * Number of state changes that changed something.
+     */
+    private int stateChanges = 0;
+
+    /**
+     * Number of state changes setting what was already set.
+     */
+    private int redundantStateChanges = 0;
+
+    /**
+     * Constructs a {@link CountingGL}.
+     *
+     * @param gl3 True to pretend to be an OpenGL 3 context
+     */
+    public CountingGL(final boolean gl3) {
+        this.gl3 = gl3;
+        this.proxy = Proxy.newProxyInstance(
+                CountingGL.class.getClassLoader(),
+                new Class<?>[] { GL2.class, GL3.class },
+                this);
+    }
+
+    /**
+     * Returns the number of calls to a function.
+     *
+     * @param name Name of function, e.g. "glTexSubImage2D"
+     * @return Number of calls since construction or the last reset
+     * @throws NullPointerException if name is null
+     */
+    /*@Nonnegative*/
+    public int getCalls(/*@Nonnull*/ final String name) {
+
+        Check.notNull(name, "Name cannot be null");
+
+        final Integer count = calls.get(name);
+        return (count == null) ? 0 : count;
+    }
+
+    /**
+     * Returns the number of draw calls, i.e. calls to any {@code glDraw} function.
+     *
+     * @return Number of draw calls since construction or the last reset
+     */
+    /*@Nonnegative*/
+    public int getDrawCalls() {
+        return drawCalls;
+    }
+
+    /**
+     * Returns the number of draw calls made while a layer of the last array texture allocated
+     * had not been uploaded to since.
+     *
+     * @return Number of draw calls since construction or the last reset
+     */
+    /*@Nonnegative*/
+    public int getEmptyLayerDraws() {
+        return emptyLayerDraws;
+    }
+
+    /**
+     * Returns this OpenGL implementation as an OpenGL 2 context.
+     *
+     * @return OpenGL 2 context, not null
+     */
+    /*@Nonnull*/
+    public GL2 getGL2() {
+        return (GL2) proxy;
+    }
+
+    /**
+     * Returns this OpenGL implementation as either kind of context.
+     *
+     * @return OpenGL 2 or 3 context, not null
+     */
+    /*@Nonnull*/
+    public GL2GL3 getGL2GL3() {
+        return (GL2GL3) proxy;
+    }
+
+    /**
+     * Returns this OpenGL implementation as an OpenGL 3 context.
+     *
+     * @return OpenGL 3 context, not null
+     */
+    /*@Nonnull*/
+    public GL3 getGL3() {
+        return (GL3) proxy;
+    }
+
+    /**
+     * Returns the number of bytes transferred to buffers with {@code glBufferData} and
+     * {@code glBufferSubData}.
+     *
+     * @return Number of bytes since construction or the last reset
+     */
+    /*@Nonnegative*/
+    public long getBufferBytes() {
+        return bufferBytes;
+    }
+
+    /**
+     * Returns the number of state changes that set something to what it already was.
+     *
+     * @return Number of redundant state changes since construction or the last reset
+     */
+    /*@Nonnegative*/
+    public int getRedundantStateChanges() {
+        return redundantStateChanges;
+    }
+
+    /**
+     * Returns the number of state changes that actually changed something.
+     *
+     * <p>
+     * Enabling or disabling capabilities, binding objects, and functions like {@code glBlendFunc}
+     * or {@code glPixelStorei} are state changes.
+     *
+     * @return Number of state changes since construction or the last reset
+     */
+    /*@Nonnegative*/
+    public int getStateChanges() {
+        return stateChanges;
+    }
+
+    /**
+     * Returns the number of bytes transferred to textures with {@code glTexImage2D},
+     * {@code glTexSubImage2D} and their 3D versions.
+     *
+     * @return Number of bytes since construction or the last reset
+     */
+    /*@Nonnegative*/
+    public long getTextureBytes() {
+        return textureBytes;
+    }
+
+    /**
+     * Returns the number of calls to all functions, not counting constants.
+     *
+     * @return Number of calls since construction or the last reset
+     */
+    /*@Nonnegative*/
+    public int getTotalCalls() {
+        return totalCalls;
+    }
+
+    /**
+     * Returns the number of bytes transferred to uniform buffers with {@code glBufferSubData}.
+     *
+     * @return Number of bytes since construction or the last reset
+     */
+    /*@Nonnegative*/
+    public long getUniformBufferBytes() {
+        return uniformBufferBytes;
+    }
+
+    /**
+     * Returns the number of vertices drawn.
+     *
+     * @return Number of vertices since construction or the last reset
+     */
+    /*@Nonnegative*/
+    public long getVertices() {
+        return vertices;
+    }
+
+    /**
+     * Resets all counts to zero, keeping the state.
+     */
+    public void reset() {
+        calls.clear();
+        totalCalls = 0;
+        drawCalls = 0;
+        vertices = 0;
+        emptyLayerDraws = 0;
+        textureBytes = 0;
+        bufferBytes = 0;
+        uniformBufferBytes = 0;
+        stateChanges = 0;
+        redundantStateChanges = 0;
+    }
+
+    /**
+     * Changes the value of {@code GL_MAX_TEXTURE_SIZE}.
+     *
+     * @param maxTextureSize Largest texture dimension to report
+     * @throws IllegalArgumentException if size is not positive
+     */
+    public void setMaxTextureSize(/*@Nonnegative*/ final int maxTextureSize) {
+
+        Check.argument(maxTextureSize > 0, "Size must be positive");
+
+        this.maxTextureSize = maxTextureSize;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%d calls, %d draws, %d vertices, %d texture bytes, %d buffer bytes, "
+                        + "%d state changes (%d redundant)",
+                totalCalls, drawCalls, vertices, textureBytes, bufferBytes,
+                stateChanges, redundantStateChanges);
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+
+        final String name = method.getName();
+        final Class<?> type = method.getReturnType();
+        final Object[] a = (args == null) ? new Object[0] : args;
+
+        // Methods of Object
+        if (method.getDeclaringClass() == Object.class) {
+            if (name.equals("equals")) {
+                return proxy == a[0];
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            } else {
+                return "CountingGL[" + this + "]";
+            }
+        }
+
+        // Constants and conversions to other profiles
+        if (name.startsWith("GL_") && (a.length == 0)) {
+            return toType(getConstant(name), type);
+        }
+        if ((a.length == 0) && type.isInstance(proxy)) {
+            return proxy;
+        }
+        if (name.equals("isGL3")) {
+            return gl3;
+        } else if (name.equals("isGL2")) {
+            return !gl3;
+        } else if (name.startsWith("isGL2")) {
+            return true;
+        } else if (name.equals("newGLException")) {
+            return new GLException((String) a[0]);
+        }
+
+        count(name);
+        if (name.startsWith("glDraw")) {
+            onDraw(name, a);
+        } else if (name.equals("glEnable") || name.equals("glDisable")) {
+            setState("cap:" + a[0], Arrays.<Object>asList(name.equals("glEnable")));
+        } else if (name.equals("glBindTexture")) {
+            setState("texture:" + state.get("glActiveTexture") + ":" + a[0], Arrays.asList(a[1]));
+        } else if (STATE_FUNCTIONS.containsKey(name)) {
+            final int n = STATE_FUNCTIONS.get(name);
+            final StringBuilder key = new StringBuilder(name);
+            for (int i = 0; i < n; ++i) {
+                key.append(':').append(a[i]);
+            }
+            setState(key.toString(), Arrays.asList(Arrays.copyOfRange(a, n, a.length)));
+        } else if (name.equals("glTexImage2D") || name.equals("glTexSubImage2D")) {
+            final int offset = name.equals("glTexImage2D") ? 3 : 4;
+            if (a[8] != null) {
+                textureBytes += (long) (Integer) a[offset] * (Integer) a[offset + 1]
+                        * getBytesPerPixel((Integer) a[6], (Integer) a[7]);
+            }
+        } else if (name.equals("glTexImage3D") || name.equals("glTexSubImage3D")) {
+            final int offset = name.equals("glTexImage3D") ? 3 : 5;
+            if (offset == 3) {
+                arrayDepth = (Integer) a[5];
+                filledLayers.clear();
+            } else {
+                filledLayers.add((Integer) a[4]);
+            }
+            if (a[a.length - 1] != null) {
+                textureBytes += (long) (Integer) a[offset] * (Integer) a[offset + 1]
+                        * (Integer) a[offset + 2]
+                        * getBytesPerPixel((Integer) a[a.length - 3], (Integer) a[a.length - 2]);
+            }
+        } else if (name.equals("glBufferData")) {
+            if (a[2] != null) {
+                bufferBytes += ((Number) a[1]).longValue();
+            }
+        } else if (name.equals("glBufferSubData")) {
+            bufferBytes += ((Number) a[2]).longValue();
+            if (a[0].equals(getConstant("GL_UNIFORM_BUFFER"))) {
+                uniformBufferBytes += ((Number) a[2]).longValue();
+            }
+        } else if (name.startsWith("glGen")) {
+            generateNames(a);
+        } else if (name.startsWith("glCreate")) {
+            return toType(++lastName, type);
+        } else if (name.equals("glIsEnabled")) {
+            final List<Object> value = state.get("cap:" + a[0]);
+            return (value != null) && ((Boolean) value.get(0));
+        } else if (name.equals("glGetInteger")) {
+            return toType(getInteger((Integer) a[0]), type);
+        } else if (name.equals("glGetShaderiv") || name.equals("glGetProgramiv")) {
+            getStatus(a);
+        } else if (name.equals("glGetAttribLocation") || name.equals("glGetUniformLocation")
+                || name.equals("glGetUniformBlockIndex")) {
+            return toType(getLocation(name + ":" + a[0] + ":" + a[1]), type);
+        }
+        return toType(0, type);
+    }
+
+    /**
+     * Adds a call to a function to the counts.
+     *
+     * @param name Name of function, assumed not null
+     */
+    private void count(/*@Nonnull*/ final String name) {
+        final Integer count = calls.get(name);
+        calls.put(name, (count == null) ? 1 : count + 1);
+        ++totalCalls;
+    }
+
+    /**
+     * Fills the array of names passed to a {@code glGen} function.
+     *
+     * @param a Arguments, either an array or a count, an array and an offset, assumed not null
+     */
+    private void generateNames(/*@Nonnull*/ final Object[] a) {
+        if (a.length == 3) {
+            final int[] names = (int[]) a[1];
+            for (int i = 0; i < (Integer) a[0]; ++i) {
+                names[(Integer) a[2] + i] = ++lastName;
+            }
+        } else {
+            final int[] names = (int[]) a[0];
+            for (int i = 0; i < names.length; ++i) {
+                names[i] = ++lastName;
+            }
+        }
+    }
+
+    /**
+     * Returns the value of an integer parameter.
+     *
+     * @param pname Parameter to get
+     * @return Value of parameter
+     */
+    private int getInteger(final int pname) {
+        if (pname == (Integer) getConstant("GL_MAX_TEXTURE_SIZE")) {
+            return maxTextureSize;
+        }
+        final List<Object> value = state.get("glPixelStorei:" + pname);
+        if (value != null) {
+            return (Integer) value.get(0);
+        }
+        return (pname == (Integer) getConstant("GL_UNPACK_ALIGNMENT")) ? 4 : 0;
+    }
+
+    /**
+     * Returns the location of an attribute or uniform, handing out a new one the first time.
+     *
+     * @param key Kind of location, program and name, assumed not null
+     * @return Location of attribute or uniform
+     */
+    private int getLocation(/*@Nonnull*/ final String key) {
+        Integer location = locations.get(key);
+        if (location == null) {
+            location = locations.size();
+            locations.put(key, location);
+        }
+        return location;
+    }
+
+    /**
+     * Answers a query of a shader or program, reporting success for all statuses.
+     *
+     * @param a Object, parameter, result array and offset, assumed not null
+     */
+    private void getStatus(/*@Nonnull*/ final Object[] a) {
+        final boolean status = isConstant(
+                (Integer) a[1], "GL_COMPILE_STATUS", "GL_LINK_STATUS", "GL_VALIDATE_STATUS");
+        ((int[]) a[2])[(Integer) a[3]] = status ? 1 : 0;
+    }
+
+    /**
+     * Records a draw call.
+     *
+     * @param name Name of function, assumed not null
+     * @param a Arguments, assumed not null
+     */
+    private void onDraw(/*@Nonnull*/ final String name, /*@Nonnull*/ final Object[] a) {
+        ++drawCalls;
+        if (filledLayers.size() < arrayDepth) {
+            ++emptyLayerDraws;
+        }
+        long n = 0;
+        if (name.startsWith("glDrawArrays")) {
+            n = (Integer) a[2];
+        } else if (name.startsWith("glDrawElements")) {
+            n = (Integer) a[1];
+        }
+        if (name.endsWith("Instanced")) {
+            n *= ((Number) a[a.length - 1]).longValue();
+        }
+        vertices += n;
+    }
+
+    /**
+     * Records a state change.
+     *
+     * @param key Piece of state being changed, assumed not null
+     * @param value New value, assumed not null
+     */
+    private void setState(/*@Nonnull*/ final String key, /*@Nonnull*/ final List<Object> value) {
+        if (value.equals(state.put(key, value))) {
+            ++redundantStateChanges;
+        } else {
+            ++stateChanges;
+        }
+    }
+
+    /**
+     * Returns the number of bytes in a pixel.
+     *
+     * @param format Format of pixel, e.g. GL_RED
+     * @param type Type of each component, e.g. GL_UNSIGNED_BYTE
+     * @return Number of bytes in pixel
+     */
+    private static int getBytesPerPixel(final int format, final int type) {
+
+        final int components;
+        if (isConstant(format, "GL_RGBA", "GL_BGRA")) {
+            components = 4;
+        } else if (isConstant(format, "GL_RGB", "GL_BGR")) {
+            components = 3;
+        } else if (isConstant(format, "GL_RG", "GL_LUMINANCE_ALPHA")) {
+            components = 2;
+        } else {
+            components = 1;
+        }
+
+        if (isConstant(type, "GL_UNSIGNED_BYTE", "GL_BYTE")) {
+            return components;
+        } else if (isConstant(type, "GL_UNSIGNED_SHORT", "GL_SHORT")) {
+            return components * 2;
+        } else {
+            return components * 4;
+        }
+    }
+
+    /**
+     * Returns the value of an OpenGL constant.
+     *
+     * @param name Name of constant, e.g. "GL_TEXTURE_2D"
+     * @return Value of constant, not null
+     * @throws UnsupportedOperationException if JOGL doesn't know the constant
+     */
+    /*@Nonnull*/
+    private static synchronized Object getConstant(/*@Nonnull*/ final String name) {
+        Object value = CONSTANTS.get(name);
+        if (value == null) {
+            try {
+                value = com.jogamp.opengl.GL4bc.class.getField(name).get(null);
+            } catch (final Exception e) {
+                throw new UnsupportedOperationException("Unknown constant " + name, e);
+            }
+            CONSTANTS.put(name, value);
+        }
+        return value;
+    }
+
+    /**
+     * Checks if a value is one of some OpenGL constants.
+     *
+     * @param value Value to check
+     * @param names Names of constants, assumed not null
+     * @return True if value is equal to one of the constants
+     */
+    private static boolean isConstant(final int value, /*@Nonnull*/ final String... names) {
+        for (final String name : names) {
+            if (value == (Integer) getConstant(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Converts a number to the return type of a function.
+     *
+     * @param value Number to convert, assumed not null
+     * @param type Return type of function, assumed not null
+     * @return Number of the right type, or the default value for other types
+     */
+    /*@CheckForNull*/
+    private static Object toType(/*@Nonnull*/ final Object value, /*@Nonnull*/ final Class<?> type) {
+        final Number number = (Number) value;
+        if (type == int.class || type == Integer.class) {
+            return number.intValue();
+        } else if (type == long.class || type == Long.class) {
+            return number.longValue();
+        } else if (type == float.class) {
+            return number.floatValue();
+        } else if (type == double.class) {
+            return number.doubleValue();
+        } else if (type == short.class) {
+            return number.shortValue();
+        } else if (type == byte.class) {
+            return number.byteValue();
+        } else if (type == boolean.class) {
+            return number.intValue() != 0;
+        } else if (type == String.class) {
+            return "";
+        } else {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import com.github.opengrabeso.ogltext.Headless;
+import com.github.opengrabeso.ogltext.util.awt.TextRenderer;
+import com.github.opengrabeso.ogltext.util.packrect.SkylineSet;
+
+import java.awt.Font;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+
+/**
+ * Test for {@link AtlasReport} and the atlas image of {@link GlyphCache}.
+ */
+public class TestAtlasReport {
+
+    // Font to render with
+    private static final Font FONT = new Font("SansSerif", Font.PLAIN, 24);
+
+    // Text to render, with seven distinct characters
+    private static final String TEXT = "abcabc defdef";
+
+    /**
+     * Ensures the report adds up for the default level packing.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testReport() {
+
+        final CountingGL gl = new CountingGL(true);
+        final TextRenderer tr = new TextRenderer(FONT, true, false, gl.getGL2GL3());
+        drawFrame(tr);
+
+        final AtlasReport report = tr.getAtlasReport();
+        Assert.assertEquals("LevelSet", report.getStrategy());
+        Assert.assertEquals(7, report.getGlyphCount());
+        Assert.assertTrue(report.getUsedHeight() > 0);
+        Assert.assertEquals((long) report.getWidth() * report.getUsedHeight(),
+                            report.getUsedArea() + report.getWastedArea());
+        Assert.assertEquals(0.0f, report.getVerticalFragmentationRatio(), 0.0f);
+
+        // Levels cover the used height and hold all glyphs
+        Assert.assertFalse(report.getLevels().isEmpty());
+        int glyphs = 0;
+        long usedArea = 0;
+        int y = 0;
+        for (final AtlasReport.LevelInfo level : report.getLevels()) {
+            Assert.assertEquals(y, level.getY());
+            y += level.getHeight();
+            glyphs += level.getGlyphCount();
+            usedArea += level.getUsedArea();
+        }
+        Assert.assertEquals(report.getUsedHeight(), y);
+        Assert.assertEquals(report.getGlyphCount(), glyphs);
+        Assert.assertEquals(report.getUsedArea(), usedArea);
+
+        // Nothing is below the used height yet, so that is the largest free space
+        final Rectangle free = report.getLargestFreeRect();
+        Assert.assertEquals(new Rectangle(0, report.getUsedHeight(), report.getWidth(),
+                                          report.getHeight() - report.getUsedHeight()), free);
+
+        tr.dispose();
+    }
+
+    /**
+     * Ensures other packing strategies are reported without levels, saying why.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testReportWithoutLevels() {
+
+        final CountingGL gl = new CountingGL(false);
+        final TextRenderer tr = new TextRenderer(FONT, true, false, gl.getGL2());
+        tr.setPackingStrategy(SkylineSet.FACTORY);
+        drawFrame(tr);
+
+        final AtlasReport report = tr.getAtlasReport();
+        Assert.assertEquals(7, report.getGlyphCount());
+        Assert.assertEquals("SkylineSet", report.getStrategy());
+        Assert.assertTrue(report.getLevels().isEmpty());
+        Assert.assertTrue(report.getUsedArea() > 0);
+        Assert.assertTrue(report.toString().contains("SkylineSet does not arrange glyphs"));
+
+        tr.dispose();
+    }
+
+    /**
+     * Ensures the atlas image is a readable PNG of the backing store's size.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testWriteAtlasImage() throws Exception {
+
+        final CountingGL gl = new CountingGL(true);
+        final TextRenderer tr = new TextRenderer(FONT, true, false, gl.getGL2GL3());
+        drawFrame(tr);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        tr.writeAtlasImage(out);
+        final BufferedImage image = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertNotNull(image);
+
+        final AtlasReport report = tr.getAtlasReport();
+        Assert.assertEquals(report.getWidth(), image.getWidth());
+        Assert.assertEquals(report.getHeight(), image.getHeight());
+
+        // The top left glyph is outlined in color, not left in shades of gray
+        final int rgb = image.getRGB(0, 0);
+        final int r = (rgb >> 16) & 0xFF;
+        final int g = (rgb >> 8) & 0xFF;
+        final int b = rgb & 0xFF;
+        Assert.assertFalse(r == g && g == b);
+
+        tr.dispose();
+    }
+
+    private static void drawFrame(final TextRenderer tr) {
+        tr.beginRendering(640, 480);
+        tr.draw(TEXT, 10, 10);
+        tr.endRendering();
+    }
+}
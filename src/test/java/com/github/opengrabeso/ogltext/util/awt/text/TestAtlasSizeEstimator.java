@@ -0,0 +1,125 @@
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import com.github.opengrabeso.ogltext.Headless;
+import com.github.opengrabeso.ogltext.util.awt.TextRenderer;
+import com.github.opengrabeso.ogltext.util.packrect.BackingStoreManager;
+import com.github.opengrabeso.ogltext.util.packrect.Rect;
+import com.github.opengrabeso.ogltext.util.packrect.RectanglePacker;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+
+/**
+ * Test for {@link AtlasSizeEstimator}.
+ */
+public class TestAtlasSizeEstimator {
+
+    @Category(Headless.class)
+    @Test
+    public void testAscii() {
+        check(new Font("SansSerif", Font.PLAIN, 24), range(0x20, 0x7E));
+    }
+
+    @Category(Headless.class)
+    @Test
+    public void testLatin1Cyrillic() {
+        check(new Font("Serif", Font.PLAIN, 48), range(0x20, 0x7E) + range(0xA1, 0xFF) + range(0x400, 0x4FF));
+    }
+
+    @Category(Headless.class)
+    @Test
+    public void testCountGlyphs() {
+        Assert.assertEquals(3, AtlasSizeEstimator.countGlyphs("abcabc"));
+        Assert.assertEquals(2, AtlasSizeEstimator.countGlyphs("a\uD83D\uDE00\uD83D\uDE00"));
+    }
+
+    // Packs all glyphs of the charset into a backing store of the predicted size
+    private static void check(final Font font, final String chars) {
+
+        final FontRenderContext frc = new FontRenderContext(null, true, true);
+        final AtlasSizeEstimator estimator = new AtlasSizeEstimator(font, frc, chars);
+        final int size = estimator.getSize(AtlasSizeEstimator.countGlyphs(chars));
+
+        final Manager manager = new Manager();
+        final RectanglePacker packer = new RectanglePacker(manager, size, size);
+        final GlyphProducer producer = new UnicodeGlyphProducer(
+                font, new TextRenderer.DefaultRenderDelegate(), frc);
+        long area = 0;
+        for (int i = 0; i < chars.length(); ++i) {
+            final Glyph glyph = producer.createGlyph(chars.charAt(i));
+            final int w = glyph.margin.left + ((int) glyph.width) + glyph.margin.right;
+            final int h = glyph.margin.top + ((int) glyph.height) + glyph.margin.bottom;
+            packer.add(new Rect(0, 0, w, h, null));
+            area += (long) w * h;
+        }
+
+        // Big enough to need no reallocation, but not wastefully so
+        Assert.assertEquals(1, manager.allocations);
+        Assert.assertTrue("Prediction too big: " + size, area > 0.25 * size * size);
+    }
+
+    private static String range(final int first, final int last) {
+        final StringBuilder sb = new StringBuilder();
+        for (int c = first; c <= last; ++c) {
+            sb.append((char) c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Backing store manager counting allocations, never making more room.
+     */
+    private static final class Manager implements BackingStoreManager {
+
+        int allocations;
+
+        @Override
+        public Object allocateBackingStore(final int w, final int h) {
+            ++allocations;
+            return new int[] { w, h };
+        }
+
+        @Override
+        public void deleteBackingStore(final Object backingStore) {
+            // empty
+        }
+
+        @Override
+        public boolean canCompact() {
+            return true;
+        }
+
+        @Override
+        public boolean preExpand(final Rect cause, final int attemptNumber) {
+            return false;
+        }
+
+        @Override
+        public boolean additionFailed(final Rect cause, final int attemptNumber) {
+            return false;
+        }
+
+        @Override
+        public void beginMovement(final Object oldBackingStore, final Object newBackingStore) {
+            // empty
+        }
+
+        @Override
+        public void move(final Object oldBackingStore,
+                         final Rect oldLocation,
+                         final Object newBackingStore,
+                         final Rect newLocation) {
+            // empty
+        }
+
+        @Override
+        public void endMovement(final Object oldBackingStore, final Object newBackingStore) {
+            // empty
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import com.github.opengrabeso.ogltext.Headless;
+import com.github.opengrabeso.ogltext.util.awt.TextCommandBuffer;
+import com.github.opengrabeso.ogltext.util.awt.TextRenderer;
+import com.github.opengrabeso.ogltext.util.awt.text.TextRendererMetrics.Counter;
+
+import java.awt.Font;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+
+/**
+ * Test for clipping text to rectangles.
+ */
+public class TestClip {
+
+    // Font to render with
+    private static final Font FONT = new Font("SansSerif", Font.PLAIN, 24);
+
+    // Text to draw in each panel
+    private static final String TEXT = "Panel";
+
+    /**
+     * Ensures positions are cut to the range with texture coordinates following them.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testClipAxis() {
+
+        final float[] out = new float[4];
+
+        // Inside
+        Assert.assertTrue(AbstractGlyphRenderer.clip(10, 20, 0.5f, 0.6f, 0, 100, out));
+        Assert.assertArrayEquals(new float[] { 10, 20, 0.5f, 0.6f }, out, 0.0f);
+
+        // Cut on both sides
+        Assert.assertTrue(AbstractGlyphRenderer.clip(10, 20, 0.5f, 0.6f, 12, 15, out));
+        Assert.assertArrayEquals(new float[] { 12, 15, 0.52f, 0.55f }, out, 1e-6f);
+
+        // Flipped
+        Assert.assertTrue(AbstractGlyphRenderer.clip(20, 10, 0.6f, 0.5f, 12, 100, out));
+        Assert.assertArrayEquals(new float[] { 20, 12, 0.6f, 0.52f }, out, 1e-6f);
+
+        // Outside
+        Assert.assertFalse(AbstractGlyphRenderer.clip(10, 20, 0.5f, 0.6f, 20, 100, out));
+        Assert.assertFalse(AbstractGlyphRenderer.clip(10, 20, 0.5f, 0.6f, -5, 10, out));
+    }
+
+    /**
+     * Ensures text in differently clipped panels is drawn in one batch.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testSharedBatch() {
+
+        final CountingGL gl = new CountingGL(true);
+        final TextRenderer renderer = new TextRenderer(FONT, true, false, gl.getGL2GL3());
+        drawPanels(renderer, false);
+        final long quads = renderer.getMetrics().getLastFrame(Counter.QUADS);
+
+        gl.reset();
+        drawPanels(renderer, true);
+        Assert.assertEquals(1, gl.getDrawCalls());
+        Assert.assertEquals(0, renderer.getMetrics().getLastFrame(Counter.FLUSHES_STATE));
+
+        // Panels cut off some glyphs entirely
+        final long clippedQuads = renderer.getMetrics().getLastFrame(Counter.QUADS);
+        Assert.assertTrue(clippedQuads > 0);
+        Assert.assertTrue(clippedQuads < quads);
+
+        // Recorded clips do the same
+        final TextCommandBuffer buffer = new TextCommandBuffer();
+        for (int i = 0; i < 4; ++i) {
+            buffer.setClip(i * 100, 0, 20 + i * 10, 480);
+            buffer.draw(TEXT, i * 100, 100);
+        }
+        buffer.clearClip();
+        gl.reset();
+        renderer.beginRendering(640, 480);
+        renderer.draw(buffer);
+        renderer.endRendering();
+        Assert.assertEquals(1, gl.getDrawCalls());
+        Assert.assertEquals(clippedQuads, renderer.getMetrics().getLastFrame(Counter.QUADS));
+
+        renderer.dispose();
+    }
+
+    // Draws the text in four panels, each narrower than the text if clipping
+    private static void drawPanels(final TextRenderer renderer, final boolean clip) {
+        renderer.beginRendering(640, 480);
+        for (int i = 0; i < 4; ++i) {
+            if (clip) {
+                renderer.setClip(i * 100, 0, 20 + i * 10, 480);
+            }
+            renderer.draw(TEXT, i * 100, 100);
+        }
+        renderer.clearClip();
+        renderer.endRendering();
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import com.github.opengrabeso.ogltext.Headless;
+import com.github.opengrabeso.ogltext.util.awt.TextRenderer;
+import com.github.opengrabeso.ogltext.util.awt.text.TextRendererMetrics.Counter;
+
+import java.awt.Font;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+
+/**
+ * Test for culling text outside the view.
+ */
+public class TestCulling {
+
+    // Font to render with
+    private static final Font FONT = new Font("SansSerif", Font.PLAIN, 24);
+
+    // Size of the viewport
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+
+    // Orthographic projection of the viewport, in column-major order
+    private static final float[] ORTHO = {
+        2f / WIDTH, 0, 0, 0,
+        0, 2f / HEIGHT, 0, 0,
+        0, 0, -1, 0,
+        -1, -1, 0, 1
+    };
+
+    /**
+     * Ensures strings and glyphs outside the viewport are left out in orthographic mode.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testOrtho() {
+
+        final CountingGL visibleGL = new CountingGL(true);
+        final TextRenderer visible = new TextRenderer(FONT, true, false, visibleGL.getGL2GL3());
+        visible.beginRendering(WIDTH, HEIGHT);
+        visible.draw("Visible", 100, 100);
+        visible.endRendering();
+
+        final CountingGL gl = new CountingGL(true);
+        final TextRenderer renderer = new TextRenderer(FONT, true, false, gl.getGL2GL3());
+        Assert.assertFalse(renderer.getCulling());
+        renderer.setCulling(true);
+        renderer.beginRendering(WIDTH, HEIGHT);
+        renderer.draw("Visible", 100, 100);
+        renderer.draw("Far left", -1000, 100);
+        renderer.draw("Far above", 100, HEIGHT + 100);
+        renderer.draw("Far below", 100, -100);
+        renderer.endRendering();
+
+        final TextRendererMetrics metrics = renderer.getMetrics();
+        Assert.assertEquals(3, metrics.getLastFrame(Counter.STRINGS_CULLED));
+        Assert.assertEquals(0, metrics.getLastFrame(Counter.GLYPHS_CULLED));
+        Assert.assertEquals(visibleGL.getVertices(), gl.getVertices());
+
+        // Glyphs off the edge of a string that is partly visible
+        gl.reset();
+        renderer.beginRendering(WIDTH, HEIGHT);
+        renderer.draw("Partly off the right edge", WIDTH - 60, 100);
+        renderer.endRendering();
+        Assert.assertEquals(0, metrics.getLastFrame(Counter.STRINGS_CULLED));
+        Assert.assertTrue(metrics.getLastFrame(Counter.GLYPHS_CULLED) > 10);
+        Assert.assertEquals(6 * metrics.getLastFrame(Counter.QUADS), gl.getVertices());
+
+        renderer.dispose();
+        visible.dispose();
+    }
+
+    /**
+     * Ensures strings outside the frustum of the transform are left out in 3D mode.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testFrustum() {
+
+        final CountingGL gl = new CountingGL(true);
+        final TextRenderer renderer = new TextRenderer(FONT, true, false, gl.getGL2GL3());
+        renderer.setCulling(true);
+
+        // Nothing is culled before a transform is given
+        renderer.begin3DRendering();
+        renderer.draw3D("Anywhere", 5000, 5000, 0, 1, false);
+        renderer.end3DRendering();
+        Assert.assertEquals(0, renderer.getMetrics().getLastFrame(Counter.STRINGS_CULLED));
+        Assert.assertTrue(gl.getVertices() > 0);
+
+        gl.reset();
+        renderer.begin3DRendering();
+        renderer.setTransform(ORTHO);
+        renderer.draw3D("Inside", 100, 100, 0, 1, false);
+        renderer.draw3D("Outside", 5000, 100, 0, 1, false);
+        renderer.draw3D("Behind", 100, 100, 5, 1, false);
+        renderer.draw3D("Flipped", 100, 100, 0, 1, true);
+        renderer.end3DRendering();
+
+        final TextRendererMetrics metrics = renderer.getMetrics();
+        Assert.assertEquals(2, metrics.getLastFrame(Counter.STRINGS_CULLED));
+        Assert.assertEquals(6 * metrics.getLastFrame(Counter.QUADS), gl.getVertices());
+        Assert.assertEquals(13, metrics.getLastFrame(Counter.QUADS));
+
+        renderer.dispose();
+    }
+}
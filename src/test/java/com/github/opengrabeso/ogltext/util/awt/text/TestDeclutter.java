@@ -0,0 +1,172 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import com.github.opengrabeso.ogltext.Headless;
+import com.github.opengrabeso.ogltext.util.awt.TextCommandBuffer;
+import com.github.opengrabeso.ogltext.util.awt.TextRenderer;
+import com.github.opengrabeso.ogltext.util.awt.text.TextRendererMetrics.Counter;
+
+import java.awt.Font;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+
+/**
+ * Test for decluttering labels with {@link LabelPlacer}.
+ */
+public class TestDeclutter {
+
+    // Font to render with
+    private static final Font FONT = new Font("SansSerif", Font.PLAIN, 12);
+
+    // Number of labels scattered over the view
+    private static final int LABELS = 2000;
+
+    // Number of buffers the labels are recorded in
+    private static final int BUFFERS = 3;
+
+    /**
+     * Ensures the placer agrees with checking every pair of rectangles.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testPlacerMatchesBruteForce() {
+
+        final Random random = new Random(7);
+        final LabelPlacer placer = new LabelPlacer(40);
+        final float[][] placed = new float[LABELS][];
+        int count = 0;
+        for (int i = 0; i < LABELS; ++i) {
+            final float xl = random.nextFloat() * 1000 - 100;
+            final float yb = random.nextFloat() * 800 - 100;
+            final float[] r = { xl, yb, xl + 5 + random.nextFloat() * 120, yb + 12 };
+            boolean free = true;
+            for (int j = 0; j < count; ++j) {
+                final float[] p = placed[j];
+                if (r[0] < p[2] && p[0] < r[2] && r[1] < p[3] && p[1] < r[3]) {
+                    free = false;
+                    break;
+                }
+            }
+            Assert.assertEquals(free, placer.place(r[0], r[1], r[2], r[3]));
+            if (free) {
+                placed[count++] = r;
+            }
+        }
+        Assert.assertEquals(count, placer.getCount());
+
+        // Touching edges do not overlap
+        placer.clear();
+        Assert.assertTrue(placer.place(0, 0, 10, 10));
+        Assert.assertTrue(placer.place(10, 0, 20, 10));
+        Assert.assertFalse(placer.place(19, 9, 30, 20));
+    }
+
+    /**
+     * Ensures the same labels are left out every time, however the renderer was used before.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testDeterministic() {
+
+        final TextCommandBuffer[] buffers = recordLabels();
+
+        final long[] first = drawLabels(buffers, 1);
+        final long[] second = drawLabels(buffers, 3);
+        Assert.assertTrue(first[0] > 0);
+        Assert.assertTrue(first[0] < LABELS);
+        Assert.assertEquals(first[0], second[0]);
+        Assert.assertEquals(first[1], second[1]);
+        Assert.assertEquals(first[2], second[2]);
+    }
+
+    /**
+     * Ensures the label with the higher priority wins wherever it was recorded.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testPriority() {
+
+        final CountingGL gl = new CountingGL(true);
+        final TextRenderer renderer = new TextRenderer(FONT, true, false, gl.getGL2GL3());
+        renderer.setDeclutter(true);
+
+        final TextCommandBuffer buffer = new TextCommandBuffer();
+        buffer.drawLabel("minor", 100, 100, 1);
+        buffer.drawLabel("Major", 102, 101, 5);
+        buffer.drawLabel("far", 300, 300, 0);
+        renderer.beginRendering(640, 480);
+        renderer.draw(buffer);
+        renderer.endRendering();
+
+        final TextRendererMetrics metrics = renderer.getMetrics();
+        Assert.assertEquals(1, metrics.getLastFrame(Counter.LABELS_DROPPED));
+        Assert.assertEquals("Majorfar".length(), metrics.getLastFrame(Counter.QUADS));
+
+        // Without decluttering everything is drawn
+        renderer.setDeclutter(false);
+        renderer.beginRendering(640, 480);
+        renderer.draw(buffer);
+        renderer.endRendering();
+        Assert.assertEquals(0, metrics.getLastFrame(Counter.LABELS_DROPPED));
+        Assert.assertEquals("minorMajorfar".length(), metrics.getLastFrame(Counter.QUADS));
+    }
+
+    // Records overlapping labels with a few priorities, the same way every time
+    private static TextCommandBuffer[] recordLabels() {
+        final Random random = new Random(42);
+        final TextCommandBuffer[] buffers = new TextCommandBuffer[BUFFERS];
+        for (int b = 0; b < BUFFERS; ++b) {
+            buffers[b] = new TextCommandBuffer();
+        }
+        for (int i = 0; i < LABELS; ++i) {
+            buffers[i % BUFFERS].drawLabel(
+                    "City " + i, random.nextInt(640), random.nextInt(480), random.nextInt(4));
+        }
+        return buffers;
+    }
+
+    // Draws labels in a number of frames, returning the quads, drawn and dropped labels of the last
+    private static long[] drawLabels(final TextCommandBuffer[] buffers, final int frames) {
+        final CountingGL gl = new CountingGL(true);
+        final TextRenderer renderer = new TextRenderer(FONT, true, false, gl.getGL2GL3());
+        renderer.setDeclutter(true);
+        for (int f = 0; f < frames; ++f) {
+            renderer.beginRendering(640, 480);
+            renderer.draw(buffers);
+            renderer.endRendering();
+        }
+        final TextRendererMetrics metrics = renderer.getMetrics();
+        final long dropped = metrics.getLastFrame(Counter.LABELS_DROPPED);
+        return new long[] { LABELS - dropped, dropped, metrics.getLastFrame(Counter.QUADS) };
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import com.github.opengrabeso.jaagl.GL2GL3;
+import com.github.opengrabeso.ogltext.Headless;
+import com.github.opengrabeso.ogltext.util.awt.TextRenderer;
+import com.github.opengrabeso.ogltext.util.texture.TextureCoords;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+
+/**
+ * Test for {@link GlyphCache}.
+ */
+public class TestGlyphCache {
+
+    // Font to render with
+    private static final Font FONT = new Font("SansSerif", Font.PLAIN, 24);
+
+    // Number of glyphs that stay in use while the rest is evicted
+    private static final int KEPT = 40;
+
+    // Number of glyphs uploaded at first, including the ones kept
+    private static final int FIRST = 400;
+
+    // Render cycles after which glyphs not used are evicted
+    private static final int EVICTION_CYCLES = 200;
+
+    /**
+     * Ensures glyphs added in the middle of an incremental compaction leave the texture
+     * coordinates of all glyphs correct, and queued glyphs get flushed first.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testAddDuringCompaction() {
+
+        final CountingGL counting = new CountingGL(true);
+        final GL2GL3 gl = counting.getGL2GL3();
+        final TextRenderer.RenderDelegate rd = new TextRenderer.DefaultRenderDelegate();
+        final GlyphCache cache = GlyphCache.newInstance(FONT, rd, true, false, false, true, FIRST);
+        final GlyphProducer producer = GlyphProducers.get(
+                FONT, rd, new FontRenderContext(null, true, false), null);
+        final TextRendererMetrics metrics = new TextRendererMetrics();
+        cache.setMetrics(metrics);
+        cache.setCompactionBudget(1);
+        final int[] reallocations = { 0 };
+        cache.addListener(new GlyphCache.EventListener() {
+
+            @Override
+            public void onGlyphCacheEvent(final GlyphCache.EventType type, final Object data) {
+                if (type == GlyphCache.EventType.REALLOCATE) {
+                    ++reallocations[0];
+                }
+            }
+        });
+
+        // Fill the cache, then keep using only a few glyphs until the rest is evicted
+        final List<Glyph> kept = new ArrayList<Glyph>();
+        cache.beginRendering(gl);
+        for (int i = 0; i < FIRST; ++i) {
+            final Glyph glyph = upload(cache, producer, i);
+            if (i < KEPT) {
+                kept.add(glyph);
+            }
+        }
+        cache.endRendering(gl);
+        for (int i = 0; i < EVICTION_CYCLES; ++i) {
+            cache.beginRendering(gl);
+            for (final Glyph glyph : kept) {
+                cache.find(glyph);
+            }
+            cache.endRendering(gl);
+        }
+        Assert.assertEquals(1, metrics.get(TextRendererMetrics.Counter.COMPACTIONS));
+        Assert.assertEquals(KEPT, cache.getAtlasReport().getGlyphCount());
+
+        // Add glyphs until the backing store being compacted has no room left
+        Assert.assertTrue(cache.isCompacting());
+        final int before = reallocations[0];
+        cache.beginRendering(gl);
+        for (final Glyph glyph : kept) {
+            cache.find(glyph);
+        }
+        int i = FIRST;
+        while (cache.isCompacting()) {
+            upload(cache, producer, i++);
+        }
+        Assert.assertTrue(i < 4 * FIRST);
+        Assert.assertTrue(reallocations[0] > before);
+        assertCoordinates(cache, kept);
+        cache.endRendering(gl);
+
+        cache.dispose(gl);
+    }
+
+    /**
+     * Ensures a cache not told what to expect grows by the packer's usual factor.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testDefaultGrowth() {
+
+        final CountingGL counting = new CountingGL(true);
+        final GL2GL3 gl = counting.getGL2GL3();
+        final TextRenderer.RenderDelegate rd = new TextRenderer.DefaultRenderDelegate();
+        final GlyphCache cache = GlyphCache.newInstance(FONT, rd, true, false, false, true);
+        final GlyphProducer producer = GlyphProducers.get(
+                FONT, rd, new FontRenderContext(null, true, false), null);
+
+        cache.beginRendering(gl);
+        final int height = cache.getHeight();
+        int i = 0;
+        while (cache.getHeight() == height) {
+            upload(cache, producer, i++);
+        }
+        Assert.assertEquals((int) (height * 1.5f), cache.getHeight());
+        cache.endRendering(gl);
+
+        cache.dispose(gl);
+    }
+
+    // Checks the stored texture coordinates of glyphs still cached match their current location
+    private static void assertCoordinates(final GlyphCache cache, final List<Glyph> glyphs) {
+        for (final Glyph glyph : glyphs) {
+            if (!cache.contains(glyph)) {
+                continue;
+            }
+            final TextureCoords stored = cache.find(glyph);
+            glyph.coordinates = null;
+            final TextureCoords computed = cache.find(glyph);
+            Assert.assertEquals(computed.left(), stored.left(), 0.0f);
+            Assert.assertEquals(computed.bottom(), stored.bottom(), 0.0f);
+            Assert.assertEquals(computed.right(), stored.right(), 0.0f);
+            Assert.assertEquals(computed.top(), stored.top(), 0.0f);
+        }
+    }
+
+    // Makes a glyph for a character past the basic range and puts it in the cache
+    private static Glyph upload(final GlyphCache cache, final GlyphProducer producer, final int i) {
+        final Glyph glyph = producer.createGlyph((char) (0x100 + i));
+        if (!cache.contains(glyph)) {
+            cache.upload(glyph);
+        }
+        return glyph;
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import com.github.opengrabeso.ogltext.Headless;
+import com.github.opengrabeso.ogltext.util.awt.TextRenderer;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.font.TextAttribute;
+import java.awt.geom.Rectangle2D;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+
+/**
+ * Test for {@link GlyphMeasurements}.
+ */
+public class TestGlyphMeasurements {
+
+    // Font to measure with
+    private static final Font FONT = new Font("SansSerif", Font.PLAIN, 24);
+
+    // Details on how to render fonts
+    private static final FontRenderContext FRC = new FontRenderContext(null, true, true);
+
+    // First and last characters measured
+    private static final char FIRST = 0x20;
+    private static final char LAST = 0x2FF;
+
+    /**
+     * Ensures measurements agree with what the glyph producer reports.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testMatchesProducer() {
+
+        final GlyphMeasurements measurements = new GlyphMeasurements(
+                FONT, new TextRenderer.DefaultRenderDelegate(), FRC);
+        final GlyphProducer producer = new UnicodeGlyphProducer(
+                FONT, new TextRenderer.DefaultRenderDelegate(), FRC);
+        for (char c = 'A'; c <= 'z'; ++c) {
+            Assert.assertEquals(producer.findAdvance(c), measurements.getAdvance(c), 0.0f);
+            Assert.assertEquals(producer.findBounds(String.valueOf(c)), measurements.getBounds(c));
+        }
+        Assert.assertEquals(producer.findBounds("Hello"), measurements.getBounds("Hello"));
+    }
+
+    /**
+     * Ensures bounds combined from characters match a full Java 2D layout within a pixel.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testSimpleBoundsMatchJava2D() {
+
+        final TextRenderer.RenderDelegate rd = new TextRenderer.DefaultRenderDelegate();
+        final String[] strings = {
+            "Hello, World!", "  padded  ", "fj|gyQ", "1234567890", "   ", "W.A.V.E", "\u00c5ngstr\u00f6m"
+        };
+        for (final Font font : new Font[] { FONT, new Font("Serif", Font.ITALIC, 13) }) {
+            final GlyphMeasurements measurements = new GlyphMeasurements(font, rd, FRC);
+            for (final String str : strings) {
+                final Rectangle2D expected = GlyphMeasurements.addPaddingTo(
+                        rd.getBounds(str, font, FRC));
+                final Rectangle2D actual = measurements.getBounds(str);
+                Assert.assertEquals(str, expected.getMinX(), actual.getMinX(), 1);
+                Assert.assertEquals(str, expected.getMinY(), actual.getMinY(), 1);
+                Assert.assertEquals(str, expected.getMaxX(), actual.getMaxX(), 1);
+                Assert.assertEquals(str, expected.getMaxY(), actual.getMaxY(), 1);
+            }
+        }
+    }
+
+    /**
+     * Ensures strings are only laid out when they have complex characters, and only once.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testComplexBoundsKept() {
+
+        final CountingDelegate delegate = new CountingDelegate();
+        final GlyphMeasurements measurements = new GlyphMeasurements(FONT, delegate, FRC);
+
+        measurements.getBounds("Simple text");
+        measurements.getBounds("Simple text");
+        Assert.assertEquals(0, delegate.strings.get());
+
+        final String complex = "\u05e9\u05dc\u05d5\u05dd";
+        final Rectangle2D first = measurements.getBounds(complex);
+        first.setRect(0, 0, 0, 0);
+        final Rectangle2D second = measurements.getBounds(complex);
+        Assert.assertEquals(1, delegate.strings.get());
+        Assert.assertTrue(second.getWidth() > 0);
+    }
+
+    /**
+     * Ensures pairs are kerned like Java 2D lays them out, only when the font asks for it.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testKerning() {
+
+        final TextRenderer.RenderDelegate rd = new TextRenderer.DefaultRenderDelegate();
+        Assert.assertFalse(new GlyphMeasurements(FONT, rd, FRC).hasKerning());
+        Assert.assertEquals(0, new GlyphMeasurements(FONT, rd, FRC).getKerning('T', 'o'), 0.0f);
+
+        final Font font = FONT.deriveFont(
+                Collections.singletonMap(TextAttribute.KERNING, TextAttribute.KERNING_ON));
+        final GlyphMeasurements measurements = new GlyphMeasurements(font, rd, FRC);
+        Assert.assertTrue(measurements.hasKerning());
+
+        // Pairs
+        final String[] pairs = { "To", "AV", "LT", "ab", "oT", "VA" };
+        for (final String pair : pairs) {
+            final GlyphVector gv = font.layoutGlyphVector(
+                    FRC, pair.toCharArray(), 0, 2, Font.LAYOUT_LEFT_TO_RIGHT);
+            final float expected = (float) gv.getGlyphPosition(1).getX()
+                    - measurements.getAdvance(pair.charAt(0));
+            final float actual = measurements.getKerning(pair.charAt(0), pair.charAt(1));
+            Assert.assertEquals(pair, expected, actual, 0.01f);
+        }
+        Assert.assertTrue(measurements.getKerning('T', 'o') < 0);
+
+        // Strings
+        final String str = "AVATAR WAVE";
+        final char[] chars = str.toCharArray();
+        final Rectangle2D expected = GlyphMeasurements.addPaddingTo(font.layoutGlyphVector(
+                FRC, chars, 0, chars.length, Font.LAYOUT_LEFT_TO_RIGHT).getVisualBounds());
+        final Rectangle2D actual = measurements.getBounds(str);
+        Assert.assertEquals(expected.getMinX(), actual.getMinX(), 1);
+        Assert.assertEquals(expected.getMaxX(), actual.getMaxX(), 1);
+    }
+
+    /**
+     * Ensures a character measured for layout is not measured again for drawing.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testMeasuredOnce() {
+
+        final CountingDelegate delegate = new CountingDelegate();
+        final GlyphMeasurements measurements = new GlyphMeasurements(FONT, delegate, FRC);
+        final GlyphProducer producer = GlyphProducers.get(measurements, null);
+
+        measurements.getAdvance('a');
+        producer.createGlyph('a');
+        producer.createGlyph('b');
+        measurements.getBounds('b');
+        Assert.assertEquals(2, delegate.glyphs.get());
+    }
+
+    /**
+     * Ensures many threads measuring at once get the same results as one thread.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testConcurrent() throws InterruptedException {
+
+        final GlyphMeasurements expected = new GlyphMeasurements(
+                FONT, new TextRenderer.DefaultRenderDelegate(), FRC);
+        final CountingDelegate delegate = new CountingDelegate();
+        final GlyphMeasurements measurements = new GlyphMeasurements(FONT, delegate, FRC);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        final Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; ++i) {
+            final int stride = i + 1;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int c = FIRST; c <= LAST; c += stride) {
+                            measurements.getAdvance((char) c);
+                        }
+                        for (char c = LAST; c >= FIRST; --c) {
+                            measurements.getBounds(c);
+                        }
+                    } catch (final Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertNull(failure.get());
+        for (char c = FIRST; c <= LAST; ++c) {
+            Assert.assertEquals(expected.getAdvance(c), measurements.getAdvance(c), 0.0f);
+            Assert.assertEquals(expected.getBounds(c), measurements.getBounds(c));
+        }
+
+        // Races may measure a character more than once, but every one was measured
+        Assert.assertTrue(delegate.glyphs.get() >= LAST - FIRST + 1);
+    }
+
+    /**
+     * Render delegate counting glyphs and strings measured.
+     */
+    private static final class CountingDelegate extends TextRenderer.DefaultRenderDelegate {
+
+        final AtomicInteger glyphs = new AtomicInteger();
+        final AtomicInteger strings = new AtomicInteger();
+
+        @Override
+        public Rectangle2D getBounds(final String text, final Font font, final FontRenderContext frc) {
+            strings.incrementAndGet();
+            return super.getBounds(text, font, frc);
+        }
+
+        @Override
+        public Rectangle2D getBounds(final GlyphVector gv, final FontRenderContext frc) {
+            glyphs.incrementAndGet();
+            return super.getBounds(gv, frc);
+        }
+    }
+}
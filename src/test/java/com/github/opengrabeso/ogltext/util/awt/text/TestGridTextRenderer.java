@@ -0,0 +1,189 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import com.github.opengrabeso.ogltext.Headless;
+import com.github.opengrabeso.ogltext.util.awt.GridTextRenderer;
+
+import java.awt.Color;
+import java.awt.Font;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+
+/**
+ * Test for {@link GridTextRenderer} running on a {@link CountingGL}.
+ */
+public class TestGridTextRenderer {
+
+    // Font to render with
+    private static final Font FONT = new Font("Monospaced", Font.PLAIN, 14);
+
+    // Size of the grid
+    private static final int COLUMNS = 40;
+    private static final int ROWS = 10;
+
+    // Bytes uploaded for one cell
+    private static final int CELL_BYTES = 16;
+
+    // Render cycles after which the cache clears the used flags of its glyphs
+    private static final int CYCLES_PER_FLUSH = 100;
+
+    /**
+     * Ensures the whole grid is drawn in one call, backgrounds and glyphs alike.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testOneDrawCall() {
+
+        final CountingGL gl = new CountingGL(true);
+        final GridTextRenderer grid = createGrid(gl);
+
+        drawFrame(grid);
+        Assert.assertEquals(1, gl.getDrawCalls());
+        Assert.assertEquals(6 * 2 * COLUMNS * ROWS, gl.getVertices());
+    }
+
+    /**
+     * Ensures only changed cells are uploaded.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testUploadChanges() {
+
+        final CountingGL gl = new CountingGL(true);
+        final GridTextRenderer grid = createGrid(gl);
+        drawFrame(grid);
+
+        // Nothing changed
+        gl.reset();
+        drawFrame(grid);
+        Assert.assertEquals(0, gl.getBufferBytes());
+        Assert.assertEquals(0, gl.getTextureBytes());
+
+        // Same character written again
+        grid.set(0, 0, 'l', Color.WHITE, Color.BLACK);
+        gl.reset();
+        drawFrame(grid);
+        Assert.assertEquals(0, gl.getBufferBytes());
+
+        // Two cells of one row with glyphs already in the texture
+        grid.set(3, 2, 'o', Color.GREEN, Color.BLACK);
+        grid.set(5, 2, 'l', Color.GREEN, Color.BLACK);
+        gl.reset();
+        drawFrame(grid);
+        Assert.assertEquals(3 * CELL_BYTES, gl.getBufferBytes());
+        Assert.assertEquals(0, gl.getTextureBytes());
+        Assert.assertEquals(1, gl.getDrawCalls());
+    }
+
+    /**
+     * Ensures scrolling uploads only the rows that come into view.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testScroll() {
+
+        final CountingGL gl = new CountingGL(true);
+        final GridTextRenderer grid = createGrid(gl);
+        drawFrame(grid);
+
+        gl.reset();
+        grid.scroll(2);
+        drawFrame(grid);
+        Assert.assertEquals(2 * COLUMNS * CELL_BYTES, gl.getBufferBytes());
+
+        // Smooth scrolling is a uniform
+        gl.reset();
+        grid.setScrollOffset(3.5f);
+        drawFrame(grid);
+        Assert.assertEquals(0, gl.getBufferBytes());
+    }
+
+    /**
+     * Ensures characters written after the cache cleared its used flags can make it grow without
+     * losing the glyphs already shown.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testNewCharactersAfterFlush() {
+
+        final CountingGL gl = new CountingGL(true);
+        final GridTextRenderer grid = new GridTextRenderer(FONT, COLUMNS, ROWS, gl.getGL2GL3());
+        grid.write(0, 0, "$ make all", Color.WHITE, Color.BLACK);
+        for (int i = 0; i < CYCLES_PER_FLUSH; ++i) {
+            drawFrame(grid);
+        }
+
+        // Fill the rest of the grid with characters never drawn before
+        for (int row = 1; row < ROWS; ++row) {
+            for (int column = 0; column < COLUMNS; ++column) {
+                final char c = (char) (0x100 + row * COLUMNS + column);
+                grid.set(column, row, c, Color.WHITE, Color.BLACK);
+            }
+        }
+        gl.reset();
+        drawFrame(grid);
+        Assert.assertEquals(1, gl.getDrawCalls());
+        Assert.assertEquals(6 * 2 * COLUMNS * ROWS, gl.getVertices());
+    }
+
+    /**
+     * Ensures cells past the last column are cut off.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testWriteCutOff() {
+
+        final CountingGL gl = new CountingGL(true);
+        final GridTextRenderer grid = createGrid(gl);
+
+        final int end = grid.write(COLUMNS - 2, 0, "abcdef", Color.WHITE, Color.BLACK);
+        Assert.assertEquals(COLUMNS, end);
+        Assert.assertTrue(grid.getCellWidth() > 0);
+        Assert.assertTrue(grid.getCellHeight() >= grid.getCellWidth());
+    }
+
+    // Makes a grid with a few rows of text
+    private static GridTextRenderer createGrid(final CountingGL gl) {
+        final GridTextRenderer grid = new GridTextRenderer(FONT, COLUMNS, ROWS, gl.getGL2GL3());
+        for (int row = 0; row < ROWS; ++row) {
+            grid.write(0, row, "line " + row + ": hello, world", Color.WHITE, Color.BLACK);
+        }
+        return grid;
+    }
+
+    // Draws the grid in one render cycle
+    private static void drawFrame(final GridTextRenderer grid) {
+        grid.beginRendering(640, 480);
+        grid.draw(0, 480);
+        grid.endRendering();
+    }
+}
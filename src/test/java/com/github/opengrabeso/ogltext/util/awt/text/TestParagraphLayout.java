@@ -0,0 +1,243 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import com.github.opengrabeso.ogltext.Headless;
+import com.github.opengrabeso.ogltext.util.awt.TextRenderer;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+
+/**
+ * Test for {@link ParagraphLayout}.
+ */
+public class TestParagraphLayout {
+
+    // Font to lay out with
+    private static final Font FONT = new Font("SansSerif", Font.PLAIN, 24);
+
+    // Details on how to render fonts
+    private static final FontRenderContext FRC = new FontRenderContext(null, true, true);
+
+    // Text to break into lines
+    private static final String TEXT = "The quick brown fox jumps over the lazy dog, "
+            + "then naps in the warm afternoon sun beside the old stone wall.";
+
+    /**
+     * Ensures lines are filled greedily with whole words and never exceed the width.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testWordsFit() {
+
+        final GlyphMeasurements measurements = createMeasurements();
+        final ParagraphLayout layout = new ParagraphLayout(measurements, TEXT);
+        for (final float width : new float[] { 150, 230, 400, 1000 }) {
+            layout.setWidth(width);
+
+            final StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < layout.getLineCount(); ++i) {
+                final String line = layout.getLine(i);
+                final float lineWidth = measure(measurements, line);
+                Assert.assertEquals(lineWidth, layout.getLineWidth(i), 0.01f);
+                Assert.assertTrue(line, lineWidth <= width);
+                if (i + 1 < layout.getLineCount()) {
+                    final String next = layout.getLine(i + 1);
+                    final String longer = line + " " + next.split(" ")[0];
+                    Assert.assertTrue(longer, measure(measurements, longer) > width);
+                    sb.append(line).append(' ');
+                } else {
+                    sb.append(line);
+                }
+            }
+            Assert.assertEquals(TEXT, sb.toString());
+        }
+    }
+
+    /**
+     * Ensures line feeds always break, and words too long for a line are split.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testForcedBreaks() {
+
+        final GlyphMeasurements measurements = createMeasurements();
+
+        final ParagraphLayout lines = new ParagraphLayout(measurements, "one\n\ntwo  \nthree");
+        lines.setWidth(1000);
+        Assert.assertEquals(4, lines.getLineCount());
+        Assert.assertEquals("one", lines.getLine(0));
+        Assert.assertEquals("", lines.getLine(1));
+        Assert.assertEquals("two", lines.getLine(2));
+        Assert.assertEquals("three", lines.getLine(3));
+
+        final String word = "Incomprehensibilities";
+        final ParagraphLayout split = new ParagraphLayout(measurements, word);
+        split.setWidth(60);
+        Assert.assertTrue(split.getLineCount() > 1);
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < split.getLineCount(); ++i) {
+            Assert.assertTrue(split.getLine(i).length() > 0);
+            Assert.assertTrue(split.getLineWidth(i) <= 60 || split.getLine(i).length() == 1);
+            sb.append(split.getLine(i));
+        }
+        Assert.assertEquals(word, sb.toString());
+
+        final ParagraphLayout empty = new ParagraphLayout(measurements, "");
+        empty.setWidth(10);
+        Assert.assertEquals(1, empty.getLineCount());
+        Assert.assertEquals(0, empty.getLineWidth(0), 0.0f);
+    }
+
+    /**
+     * Ensures a word split between characters is never split inside a surrogate pair.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testSurrogatePairsKept() {
+
+        final GlyphMeasurements measurements = createMeasurements();
+
+        // Mathematical bold capitals, each a surrogate pair
+        final StringBuilder word = new StringBuilder();
+        for (int i = 0; i < 12; ++i) {
+            word.appendCodePoint(0x1D400 + i);
+        }
+
+        for (int width = 1; width < 100; width += 7) {
+            final ParagraphLayout layout = new ParagraphLayout(measurements, word.toString());
+            layout.setWidth(width);
+            final StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < layout.getLineCount(); ++i) {
+                final String line = layout.getLine(i);
+                Assert.assertTrue(line.length() > 0);
+                Assert.assertFalse(Character.isLowSurrogate(line.charAt(0)));
+                Assert.assertFalse(Character.isHighSurrogate(line.charAt(line.length() - 1)));
+                sb.append(line);
+            }
+            Assert.assertEquals(word.toString(), sb.toString());
+        }
+    }
+
+    /**
+     * Ensures changing the width keeps lines that did not move.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testWidthChange() {
+
+        final GlyphMeasurements measurements = createMeasurements();
+
+        // Nothing wrapped, so nothing changes
+        final ParagraphLayout unwrapped = new ParagraphLayout(measurements, "short\nlines");
+        unwrapped.setWidth(500);
+        final String first = unwrapped.getLine(0);
+        unwrapped.setWidth(200);
+        Assert.assertSame(first, unwrapped.getLine(0));
+        Assert.assertEquals(200 - unwrapped.getLineWidth(1),
+                            unwrapped.getLineOffset(1, ParagraphLayout.Alignment.RIGHT), 0.0f);
+        Assert.assertEquals((200 - unwrapped.getLineWidth(1)) / 2,
+                            unwrapped.getLineOffset(1, ParagraphLayout.Alignment.CENTER), 0.0f);
+        Assert.assertEquals(0, unwrapped.getLineOffset(1, ParagraphLayout.Alignment.LEFT), 0.0f);
+
+        // Same as laying out from scratch
+        final ParagraphLayout changed = new ParagraphLayout(measurements, TEXT);
+        changed.setWidth(400);
+        changed.getLine(0);
+        changed.setWidth(250);
+        final ParagraphLayout fresh = new ParagraphLayout(measurements, TEXT);
+        fresh.setWidth(250);
+        Assert.assertEquals(fresh.getLineCount(), changed.getLineCount());
+        for (int i = 0; i < fresh.getLineCount(); ++i) {
+            Assert.assertEquals(fresh.getLine(i), changed.getLine(i));
+        }
+    }
+
+    /**
+     * Ensures the renderer keeps layouts by identity of their text.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testKeptByIdentity() {
+
+        final CountingGL gl = new CountingGL(true);
+        final TextRenderer renderer = new TextRenderer(FONT, true, false, gl.getGL2GL3());
+
+        final ParagraphLayout layout = renderer.getParagraphLayout(TEXT, 300);
+        Assert.assertSame(layout, renderer.getParagraphLayout(TEXT, 200));
+        Assert.assertEquals(200, layout.getWidth(), 0.0f);
+        Assert.assertNotSame(layout, renderer.getParagraphLayout(new String(TEXT), 200));
+
+        // Lines are queued together, the same as drawing each one
+        drawFrame(renderer);
+        gl.reset();
+        drawFrame(renderer);
+        final CountingGL linesGL = new CountingGL(true);
+        final TextRenderer lines = new TextRenderer(FONT, true, false, linesGL.getGL2GL3());
+        for (int frame = 0; frame < 2; ++frame) {
+            linesGL.reset();
+            lines.beginRendering(640, 480);
+            for (int i = 0; i < layout.getLineCount(); ++i) {
+                final float x = 10 + layout.getLineOffset(i, ParagraphLayout.Alignment.CENTER);
+                final float y = 400 - i * 1.2f * layout.getLineHeight();
+                lines.draw3D(layout.getLine(i), x, y, 0, 1, false);
+            }
+            lines.endRendering();
+        }
+        Assert.assertTrue(gl.getVertices() > 0);
+        Assert.assertEquals(linesGL.getVertices(), gl.getVertices());
+        Assert.assertEquals(linesGL.getDrawCalls(), gl.getDrawCalls());
+
+        renderer.dispose();
+        lines.dispose();
+    }
+
+    private static void drawFrame(final TextRenderer renderer) {
+        renderer.beginRendering(640, 480);
+        renderer.drawParagraph(TEXT, 10, 400, 200, ParagraphLayout.Alignment.CENTER, 1.2f);
+        renderer.endRendering();
+    }
+
+    private static GlyphMeasurements createMeasurements() {
+        return new GlyphMeasurements(FONT, new TextRenderer.DefaultRenderDelegate(), FRC);
+    }
+
+    // Adds up the advances of a line
+    private static float measure(final GlyphMeasurements measurements, final String line) {
+        float width = 0;
+        for (int i = 0; i < line.length(); ++i) {
+            width += measurements.getAdvance(line.charAt(i));
+        }
+        return width;
+    }
+}
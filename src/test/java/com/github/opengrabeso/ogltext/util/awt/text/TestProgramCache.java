@@ -0,0 +1,300 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import com.github.opengrabeso.jaagl.GL2;
+import com.github.opengrabeso.jaagl.GL2GL3;
+import com.github.opengrabeso.jaagl.GL3;
+import com.github.opengrabeso.ogltext.Headless;
+import com.github.opengrabeso.ogltext.util.awt.TextRenderer;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.io.File;
+import java.lang.reflect.Proxy;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+
+/**
+ * Test for {@link ProgramCache}.
+ */
+public class TestProgramCache {
+
+    // Font to render with
+    private static final Font FONT = new Font("SansSerif", Font.PLAIN, 24);
+
+    // Text to render
+    private static final String TEXT = "The quick brown fox";
+
+    /**
+     * Ensures renderers of one context link one program, deleted with the last of them.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testShared() {
+
+        final CountingGL gl = new CountingGL(true);
+        final TextRenderer first = new TextRenderer(FONT, true, false, gl.getGL2GL3());
+        final TextRenderer second = new TextRenderer(FONT, true, false, gl.getGL2GL3());
+        drawFrame(first);
+        drawFrame(second);
+        Assert.assertEquals(1, gl.getCalls("glCreateProgram"));
+        Assert.assertEquals(0, gl.getCalls("glValidateProgram"));
+
+        first.dispose();
+        Assert.assertEquals(0, gl.getCalls("glDeleteProgram"));
+        second.dispose();
+        Assert.assertEquals(1, gl.getCalls("glDeleteProgram"));
+
+        // Another context links its own
+        final CountingGL other = new CountingGL(true);
+        final TextRenderer third = new TextRenderer(FONT, true, false, other.getGL2GL3());
+        drawFrame(third);
+        Assert.assertEquals(1, other.getCalls("glCreateProgram"));
+        third.dispose();
+    }
+
+    /**
+     * Ensures renderers given different wrappers of one context share programs under a common key.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testContextKey() {
+
+        final CountingGL gl = new CountingGL(true);
+        final GL2GL3 wrapper = (GL2GL3) Proxy.newProxyInstance(
+                TestProgramCache.class.getClassLoader(),
+                new Class<?>[] { GL2.class, GL3.class },
+                gl);
+
+        // Wrappers alone cannot be told to belong to one context
+        final TextRenderer first = new TextRenderer(FONT, true, false, gl.getGL2GL3());
+        final TextRenderer second = new TextRenderer(FONT, true, false, wrapper);
+        drawFrame(first);
+        drawFrame(second);
+        Assert.assertEquals(2, gl.getCalls("glCreateProgram"));
+        first.dispose();
+        second.dispose();
+        Assert.assertEquals(2, gl.getCalls("glDeleteProgram"));
+
+        // Same key, e.g. of the share group
+        gl.reset();
+        final Object key = new Object();
+        final TextRenderer third = new TextRenderer(FONT, true, false, gl.getGL2GL3());
+        final TextRenderer fourth = new TextRenderer(FONT, true, false, wrapper);
+        third.setContextKey(key);
+        fourth.setContextKey(key);
+        drawFrame(third);
+        drawFrame(fourth);
+        Assert.assertEquals(1, gl.getCalls("glCreateProgram"));
+        third.dispose();
+        Assert.assertEquals(0, gl.getCalls("glDeleteProgram"));
+        fourth.dispose();
+        Assert.assertEquals(1, gl.getCalls("glDeleteProgram"));
+    }
+
+    /**
+     * Ensures programs and buffers released through another wrapper of the context are deleted.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testReleasedThroughOtherWrapper() {
+
+        final CountingGL gl = new CountingGL(true);
+        final GL2GL3 acquiring = gl.getGL2GL3();
+        final GL2GL3 releasing = (GL2GL3) Proxy.newProxyInstance(
+                TestProgramCache.class.getClassLoader(),
+                new Class<?>[] { GL2.class, GL3.class },
+                gl);
+
+        final int program = ProgramCache.acquire(
+                acquiring, acquiring, "void main() {}", "void main() {}");
+        final UniformBuffer buffer = ProgramCache.acquireBuffer(acquiring, acquiring, "Test", 4);
+        ProgramCache.release(releasing, acquiring, program);
+        ProgramCache.releaseBuffer(releasing, acquiring, buffer);
+        Assert.assertEquals(1, gl.getCalls("glDeleteProgram"));
+        Assert.assertEquals(1, gl.getCalls("glDeleteBuffers"));
+    }
+
+    /**
+     * Ensures renderers taking turns with the program upload nothing they did not change.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testUniformsKept() {
+
+        final CountingGL gl = new CountingGL(true);
+        final TextRenderer first = new TextRenderer(FONT, true, false, gl.getGL2GL3());
+        final TextRenderer second = new TextRenderer(FONT, true, false, gl.getGL2GL3());
+        first.setColor(Color.RED);
+        second.setColor(Color.BLUE);
+        drawFrame(first);
+        drawFrame(second);
+
+        gl.reset();
+        drawFrame(second);
+        drawFrame(first);
+        Assert.assertEquals(0, gl.getUniformBufferBytes());
+
+        // Only the red and green components
+        gl.reset();
+        first.setColor(Color.GREEN);
+        drawFrame(first);
+        Assert.assertEquals(8, gl.getUniformBufferBytes());
+
+        first.dispose();
+        second.dispose();
+    }
+
+    /**
+     * Ensures the projection is uploaded once for all renderers of a context.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testSharedProjection() {
+
+        final CountingGL gl = new CountingGL(true);
+        final TextRenderer first = new TextRenderer(FONT, true, false, gl.getGL2GL3());
+        final TextRenderer second = new TextRenderer(FONT, true, false, gl.getGL2GL3());
+        drawFrame(first);
+
+        // Orthographic flag, gamma and color, but no projection
+        gl.reset();
+        drawFrame(second);
+        Assert.assertEquals(24, gl.getUniformBufferBytes());
+
+        gl.reset();
+        first.beginRendering(800, 600);
+        first.endRendering();
+        final long bytes = gl.getUniformBufferBytes();
+        Assert.assertTrue(bytes > 0);
+        second.beginRendering(800, 600);
+        second.endRendering();
+        Assert.assertEquals(bytes, gl.getUniformBufferBytes());
+
+        // Last renderer also deletes the shared buffer
+        gl.reset();
+        first.dispose();
+        final int deleted = gl.getCalls("glDeleteBuffers");
+        gl.reset();
+        second.dispose();
+        Assert.assertEquals(deleted + 1, gl.getCalls("glDeleteBuffers"));
+    }
+
+    /**
+     * Ensures a program linked once is loaded from its binary by the next context.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testBinaryCache() throws Exception {
+
+        final File directory = File.createTempFile("programs", "");
+        Assert.assertTrue(directory.delete());
+        final Access access = new Access();
+        ProgramCache.setBinaryCache(directory, access);
+        try {
+            final CountingGL gl = new CountingGL(true);
+            final TextRenderer first = new TextRenderer(FONT, true, false, gl.getGL2GL3());
+            drawFrame(first);
+            first.dispose();
+            Assert.assertEquals(2, gl.getCalls("glCompileShader"));
+            Assert.assertEquals(1, access.retrievable);
+            Assert.assertEquals(1, directory.list().length);
+
+            final CountingGL other = new CountingGL(true);
+            final TextRenderer second = new TextRenderer(FONT, true, false, other.getGL2GL3());
+            drawFrame(second);
+            second.dispose();
+            Assert.assertEquals(0, other.getCalls("glCompileShader"));
+            Assert.assertEquals(1, access.loaded);
+
+            // Rejected binaries are replaced
+            access.reject = true;
+            final CountingGL third = new CountingGL(true);
+            final TextRenderer tr = new TextRenderer(FONT, true, false, third.getGL2GL3());
+            drawFrame(tr);
+            tr.dispose();
+            Assert.assertEquals(2, third.getCalls("glCompileShader"));
+            Assert.assertEquals(1, directory.list().length);
+        } finally {
+            ProgramCache.setBinaryCache(null, null);
+            final File[] files = directory.listFiles();
+            if (files != null) {
+                for (final File file : files) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+
+    private static void drawFrame(final TextRenderer tr) {
+        tr.beginRendering(640, 480);
+        tr.draw(TEXT, 10, 10);
+        tr.endRendering();
+    }
+
+    /**
+     * Program binary access keeping a fixed binary.
+     */
+    private static final class Access implements ProgramBinaryAccess {
+
+        int retrievable;
+        int loaded;
+        boolean reject;
+
+        @Override
+        public String getDriver(final GL2GL3 gl) {
+            return "Test driver";
+        }
+
+        @Override
+        public Binary getBinary(final GL2GL3 gl, final int program) {
+            return new Binary(1, new byte[] { 1, 2, 3 });
+        }
+
+        @Override
+        public boolean loadBinary(final GL2GL3 gl, final int program, final Binary binary) {
+            Assert.assertEquals(1, binary.getFormat());
+            Assert.assertArrayEquals(new byte[] { 1, 2, 3 }, binary.getData());
+            if (reject) {
+                return false;
+            }
+            ++loaded;
+            return true;
+        }
+
+        @Override
+        public void setRetrievable(final GL2GL3 gl, final int program) {
+            ++retrievable;
+        }
+    }
+}
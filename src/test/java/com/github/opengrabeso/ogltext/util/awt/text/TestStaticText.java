@@ -0,0 +1,197 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import com.github.opengrabeso.ogltext.Headless;
+import com.github.opengrabeso.ogltext.util.awt.TextRenderer;
+import com.github.opengrabeso.ogltext.util.awt.text.TextRendererMetrics.Counter;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+
+/**
+ * Test for {@link StaticText} running on a {@link CountingGL}.
+ */
+public class TestStaticText {
+
+    // Font to render with
+    private static final Font FONT = new Font("Monospaced", Font.PLAIN, 14);
+
+    // Text to render, like a short log
+    private static final String TEXT =
+            "12:00:01 INFO  Starting server\n" +
+            "12:00:02 WARN  Cache is cold\n" +
+            "\n" +
+            "12:00:05 INFO  Listening on port 8080";
+
+    // Render cycles after which the cache clears the used flags of its glyphs
+    private static final int CYCLES_PER_FLUSH = 100;
+
+    // Number of new characters added to make the cache grow
+    private static final int NEW_CHARACTERS = 300;
+
+    /**
+     * Ensures the text is drawn in one call, and uploaded only the first time.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testUploadOnce() {
+
+        final CountingGL gl = new CountingGL(true);
+        final TextRenderer renderer = new TextRenderer(FONT, true, false, gl.getGL2GL3());
+        final StaticText text = renderer.createStaticText(TEXT);
+
+        renderer.beginRendering(640, 480);
+        renderer.draw(text, 10, 400);
+        renderer.endRendering();
+        Assert.assertTrue(gl.getBufferBytes() >= 4 * text.size());
+
+        // Same text again
+        final long quads = renderer.getMetrics().get(Counter.QUADS);
+        gl.reset();
+        renderer.beginRendering(640, 480);
+        renderer.draw(text, 10, 400);
+        renderer.endRendering();
+        Assert.assertEquals(1, gl.getDrawCalls());
+        Assert.assertEquals(6 * text.size(), gl.getVertices());
+        Assert.assertEquals(0, gl.getBufferBytes());
+        Assert.assertEquals(0, gl.getTextureBytes());
+        Assert.assertEquals(quads + text.size(), renderer.getMetrics().get(Counter.QUADS));
+    }
+
+    /**
+     * Ensures glyphs of the table are kept when new glyphs make the cache grow, after their used
+     * flags were cleared.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testGrowAfterFlush() {
+
+        final CountingGL gl = new CountingGL(true);
+        final TextRenderer renderer = new TextRenderer(FONT, true, false, gl.getGL2GL3());
+        final StaticText text = renderer.createStaticText(TEXT);
+        for (int i = 0; i < CYCLES_PER_FLUSH; ++i) {
+            renderer.beginRendering(640, 480);
+            renderer.draw(text, 10, 400);
+            renderer.endRendering();
+        }
+
+        // Add many new glyphs at once
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < NEW_CHARACTERS; ++i) {
+            sb.append((char) (0x100 + i));
+        }
+        final StaticText more = renderer.createStaticText(sb.toString());
+        gl.reset();
+        renderer.beginRendering(640, 480);
+        renderer.draw(text, 10, 400);
+        renderer.draw(more, 10, 200);
+        renderer.endRendering();
+
+        Assert.assertTrue(renderer.getMetrics().getLastFrame(Counter.REALLOCATIONS) > 0);
+        Assert.assertEquals(6 * (text.size() + more.size()), gl.getVertices());
+    }
+
+    /**
+     * Ensures whitespace is left out and empty lines take no room in the line table.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testLayout() {
+
+        final CountingGL gl = new CountingGL(true);
+        final TextRenderer renderer = new TextRenderer(FONT, true, false, gl.getGL2GL3());
+        final StaticText text = renderer.createStaticText(TEXT);
+
+        Assert.assertEquals(TEXT.replaceAll("\\s", "").length(), text.size());
+        Assert.assertEquals(3, text.getLineCount());
+        Assert.assertEquals(0, renderer.createStaticText("").size());
+    }
+
+    /**
+     * Ensures text queued before a static text is drawn first, in its own call.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testQueuedTextFirst() {
+
+        final CountingGL gl = new CountingGL(true);
+        final TextRenderer renderer = new TextRenderer(FONT, true, false, gl.getGL2GL3());
+        final StaticText text = renderer.createStaticText(TEXT);
+
+        renderer.beginRendering(640, 480);
+        renderer.draw("Header", 10, 450);
+        renderer.draw(text, 10, 400);
+        renderer.endRendering();
+        Assert.assertEquals(2, gl.getDrawCalls());
+        Assert.assertEquals(1, gl.getCalls("glDrawArraysInstanced"));
+    }
+
+    /**
+     * Ensures a glyph added to two tables gets a slot of its own in each.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testGlyphInTwoTables() {
+
+        final FontRenderContext frc = new FontRenderContext(null, false, false);
+        final Glyph a = new Glyph('a', FONT.createGlyphVector(frc, "a"));
+        final Glyph b = new Glyph('b', FONT.createGlyphVector(frc, "b"));
+
+        final GlyphMetricBuffer first = new GlyphMetricBuffer();
+        final GlyphMetricBuffer second = new GlyphMetricBuffer();
+        Assert.assertEquals(0, first.add(a));
+        Assert.assertEquals(1, first.add(b));
+        Assert.assertEquals(0, second.add(b));
+        Assert.assertEquals(1, second.add(a));
+        Assert.assertEquals(1, first.add(b));
+        Assert.assertEquals(0, second.add(b));
+        Assert.assertEquals(2, first.size());
+        Assert.assertEquals(2, second.size());
+    }
+
+    /**
+     * Ensures static text is refused without OpenGL 3.
+     */
+    @Category(Headless.class)
+    @Test(expected = IllegalStateException.class)
+    public void testNeedsGL3() {
+
+        final CountingGL gl = new CountingGL(false);
+        final TextRenderer renderer = new TextRenderer(FONT, true, false, gl.getGL2());
+        final StaticText text = renderer.createStaticText(TEXT);
+
+        renderer.beginRendering(640, 480);
+        renderer.draw(text, 10, 400);
+    }
+}
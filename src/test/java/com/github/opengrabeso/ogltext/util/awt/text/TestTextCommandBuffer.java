@@ -0,0 +1,196 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import com.github.opengrabeso.ogltext.Headless;
+import com.github.opengrabeso.ogltext.util.awt.TextCommandBuffer;
+import com.github.opengrabeso.ogltext.util.awt.TextRenderer;
+import com.github.opengrabeso.ogltext.util.awt.text.TextRendererMetrics.Counter;
+
+import java.awt.Color;
+import java.awt.Font;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+
+/**
+ * Test for {@link TextCommandBuffer}.
+ */
+public class TestTextCommandBuffer {
+
+    // Font to render with
+    private static final Font FONT = new Font("SansSerif", Font.PLAIN, 24);
+
+    // Number of threads recording labels
+    private static final int THREADS = 4;
+
+    // Number of labels each thread records
+    private static final int LABELS = 50;
+
+    /**
+     * Ensures buffers filled on other threads draw the same as drawing directly.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testSameAsDirect() throws InterruptedException {
+
+        // Draw directly
+        final CountingGL direct = new CountingGL(true);
+        final TextRenderer first = new TextRenderer(FONT, true, false, direct.getGL2GL3());
+        first.beginRendering(640, 480);
+        for (int t = 0; t < THREADS; ++t) {
+            for (int i = 0; i < LABELS; ++i) {
+                first.setColor(getColor(t, i));
+                first.draw(getLabel(t, i), i, t * 20);
+            }
+        }
+        first.endRendering();
+
+        // Record on other threads, without touching OpenGL
+        final CountingGL buffered = new CountingGL(true);
+        final TextRenderer second = new TextRenderer(FONT, true, false, buffered.getGL2GL3());
+        final TextCommandBuffer[] buffers = new TextCommandBuffer[THREADS];
+        final Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; ++t) {
+            final int thread = t;
+            buffers[t] = new TextCommandBuffer();
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    record(buffers[thread], thread);
+                }
+            });
+            threads[t].start();
+        }
+        final int calls = buffered.getTotalCalls();
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(calls, buffered.getTotalCalls());
+        Assert.assertEquals(2 * LABELS, buffers[0].size());
+
+        // Draw them all at once
+        second.beginRendering(640, 480);
+        second.draw(buffers);
+        second.endRendering();
+
+        Assert.assertEquals(direct.getVertices(), buffered.getVertices());
+        Assert.assertTrue(buffered.getDrawCalls() <= direct.getDrawCalls());
+
+        // Glyphs added up front still count as misses
+        final TextRendererMetrics metrics = second.getMetrics();
+        Assert.assertEquals(metrics.getLastFrame(Counter.GLYPH_LOOKUPS),
+                            metrics.getLastFrame(Counter.GLYPH_HITS)
+                                    + metrics.getLastFrame(Counter.GLYPH_MISSES));
+        Assert.assertEquals(first.getMetrics().getLastFrame(Counter.GLYPH_MISSES),
+                            metrics.getLastFrame(Counter.GLYPH_MISSES));
+
+        first.dispose();
+        second.dispose();
+    }
+
+    /**
+     * Ensures glyphs looked up up front stay matched to their commands across buffers, with
+     * state commands and empty buffers in between.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testMixedCommands() {
+
+        // Draw directly
+        final CountingGL direct = new CountingGL(true);
+        final TextRenderer first = new TextRenderer(FONT, true, false, direct.getGL2GL3());
+        first.beginRendering(640, 480);
+        first.draw("One", 10, 10);
+        first.setClip(0, 0, 100, 100);
+        first.draw("Clipped text", 50, 50);
+        first.clearClip();
+        first.setColor(Color.RED);
+        first.draw("Red", 200, 200);
+        first.endRendering();
+
+        // Same commands spread over buffers
+        final CountingGL buffered = new CountingGL(true);
+        final TextRenderer second = new TextRenderer(FONT, true, false, buffered.getGL2GL3());
+        final TextCommandBuffer one = new TextCommandBuffer();
+        one.draw("One", 10, 10);
+        one.setClip(0, 0, 100, 100);
+        final TextCommandBuffer clipped = new TextCommandBuffer();
+        clipped.draw("Clipped text", 50, 50);
+        clipped.clearClip();
+        clipped.setColor(Color.RED);
+        final TextCommandBuffer red = new TextCommandBuffer();
+        red.draw("Red", 200, 200);
+        second.beginRendering(640, 480);
+        second.draw(one, new TextCommandBuffer(), clipped, red);
+        second.endRendering();
+
+        Assert.assertEquals(direct.getVertices(), buffered.getVertices());
+        Assert.assertEquals(first.getMetrics().getLastFrame(Counter.GLYPH_LOOKUPS),
+                            second.getMetrics().getLastFrame(Counter.GLYPH_LOOKUPS));
+
+        first.dispose();
+        second.dispose();
+    }
+
+    /**
+     * Ensures clearing a buffer lets it be recorded again.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testClear() {
+
+        final TextCommandBuffer buffer = new TextCommandBuffer();
+        Assert.assertTrue(buffer.isEmpty());
+        record(buffer, 0);
+        Assert.assertFalse(buffer.isEmpty());
+        buffer.clear();
+        Assert.assertEquals(0, buffer.size());
+
+        buffer.setTransform(new float[16]);
+        buffer.draw3D("3D", 0, 0, 0, 1, false);
+        Assert.assertEquals(2, buffer.size());
+    }
+
+    private static void record(final TextCommandBuffer buffer, final int thread) {
+        for (int i = 0; i < LABELS; ++i) {
+            buffer.setColor(getColor(thread, i));
+            buffer.draw(getLabel(thread, i), i, thread * 20);
+        }
+    }
+
+    private static Color getColor(final int thread, final int i) {
+        return ((thread + i / 10) % 2 == 0) ? Color.WHITE : Color.YELLOW;
+    }
+
+    private static String getLabel(final int thread, final int i) {
+        return "Label " + thread + "." + i;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import com.github.opengrabeso.ogltext.Headless;
+import com.github.opengrabeso.ogltext.util.awt.TextRenderer;
+import com.github.opengrabeso.ogltext.util.awt.TextRendererGroup;
+import com.github.opengrabeso.ogltext.util.awt.text.TextRendererMetrics.Counter;
+
+import java.awt.Font;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+
+/**
+ * Test for {@link TextRendererGroup} running on a {@link CountingGL}.
+ */
+public class TestTextRendererGroup {
+
+    // Fonts to render with
+    private static final Font[] FONTS = {
+        new Font("SansSerif", Font.PLAIN, 16),
+        new Font("SansSerif", Font.BOLD, 16),
+        new Font("Monospaced", Font.PLAIN, 16)
+    };
+
+    // Text to render, one line per font
+    private static final String[] LINES = { "Name:", "Value", "0x1F" };
+
+    // Most characters drawn to make the atlas of one font grow
+    private static final int MAX_GROWTH_CHARS = 4000;
+
+    /**
+     * Ensures text of several fonts drawn in turns ends up in one draw call.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testOneDrawCall() {
+
+        final CountingGL gl = new CountingGL(true);
+        final TextRenderer[] renderers = createRenderers(gl);
+        final TextRendererGroup group = new TextRendererGroup(gl.getGL2GL3());
+        for (final TextRenderer renderer : renderers) {
+            group.add(renderer);
+        }
+
+        group.beginRendering(640, 480);
+        drawInterleaved(renderers);
+        group.endRendering();
+
+        final long quads = group.getMetrics().get(Counter.QUADS);
+        Assert.assertEquals(1, gl.getDrawCalls());
+        Assert.assertEquals(6 * quads, gl.getVertices());
+        Assert.assertEquals(0, gl.getCalls("glTexImage2D"));
+        Assert.assertEquals(FONTS.length, group.getTexture().getDepth());
+
+        // Renderers of their own need one render cycle and draw call each
+        final CountingGL alone = new CountingGL(true);
+        for (final TextRenderer renderer : createRenderers(alone)) {
+            renderer.beginRendering(640, 480);
+            renderer.draw(LINES[0], 10, 400);
+            renderer.endRendering();
+        }
+        Assert.assertEquals(FONTS.length, alone.getDrawCalls());
+    }
+
+    /**
+     * Ensures each font is uploaded to its own layer, and only once.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testLayers() {
+
+        final CountingGL gl = new CountingGL(true);
+        final TextRenderer[] renderers = createRenderers(gl);
+        final TextRendererGroup group = new TextRendererGroup(gl.getGL2GL3());
+        for (final TextRenderer renderer : renderers) {
+            group.add(renderer);
+        }
+
+        group.beginRendering(640, 480);
+        drawInterleaved(renderers);
+        group.endRendering();
+        Assert.assertEquals(FONTS.length, gl.getCalls("glTexSubImage3D"));
+
+        // Same text again
+        gl.reset();
+        group.beginRendering(640, 480);
+        drawInterleaved(renderers);
+        group.endRendering();
+        Assert.assertEquals(0, gl.getTextureBytes());
+        Assert.assertEquals(1, gl.getDrawCalls());
+    }
+
+    /**
+     * Ensures the layers of other fonts are uploaded again when one font's atlas grows mid-frame.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testAtlasGrowsMidFrame() {
+
+        final CountingGL gl = new CountingGL(true);
+        final TextRenderer[] renderers = createRenderers(gl);
+        final TextRendererGroup group = new TextRendererGroup(gl.getGL2GL3());
+        for (final TextRenderer renderer : renderers) {
+            group.add(renderer);
+        }
+
+        // Fill every layer, then draw new characters with one font until the texture grows
+        group.beginRendering(640, 480);
+        drawInterleaved(renderers);
+        group.flush();
+        final int width = group.getTexture().getWidth();
+        final int height = group.getTexture().getHeight();
+        int i = 0;
+        while (group.getTexture().getWidth() == width
+                && group.getTexture().getHeight() == height) {
+            Assert.assertTrue(i < MAX_GROWTH_CHARS);
+            renderers[1].draw(String.valueOf((char) (0x100 + i++)), 10, 10);
+        }
+        drawInterleaved(renderers);
+        group.endRendering();
+
+        Assert.assertTrue(gl.getCalls("glTexImage3D") > 1);
+        Assert.assertEquals(0, gl.getEmptyLayerDraws());
+    }
+
+    /**
+     * Ensures a renderer of a group cannot start a render cycle of its own.
+     */
+    @Category(Headless.class)
+    @Test(expected = IllegalStateException.class)
+    public void testOwnRenderCycle() {
+
+        final CountingGL gl = new CountingGL(true);
+        final TextRenderer renderer = new TextRenderer(FONTS[0], true, false, gl.getGL2GL3());
+        new TextRendererGroup(gl.getGL2GL3()).add(renderer);
+
+        renderer.beginRendering(640, 480);
+    }
+
+    // Makes a renderer for each font
+    private static TextRenderer[] createRenderers(final CountingGL gl) {
+        final TextRenderer[] renderers = new TextRenderer[FONTS.length];
+        for (int i = 0; i < FONTS.length; ++i) {
+            renderers[i] = new TextRenderer(FONTS[i], true, false, gl.getGL2GL3());
+        }
+        return renderers;
+    }
+
+    // Draws a few lines with the fonts taking turns
+    private static void drawInterleaved(final TextRenderer[] renderers) {
+        for (int row = 0; row < 3; ++row) {
+            for (int i = 0; i < renderers.length; ++i) {
+                renderers[i].draw(LINES[i], 10 + 100 * i, 400 - 20 * row);
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import com.github.opengrabeso.ogltext.Headless;
+import com.github.opengrabeso.ogltext.util.awt.TextRenderer;
+
+import java.awt.Font;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+
+/**
+ * Test for {@link TextRenderer} running on a {@link CountingGL}.
+ */
+public class TestTextRendererHeadless {
+
+    // Font to render with
+    private static final Font FONT = new Font("SansSerif", Font.PLAIN, 24);
+
+    // Text to render
+    private static final String TEXT = "The quick brown fox";
+
+    /**
+     * Ensures text already drawn once is drawn again without uploading anything to the texture
+     * with an OpenGL 2 context.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testSecondFrameWithGL2() {
+        checkSecondFrame(false);
+    }
+
+    /**
+     * Ensures text already drawn once is drawn again without uploading anything to the texture
+     * with an OpenGL 3 context.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testSecondFrameWithGL3() {
+        checkSecondFrame(true);
+    }
+
+    /**
+     * Ensures recovering from a new context makes its objects again with a single texture upload,
+     * without deleting the stale ones.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testContextRecreated() {
+
+        final CountingGL gl = new CountingGL(true);
+        final TextRenderer tr = new TextRenderer(FONT, true, false, gl.getGL2GL3());
+        drawFrame(tr);
+
+        final CountingGL newGL = new CountingGL(true);
+        tr.contextRecreated(newGL.getGL2GL3());
+        drawFrame(tr);
+
+        Assert.assertEquals(0, gl.getCalls("glDeleteTextures") + gl.getCalls("glDeleteProgram"));
+        Assert.assertEquals(1, newGL.getCalls("glCreateProgram"));
+        Assert.assertEquals(1, newGL.getCalls("glTexImage2D"));
+        Assert.assertEquals(1, newGL.getCalls("glTexSubImage2D"));
+        Assert.assertTrue(newGL.getDrawCalls() > 0);
+    }
+
+    /**
+     * Ensures changing the gamma with an OpenGL 2 context uploads the whole texture again with the
+     * new correction.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testGammaWithGL2() {
+
+        final CountingGL gl = new CountingGL(false);
+        final TextRenderer tr = new TextRenderer(FONT, true, false, gl.getGL2());
+        drawFrame(tr);
+
+        gl.reset();
+        tr.setGamma(1.8f);
+        drawFrame(tr);
+        final AtlasReport atlas = tr.getAtlasReport();
+        Assert.assertEquals(1.8f, tr.getGamma(), 0.0f);
+        Assert.assertEquals((long) atlas.getWidth() * atlas.getHeight(), gl.getTextureBytes());
+
+        tr.dispose();
+    }
+
+    /**
+     * Ensures changing the gamma with an OpenGL 3 context only changes a shader uniform.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testGammaWithGL3() {
+
+        final CountingGL gl = new CountingGL(true);
+        final TextRenderer tr = new TextRenderer(FONT, true, false, gl.getGL2GL3());
+        drawFrame(tr);
+
+        gl.reset();
+        tr.setGamma(1.8f);
+        drawFrame(tr);
+        Assert.assertEquals(0, gl.getTextureBytes());
+        Assert.assertEquals(4, gl.getUniformBufferBytes());
+
+        gl.reset();
+        drawFrame(tr);
+        Assert.assertEquals(0, gl.getUniformBufferBytes());
+
+        tr.dispose();
+    }
+
+    /**
+     * Ensures the gamma table used with OpenGL 2 keeps black and white and brightens the rest.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testGammaTable() {
+
+        final byte[] identity = Texture2D.createGammaTable(1);
+        final byte[] table = Texture2D.createGammaTable(Texture2D.DEFAULT_GAMMA);
+        for (int i = 0; i < 256; ++i) {
+            Assert.assertEquals(i, identity[i] & 0xff);
+            Assert.assertTrue((table[i] & 0xff) >= i);
+        }
+        Assert.assertEquals(0, table[0]);
+        Assert.assertEquals(255, table[255] & 0xff);
+    }
+
+    private static void checkSecondFrame(final boolean gl3) {
+
+        final CountingGL gl = new CountingGL(gl3);
+        final TextRenderer tr = new TextRenderer(FONT, true, false, null, false, null,
+                gl.getGL2GL3(), gl3);
+
+        drawFrame(tr);
+        final int drawCalls = gl.getDrawCalls();
+        Assert.assertTrue(gl.getTextureBytes() > 0);
+        Assert.assertTrue(drawCalls > 0);
+
+        gl.reset();
+        drawFrame(tr);
+        Assert.assertEquals(0, gl.getTextureBytes());
+        Assert.assertEquals(drawCalls, gl.getDrawCalls());
+
+        tr.dispose();
+    }
+
+    private static void drawFrame(final TextRenderer tr) {
+        tr.beginRendering(640, 480);
+        tr.draw(TEXT, 10, 10);
+        tr.endRendering();
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import com.github.opengrabeso.ogltext.Headless;
+import com.github.opengrabeso.ogltext.util.awt.TextRenderer;
+import com.github.opengrabeso.ogltext.util.awt.text.TextRendererMetrics.Counter;
+
+import java.awt.Font;
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+
+/**
+ * Test for {@link TextRendererMetrics}.
+ */
+public class TestTextRendererMetrics {
+
+    // Font to render with
+    private static final Font FONT = new Font("SansSerif", Font.PLAIN, 24);
+
+    // Text to render, with nine distinct characters
+    private static final String TEXT = "abcabc defdef";
+
+    /**
+     * Ensures the counters agree with what was drawn and what OpenGL was asked to do.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testCounters() {
+
+        final CountingGL gl = new CountingGL(true);
+        final TextRenderer tr = new TextRenderer(FONT, true, false, gl.getGL2GL3());
+        final TextRendererMetrics metrics = tr.getMetrics();
+
+        // First frame rasterizes and uploads every character once
+        drawFrame(tr);
+        Assert.assertEquals(TEXT.length(), metrics.getLastFrame(Counter.GLYPH_LOOKUPS));
+        Assert.assertEquals(7, metrics.getLastFrame(Counter.GLYPH_MISSES));
+        Assert.assertEquals(TEXT.length() - 7, metrics.getLastFrame(Counter.GLYPH_HITS));
+        Assert.assertEquals(7, metrics.getLastFrame(Counter.GLYPHS_RASTERIZED));
+        Assert.assertEquals(1, metrics.getLastFrame(Counter.TEXTURE_UPLOADS));
+        Assert.assertEquals(gl.getTextureBytes(), metrics.getLastFrame(Counter.BYTES_UPLOADED));
+        Assert.assertEquals(TEXT.length(), metrics.getLastFrame(Counter.QUADS));
+        Assert.assertEquals(gl.getDrawCalls(), metrics.getLastFrame(Counter.DRAW_CALLS));
+        Assert.assertEquals(1, metrics.getLastFrame(Counter.FLUSHES_END));
+
+        // Second frame finds everything in the cache
+        gl.reset();
+        drawFrame(tr);
+        Assert.assertEquals(TEXT.length(), metrics.getLastFrame(Counter.GLYPH_HITS));
+        Assert.assertEquals(0, metrics.getLastFrame(Counter.GLYPH_MISSES));
+        Assert.assertEquals(0, metrics.getLastFrame(Counter.TEXTURE_UPLOADS));
+        Assert.assertEquals(gl.getDrawCalls(), metrics.getLastFrame(Counter.DRAW_CALLS));
+
+        // Totals cover both frames
+        Assert.assertEquals(2, metrics.get(Counter.FRAMES));
+        Assert.assertEquals(2 * TEXT.length(), metrics.get(Counter.GLYPH_LOOKUPS));
+        Assert.assertEquals(7, metrics.get(Counter.GLYPH_MISSES));
+
+        tr.dispose();
+    }
+
+    /**
+     * Ensures the counters can be read and reset through JMX.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testRegister() throws Exception {
+
+        final CountingGL gl = new CountingGL(false);
+        final TextRenderer tr = new TextRenderer(FONT, true, false, gl.getGL2());
+        final TextRendererMetrics metrics = tr.getMetrics();
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        final ObjectName name = metrics.register("test");
+        try {
+            drawFrame(tr);
+            Assert.assertEquals(1L, server.getAttribute(name, "Frames"));
+            Assert.assertEquals((long) TEXT.length(), server.getAttribute(name, "LastFrameGlyphLookups"));
+
+            // Only finished frames are published
+            metrics.increment(Counter.CLEARS);
+            Assert.assertEquals(0L, server.getAttribute(name, "Clears"));
+
+            // Resetting is left to the rendering thread, but shows right away
+            server.invoke(name, "reset", null, null);
+            Assert.assertEquals(0L, server.getAttribute(name, "GlyphLookups"));
+            Assert.assertEquals(1L, metrics.get(Counter.FRAMES));
+            drawFrame(tr);
+            Assert.assertEquals(1L, metrics.get(Counter.FRAMES));
+            Assert.assertEquals(1L, server.getAttribute(name, "Frames"));
+            Assert.assertEquals(0L, server.getAttribute(name, "Clears"));
+        } finally {
+            metrics.unregister();
+        }
+        Assert.assertFalse(server.isRegistered(name));
+
+        tr.dispose();
+    }
+
+    private static void drawFrame(final TextRenderer tr) {
+        tr.beginRendering(640, 480);
+        tr.draw(TEXT, 10, 10);
+        tr.endRendering();
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.text;
+
+import com.github.opengrabeso.ogltext.Headless;
+import com.github.opengrabeso.ogltext.util.awt.TextRenderer;
+
+import java.awt.Font;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+
+/**
+ * Test for truncating text with {@link TextRenderer}.
+ */
+public class TestTruncation {
+
+    // Font to render with
+    private static final Font FONT = new Font("SansSerif", Font.PLAIN, 24);
+
+    // Text to truncate
+    private static final String TEXT = "Quarterly revenue, adjusted for seasonal effects";
+
+    // Text made mostly of characters outside the basic multilingual plane
+    private static final String PAIRS =
+            "x\uD835\uDC00\uD835\uDC01 \uD835\uDC02\uD835\uDC03\uD835\uDC04 y\uD83D\uDE00";
+
+    /**
+     * Ensures the longest prefix that fits with the ellipsis is kept.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testLongestPrefix() {
+
+        final CountingGL gl = new CountingGL(true);
+        final TextRenderer renderer = new TextRenderer(FONT, true, false, gl.getGL2GL3());
+
+        final float full = measure(renderer, TEXT);
+        Assert.assertEquals(TEXT.length(), renderer.getTruncatedLength(TEXT, full));
+        Assert.assertSame(TEXT, renderer.getTruncated(TEXT, full + 10));
+
+        final float ellipsis = renderer.getCharWidth('\u2026');
+        for (float width = 0; width < full; width += 7) {
+            final int len = renderer.getTruncatedLength(TEXT, width);
+            Assert.assertTrue(len < TEXT.length());
+            Assert.assertEquals(expectedLength(renderer, width - ellipsis), len);
+            final String expected = TEXT.substring(0, len) + '\u2026';
+            Assert.assertEquals(expected, renderer.getTruncated(TEXT, width));
+        }
+
+        renderer.dispose();
+    }
+
+    /**
+     * Ensures text is never cut between the two halves of a surrogate pair.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testSurrogatePairs() {
+
+        final CountingGL gl = new CountingGL(true);
+        final TextRenderer renderer = new TextRenderer(FONT, true, false, gl.getGL2GL3());
+
+        final float full = measure(renderer, PAIRS);
+        for (float width = 0; width < full; width += 1) {
+            final int len = renderer.getTruncatedLength(PAIRS, width);
+            Assert.assertTrue(len < PAIRS.length());
+            Assert.assertFalse(Character.isLowSurrogate(PAIRS.charAt(len)));
+        }
+
+        renderer.dispose();
+    }
+
+    /**
+     * Ensures drawing truncated text queues the same quads as drawing the prefix and the ellipsis.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testDrawSameAsString() {
+
+        final StringBuilder sb = new StringBuilder(TEXT);
+        for (final float width : new float[] { 5, 120, 300, 1000 }) {
+
+            final CountingGL truncatedGL = new CountingGL(true);
+            final TextRenderer truncated = new TextRenderer(
+                    FONT, true, false, truncatedGL.getGL2GL3());
+            truncated.beginRendering(640, 480);
+            truncated.drawTruncated(sb, 10, 10, width);
+            truncated.endRendering();
+
+            final CountingGL stringGL = new CountingGL(true);
+            final TextRenderer string = new TextRenderer(FONT, true, false, stringGL.getGL2GL3());
+            final int len = truncated.getTruncatedLength(TEXT, width);
+            string.beginRendering(640, 480);
+            string.draw(TEXT.substring(0, len), 10, 10);
+            if (len < TEXT.length()) {
+                string.draw("\u2026", 10, 10);
+            }
+            string.endRendering();
+
+            Assert.assertTrue(truncatedGL.getVertices() > 0);
+            Assert.assertEquals(stringGL.getVertices(), truncatedGL.getVertices());
+
+            truncated.dispose();
+            string.dispose();
+        }
+    }
+
+    // Finds the prefix length by adding up advances one at a time
+    private static int expectedLength(final TextRenderer renderer, final float available) {
+        int len = 0;
+        float x = 0;
+        while (x + renderer.getCharWidth(TEXT.charAt(len)) <= available) {
+            x += renderer.getCharWidth(TEXT.charAt(len));
+            ++len;
+        }
+        while (len > 0 && TEXT.charAt(len - 1) == ' ') {
+            --len;
+        }
+        return len;
+    }
+
+    private static float measure(final TextRenderer renderer, final String str) {
+        float width = 0;
+        for (int i = 0; i < str.length(); ++i) {
+            width += renderer.getCharWidth(str.charAt(i));
+        }
+        return width;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2012 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+package com.github.opengrabeso.ogltext.util.awt.trace;
+
+import com.github.opengrabeso.ogltext.Headless;
+import com.github.opengrabeso.ogltext.util.awt.TextRenderer;
+import com.github.opengrabeso.ogltext.util.awt.text.CountingGL;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+
+/**
+ * Test for {@link TraceRecorder} and {@link TraceReplayer}.
+ */
+public class TestTrace {
+
+    // Font to render with
+    private static final Font FONT = new Font("SansSerif", Font.PLAIN, 24);
+
+    // Number of orthographic frames to record
+    private static final int FRAMES = 20;
+
+    // Identity transform
+    private static final float[] IDENTITY = {
+        1, 0, 0, 0,
+        0, 1, 0, 0,
+        0, 0, 1, 0,
+        0, 0, 0, 1
+    };
+
+    /**
+     * Ensures a replay makes the same OpenGL calls as the recorded renderer.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testReplayMatchesRecording() throws Exception {
+
+        final CountingGL recordedGL = new CountingGL(true);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final TraceRecorder recorder = new TraceRecorder(
+                new TextRenderer(FONT, recordedGL.getGL2GL3()), out);
+        record(recorder, recordedGL);
+        recorder.close();
+
+        final TraceReplayer replayer = new TraceReplayer(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertEquals(FONT, replayer.getFont());
+        Assert.assertEquals(FRAMES + 1, replayer.getFrameCount());
+
+        final CountingGL replayedGL = new CountingGL(true);
+        final TextRenderer renderer = new TextRenderer(replayer.getFont(), replayedGL.getGL2GL3());
+        final ReplayResult result = replayer.replay(renderer, replayedGL.getGL2GL3());
+
+        Assert.assertEquals(FRAMES + 1, result.getFrameCount());
+        Assert.assertEquals(recordedGL.getTotalCalls(), replayedGL.getTotalCalls());
+        Assert.assertEquals(recordedGL.getDrawCalls(), replayedGL.getDrawCalls());
+        Assert.assertEquals(recordedGL.getVertices(), replayedGL.getVertices());
+        Assert.assertEquals(recordedGL.getTextureBytes(), replayedGL.getTextureBytes());
+
+        recorder.getRenderer().dispose();
+        renderer.dispose();
+    }
+
+    /**
+     * Ensures text drawn every frame is only written out once.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testRepeatedTextIsCompact() throws Exception {
+
+        final CountingGL gl = new CountingGL(false);
+        final String text = "The quick brown fox jumps over the lazy dog";
+        final int once = recordFrames(gl, text, 1);
+        final int twice = recordFrames(gl, text, 2);
+
+        // The second frame costs a handful of bytes, not the text again
+        Assert.assertTrue(twice - once < text.length() / 2);
+    }
+
+    /**
+     * Ensures a stream that is not a trace is rejected.
+     */
+    @Category(Headless.class)
+    @Test(expected = IOException.class)
+    public void testNotATrace() throws Exception {
+        new TraceReplayer(new ByteArrayInputStream("not a trace".getBytes("UTF-8")));
+    }
+
+    /**
+     * Ensures percentiles are taken from the measured times.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testPercentiles() {
+        final ReplayResult result = new ReplayResult(new long[] { 40, 10, 30, 20, 50 });
+        Assert.assertEquals(5, result.getFrameCount());
+        Assert.assertEquals(150, result.getTotalNanos());
+        Assert.assertEquals(10, result.getPercentileNanos(0));
+        Assert.assertEquals(30, result.getPercentileNanos(50));
+        Assert.assertEquals(50, result.getPercentileNanos(90));
+        Assert.assertEquals(50, result.getMaxNanos());
+        Assert.assertEquals(30.0, result.getMeanNanos(), 0.0);
+    }
+
+    private static void record(final TraceRecorder recorder, final CountingGL gl) {
+        for (int i = 0; i < FRAMES; ++i) {
+            recorder.beginRendering(640, 480);
+            recorder.setColor(Color.WHITE);
+            recorder.draw("Frame", 10, 10);
+            recorder.setColor(1, 0.5f, 0, 1);
+            recorder.draw(Integer.toString(i), 80, -5);
+            recorder.flush();
+            recorder.draw("FPS 60", 10, 40);
+            recorder.endRendering();
+        }
+        recorder.begin3DRendering();
+        recorder.setTransform(gl.getGL2GL3(), IDENTITY);
+        recorder.draw3D("Label", 1.5f, -2, 0.25f, 0.01f, true);
+        recorder.end3DRendering();
+    }
+
+    private static int recordFrames(final CountingGL gl, final String text, final int frames)
+            throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final TraceRecorder recorder = new TraceRecorder(new TextRenderer(FONT, gl.getGL2()), out);
+        for (int i = 0; i < frames; ++i) {
+            recorder.beginRendering(640, 480);
+            recorder.draw(text, 10, 10);
+            recorder.endRendering();
+        }
+        recorder.close();
+        recorder.getRenderer().dispose();
+        return out.size();
+    }
+}
@@ -0,0 +1,241 @@
+package com.github.opengrabeso.ogltext.util.packrect;
+
+import com.github.opengrabeso.ogltext.Headless;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+
+/**
+ * Test for the {@link PackingStrategy} implementations driven through {@link RectanglePacker}.
+ */
+public class TestPackingStrategies {
+
+    // Number of add/remove operations per run
+    private static final int OPERATIONS = 5000;
+
+    @Category(Headless.class)
+    @Test
+    public void testLevelSet() {
+        churn(LevelSet.FACTORY);
+    }
+
+    @Category(Headless.class)
+    @Test
+    public void testSkylineSet() {
+        churn(SkylineSet.FACTORY);
+    }
+
+    /**
+     * Checks that the space of removed rectangles is merged back, so that a rectangle larger
+     * than any of them fits afterwards.
+     */
+    @Category(Headless.class)
+    @Test
+    public void testSkylineSetReuse() {
+        final SkylineSet set = new SkylineSet(128, 128);
+        final List<Rect> added = new ArrayList<Rect>();
+        final Random random = new Random(11);
+        while (true) {
+            final Rect rect = new Rect(0, 0, 6 + random.nextInt(14), 14 + random.nextInt(8), null);
+            if (!set.add(rect)) {
+                break;
+            }
+            added.add(rect);
+        }
+
+        // Keep the first rectangle so that the set is never emptied
+        final List<Rect> removed = new ArrayList<Rect>(added.subList(1, added.size()));
+        Collections.shuffle(removed, random);
+        for (final Rect rect : removed) {
+            Assert.assertTrue(set.remove(rect));
+        }
+        Assert.assertTrue(set.add(new Rect(0, 0, 120, 100, null)));
+        Assert.assertEquals(2, countRects(set));
+    }
+
+    @Category(Headless.class)
+    @Test
+    public void testMaxRectsSet() {
+        churn(MaxRectsSet.FACTORY);
+    }
+
+    @Category(Headless.class)
+    @Test
+    public void testSwitchStrategy() {
+        final Manager manager = new Manager();
+        final RectanglePacker packer = new RectanglePacker(manager, 256, 256);
+        final List<Rect> added = new ArrayList<Rect>();
+        final Random random = new Random(7);
+        for (int i = 0; i < 200; ++i) {
+            final Rect rect = new Rect(0, 0, 4 + random.nextInt(20), 4 + random.nextInt(30), null);
+            packer.add(rect);
+            added.add(rect);
+        }
+        packer.setPackingStrategy(MaxRectsSet.FACTORY);
+        assertValid(packer, added, manager);
+    }
+
+    @Category(Headless.class)
+    @Test
+    public void testIncrementalCompaction() {
+        final Manager manager = new Manager();
+        final RectanglePacker packer = new RectanglePacker(manager, 256, 256);
+        final List<Rect> resident = new ArrayList<Rect>();
+        final Random random = new Random(3);
+        for (int i = 0; i < 300; ++i) {
+            final Rect rect = new Rect(0, 0, 4 + random.nextInt(20), 4 + random.nextInt(30), null);
+            packer.add(rect);
+            resident.add(rect);
+        }
+        for (int i = 0; i < 150; ++i) {
+            packer.remove(resident.remove(random.nextInt(resident.size())));
+        }
+
+        packer.beginCompaction();
+        Assert.assertTrue(packer.isCompacting());
+        Assert.assertEquals(2, manager.live);
+
+        // Keep changing the contents while moving a few rectangles at a time
+        int steps = 0;
+        while (!packer.compactStep(10, Long.MAX_VALUE)) {
+            assertValid(packer, resident, manager, 2);
+            packer.remove(resident.remove(random.nextInt(resident.size())));
+            final Rect rect = new Rect(0, 0, 4 + random.nextInt(20), 4 + random.nextInt(30), null);
+            packer.add(rect);
+            resident.add(rect);
+            ++steps;
+        }
+        Assert.assertTrue(steps > 1);
+        Assert.assertFalse(packer.isCompacting());
+        assertValid(packer, resident, manager);
+    }
+
+    private static int countRects(final PackingStrategy strategy) {
+        final int[] count = new int[1];
+        strategy.visit(new RectVisitor() {
+            @Override
+            public void visit(final Rect rect) {
+                ++count[0];
+            }
+        });
+        return count[0];
+    }
+
+    private static void churn(final PackingStrategy.Factory factory) {
+
+        final Manager manager = new Manager();
+        final RectanglePacker packer = new RectanglePacker(manager, 128, 128, factory);
+        final List<Rect> resident = new ArrayList<Rect>();
+        final Random random = new Random(42);
+
+        for (int i = 0; i < OPERATIONS; ++i) {
+            if (resident.size() > 50 && random.nextInt(3) == 0) {
+                packer.remove(resident.remove(random.nextInt(resident.size())));
+            } else {
+                // Mostly text-sized glyphs with the occasional tall or wide one
+                final int w = (random.nextInt(10) == 0) ? 40 + random.nextInt(60) : 6 + random.nextInt(14);
+                final int h = (random.nextInt(10) == 0) ? 40 + random.nextInt(30) : 14 + random.nextInt(8);
+                final Rect rect = new Rect(0, 0, w, h, null);
+                packer.add(rect);
+                resident.add(rect);
+            }
+        }
+        assertValid(packer, resident, manager);
+    }
+
+    private static void assertValid(final RectanglePacker packer,
+                                    final List<Rect> expected,
+                                    final Manager manager) {
+        assertValid(packer, expected, manager, 1);
+    }
+
+    private static void assertValid(final RectanglePacker packer,
+                                    final List<Rect> expected,
+                                    final Manager manager,
+                                    final int liveBackingStores) {
+
+        final List<Rect> visited = new ArrayList<Rect>();
+        packer.visit(new RectVisitor() {
+            @Override
+            public void visit(final Rect rect) {
+                visited.add(rect);
+            }
+        });
+        Assert.assertEquals(expected.size(), visited.size());
+
+        final int[] size = (int[]) packer.getBackingStore();
+        for (int i = 0; i < visited.size(); ++i) {
+            final Rect a = visited.get(i);
+            Assert.assertTrue("Rect not resident: " + a, expected.contains(a));
+            Assert.assertTrue("Rect out of bounds: " + a, a.x() + a.w() <= size[0]);
+            Assert.assertTrue("Rect out of bounds: " + a, a.y() + a.h() <= size[1]);
+            for (int j = i + 1; j < visited.size(); ++j) {
+                final Rect b = visited.get(j);
+                final boolean disjoint = a.x() + a.w() <= b.x() || b.x() + b.w() <= a.x()
+                        || a.y() + a.h() <= b.y() || b.y() + b.h() <= a.y();
+                Assert.assertTrue("Overlap between " + a + " and " + b, disjoint);
+            }
+        }
+        Assert.assertEquals(liveBackingStores, manager.live);
+    }
+
+    /**
+     * Backing store manager keeping only the size of each backing store.
+     */
+    private static final class Manager implements BackingStoreManager {
+
+        // Number of backing stores not deleted yet
+        int live;
+
+        @Override
+        public Object allocateBackingStore(final int w, final int h) {
+            ++live;
+            return new int[] { w, h };
+        }
+
+        @Override
+        public void deleteBackingStore(final Object backingStore) {
+            --live;
+        }
+
+        @Override
+        public boolean canCompact() {
+            return true;
+        }
+
+        @Override
+        public boolean preExpand(final Rect cause, final int attemptNumber) {
+            return false;
+        }
+
+        @Override
+        public boolean additionFailed(final Rect cause, final int attemptNumber) {
+            return false;
+        }
+
+        @Override
+        public void beginMovement(final Object oldBackingStore, final Object newBackingStore) {
+            // empty
+        }
+
+        @Override
+        public void move(final Object oldBackingStore,
+                         final Rect oldLocation,
+                         final Object newBackingStore,
+                         final Rect newLocation) {
+            // empty
+        }
+
+        @Override
+        public void endMovement(final Object oldBackingStore, final Object newBackingStore) {
+            // empty
+        }
+    }
+}